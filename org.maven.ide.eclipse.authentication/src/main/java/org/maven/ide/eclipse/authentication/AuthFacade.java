@@ -39,4 +39,15 @@ public class AuthFacade
     {
         return loadAuthRegistry();
     }
+
+    /**
+     * Gets a number that changes whenever authentication data or the associations of URLs to realms are modified.
+     * Clients that cache authentication data should discard it when the number changed.
+     * 
+     * @return The current modification count.
+     */
+    public static long getModificationCount()
+    {
+        return AuthRegistry.getModificationCount();
+    }
 }
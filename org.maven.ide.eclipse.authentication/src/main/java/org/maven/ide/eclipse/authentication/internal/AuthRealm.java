@@ -67,6 +67,7 @@ public class AuthRealm
 
     public void setAuthenticationType( AuthenticationType authenticationType )
     {
+        AuthRegistry.modified();
         this.authenticationType = authenticationType;
     }
 
@@ -331,6 +332,7 @@ public class AuthRealm
 
         if ( needsSave )
         {
+            AuthRegistry.modified();
             return saveToSecureStorage();
         }
 
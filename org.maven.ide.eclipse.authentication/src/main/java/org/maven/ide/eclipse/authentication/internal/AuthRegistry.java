@@ -9,6 +9,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -52,11 +53,27 @@ public class AuthRegistry
 
     public static Object lock = new Integer( 0 );
 
+    private static final AtomicLong modifications = new AtomicLong();
+
     public static AuthRegistryStates getState()
     {
         return state;
     }
 
+    /**
+     * Gets a number that changes whenever realms, URL associations or authentication data are modified. Clients that
+     * cache selected authentication data can use it to detect stale entries.
+     */
+    public static long getModificationCount()
+    {
+        return modifications.get();
+    }
+
+    static void modified()
+    {
+        modifications.incrementAndGet();
+    }
+
     public AuthRegistry()
     {
         this( SecurePreferencesFactory.getDefault() );
@@ -231,6 +248,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             log.debug( "Loading security realms from persistent storage..." );
 
             loadCount++;
@@ -281,6 +300,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             log.debug( "Removing authentication realm {}", realmId );
 
             if ( realmId == null || realmId.trim().length() == 0 )
@@ -319,6 +340,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             log.debug( "Clearing authentication registry" );
 
             realms.clear();
@@ -353,6 +376,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             if ( id == null || id.trim().length() == 0 )
             {
                 throw new AuthRegistryException( "The id of a security realm cannot be null or empty." );
@@ -390,6 +415,8 @@ public class AuthRegistry
 
         synchronized ( lock )
         {
+            modified();
+
             if ( url == null || url.trim().length() == 0 )
             {
                 throw new AuthRegistryException( "The url cannot be null or empty." );
@@ -440,6 +467,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             if ( urlToRealmAssoc == null )
             {
                 throw new AuthRegistryException( "The URL to realm association cannot be null." );
@@ -528,6 +557,8 @@ public class AuthRegistry
         }
         synchronized ( lock )
         {
+            modified();
+
             URI uri = URIHelper.normalize( sUri );
             ISecurityRealmURLAssoc urlAssoc = findUrlAssoc( uri );
             if ( urlAssoc == null )
@@ -563,6 +594,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             if ( authRealm == null )
             {
                 throw new AuthRegistryException( "The security realm cannot be null." );
@@ -619,6 +652,8 @@ public class AuthRegistry
     {
         synchronized ( lock )
         {
+            modified();
+
             log.debug( "Removing URL to realm association {}", urlToRealmAssocId );
 
             if ( urlToRealmAssocId == null || urlToRealmAssocId.trim().length() == 0 )
@@ -167,6 +167,7 @@ public class SimpleAuthService
         uri = URIHelper.normalize( uri.toString() );
         String sURI;
         log.debug( "Removing authentication for URI {}", uri.toString() );
+        AuthRegistry.modified();
         try
         {
             sURI = encode( uri.toString() );
@@ -232,6 +233,8 @@ public class SimpleAuthService
                 return false;
             }
 
+            AuthRegistry.modified();
+
             sURI = encode( sURI );
 
             ISecurePreferences authNode = secureStorage.node( SECURE_NODE_PATH );
@@ -0,0 +1,33 @@
+package org.maven.ide.eclipse.io.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. Without arguments, all benchmarks of this module are run and the results are written as JSON
+ * to {@code target/jmh-result.json}, so they can be compared across builds. With arguments, the regular JMH command
+ * line is run, e.g. {@code TransferBenchmark.smallGet -rf json -rff result.json}.
+ */
+public class BenchmarkMain
+{
+    public static void main( String[] args )
+        throws Exception
+    {
+        if ( args.length > 0 )
+        {
+            org.openjdk.jmh.Main.main( args );
+            return;
+        }
+
+        File result = new File( "target/jmh-result.json" );
+        result.getAbsoluteFile().getParentFile().mkdirs();
+
+        Options options =
+            new OptionsBuilder().include( BenchmarkMain.class.getPackage().getName() + "\\..*Benchmark\\..*" ).resultFormat( ResultFormatType.JSON ).result( result.getPath() ).build();
+        new Runner( options ).run();
+    }
+}
@@ -0,0 +1,150 @@
+package org.maven.ide.eclipse.io.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.maven.ide.eclipse.io.internal.HttpClientRegistry;
+import org.sonatype.tests.http.server.jetty.behaviour.filesystem.Get;
+import org.sonatype.tests.http.server.jetty.behaviour.filesystem.Head;
+import org.sonatype.tests.http.server.jetty.behaviour.filesystem.Put;
+import org.sonatype.tests.http.server.jetty.impl.JettyServerProvider;
+
+/**
+ * The jetty server of the http-testing-harness, serving a temporary directory with the files the benchmarks transfer.
+ * While the server runs, the transfers share their HTTP clients like they do inside OSGi.
+ */
+class BenchmarkServer
+{
+    static final String SMALL_FILE = "small.bin";
+
+    static final String LARGE_FILE = "large.bin";
+
+    static final String UPLOAD_DIR = "upload";
+
+    private final File basedir;
+
+    private JettyServerProvider provider;
+
+    private HttpClientRegistry clients;
+
+    BenchmarkServer()
+    {
+        basedir = new File( System.getProperty( "java.io.tmpdir" ), "s2io-benchmarks-" + System.nanoTime() );
+    }
+
+    /**
+     * Creates the served files and starts the server.
+     *
+     * @param smallSize The size of the small file in bytes.
+     * @param largeSize The size of the large file in bytes.
+     * @param headFiles The number of files to create for HEAD requests.
+     */
+    void start( int smallSize, int largeSize, int headFiles )
+        throws Exception
+    {
+        new File( basedir, UPLOAD_DIR ).mkdirs();
+        Random random = new Random( 0 );
+        writeFile( new File( basedir, SMALL_FILE ), smallSize, random );
+        writeFile( new File( basedir, LARGE_FILE ), largeSize, random );
+        for ( int i = 0; i < headFiles; i++ )
+        {
+            writeFile( new File( basedir, getHeadFile( i ) ), 16, random );
+        }
+
+        clients = new HttpClientRegistry();
+        HttpClientRegistry.setStandalone( clients );
+
+        String fsPath = basedir.getAbsolutePath();
+        provider = new JettyServerProvider();
+        provider.addBehaviour( "/*", new Get( fsPath ), new Put( fsPath ), new Head( fsPath ) );
+        provider.start();
+    }
+
+    void stop()
+        throws Exception
+    {
+        try
+        {
+            if ( provider != null )
+            {
+                provider.stop();
+                provider = null;
+            }
+        }
+        finally
+        {
+            if ( clients != null )
+            {
+                HttpClientRegistry.setStandalone( null );
+                clients.shutdown();
+                clients = null;
+            }
+            delete( basedir );
+        }
+    }
+
+    File getFile( String path )
+    {
+        return new File( basedir, path );
+    }
+
+    URI getUrl( String path )
+        throws Exception
+    {
+        return URI.create( provider.getUrl().toString() + "/" + path );
+    }
+
+    List<URI> getHeadUrls( int count )
+        throws Exception
+    {
+        List<URI> urls = new ArrayList<URI>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            urls.add( getUrl( getHeadFile( i ) ) );
+        }
+        return urls;
+    }
+
+    private static String getHeadFile( int index )
+    {
+        return "head-" + index + ".txt";
+    }
+
+    static void writeFile( File file, int size, Random random )
+        throws IOException
+    {
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            byte[] buffer = new byte[64 * 1024];
+            for ( int remaining = size; remaining > 0; remaining -= buffer.length )
+            {
+                random.nextBytes( buffer );
+                os.write( buffer, 0, Math.min( remaining, buffer.length ) );
+            }
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    private static void delete( File file )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
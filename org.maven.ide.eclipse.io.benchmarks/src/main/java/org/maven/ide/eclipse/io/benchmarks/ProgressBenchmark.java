@@ -0,0 +1,157 @@
+package org.maven.ide.eclipse.io.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.maven.ide.eclipse.io.UrlFetcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cost of reporting the progress of a transfer. A local file is read through the monitored stream of the io
+ * bundle with different monitors and compared to reading the file directly, so the differences are the overhead of the
+ * progress reporting itself. The read buffer is small to get many reports per transfer.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 10, time = 2 )
+@Fork( 1 )
+public class ProgressBenchmark
+{
+    @Param( { "16777216" } )
+    public int size;
+
+    @Param( { "4096" } )
+    public int bufferSize;
+
+    /**
+     * The CPU work a call of the slow monitor costs, in JMH tokens.
+     */
+    @Param( { "500" } )
+    public int monitorCost;
+
+    private File file;
+
+    private UrlFetcher fetcher;
+
+    private byte[] buffer;
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        file = File.createTempFile( "s2io-progress", ".bin" );
+        BenchmarkServer.writeFile( file, size, new Random( 0 ) );
+        fetcher = new UrlFetcher();
+        buffer = new byte[bufferSize];
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    /**
+     * Reads the file without any progress reporting, the baseline.
+     */
+    @Benchmark
+    public long unmonitored()
+        throws IOException
+    {
+        return drain( new FileInputStream( file ) );
+    }
+
+    @Benchmark
+    public long nullMonitor()
+        throws IOException
+    {
+        return drain( fetcher.openStream( file.toURI(), new NullProgressMonitor(), null, null ) );
+    }
+
+    /**
+     * Reads the file with a monitor that does real work on each call, like a monitor that updates the UI.
+     */
+    @Benchmark
+    public long slowMonitor()
+        throws IOException
+    {
+        return drain( fetcher.openStream( file.toURI(), new SlowProgressMonitor( monitorCost ), null, null ) );
+    }
+
+    private long drain( InputStream is )
+        throws IOException
+    {
+        try
+        {
+            long total = 0;
+            for ( int n; ( n = is.read( buffer ) ) >= 0; )
+            {
+                total += n;
+            }
+            return total;
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * A monitor that burns some CPU and synchronizes on every call.
+     */
+    private static class SlowProgressMonitor
+        extends NullProgressMonitor
+    {
+        private final int cost;
+
+        SlowProgressMonitor( int cost )
+        {
+            this.cost = cost;
+        }
+
+        @Override
+        public synchronized void beginTask( String name, int totalWork )
+        {
+            Blackhole.consumeCPU( cost );
+        }
+
+        @Override
+        public synchronized void worked( int work )
+        {
+            Blackhole.consumeCPU( cost );
+        }
+
+        @Override
+        public synchronized boolean isCanceled()
+        {
+            Blackhole.consumeCPU( cost );
+            return false;
+        }
+
+        @Override
+        public synchronized void subTask( String name )
+        {
+            Blackhole.consumeCPU( cost );
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.maven.ide.eclipse.io.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.net.proxy.IProxyData;
+import org.eclipse.core.net.proxy.IProxyService;
+import org.eclipse.equinox.security.storage.ISecurePreferences;
+import org.maven.ide.eclipse.authentication.IAuthData;
+import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.authentication.internal.SimpleAuthService;
+import org.maven.ide.eclipse.io.internal.AuthCache;
+import org.maven.ide.eclipse.io.internal.ProxyCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-request cost of resolving credentials and proxies, with and without the caches of the io bundle. The
+ * authentication service runs on an in-memory secure storage, so the real storage would add its decryption on top of
+ * the uncached lookups. The proxy service is a stand-in that answers directly, the platform implementation also
+ * matches the non-proxied hosts.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class ResolutionBenchmark
+{
+    private static final String REPOSITORY = "http://repo.example.com/content/groups/public";
+
+    private final URI url = URI.create( REPOSITORY + "/org/example/artifact/1.0/artifact-1.0.jar" );
+
+    private IAuthService authService;
+
+    private IProxyService proxyService;
+
+    private AuthCache authCache;
+
+    private ProxyCache proxyCache;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        authService = new SimpleAuthService( newSecurePreferences() );
+        authService.save( REPOSITORY, "user", "password" );
+        proxyService = newProxyService();
+
+        authCache = new AuthCache();
+        authCache.put( authService, url, authService.select( url ) );
+        proxyCache = new ProxyCache();
+        proxyCache.put( proxyService, url, null );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        proxyCache.dispose();
+    }
+
+    @Benchmark
+    public IAuthData authUncached()
+    {
+        return authService.select( url );
+    }
+
+    @Benchmark
+    public AuthCache.Entry authCached()
+    {
+        return authCache.get( authService, url );
+    }
+
+    @Benchmark
+    public IProxyData[] proxyUncached()
+    {
+        return proxyService.isProxiesEnabled() ? proxyService.select( url ) : null;
+    }
+
+    @Benchmark
+    public ProxyCache.Entry proxyCached()
+    {
+        return proxyCache.get( proxyService, url );
+    }
+
+    private static ISecurePreferences newSecurePreferences()
+    {
+        return (ISecurePreferences) Proxy.newProxyInstance( ResolutionBenchmark.class.getClassLoader(),
+                                                            new Class<?>[] { ISecurePreferences.class },
+                                                            new SecurePreferencesHandler( "",
+                                                                                          new HashMap<String, Map<String, String>>() ) );
+    }
+
+    private static IProxyService newProxyService()
+    {
+        return (IProxyService) Proxy.newProxyInstance( ResolutionBenchmark.class.getClassLoader(),
+                                                       new Class<?>[] { IProxyService.class }, new ProxyServiceHandler() );
+    }
+
+    /**
+     * Implements the secure storage as a tree of plain maps, without encryption or persistence.
+     */
+    private static class SecurePreferencesHandler
+        implements InvocationHandler
+    {
+        private final String path;
+
+        private final Map<String, Map<String, String>> nodes;
+
+        SecurePreferencesHandler( String path, Map<String, Map<String, String>> nodes )
+        {
+            this.path = path;
+            this.nodes = nodes;
+            if ( !nodes.containsKey( path ) )
+            {
+                nodes.put( path, new HashMap<String, String>() );
+            }
+        }
+
+        public Object invoke( Object proxy, Method method, Object[] args )
+        {
+            String name = method.getName();
+            if ( "node".equals( name ) )
+            {
+                return Proxy.newProxyInstance( ResolutionBenchmark.class.getClassLoader(),
+                                               new Class<?>[] { ISecurePreferences.class },
+                                               new SecurePreferencesHandler( resolve( (String) args[0] ), nodes ) );
+            }
+            else if ( "nodeExists".equals( name ) )
+            {
+                return Boolean.valueOf( nodes.containsKey( resolve( (String) args[0] ) ) );
+            }
+            else if ( "get".equals( name ) )
+            {
+                String value = nodes.get( path ).get( args[0] );
+                return ( value != null ) ? value : args[1];
+            }
+            else if ( "put".equals( name ) )
+            {
+                nodes.get( path ).put( (String) args[0], (String) args[1] );
+            }
+            else if ( "absolutePath".equals( name ) )
+            {
+                return path;
+            }
+            else if ( "hashCode".equals( name ) )
+            {
+                return Integer.valueOf( System.identityHashCode( proxy ) );
+            }
+            else if ( "equals".equals( name ) )
+            {
+                return Boolean.valueOf( proxy == args[0] );
+            }
+            else if ( method.getReturnType() == Boolean.TYPE )
+            {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+
+        private String resolve( String name )
+        {
+            return name.startsWith( "/" ) ? name : path + "/" + name;
+        }
+    }
+
+    /**
+     * Implements a proxy service which has proxies enabled but connects directly to every host.
+     */
+    private static class ProxyServiceHandler
+        implements InvocationHandler
+    {
+        public Object invoke( Object proxy, Method method, Object[] args )
+        {
+            String name = method.getName();
+            if ( "isProxiesEnabled".equals( name ) )
+            {
+                return Boolean.TRUE;
+            }
+            else if ( "select".equals( name ) )
+            {
+                return new IProxyData[0];
+            }
+            else if ( "hashCode".equals( name ) )
+            {
+                return Integer.valueOf( System.identityHashCode( proxy ) );
+            }
+            else if ( "equals".equals( name ) )
+            {
+                return Boolean.valueOf( proxy == args[0] );
+            }
+            else if ( method.getReturnType() == Boolean.TYPE )
+            {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.maven.ide.eclipse.io.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.maven.ide.eclipse.io.FileRequestEntity;
+import org.maven.ide.eclipse.io.ServerResponse;
+import org.maven.ide.eclipse.io.UrlFetcher;
+import org.maven.ide.eclipse.io.UrlPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Transfers against a local server: the latency of small downloads, the throughput of large downloads and uploads and
+ * bursts of HEAD requests. The server is on the loopback interface, so the results show the overhead of the client
+ * rather than network effects. Divide the sizes by the average times to get the throughput in bytes per second.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 10, time = 2 )
+@Fork( 1 )
+public class TransferBenchmark
+{
+    @Param( { "1024" } )
+    public int smallSize;
+
+    @Param( { "16777216" } )
+    public int largeSize;
+
+    @Param( { "200" } )
+    public int headRequests;
+
+    private BenchmarkServer server;
+
+    private UrlFetcher fetcher;
+
+    private UrlPublisher publisher;
+
+    private URI smallUrl;
+
+    private URI largeUrl;
+
+    private URI uploadUrl;
+
+    private FileRequestEntity uploadEntity;
+
+    private List<URI> headUrls;
+
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws Exception
+    {
+        server = new BenchmarkServer();
+        server.start( smallSize, largeSize, headRequests );
+
+        fetcher = new UrlFetcher();
+        publisher = new UrlPublisher();
+
+        smallUrl = server.getUrl( BenchmarkServer.SMALL_FILE );
+        largeUrl = server.getUrl( BenchmarkServer.LARGE_FILE );
+        uploadUrl = server.getUrl( BenchmarkServer.UPLOAD_DIR + "/" + BenchmarkServer.LARGE_FILE );
+        uploadEntity = new FileRequestEntity( server.getFile( BenchmarkServer.LARGE_FILE ) );
+        headUrls = server.getHeadUrls( headRequests );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws Exception
+    {
+        server.stop();
+    }
+
+    /**
+     * The time to fetch a small resource, dominated by the per-request overhead.
+     */
+    @Benchmark
+    public long smallGet()
+        throws IOException
+    {
+        return drain( fetcher.openStream( smallUrl, new NullProgressMonitor(), null, null ) );
+    }
+
+    /**
+     * The time to fetch the large resource.
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public long largeGet()
+        throws IOException
+    {
+        return drain( fetcher.openStream( largeUrl, new NullProgressMonitor(), null, null ) );
+    }
+
+    /**
+     * The time to upload the large resource.
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public ServerResponse largePut()
+        throws IOException
+    {
+        return publisher.putFile( uploadEntity, uploadUrl, new NullProgressMonitor(), null, null );
+    }
+
+    /**
+     * The time to check the existence of many resources one after the other.
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public void headSequential( Blackhole blackhole )
+        throws IOException
+    {
+        for ( URI url : headUrls )
+        {
+            blackhole.consume( publisher.headFile( url, new NullProgressMonitor(), null, null, null ) );
+        }
+    }
+
+    /**
+     * The time to check the existence of many resources as one batch of concurrent requests.
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public Map<URI, Integer> headBatch()
+        throws IOException
+    {
+        return publisher.headFiles( headUrls, new NullProgressMonitor(), null, null, null );
+    }
+
+    private long drain( InputStream is )
+        throws IOException
+    {
+        try
+        {
+            long total = 0;
+            for ( int n; ( n = is.read( buffer ) ) >= 0; )
+            {
+                total += n;
+            }
+            return total;
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package org.maven.ide.eclipse.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.eclipse.core.internal.net.ProxyData;
 import org.eclipse.core.net.proxy.IProxyData;
@@ -212,6 +217,22 @@ public abstract class AbstractIOTest
         assertEquals( message, httpMethod + ' ' + URI.create( url ).getPath(), requests.get( 0 ) );
     }
 
+    /**
+     * Counts the recorded server requests matching the specified method & path, e.g. {@code "GET /file.txt"}.
+     */
+    protected int countRequests( String request )
+    {
+        int count = 0;
+        for ( String recorded : server.getRecordedRequests() )
+        {
+            if ( request.equals( recorded ) )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
     protected static String readstream( InputStream stream )
         throws IOException
     {
@@ -219,16 +240,31 @@ public abstract class AbstractIOTest
         {
             StringBuilder builder = new StringBuilder();
             byte[] buffer = new byte[128];
-            int size = -1;
-            while ( ( size = stream.read( buffer ) ) == 128 )
+            // a short read is not the end of the stream, the rest of the body may not have arrived yet
+            for ( int size = stream.read( buffer ); size >= 0; size = stream.read( buffer ) )
             {
                 builder.append( new String( buffer, 0, size ) );
             }
-            if ( size != -1 )
+            return builder.toString();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    protected static byte[] readbytes( InputStream stream )
+        throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024 * 8];
+            for ( int size = stream.read( buffer ); size >= 0; size = stream.read( buffer ) )
             {
-                builder.append( new String( buffer, 0, size ) );
+                bytes.write( buffer, 0, size );
             }
-            return builder.toString();
+            return bytes.toByteArray();
         }
         finally
         {
@@ -236,6 +272,42 @@ public abstract class AbstractIOTest
         }
     }
 
+    /*
+     * Computes the hex encoded digest of the given data.
+     */
+    protected static String digest( String algorithm, byte[] data )
+        throws Exception
+    {
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : MessageDigest.getInstance( algorithm ).digest( data ) )
+        {
+            hex.append( String.format( "%02x", b & 0xFF ) );
+        }
+        return hex.toString();
+    }
+
+    /*
+     * Creates a file of the given size with pseudo-random content in the resources directory.
+     */
+    protected static File createResource( String path, int size )
+        throws IOException
+    {
+        byte[] data = new byte[size];
+        new Random( size ).nextBytes( data );
+        File file = new File( RESOURCES, path );
+        file.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( data );
+        }
+        finally
+        {
+            os.close();
+        }
+        return file;
+    }
+
     /*
      * Create realm for URL with username & password.
      */
@@ -0,0 +1,128 @@
+package org.maven.ide.eclipse.io;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.maven.ide.eclipse.authentication.AuthFacade;
+import org.maven.ide.eclipse.authentication.IAuthData;
+import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.io.internal.AuthCache;
+
+public class AuthCacheTest
+    extends TestCase
+{
+    private AuthCache cache;
+
+    private IAuthService authService;
+
+    private IAuthData authData;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        cache = new AuthCache();
+        authService = newProxy( IAuthService.class );
+        authData = newProxy( IAuthData.class );
+    }
+
+    public void testSelectionIsSharedPerDirectory()
+    {
+        cache.put( authService, URI.create( "http://Repo.example.com/a/b.jar" ), authData,
+                   AuthFacade.getModificationCount() );
+
+        assertSame( authData, cache.get( authService, URI.create( "http://repo.example.com/a/b.pom" ) ).getAuthData() );
+        assertNull( cache.get( authService, URI.create( "http://repo.example.com/a/c/b.jar" ) ) );
+        assertNull( cache.get( authService, URI.create( "http://repo.example.com/b.jar" ) ) );
+        assertNull( cache.get( authService, URI.create( "https://repo.example.com/a/b.jar" ) ) );
+        assertNull( cache.get( newProxy( IAuthService.class ), URI.create( "http://repo.example.com/a/b.jar" ) ) );
+    }
+
+    public void testMissingAuthDataIsCached()
+    {
+        cache.put( authService, URI.create( "http://localhost/file.txt" ), null, AuthFacade.getModificationCount() );
+
+        AuthCache.Entry entry = cache.get( authService, URI.create( "http://localhost/file.txt" ) );
+        assertNotNull( entry );
+        assertNull( entry.getAuthData() );
+    }
+
+    public void testEvictDiscardsServer()
+    {
+        URI a = URI.create( "http://localhost/a/file.txt" );
+        URI b = URI.create( "http://localhost/b/file.txt" );
+        URI c = URI.create( "http://localhost:8080/a/file.txt" );
+        cache.put( authService, a, authData, AuthFacade.getModificationCount() );
+        cache.put( authService, b, authData, AuthFacade.getModificationCount() );
+        cache.put( authService, c, authData, AuthFacade.getModificationCount() );
+
+        cache.evict( URI.create( "http://localhost/c/other.txt" ) );
+
+        assertNull( cache.get( authService, a ) );
+        assertNull( cache.get( authService, b ) );
+        assertNotNull( cache.get( authService, c ) );
+    }
+
+    public void testModificationClearsCache()
+    {
+        URI url = URI.create( "http://localhost/file.txt" );
+        cache.put( authService, url, authData, AuthFacade.getModificationCount() );
+
+        AuthFacade.getAuthService().save( "http://localhost/other/", "user", "pass" );
+
+        assertNull( cache.get( authService, url ) );
+    }
+
+    public void testSelectionRacingModificationIsDropped()
+    {
+        URI url = URI.create( "http://localhost/file.txt" );
+        long modificationCount = AuthFacade.getModificationCount();
+
+        // the registry changes while the authentication service selects the data
+        AuthFacade.getAuthService().save( "http://localhost/other/", "user", "pass" );
+        cache.put( authService, url, authData, modificationCount );
+
+        assertNull( cache.get( authService, url ) );
+    }
+
+    public void testDisabledCache()
+    {
+        URI url = URI.create( "http://localhost/file.txt" );
+        cache.setTtl( 0 );
+        cache.put( authService, url, authData, AuthFacade.getModificationCount() );
+
+        assertNull( cache.get( authService, url ) );
+    }
+
+    private static <T> T newProxy( Class<T> type )
+    {
+        return type.cast( Proxy.newProxyInstance( AuthCacheTest.class.getClassLoader(), new Class<?>[] { type },
+                                                  new IdentityHandler() ) );
+    }
+
+    /**
+     * Implements an interface without any behavior besides object identity.
+     */
+    private static class IdentityHandler
+        implements InvocationHandler
+    {
+        public Object invoke( Object proxy, Method method, Object[] args )
+        {
+            String name = method.getName();
+            if ( "hashCode".equals( name ) )
+            {
+                return Integer.valueOf( System.identityHashCode( proxy ) );
+            }
+            else if ( "equals".equals( name ) )
+            {
+                return Boolean.valueOf( proxy == args[0] );
+            }
+            return null;
+        }
+    }
+}
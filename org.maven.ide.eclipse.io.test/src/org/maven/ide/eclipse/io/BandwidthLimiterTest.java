@@ -0,0 +1,130 @@
+package org.maven.ide.eclipse.io;
+
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.maven.ide.eclipse.io.internal.BandwidthLimiter;
+
+public class BandwidthLimiterTest
+    extends TestCase
+{
+    private BandwidthLimiter limiter;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        limiter = new BandwidthLimiter();
+    }
+
+    public void testUnlimited()
+        throws Exception
+    {
+        BandwidthLimiter.Throttle throttle = limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) );
+        assertFalse( throttle.isLimited() );
+        assertEquals( 0, throttle.getRate() );
+        throttle.charge( 100 * 1024 * 1024 );
+        assertEquals( 0, throttle.getDelay() );
+    }
+
+    public void testGlobalLimit()
+        throws Exception
+    {
+        limiter.setLimit( 40 * 1024 );
+        BandwidthLimiter.Throttle throttle = limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) );
+        assertTrue( throttle.isLimited() );
+        assertEquals( 40 * 1024, throttle.getRate() );
+
+        long time = transfer( throttle, 60 * 1024 );
+        // the last request is sent once the 52 KB before it have been paid off
+        assertTrue( "Transfer needed " + time + " ms", time >= 1100 && time < 1800 );
+    }
+
+    public void testHostLimit()
+        throws Exception
+    {
+        limiter.setLimit( "Repo.Example.com", 40 * 1024 );
+        assertEquals( 40 * 1024, limiter.getLimit( "repo.example.com" ) );
+        assertTrue( limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) ).isLimited() );
+        assertFalse( limiter.getThrottle( URI.create( "http://other.example.com/a.jar" ) ).isLimited() );
+
+        limiter.setLimit( "repo.example.com", 0 );
+        assertEquals( 0, limiter.getLimit( "repo.example.com" ) );
+        assertFalse( limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) ).isLimited() );
+    }
+
+    public void testRateIsTheLowerLimit()
+    {
+        BandwidthLimiter.Throttle throttle = limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) );
+        limiter.setLimit( 40 * 1024 );
+        limiter.setLimit( "repo.example.com", 10 * 1024 );
+        assertEquals( 10 * 1024, throttle.getRate() );
+        limiter.setLimit( 5 * 1024 );
+        assertEquals( 5 * 1024, throttle.getRate() );
+        limiter.setLimit( 0 );
+        assertEquals( 10 * 1024, throttle.getRate() );
+    }
+
+    public void testChargeDelaysOtherTransfersToTheHost()
+    {
+        limiter.setLimit( "repo.example.com", 10 * 1024 );
+        limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) ).charge( 20 * 1024 );
+        long delay = limiter.getThrottle( URI.create( "http://repo.example.com/b.jar" ) ).getDelay();
+        assertTrue( "Delay " + delay + " ms", delay > 1500 && delay <= 2000 );
+        assertEquals( 0, limiter.getThrottle( URI.create( "http://other.example.com/a.jar" ) ).getDelay() );
+    }
+
+    public void testLimitChangesApplyToWaitingTransfers()
+        throws Exception
+    {
+        final BandwidthLimiter.Throttle throttle =
+            limiter.getThrottle( URI.create( "http://repo.example.com/a.jar" ) );
+        limiter.setLimit( "repo.example.com", 1024 );
+
+        final long[] time = { -1 };
+        final Throwable[] failure = { null };
+        Thread transfer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    time[0] = transfer( throttle, 64 * 1024 );
+                }
+                catch ( Throwable e )
+                {
+                    failure[0] = e;
+                }
+            }
+        };
+        transfer.start();
+        Thread.sleep( 500 );
+        limiter.setLimit( "repo.example.com", 0 );
+        transfer.join( 5000 );
+        assertNull( String.valueOf( failure[0] ), failure[0] );
+        assertTrue( "Transfer needed " + time[0] + " ms", time[0] >= 0 && time[0] < 2000 );
+    }
+
+    /**
+     * Moves the specified amount of data in requests of 8 KB, each sent once the throttle allows it.
+     */
+    private static long transfer( BandwidthLimiter.Throttle throttle, int size )
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+        for ( int sent = 0; sent < size; )
+        {
+            for ( long delay = throttle.getDelay(); delay > 0; delay = throttle.getDelay() )
+            {
+                Thread.sleep( Math.min( delay, 50 ) );
+            }
+            int n = Math.min( 8192, size - sent );
+            throttle.charge( n );
+            sent += n;
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,87 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.maven.ide.eclipse.io.internal.GzipCompressingInputStream;
+
+public class GzipCompressingInputStreamTest
+    extends TestCase
+{
+    public void testEmpty()
+        throws Exception
+    {
+        assertRoundTrip( new byte[0], 1024 );
+    }
+
+    public void testText()
+        throws Exception
+    {
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            text.append( "line " ).append( i ).append( '\n' );
+        }
+        byte[] data = text.toString().getBytes( "UTF-8" );
+        byte[] compressed = assertRoundTrip( data, 8 * 1024 );
+        assertTrue( compressed.length + " >= " + data.length, compressed.length < data.length );
+    }
+
+    public void testRandomDataInSmallReads()
+        throws Exception
+    {
+        byte[] data = new byte[100 * 1024 + 17];
+        new Random( 42 ).nextBytes( data );
+        assertRoundTrip( data, 7 );
+    }
+
+    public void testSingleByteReads()
+        throws Exception
+    {
+        byte[] data = "single bytes".getBytes( "UTF-8" );
+        InputStream is = new GzipCompressingInputStream( new ByteArrayInputStream( data ) );
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for ( int b = is.read(); b >= 0; b = is.read() )
+        {
+            compressed.write( b );
+        }
+        is.close();
+        assertTrue( Arrays.equals( data, gunzip( compressed.toByteArray() ) ) );
+    }
+
+    private static byte[] assertRoundTrip( byte[] data, int bufferSize )
+        throws IOException
+    {
+        InputStream is = new GzipCompressingInputStream( new ByteArrayInputStream( data ) );
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+        {
+            compressed.write( buffer, 0, n );
+        }
+        is.close();
+        assertTrue( Arrays.equals( data, gunzip( compressed.toByteArray() ) ) );
+        return compressed.toByteArray();
+    }
+
+    private static byte[] gunzip( byte[] compressed )
+        throws IOException
+    {
+        InputStream is = new GZIPInputStream( new ByteArrayInputStream( compressed ) );
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+        {
+            data.write( buffer, 0, n );
+        }
+        is.close();
+        return data.toByteArray();
+    }
+}
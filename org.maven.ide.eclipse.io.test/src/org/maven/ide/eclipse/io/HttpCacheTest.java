@@ -0,0 +1,143 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.maven.ide.eclipse.io.internal.HttpCache;
+
+public class HttpCacheTest
+    extends TestCase
+{
+    private static final String URL = "http://localhost/repo/file.txt";
+
+    private File dir;
+
+    private HttpCache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        dir = new File( "target/http-cache" ).getAbsoluteFile();
+        delete( dir );
+        cache = new HttpCache( dir );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        cache.dispose();
+        delete( dir );
+        super.tearDown();
+    }
+
+    public void testCommittedEntryIsReturned()
+        throws Exception
+    {
+        store( URL, null, "content" );
+
+        HttpCache.Entry entry = cache.get( URL, null );
+        assertNotNull( entry );
+        assertEquals( "\"1\"", entry.getETag() );
+        assertEquals( 7, entry.getLength() );
+        assertEquals( "content", read( entry ) );
+    }
+
+    public void testAbortedEntryIsNotReturned()
+        throws Exception
+    {
+        HttpCache.Writer writer = cache.put( URL, null, "\"1\"", null, null );
+        writer.write( "content".getBytes( "UTF-8" ) );
+        writer.abort();
+
+        assertNull( cache.get( URL, null ) );
+    }
+
+    public void testEntriesAreSeparatedByPrincipal()
+        throws Exception
+    {
+        store( URL, "user", "secret" );
+
+        assertNull( cache.get( URL, null ) );
+        assertNull( cache.get( URL, "other" ) );
+        assertEquals( "secret", read( cache.get( URL, "user" ) ) );
+    }
+
+    public void testEvictLeastRecentlyUsed()
+        throws Exception
+    {
+        store( URL + "1", null, "0123456789" );
+        store( URL + "2", null, "0123456789" );
+        for ( File file : dir.listFiles() )
+        {
+            file.setLastModified( System.currentTimeMillis() - 60 * 1000 );
+        }
+        assertNotNull( cache.get( URL + "2", null ) );
+
+        cache.setMaxSize( 15 );
+        cache.evict();
+
+        assertNull( cache.get( URL + "1", null ) );
+        assertNotNull( cache.get( URL + "2", null ) );
+    }
+
+    public void testLongestPrefixPolicyWins()
+    {
+        assertEquals( CachePolicy.NO_CACHE, cache.getPolicy( URL ) );
+
+        cache.setPolicy( "http://localhost/", CachePolicy.REVALIDATE );
+        cache.setPolicy( "http://localhost/repo/", CachePolicy.NO_CACHE );
+        assertEquals( CachePolicy.NO_CACHE, cache.getPolicy( URL ) );
+        assertEquals( CachePolicy.REVALIDATE, cache.getPolicy( "http://localhost/other" ) );
+
+        cache.setPolicy( "http://localhost/repo/", CachePolicy.DEFAULT );
+        assertEquals( CachePolicy.REVALIDATE, cache.getPolicy( URL ) );
+    }
+
+    private void store( String url, String principal, String content )
+        throws IOException
+    {
+        HttpCache.Writer writer = cache.put( url, principal, "\"1\"", null, null );
+        writer.write( content.getBytes( "UTF-8" ) );
+        writer.commit();
+    }
+
+    private static String read( HttpCache.Entry entry )
+        throws IOException
+    {
+        InputStream is = entry.openStream();
+        try
+        {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+            {
+                os.write( buffer, 0, n );
+            }
+            return os.toString( "UTF-8" );
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    private static void delete( File file )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
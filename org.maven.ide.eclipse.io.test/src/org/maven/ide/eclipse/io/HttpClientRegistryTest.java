@@ -0,0 +1,67 @@
+package org.maven.ide.eclipse.io;
+
+import junit.framework.TestCase;
+
+import org.maven.ide.eclipse.io.internal.HttpClientRegistry;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.ProxyServer;
+
+public class HttpClientRegistryTest
+    extends TestCase
+{
+    private HttpClientRegistry registry;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        registry = new HttpClientRegistry();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        registry.shutdown();
+        super.tearDown();
+    }
+
+    public void testSameSettingsShareClient()
+    {
+        AsyncHttpClient client1 = registry.acquire( new HttpClientRegistry.Key( 1000, 3, null ) );
+        AsyncHttpClient client2 = registry.acquire( new HttpClientRegistry.Key( 1000, 3, null ) );
+        assertSame( client1, client2 );
+        registry.release( client1 );
+        registry.release( client2 );
+    }
+
+    public void testDifferentSettingsUseDifferentClients()
+    {
+        AsyncHttpClient client1 = registry.acquire( new HttpClientRegistry.Key( 1000, 3, null ) );
+        AsyncHttpClient client2 = registry.acquire( new HttpClientRegistry.Key( 2000, 3, null ) );
+        AsyncHttpClient client3 =
+            registry.acquire( new HttpClientRegistry.Key( 1000, 3, new ProxyServer( ProxyServer.Protocol.HTTP,
+                                                                                     "localhost", 8080 ) ) );
+        assertNotSame( client1, client2 );
+        assertNotSame( client1, client3 );
+        registry.release( client1 );
+        registry.release( client2 );
+        registry.release( client3 );
+    }
+
+    public void testAcquireAfterShutdown()
+    {
+        registry.shutdown();
+        try
+        {
+            registry.acquire( new HttpClientRegistry.Key( 1000, 0, null ) );
+            fail( "IllegalStateException should be thrown." );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestSuite;
+
+import org.maven.ide.eclipse.authentication.AuthFacade;
+import org.maven.ide.eclipse.io.behaviour.RangeGet;
+import org.sonatype.tests.http.runner.annotations.Configurators;
+import org.sonatype.tests.http.runner.junit.Junit3SuiteConfiguration;
+import org.sonatype.tests.http.server.api.ServerProvider;
+import org.sonatype.tests.http.server.jetty.configurations.DefaultSuiteConfigurator;
+import org.sonatype.tests.http.server.jetty.configurations.SslSuiteConfigurator;
+
+@Configurators( { DefaultSuiteConfigurator.class, SslSuiteConfigurator.class } )
+public class HttpDownloaderTest
+    extends AbstractIOTest
+{
+    private static final String LARGE_FILE = "/large.bin";
+
+    private static final int LARGE_SIZE = 256 * 1024 + 17;
+
+    private HttpDownloader downloader;
+
+    private RangeGet ranged;
+
+    private RangeGet plain;
+
+    private File source;
+
+    private File target;
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        source = createResource( LARGE_FILE.substring( 1 ), LARGE_SIZE );
+        target = File.createTempFile( "download", ".bin" );
+        downloader = new HttpDownloader();
+        downloader.setConnections( 4 );
+        downloader.setMinSegmentSize( 16 * 1024 );
+    }
+
+    @Override
+    public void configureProvider( ServerProvider provider )
+    {
+        super.configureProvider( provider );
+        ranged = new RangeGet( "resources", "/ranged", true );
+        provider().addBehaviour( "/ranged/*", ranged );
+        plain = new RangeGet( "resources", "/plain", false );
+        provider().addBehaviour( "/plain/*", plain );
+    }
+
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        source.delete();
+        target.delete();
+        getPartFile().delete();
+        new File( target.getPath() + ".part.journal" ).delete();
+        super.tearDown();
+    }
+
+    /*
+     * Tests downloading a file in byte ranges into a local file.
+     */
+    public void testDownload()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + LARGE_FILE );
+        downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+    }
+
+    /*
+     * Tests reading a file downloaded in byte ranges as a stream.
+     */
+    public void testOpenStream()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + LARGE_FILE );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( downloader.openStream( address, monitor, AuthFacade.getAuthService(),
+                                                                     null ) ) ) );
+    }
+
+    /*
+     * Tests that the segments of a file are requested as separate byte ranges.
+     */
+    public void testDownloadRanges()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+
+        List<String> ranges = getRanges( ranged );
+        assertEquals( 4, ranges.size() );
+        int size = LARGE_SIZE / 4;
+        for ( int i = 0; i < 4; i++ )
+        {
+            long last = ( i < 3 ) ? ( i + 1 ) * size - 1 : LARGE_SIZE - 1;
+            assertTrue( ranges.toString(), ranges.contains( "bytes=" + i * size + "-" + last ) );
+        }
+    }
+
+    /*
+     * Tests that a download from a host with a bandwidth limit is fetched in byte ranges that are requested one after
+     * another as the limit allows, even over a single connection.
+     */
+    public void testDownloadPaced()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        downloader.setConnections( 1 );
+        S2IOFacade.setBandwidthLimit( address.getHost(), 64 * 1024 );
+        try
+        {
+            long start = System.currentTimeMillis();
+            downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+            long time = System.currentTimeMillis() - start;
+            assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                       readbytes( new FileInputStream( target ) ) ) );
+
+            List<String> ranges = getRanges( ranged );
+            assertEquals( ranges.toString(), 5, ranges.size() );
+            for ( int i = 0; i < 4; i++ )
+            {
+                assertEquals( "bytes=" + i * 65536 + "-" + ( ( i + 1 ) * 65536 - 1 ), ranges.get( i ) );
+            }
+            // every range waits for the second the previous one used up
+            assertTrue( "Download needed " + time + " ms", time >= 3500 );
+        }
+        finally
+        {
+            S2IOFacade.setBandwidthLimit( address.getHost(), 0 );
+        }
+    }
+
+    /*
+     * Tests that a stream opened with the default single connection keeps a bandwidth limit by fetching byte ranges.
+     */
+    public void testOpenStreamPaced()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        S2IOFacade.setBandwidthLimit( address.getHost(), 64 * 1024 );
+        try
+        {
+            long start = System.currentTimeMillis();
+            byte[] data = readbytes( S2IOFacade.openStream( address.toString(), monitor ) );
+            long time = System.currentTimeMillis() - start;
+            assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ), data ) );
+
+            assertEquals( getRanges( ranged ).toString(), 5, getRanges( ranged ).size() );
+            assertTrue( "Reading needed " + time + " ms", time >= 3500 );
+        }
+        finally
+        {
+            S2IOFacade.setBandwidthLimit( address.getHost(), 0 );
+        }
+    }
+
+    /*
+     * Tests that the probe and the range requests of a download are recorded in the transfer statistics.
+     */
+    public void testDownloadRangesStatistics()
+        throws Exception
+    {
+        TransferStatistics statistics = S2IOFacade.getTransferStatistics();
+        statistics.clear();
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+
+        TransferStatistics.HostStatistics host = statistics.getHostStatistics( address.getHost() );
+        assertNotNull( host );
+        assertEquals( 5, host.getRequestCount() );
+        assertEquals( 0, host.getFailureCount() );
+        assertEquals( LARGE_SIZE, host.getBytesIn() );
+    }
+
+    /*
+     * Tests reading a file as a stream that is assembled from byte ranges.
+     */
+    public void testOpenStreamRanges()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( downloader.openStream( address, monitor, AuthFacade.getAuthService(),
+                                                                     null ) ) ) );
+        assertEquals( 4, getRanges( ranged ).size() );
+    }
+
+    /*
+     * Tests that a server without support for byte ranges is sent a single request.
+     */
+    public void testDownloadWithoutRanges()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/plain" + LARGE_FILE );
+        downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+        assertSingleGet( plain );
+    }
+
+    /*
+     * Tests that a stream from a server without support for byte ranges is opened with a single request.
+     */
+    public void testOpenStreamWithoutRanges()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/plain" + LARGE_FILE );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( downloader.openStream( address, monitor, AuthFacade.getAuthService(),
+                                                                     null ) ) ) );
+        assertSingleGet( plain );
+    }
+
+    /*
+     * Tests that a fetcher only splits downloads if more than one connection has been configured.
+     */
+    public void testUrlFetcherDefaultConnections()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        new UrlFetcher().download( address, target, monitor, AuthFacade.getAuthService(), null );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+        assertSingleGet( ranged );
+    }
+
+    private static List<String> getRanges( RangeGet behaviour )
+    {
+        List<String> ranges = new ArrayList<String>();
+        for ( RangeGet.Request request : behaviour.getRequests() )
+        {
+            if ( "GET".equals( request.method ) )
+            {
+                assertEquals( 206, request.status );
+                ranges.add( request.range );
+            }
+        }
+        return ranges;
+    }
+
+    private static void assertSingleGet( RangeGet behaviour )
+    {
+        int gets = 0;
+        for ( RangeGet.Request request : behaviour.getRequests() )
+        {
+            if ( "GET".equals( request.method ) )
+            {
+                assertNull( request.range );
+                assertEquals( 200, request.status );
+                gets++;
+            }
+        }
+        assertEquals( 1, gets );
+    }
+
+    /*
+     * Tests that a single request is used for small files.
+     */
+    public void testDownloadSmallFile()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + FILE_PATH );
+        downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+        assertEquals( readstream( new FileInputStream( new File( RESOURCES, FILE_LOCAL ) ) ),
+                      readstream( new FileInputStream( target ) ) );
+    }
+
+    /*
+     * Tests that a resumable download leaves no partial data behind once complete.
+     */
+    public void testDownloadFile()
+        throws Exception
+    {
+        target.delete();
+        S2IOFacade.downloadFile( server.getHttpUrl() + LARGE_FILE, target, monitor );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+        assertFalse( getPartFile().exists() );
+        assertFalse( new File( target.getPath() + ".part.journal" ).exists() );
+    }
+
+    /*
+     * Tests that a download which broke off midway is resumed with a range request for the missing data.
+     */
+    public void testDownloadFileResume()
+        throws Exception
+    {
+        String url = server.getHttpUrl() + "/ranged" + LARGE_FILE;
+        long received = interruptDownload( url );
+
+        S2IOFacade.downloadFile( url, target, monitor );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+        assertFalse( getPartFile().exists() );
+
+        List<RangeGet.Request> requests = ranged.getRequests();
+        RangeGet.Request resumed = requests.get( requests.size() - 1 );
+        assertEquals( "GET", resumed.method );
+        assertEquals( "bytes=" + received + "-", resumed.range );
+        assertNotNull( resumed.ifRange );
+        // the missing data was appended to the partial data
+        assertEquals( 206, resumed.status );
+    }
+
+    /*
+     * Tests that partial data of another version of the resource is discarded.
+     */
+    public void testDownloadFileStalePart()
+        throws Exception
+    {
+        String url = server.getHttpUrl() + "/ranged" + LARGE_FILE;
+        interruptDownload( url );
+        // changes the entity tag of the resource
+        source.setLastModified( source.lastModified() - 60 * 1000 );
+
+        S2IOFacade.downloadFile( url, target, monitor );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+        assertFalse( getPartFile().exists() );
+
+        List<RangeGet.Request> requests = ranged.getRequests();
+        RangeGet.Request restarted = requests.get( requests.size() - 1 );
+        assertNotNull( restarted.range );
+        assertEquals( 200, restarted.status );
+    }
+
+    /*
+     * Tests that a download split into byte ranges which broke off midway is resumed with the missing ranges.
+     */
+    public void testDownloadResumeRanges()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/ranged" + LARGE_FILE );
+        ranged.setFailAfter( 16 * 1024 );
+        try
+        {
+            downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+            fail( "IOException should be thrown." );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+        assertEquals( LARGE_SIZE, getPartFile().length() );
+        int before = ranged.getRequests().size();
+
+        downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+        assertTrue( Arrays.equals( readbytes( new FileInputStream( source ) ),
+                                   readbytes( new FileInputStream( target ) ) ) );
+        assertFalse( getPartFile().exists() );
+
+        long requested = 0;
+        List<RangeGet.Request> requests = ranged.getRequests();
+        for ( RangeGet.Request request : requests.subList( before, requests.size() ) )
+        {
+            if ( "GET".equals( request.method ) )
+            {
+                assertEquals( 206, request.status );
+                assertNotNull( request.ifRange );
+                int dash = request.range.indexOf( '-' );
+                requested +=
+                    Long.parseLong( request.range.substring( dash + 1 ) )
+                        - Long.parseLong( request.range.substring( "bytes=".length(), dash ) ) + 1;
+            }
+        }
+        assertTrue( "Requested " + requested + " bytes again", requested < LARGE_SIZE );
+    }
+
+    /*
+     * Starts a download whose connection breaks off midway, returns the number of bytes received.
+     */
+    private long interruptDownload( String url )
+        throws Exception
+    {
+        ranged.setFailAfter( 100 * 1024 );
+        try
+        {
+            S2IOFacade.downloadFile( url, target, monitor );
+            fail( "IOException should be thrown." );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+        long received = getPartFile().length();
+        assertTrue( "Nothing received before the connection broke off", received > 0 );
+        assertTrue( received < LARGE_SIZE );
+        return received;
+    }
+
+    private File getPartFile()
+    {
+        return new File( target.getPath() + ".part" );
+    }
+
+    public void testDownloadNotFound()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + "/nonExistentFile" );
+        try
+        {
+            downloader.download( address, target, monitor, AuthFacade.getAuthService(), null );
+            fail( "NotFoundException should be thrown." );
+        }
+        catch ( NotFoundException e )
+        {
+            // expected
+        }
+    }
+
+    public static TestSuite suite()
+        throws Exception
+    {
+        return Junit3SuiteConfiguration.suite( HttpDownloaderTest.class );
+    }
+}
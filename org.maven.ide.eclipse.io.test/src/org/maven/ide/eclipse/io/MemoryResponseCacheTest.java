@@ -0,0 +1,62 @@
+package org.maven.ide.eclipse.io;
+
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.maven.ide.eclipse.io.internal.MemoryResponseCache;
+
+public class MemoryResponseCacheTest
+    extends TestCase
+{
+    public void testHitAndMissCounters()
+    {
+        MemoryResponseCache cache = new MemoryResponseCache();
+        assertNull( cache.get( "a" ) );
+        cache.put( "a", new byte[10], "UTF-8", 60 * 1000 );
+        MemoryResponseCache.Entry entry = cache.get( "a" );
+        assertNotNull( entry );
+        assertEquals( "UTF-8", entry.getEncoding() );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+    }
+
+    public void testExpiredEntryIsDropped()
+        throws Exception
+    {
+        MemoryResponseCache cache = new MemoryResponseCache();
+        cache.put( "a", new byte[10], null, 1 );
+        Thread.sleep( 10 );
+        assertNull( cache.get( "a" ) );
+        assertEquals( 0, cache.getSize() );
+    }
+
+    public void testLeastRecentlyUsedEntryIsEvicted()
+    {
+        MemoryResponseCache cache = new MemoryResponseCache( 25, 10 );
+        cache.put( "a", new byte[10], null, 60 * 1000 );
+        cache.put( "b", new byte[10], null, 60 * 1000 );
+        cache.get( "a" );
+        cache.put( "c", new byte[10], null, 60 * 1000 );
+
+        assertNotNull( cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+        assertNotNull( cache.get( "c" ) );
+        assertEquals( 20, cache.getSize() );
+    }
+
+    public void testLargeEntryIsIgnored()
+    {
+        MemoryResponseCache cache = new MemoryResponseCache( 100, 10 );
+        cache.put( "a", new byte[11], null, 60 * 1000 );
+        assertNull( cache.get( "a" ) );
+    }
+
+    public void testKeyNormalization()
+    {
+        assertEquals( MemoryResponseCache.getKey( URI.create( "http://localhost/a/b.xml" ), null ),
+                      MemoryResponseCache.getKey( URI.create( "HTTP://LocalHost:80/a/./c/../b.xml#x" ), null ) );
+        assertFalse( MemoryResponseCache.getKey( URI.create( "http://localhost/a" ), null ).equals(
+            MemoryResponseCache.getKey( URI.create( "http://localhost/a" ), "user" ) ) );
+    }
+}
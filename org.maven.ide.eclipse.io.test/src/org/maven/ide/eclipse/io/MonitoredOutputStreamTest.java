@@ -0,0 +1,142 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class MonitoredOutputStreamTest
+    extends TestCase
+{
+    private static final int LENGTH = 100000;
+
+    /*
+     * Tests that the progress is passed on in a bounded number of updates but adds up to the exact total.
+     */
+    public void testProgressIsCoalesced()
+        throws Exception
+    {
+        CountingMonitor monitor = new CountingMonitor();
+        MonitoredOutputStream mos = new MonitoredOutputStream( new ByteArrayOutputStream(), monitor );
+        mos.setName( "Writing" );
+        mos.setLength( LENGTH );
+        for ( int i = 0; i < LENGTH; i++ )
+        {
+            mos.write( i );
+        }
+        mos.close();
+
+        assertEquals( 1, monitor.begun );
+        assertEquals( LENGTH, monitor.work );
+        assertTrue( String.valueOf( monitor.updates ), monitor.updates <= 101 );
+        assertTrue( String.valueOf( monitor.cancelChecks ), monitor.cancelChecks < LENGTH / 10 );
+    }
+
+    public void testBulkWrite()
+        throws Exception
+    {
+        CountingMonitor monitor = new CountingMonitor();
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        MonitoredOutputStream mos = new MonitoredOutputStream( target, monitor );
+        mos.setLength( LENGTH );
+        byte[] chunk = new byte[LENGTH / 10];
+        for ( int i = 0; i < 10; i++ )
+        {
+            mos.write( chunk );
+        }
+        mos.close();
+
+        assertEquals( LENGTH, target.size() );
+        assertEquals( LENGTH, monitor.work );
+        assertTrue( String.valueOf( monitor.updates ), monitor.updates <= 10 );
+    }
+
+    /*
+     * Tests that lengths beyond the int range of the progress monitor are scaled down.
+     */
+    public void testLengthBeyondIntRange()
+        throws Exception
+    {
+        long length = 3L * 1024 * 1024 * 1024;
+        CountingMonitor monitor = new CountingMonitor();
+        MonitoredOutputStream mos = new MonitoredOutputStream( new OutputStream()
+        {
+            @Override
+            public void write( int b )
+            {
+                // discarded
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len )
+            {
+                // discarded
+            }
+        }, monitor );
+        mos.setLength( length );
+        byte[] chunk = new byte[1024 * 1024];
+        for ( long written = 0; written < length; written += chunk.length )
+        {
+            mos.write( chunk );
+        }
+        mos.close();
+
+        assertTrue( String.valueOf( monitor.totalWork ), monitor.totalWork > 0 );
+        assertEquals( monitor.totalWork, monitor.work );
+    }
+
+    public void testCanceled()
+        throws Exception
+    {
+        CountingMonitor monitor = new CountingMonitor();
+        monitor.setCanceled( true );
+        MonitoredOutputStream mos = new MonitoredOutputStream( new ByteArrayOutputStream(), monitor );
+        try
+        {
+            mos.write( 0 );
+            fail( "IOException should be thrown." );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( 0, monitor.work );
+        }
+    }
+
+    private static class CountingMonitor
+        extends NullProgressMonitor
+    {
+        int begun;
+
+        int totalWork;
+
+        int updates;
+
+        int work;
+
+        int cancelChecks;
+
+        @Override
+        public void beginTask( String name, int totalWork )
+        {
+            begun++;
+            this.totalWork = totalWork;
+        }
+
+        @Override
+        public void worked( int work )
+        {
+            updates++;
+            this.work += work;
+        }
+
+        @Override
+        public boolean isCanceled()
+        {
+            cancelChecks++;
+            return super.isCanceled();
+        }
+    }
+}
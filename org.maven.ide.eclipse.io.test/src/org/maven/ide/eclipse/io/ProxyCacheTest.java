@@ -0,0 +1,135 @@
+package org.maven.ide.eclipse.io;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.net.proxy.IProxyChangeListener;
+import org.eclipse.core.net.proxy.IProxyService;
+import org.maven.ide.eclipse.io.internal.ProxyCache;
+
+import com.ning.http.client.ProxyServer;
+
+public class ProxyCacheTest
+    extends TestCase
+{
+    private ProxyCache cache;
+
+    private List<IProxyChangeListener> listeners;
+
+    private IProxyService proxyService;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        cache = new ProxyCache();
+        listeners = new ArrayList<IProxyChangeListener>();
+        proxyService = newProxyService( listeners );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        cache.dispose();
+        super.tearDown();
+    }
+
+    public void testDecisionIsSharedPerServer()
+    {
+        ProxyServer proxy = new ProxyServer( ProxyServer.Protocol.HTTP, "proxy", 8080 );
+        cache.put( proxyService, URI.create( "http://Repo.example.com/a/b.jar" ), proxy );
+
+        assertSame( proxy, cache.get( proxyService, URI.create( "http://repo.example.com/c/d.pom" ) ).getProxyServer() );
+        assertNull( cache.get( proxyService, URI.create( "https://repo.example.com/a/b.jar" ) ) );
+        assertNull( cache.get( proxyService, URI.create( "http://repo.example.com:8081/a/b.jar" ) ) );
+        assertNull( cache.get( newProxyService( listeners ), URI.create( "http://repo.example.com/a/b.jar" ) ) );
+    }
+
+    public void testDirectConnectionIsCached()
+    {
+        cache.put( proxyService, URI.create( "http://localhost/file.txt" ), null );
+
+        ProxyCache.Entry entry = cache.get( proxyService, URI.create( "http://localhost/file.txt" ) );
+        assertNotNull( entry );
+        assertNull( entry.getProxyServer() );
+    }
+
+    public void testProxyChangeClearsCache()
+    {
+        URI url = URI.create( "http://localhost/file.txt" );
+        cache.put( proxyService, url, null );
+        assertEquals( 1, listeners.size() );
+
+        listeners.get( 0 ).proxyInfoChanged( null );
+
+        assertNull( cache.get( proxyService, url ) );
+    }
+
+    public void testDisabledCache()
+    {
+        URI url = URI.create( "http://localhost/file.txt" );
+        cache.setTtl( 0 );
+        cache.put( proxyService, url, null );
+
+        assertNull( cache.get( proxyService, url ) );
+    }
+
+    public void testDisposeRemovesListener()
+    {
+        cache.put( proxyService, URI.create( "http://localhost/file.txt" ), null );
+        cache.dispose();
+
+        assertTrue( listeners.isEmpty() );
+    }
+
+    private static IProxyService newProxyService( List<IProxyChangeListener> listeners )
+    {
+        return (IProxyService) Proxy.newProxyInstance( ProxyCacheTest.class.getClassLoader(),
+                                                       new Class<?>[] { IProxyService.class },
+                                                       new ProxyServiceHandler( listeners ) );
+    }
+
+    /**
+     * Implements the proxy service, only tracking the registered listeners.
+     */
+    private static class ProxyServiceHandler
+        implements InvocationHandler
+    {
+        private final List<IProxyChangeListener> listeners;
+
+        ProxyServiceHandler( List<IProxyChangeListener> listeners )
+        {
+            this.listeners = listeners;
+        }
+
+        public Object invoke( Object proxy, Method method, Object[] args )
+        {
+            String name = method.getName();
+            if ( "addProxyChangeListener".equals( name ) )
+            {
+                listeners.add( (IProxyChangeListener) args[0] );
+            }
+            else if ( "removeProxyChangeListener".equals( name ) )
+            {
+                listeners.remove( args[0] );
+            }
+            else if ( "hashCode".equals( name ) )
+            {
+                return Integer.valueOf( System.identityHashCode( proxy ) );
+            }
+            else if ( "equals".equals( name ) )
+            {
+                return Boolean.valueOf( proxy == args[0] );
+            }
+            return null;
+        }
+    }
+}
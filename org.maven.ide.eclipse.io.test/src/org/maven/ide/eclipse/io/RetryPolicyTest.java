@@ -0,0 +1,78 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class RetryPolicyTest
+    extends TestCase
+{
+    public void testOnlyIdempotentMethodsAreRetried()
+    {
+        RetryPolicy policy = new RetryPolicy( 3, 100, 1000 );
+        assertTrue( policy.isRetryable( "GET", 1, 503, null ) );
+        assertTrue( policy.isRetryable( "HEAD", 1, 502, null ) );
+        assertTrue( policy.isRetryable( "PUT", 1, 504, null ) );
+        assertTrue( policy.isRetryable( "DELETE", 1, 503, null ) );
+        assertFalse( policy.isRetryable( "POST", 1, 503, null ) );
+    }
+
+    public void testOnlyTransientFailuresAreRetried()
+    {
+        RetryPolicy policy = new RetryPolicy( 3, 100, 1000 );
+        assertFalse( policy.isRetryable( "GET", 1, 500, null ) );
+        assertFalse( policy.isRetryable( "GET", 1, 404, null ) );
+        assertTrue( policy.isRetryable( "GET", 1, 0, new ConnectException( "Connection refused" ) ) );
+        assertTrue( policy.isRetryable( "GET", 1, 0, new IOException( "Connection reset by peer" ) ) );
+        assertFalse( policy.isRetryable( "GET", 1, 0, new NotFoundException( "HTTP status code 404" ) ) );
+        assertFalse( policy.isRetryable( "GET", 1, 0, new TransferException( "HTTP status code 503", null, null ) ) );
+    }
+
+    public void testMaxAttempts()
+    {
+        RetryPolicy policy = new RetryPolicy( 3, 100, 1000 );
+        assertTrue( policy.isRetryable( "GET", 2, 503, null ) );
+        assertFalse( policy.isRetryable( "GET", 3, 503, null ) );
+        assertFalse( RetryPolicy.NONE.isRetryable( "GET", 1, 503, null ) );
+    }
+
+    public void testExponentialBackoffWithJitter()
+    {
+        RetryPolicy policy = new RetryPolicy( 10, 100, 1000 );
+        for ( int i = 0; i < 20; i++ )
+        {
+            long first = policy.getDelay( 1, null );
+            assertTrue( String.valueOf( first ), first >= 50 && first <= 100 );
+            long third = policy.getDelay( 3, null );
+            assertTrue( String.valueOf( third ), third >= 200 && third <= 400 );
+            long capped = policy.getDelay( 9, null );
+            assertTrue( String.valueOf( capped ), capped >= 500 && capped <= 1000 );
+        }
+    }
+
+    public void testRetryAfter()
+    {
+        RetryPolicy policy = new RetryPolicy( 3, 100, 60000 );
+        assertEquals( 5000, policy.getDelay( 1, "5" ) );
+
+        SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US );
+        format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        long delay = policy.getDelay( 1, format.format( new Date( System.currentTimeMillis() + 10000 ) ) );
+        assertTrue( String.valueOf( delay ), delay > 8000 && delay <= 10000 );
+
+        long invalid = policy.getDelay( 1, "soon" );
+        assertTrue( String.valueOf( invalid ), invalid <= 100 );
+    }
+
+    public void testRetryAfterIsCappedAtMaxDelay()
+    {
+        RetryPolicy policy = new RetryPolicy( 3, 100, 1000 );
+        assertEquals( 1000, policy.getDelay( 1, "5" ) );
+        assertEquals( 1000, policy.getDelay( 1, "86400" ) );
+    }
+}
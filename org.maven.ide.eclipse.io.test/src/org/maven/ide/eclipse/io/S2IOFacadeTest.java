@@ -2,8 +2,16 @@ package org.maven.ide.eclipse.io;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestSuite;
 
@@ -203,6 +211,28 @@ public class S2IOFacadeTest
         assertFalse( S2IOFacade.exists( URI.create( server.getHttpUrl() + NEW_FILE ).toString(), monitor ) );
     }
 
+    public void testExistsAll()
+        throws Exception
+    {
+        List<String> uris = new ArrayList<String>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            uris.add( URI.create( server.getHttpUrl() + FILE_PATH + "?" + i ).toString() );
+        }
+        uris.add( URI.create( server.getHttpUrl() + NEW_FILE ).toString() );
+        uris.add( new File( RESOURCES, FILE_LOCAL ).toURI().toString() );
+
+        Map<String, Integer> result = S2IOFacade.existsAll( uris, monitor );
+
+        assertEquals( uris, new ArrayList<String>( result.keySet() ) );
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( uris.get( i ), HttpURLConnection.HTTP_OK, result.get( uris.get( i ) ).intValue() );
+        }
+        assertEquals( HttpURLConnection.HTTP_NOT_FOUND, result.get( uris.get( 10 ) ).intValue() );
+        assertEquals( HttpURLConnection.HTTP_OK, result.get( uris.get( 11 ) ).intValue() );
+    }
+
     public void testExists_Local_NotFound()
         throws Exception
     {
@@ -247,6 +277,66 @@ public class S2IOFacadeTest
         }
     }
 
+    public void testOpenStreamAsync_Anonymous()
+        throws Exception
+    {
+        String url = server.getHttpUrl() + FILE_PATH;
+        addRealmAndURL( "testOpenStreamAsync_Anonymous", url, "", "" );
+        TransferFuture<InputStream> future = S2IOFacade.openStreamAsync( url, monitor );
+        assertEquals( "Content of stream differs from file", readstream( new FileInputStream( "resources/file.txt" ) ),
+                      readstream( future.get( 30, TimeUnit.SECONDS ) ) );
+    }
+
+    public void testOpenStreamAsync_Anonymous_NotFound()
+        throws Exception
+    {
+        String url = server.getHttpUrl() + NEW_FILE;
+        addRealmAndURL( "testOpenStreamAsync_Anonymous_NotFound", url, "", "" );
+        try
+        {
+            S2IOFacade.openStreamAsync( url, monitor ).get( 30, TimeUnit.SECONDS );
+            fail( "A NotFoundException should have been thrown" );
+        }
+        catch ( ExecutionException expected )
+        {
+            assertTrue( expected.getCause() instanceof NotFoundException );
+        }
+    }
+
+    public void testPutAsync_Callback()
+        throws Exception
+    {
+        String url = server.getHttpUrl() + NEW_FILE;
+        addRealmAndURL( "testPutAsync_Callback", url, "", "" );
+        final BlockingQueue<Object> outcome = new LinkedBlockingQueue<Object>();
+        S2IOFacade.putAsync( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ), url, null, monitor,
+                             "Monitor name" ).addCallback( new TransferCallback<ServerResponse>()
+        {
+            public void completed( ServerResponse result )
+            {
+                outcome.add( result );
+            }
+
+            public void failed( Throwable error )
+            {
+                outcome.add( error );
+            }
+        } );
+        Object result = outcome.poll( 30, TimeUnit.SECONDS );
+        assertTrue( String.valueOf( result ), result instanceof ServerResponse );
+        assertEquals( HttpURLConnection.HTTP_CREATED, ( (ServerResponse) result ).getStatusCode() );
+        assertRequest( "Unexpected recorded request", "PUT", url );
+    }
+
+    public void testHeadAsync_NotFound()
+        throws Exception
+    {
+        String url = server.getHttpUrl() + NEW_FILE;
+        addRealmAndURL( "testHeadAsync_NotFound", url, "", "" );
+        ServerResponse resp = S2IOFacade.headAsync( url, null, monitor ).get( 30, TimeUnit.SECONDS );
+        assertEquals( "Unexpected HTTP status code", HttpURLConnection.HTTP_NOT_FOUND, resp.getStatusCode() );
+    }
+
     public void testOpenStream_ValidUser()
         throws Exception
     {
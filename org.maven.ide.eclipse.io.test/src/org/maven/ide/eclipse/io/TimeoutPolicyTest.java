@@ -0,0 +1,25 @@
+package org.maven.ide.eclipse.io;
+
+import junit.framework.TestCase;
+
+public class TimeoutPolicyTest
+    extends TestCase
+{
+    public void testDefaults()
+    {
+        assertEquals( 30000, TimeoutPolicy.DEFAULT.getConnectTimeout() );
+        assertEquals( 30000, TimeoutPolicy.DEFAULT.getIdleTimeout() );
+        assertEquals( 0, TimeoutPolicy.DEFAULT.getDeadline() );
+        assertEquals( 0, TimeoutPolicy.DEFAULT.getMinimumRate() );
+    }
+
+    public void testInvalidValuesAreClamped()
+    {
+        TimeoutPolicy policy = new TimeoutPolicy( -1, 0, -5, -100, 10 );
+        assertEquals( 1, policy.getConnectTimeout() );
+        assertEquals( 1, policy.getIdleTimeout() );
+        assertEquals( 0, policy.getDeadline() );
+        assertEquals( 0, policy.getMinimumRate() );
+        assertEquals( 1000, policy.getRateWindow() );
+    }
+}
@@ -8,6 +8,7 @@ import junit.framework.TestSuite;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.maven.ide.eclipse.authentication.AuthFacade;
+import org.maven.ide.eclipse.io.behaviour.Trickle;
 import org.sonatype.tests.http.runner.junit.Junit3SuiteConfiguration;
 import org.sonatype.tests.http.runner.annotations.Configurators;
 import org.sonatype.tests.http.server.jetty.behaviour.Content;
@@ -27,6 +28,7 @@ public class TimeoutTest
     public void configureProvider( ServerProvider provider )
     {
         recorder = new Record();
+        provider().addBehaviour( "/trickle/*", recorder, new Trickle() );
         provider().addBehaviour( "/*", recorder, new Pause(), new Content( "someContent" ) );
         server = new ServerProviderWrapper( provider() );
     }
@@ -73,6 +75,98 @@ public class TimeoutTest
         }
     }
 
+    public void testUrlFetcherIdleTimeout()
+        throws IOException
+    {
+        int idleTimeout = 1000;
+        String url = url( "3000", "doesnotmatter" );
+
+        UrlFetcher fetcher = new UrlFetcher();
+        fetcher.setTimeoutPolicy( new TimeoutPolicy( 5000, idleTimeout, 0 ) );
+        fetcher.setRetryPolicy( RetryPolicy.NONE );
+        URI address = URI.create( url );
+        long start = 0;
+        try
+        {
+            start = System.currentTimeMillis();
+            readstream( fetcher.openStream( address, new NullProgressMonitor(), AuthFacade.getAuthService(), null ) );
+            fail( "Expected IOException (timeout)" );
+        }
+        catch ( Exception e )
+        {
+            long time = System.currentTimeMillis() - start;
+            assertTrue( "Request needed " + time + "ms", time >= idleTimeout && time < idleTimeout + 800 );
+            assertTrue( "failure was not caused by timeout", isTimeoutException( e ) );
+        }
+    }
+
+    public void testUrlFetcherStallMidBody()
+        throws IOException
+    {
+        int idleTimeout = 1000;
+        String url = url( "trickle", "3", "100", "5000" );
+
+        UrlFetcher fetcher = new UrlFetcher();
+        fetcher.setTimeoutPolicy( new TimeoutPolicy( 5000, idleTimeout, 0 ) );
+        fetcher.setRetryPolicy( RetryPolicy.NONE );
+        URI address = URI.create( url );
+        long start = 0;
+        try
+        {
+            start = System.currentTimeMillis();
+            readstream( fetcher.openStream( address, new NullProgressMonitor(), AuthFacade.getAuthService(), null ) );
+            fail( "Expected IOException (timeout)" );
+        }
+        catch ( Exception e )
+        {
+            long time = System.currentTimeMillis() - start;
+            assertTrue( "Request needed " + time + "ms", time >= idleTimeout && time < idleTimeout + 1500 );
+            assertTrue( "failure was not caused by timeout", isTimeoutException( e ) );
+        }
+    }
+
+    public void testUrlFetcherBelowMinimumRate()
+        throws IOException
+    {
+        // about 1 KB/s, while no pause comes close to the idle timeout
+        String url = url( "trickle", "50", "100", "100" );
+
+        UrlFetcher fetcher = new UrlFetcher();
+        fetcher.setTimeoutPolicy( new TimeoutPolicy( 5000, 5000, 0, 10000, 1000 ) );
+        fetcher.setRetryPolicy( RetryPolicy.NONE );
+        URI address = URI.create( url );
+        long start = 0;
+        try
+        {
+            start = System.currentTimeMillis();
+            readstream( fetcher.openStream( address, new NullProgressMonitor(), AuthFacade.getAuthService(), null ) );
+            fail( "Expected IOException (timeout)" );
+        }
+        catch ( Exception e )
+        {
+            long time = System.currentTimeMillis() - start;
+            assertTrue( "Request needed " + time + "ms", time >= 1000 && time < 2500 );
+            assertTrue( "failure was not caused by timeout", isTimeoutException( e ) );
+        }
+    }
+
+    public void testUrlFetcherSlowButAboveMinimumRate()
+        throws IOException
+    {
+        // about 80 KB/s for 3 seconds, i.e. several rate windows
+        int chunks = 30;
+        int size = 8 * 1024;
+        String url = url( "trickle", String.valueOf( chunks ), String.valueOf( size ), "100" );
+
+        UrlFetcher fetcher = new UrlFetcher();
+        fetcher.setTimeoutPolicy( new TimeoutPolicy( 5000, 5000, 0, 10000, 1000 ) );
+        fetcher.setRetryPolicy( RetryPolicy.NONE );
+        URI address = URI.create( url );
+        String content =
+            readstream( fetcher.openStream( address, new NullProgressMonitor(), AuthFacade.getAuthService(), null ) );
+        assertEquals( chunks * size, content.length() );
+    }
+
     public void testS2IOFacade_Head()
         throws IOException, URISyntaxException
     {
@@ -0,0 +1,242 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.maven.ide.eclipse.io.internal.HttpClientRegistry;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
+import org.sonatype.tests.http.runner.annotations.Configurators;
+import org.sonatype.tests.http.runner.junit.Junit3SuiteConfiguration;
+import org.sonatype.tests.http.server.api.ServerProvider;
+import org.sonatype.tests.http.server.jetty.behaviour.Content;
+import org.sonatype.tests.http.server.jetty.behaviour.Pause;
+import org.sonatype.tests.http.server.jetty.behaviour.Record;
+import org.sonatype.tests.http.server.jetty.configurations.DefaultSuiteConfigurator;
+
+@Configurators( { DefaultSuiteConfigurator.class } )
+public class TransferSchedulerTest
+    extends AbstractIOTest
+{
+    private String host;
+
+    @Override
+    public void configureProvider( ServerProvider provider )
+    {
+        recorder = new Record();
+        provider().addBehaviour( "/*", recorder, new Pause(), new Content( "someContent" ) );
+        server = new ServerProviderWrapper( provider() );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        host = URI.create( url( "0", "file.txt" ) ).getHost();
+        TransferScheduler.setMaxTransfersPerHost( host, 1 );
+    }
+
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        TransferScheduler.setMaxTransfersPerHost( host, 0 );
+        super.tearDown();
+    }
+
+    public void testConcurrencyLimit()
+        throws Exception
+    {
+        int pause = 1000;
+        long start = System.currentTimeMillis();
+        TransferFuture<InputStream> first = open( new UrlFetcher(), pause, "first" );
+        TransferFuture<InputStream> second = open( new UrlFetcher(), pause, "second" );
+        assertEquals( "someContent", readstream( first.get( 30, TimeUnit.SECONDS ) ) );
+        assertEquals( "someContent", readstream( second.get( 30, TimeUnit.SECONDS ) ) );
+        long time = System.currentTimeMillis() - start;
+        assertTrue( "Requests needed " + time + "ms", time >= 2 * pause );
+    }
+
+    public void testInteractiveRequestsGoFirst()
+        throws Exception
+    {
+        BlockingQueue<String> completed = new LinkedBlockingQueue<String>();
+
+        TransferFuture<InputStream> blocking = open( new UrlFetcher(), 1000, "blocker" );
+
+        UrlFetcher background = new UrlFetcher();
+        background.setPriority( TransferPriority.BACKGROUND );
+        open( background, 0, "background" ).addCallback( relay( "background", completed ) );
+
+        TransferPriority previous = TransferScheduler.setPriority( TransferPriority.INTERACTIVE );
+        try
+        {
+            open( new UrlFetcher(), 0, "interactive" ).addCallback( relay( "interactive", completed ) );
+        }
+        finally
+        {
+            TransferScheduler.setPriority( previous );
+        }
+
+        readstream( blocking.get( 30, TimeUnit.SECONDS ) );
+        assertEquals( "interactive", completed.poll( 30, TimeUnit.SECONDS ) );
+        assertEquals( "background", completed.poll( 30, TimeUnit.SECONDS ) );
+    }
+
+    public void testBackgroundRequestNotStarvedByInteractiveRequests()
+        throws Exception
+    {
+        TransferScheduler.setMaxTransfersPerHost( host, 2 );
+        BlockingQueue<String> completed = new LinkedBlockingQueue<String>();
+        int interactive = 2 + 2 * TransferScheduler.MAX_SKIPS;
+
+        TransferPriority previous = TransferScheduler.setPriority( TransferPriority.INTERACTIVE );
+        try
+        {
+            for ( int i = 0; i < 2; i++ )
+            {
+                open( new UrlFetcher(), 300, "interactive" + i ).addCallback( relay( "interactive", completed ) );
+            }
+            UrlFetcher background = new UrlFetcher();
+            background.setPriority( TransferPriority.BACKGROUND );
+            open( background, 0, "background" ).addCallback( relay( "background", completed ) );
+            for ( int i = 2; i < interactive; i++ )
+            {
+                open( new UrlFetcher(), 300, "interactive" + i ).addCallback( relay( "interactive", completed ) );
+            }
+        }
+        finally
+        {
+            TransferScheduler.setPriority( previous );
+        }
+
+        // the background request must get a connection while interactive requests keep the host saturated
+        for ( int i = 0; i < interactive - 1; i++ )
+        {
+            String name = completed.poll( 30, TimeUnit.SECONDS );
+            if ( "background".equals( name ) )
+            {
+                return;
+            }
+            assertEquals( "interactive", name );
+        }
+        fail( "Background request was starved by interactive requests" );
+    }
+
+    public void testCancelQueuedRequest()
+        throws Exception
+    {
+        TransferFuture<InputStream> blocking = open( new UrlFetcher(), 1000, "blocker" );
+        TransferFuture<InputStream> queued = open( new UrlFetcher(), 0, "queued" );
+        assertTrue( queued.cancel( true ) );
+        readstream( blocking.get( 30, TimeUnit.SECONDS ) );
+
+        // the slot of the cancelled request must not be lost
+        TransferFuture<InputStream> next = open( new UrlFetcher(), 0, "next" );
+        assertEquals( "someContent", readstream( next.get( 30, TimeUnit.SECONDS ) ) );
+    }
+
+    public void testCancelRunningRequestReleasesClient()
+        throws Exception
+    {
+        HttpClientRegistry registry = S2IOPlugin.getDefault().getHttpClientRegistry();
+        int leases = registry.getLeaseCount();
+        TransferFuture<InputStream> running =
+            S2IOFacade.openStreamAsync( url( "1000", "running" ), new NullProgressMonitor() );
+        assertTrue( running.cancel( true ) );
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while ( registry.getLeaseCount() > leases && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 50 );
+        }
+        assertEquals( "client of cancelled request was not released", leases, registry.getLeaseCount() );
+
+        // the host slot must not be lost either
+        TransferFuture<InputStream> next = open( new UrlFetcher(), 0, "next" );
+        assertEquals( "someContent", readstream( next.get( 30, TimeUnit.SECONDS ) ) );
+    }
+
+    public void testQueuedRequestTimesOutBehindStalledRequest()
+        throws Exception
+    {
+        TransferFuture<InputStream> blocking = open( new UrlFetcher(), 3000, "blocker" );
+
+        int idleTimeout = 1000;
+        UrlFetcher fetcher = new UrlFetcher();
+        fetcher.setTimeoutPolicy( new TimeoutPolicy( 5000, idleTimeout, 0 ) );
+        fetcher.setRetryPolicy( RetryPolicy.NONE );
+        long start = System.currentTimeMillis();
+        TransferFuture<InputStream> queued = open( fetcher, 0, "queued" );
+        try
+        {
+            queued.get( 30, TimeUnit.SECONDS );
+            fail( "Expected timeout" );
+        }
+        catch ( ExecutionException e )
+        {
+            long time = System.currentTimeMillis() - start;
+            assertTrue( "Request needed " + time + "ms", time >= idleTimeout && time < idleTimeout + 800 );
+            assertTrue( "failure was not caused by timeout", TimeoutTest.isTimeoutException( e ) );
+        }
+        assertEquals( "someContent", readstream( blocking.get( 30, TimeUnit.SECONDS ) ) );
+    }
+
+    public void testShutdownFailsQueuedRequests()
+        throws Exception
+    {
+        TransferFuture<InputStream> blocking = open( new UrlFetcher(), 1000, "blocker" );
+        TransferFuture<InputStream> queued = open( new UrlFetcher(), 0, "queued" );
+        TransferScheduler.shutdown();
+        try
+        {
+            queued.get( 30, TimeUnit.SECONDS );
+            fail( "Expected failure" );
+        }
+        catch ( ExecutionException e )
+        {
+            // expected
+        }
+        readstream( blocking.get( 30, TimeUnit.SECONDS ) );
+
+        // requests made after the shutdown are served again
+        TransferFuture<InputStream> next = open( new UrlFetcher(), 0, "next" );
+        assertEquals( "someContent", readstream( next.get( 30, TimeUnit.SECONDS ) ) );
+    }
+
+    private TransferFuture<InputStream> open( UrlFetcher fetcher, int pause, String name )
+        throws Exception
+    {
+        URI url = URI.create( url( String.valueOf( pause ), name ) );
+        return fetcher.openStreamAsync( url, new NullProgressMonitor(), null, null );
+    }
+
+    private static TransferCallback<InputStream> relay( final String name, final BlockingQueue<String> completed )
+    {
+        return new TransferCallback<InputStream>()
+        {
+            public void completed( InputStream result )
+            {
+                completed.add( name );
+            }
+
+            public void failed( Throwable error )
+            {
+                completed.add( error.toString() );
+            }
+        };
+    }
+
+    public static TestSuite suite()
+        throws Exception
+    {
+        return Junit3SuiteConfiguration.suite( TransferSchedulerTest.class );
+    }
+}
@@ -0,0 +1,85 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+public class TransferStatisticsTest
+    extends TestCase
+{
+    private TransferStatistics statistics;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        statistics = new TransferStatistics();
+    }
+
+    public void testPercentiles()
+    {
+        for ( int i = 1; i <= 100; i++ )
+        {
+            statistics.transferCompleted( record( "http://Repo.example.com/file" + i, 200, i, i * 10 ) );
+        }
+
+        TransferStatistics.HostStatistics host = statistics.getHostStatistics( "repo.example.com" );
+        assertEquals( 100, host.getRequestCount() );
+        assertEquals( 500, host.getDurationPercentile( 50 ) );
+        assertEquals( 950, host.getDurationPercentile( 95 ) );
+        assertEquals( 990, host.getDurationPercentile( 99 ) );
+        assertEquals( 50, host.getTimeToFirstBytePercentile( 50 ) );
+    }
+
+    public void testPercentilesOfRecentRequests()
+    {
+        for ( int i = 0; i < TransferStatistics.SAMPLE_SIZE; i++ )
+        {
+            statistics.transferCompleted( record( "http://localhost/old", 200, 1, 1000 ) );
+        }
+        for ( int i = 0; i < TransferStatistics.SAMPLE_SIZE; i++ )
+        {
+            statistics.transferCompleted( record( "http://localhost/new", 200, 1, 10 ) );
+        }
+
+        TransferStatistics.HostStatistics host = statistics.getHostStatistics( "localhost" );
+        assertEquals( 2 * TransferStatistics.SAMPLE_SIZE, host.getRequestCount() );
+        assertEquals( 10, host.getDurationPercentile( 99 ) );
+    }
+
+    public void testCounters()
+    {
+        statistics.transferCompleted( new TransferRecord( "PUT", URI.create( "http://localhost/a" ), 201, 0, 3000, 2,
+                                                          5, 1000, null ) );
+        statistics.transferCompleted( new TransferRecord( "GET", URI.create( "http://localhost/b" ), 404, 1000, 0, 0,
+                                                          5, 1000, null ) );
+        statistics.transferCompleted( new TransferRecord( "GET", URI.create( "http://localhost/c" ), 0, 0, 0, 0, -1,
+                                                          0, new IOException( "refused" ) ) );
+        statistics.transferCompleted( record( "http://otherhost/d", 200, 1, 1 ) );
+
+        TransferStatistics.HostStatistics host = statistics.getHostStatistics( "localhost" );
+        assertEquals( 3, host.getRequestCount() );
+        assertEquals( 2, host.getFailureCount() );
+        assertEquals( 2, host.getRetryCount() );
+        assertEquals( 1000, host.getBytesIn() );
+        assertEquals( 3000, host.getBytesOut() );
+        assertEquals( 2000, host.getThroughput() );
+        assertEquals( 5, host.getTimeToFirstBytePercentile( 100 ) );
+        assertEquals( 2, statistics.getHosts().size() );
+    }
+
+    public void testUnknownHost()
+    {
+        assertNull( statistics.getHostStatistics( "localhost" ) );
+        statistics.transferCompleted( record( "http://localhost/a", 200, 1, 1 ) );
+        statistics.clear();
+        assertNull( statistics.getHostStatistics( "localhost" ) );
+    }
+
+    private static TransferRecord record( String url, int status, long timeToFirstByte, long duration )
+    {
+        return new TransferRecord( "GET", URI.create( url ), status, 100, 0, 0, timeToFirstByte, duration, null );
+    }
+}
@@ -2,15 +2,24 @@ package org.maven.ide.eclipse.io;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import junit.framework.TestSuite;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.maven.ide.eclipse.authentication.AuthFacade;
+import org.maven.ide.eclipse.io.HttpBaseSupport.HttpInputStream;
+import org.maven.ide.eclipse.io.internal.MemoryResponseCache;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
 import org.sonatype.tests.http.runner.junit.Junit3SuiteConfiguration;
 import org.sonatype.tests.http.runner.annotations.Configurators;
+import org.sonatype.tests.http.server.jetty.behaviour.ErrorBehaviour;
 import org.sonatype.tests.http.server.jetty.configurations.DefaultSuiteConfigurator;
 import org.sonatype.tests.http.server.jetty.configurations.SslSuiteConfigurator;
 import org.sonatype.tests.http.server.api.ServerProvider;
@@ -19,6 +28,8 @@ import org.sonatype.tests.http.server.api.ServerProvider;
 public class UrlFetcherTest
     extends AbstractIOTest
 {
+    private static final String UNAVAILABLE_PATH = "/unavailable.txt";
+
     private UrlFetcher fetcher;
 
 	@Override
@@ -47,6 +58,27 @@ public class UrlFetcherTest
         }
     }
 
+    /*
+     * Tests that a transient failure is retried and reported once the retries are exhausted.
+     */
+    public void testHttpOpenstream503Retried()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + UNAVAILABLE_PATH );
+        fetcher.setRetryPolicy( new RetryPolicy( 3, 10, 50 ) );
+        try
+        {
+            readstream( fetcher.openStream( address, new NullProgressMonitor(), AuthFacade.getAuthService(), null ) );
+            fail( "IOException should be thrown." );
+        }
+        catch ( IOException e )
+        {
+            String status = String.valueOf( HttpURLConnection.HTTP_UNAVAILABLE );
+            assertTrue( e.getMessage(), e.getMessage().contains( status ) );
+        }
+        assertEquals( 3, countRequests( "GET " + UNAVAILABLE_PATH ) );
+    }
+
     /*
      * Tests the error thrown when a user does not have permission to access a file.
      */
@@ -77,6 +109,54 @@ public class UrlFetcherTest
                                                      null ) ) );
     }
 
+    /*
+     * Tests the contents of a remote file that does not fit into the response buffer
+     */
+    public void testHttpOpenStreamSmallBuffer()
+        throws Exception
+    {
+        fetcher.setBufferSize( 16 );
+        URI address = URI.create( server.getHttpUrl() + "/catalogs/basic/catalog.xml" );
+        assertEquals( readstream( new FileInputStream( "resources/catalogs/basic/catalog.xml" ) ),
+                      readstream( fetcher.openStream( address, new NullProgressMonitor(), AuthFacade.getAuthService(),
+                                                      null ) ) );
+    }
+
+    /*
+     * Tests that a revalidated resource is served with the same content on repeated requests.
+     */
+    public void testHttpOpenStreamRevalidate()
+        throws Exception
+    {
+        fetcher.setCachePolicy( CachePolicy.REVALIDATE );
+        URI address = URI.create( server.getHttpUrl() + "/catalogs/basic/catalog.xml" );
+        String expected = readstream( new FileInputStream( "resources/catalogs/basic/catalog.xml" ) );
+        assertEquals( expected, readstream( fetcher.openStream( address, new NullProgressMonitor(),
+                                                                AuthFacade.getAuthService(), null ) ) );
+        assertEquals( expected, readstream( fetcher.openStream( address, new NullProgressMonitor(),
+                                                                AuthFacade.getAuthService(), null ) ) );
+    }
+
+    /*
+     * Tests that a recently fetched small resource is served from memory.
+     */
+    public void testHttpOpenStreamMemoryCache()
+        throws Exception
+    {
+        MemoryResponseCache cache = S2IOPlugin.getDefault().getMemoryCache();
+        cache.clear();
+        fetcher.setMemoryCacheTtl( 60 * 1000 );
+        URI address = URI.create( server.getHttpUrl() + "/catalogs/basic/catalog.xml" );
+        String expected = readstream( new FileInputStream( "resources/catalogs/basic/catalog.xml" ) );
+        assertEquals( expected, readstream( fetcher.openStream( address, new NullProgressMonitor(),
+                                                                AuthFacade.getAuthService(), null ) ) );
+        long hits = cache.getHitCount();
+        assertEquals( expected, readstream( fetcher.openStream( address, new NullProgressMonitor(),
+                                                                AuthFacade.getAuthService(), null ) ) );
+        assertEquals( hits + 1, cache.getHitCount() );
+        cache.clear();
+    }
+
     /*
      * Tests that the authentication header contains both a username and password.
      */
@@ -137,12 +217,200 @@ public class UrlFetcherTest
                                                       AuthFacade.getAuthService(), null ) ) );
     }
 
+    /*
+     * Tests reading a local file through a channel.
+     */
+    public void testFileOpenChannel()
+        throws Exception
+    {
+        FileChannel channel = fetcher.openChannel( new File( RESOURCES, "file.txt" ).toURI() );
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( (int) channel.size() );
+            while ( buffer.hasRemaining() && channel.read( buffer ) >= 0 )
+            {
+                // fill the buffer
+            }
+            assertEquals( readstream( new FileInputStream( "resources/file.txt" ) ), new String( buffer.array() ) );
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /*
+     * Tests the content of small and large local files as buffers.
+     */
+    public void testFileMap()
+        throws Exception
+    {
+        ByteBuffer small = fetcher.map( new File( RESOURCES, "file.txt" ).toURI(), monitor, null, null );
+        byte[] data = new byte[small.remaining()];
+        small.get( data );
+        assertEquals( readstream( new FileInputStream( "resources/file.txt" ) ), new String( data ) );
+
+        File file = File.createTempFile( "mapped", ".bin" );
+        file.deleteOnExit();
+        byte[] content = new byte[256 * 1024];
+        for ( int i = 0; i < content.length; i++ )
+        {
+            content[i] = (byte) i;
+        }
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content );
+        }
+        finally
+        {
+            os.close();
+        }
+        ByteBuffer large = fetcher.map( file.toURI(), monitor, null, null );
+        assertTrue( large.isReadOnly() );
+        assertEquals( content.length, large.remaining() );
+        assertEquals( (byte) 255, large.get( 255 ) );
+        assertEquals( (byte) 1, large.get( content.length - 255 ) );
+    }
+
+    /*
+     * Tests the content of a remote file as a buffer.
+     */
+    public void testHttpMap()
+        throws Exception
+    {
+        URI address = URI.create( server.getHttpUrl() + FILE_PATH );
+        ByteBuffer buffer = fetcher.map( address, monitor, AuthFacade.getAuthService(), null );
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get( data );
+        assertEquals( readstream( new FileInputStream( "resources/file.txt" ) ), new String( data ) );
+    }
+
+    /*
+     * Tests that the digests of a remote file are computed while it is read.
+     */
+    public void testHttpDigests()
+        throws Exception
+    {
+        fetcher.setDigestAlgorithms( "SHA-1", "MD5" );
+        URI address = URI.create( server.getHttpUrl() + FILE_PATH );
+        HttpInputStream is =
+            (HttpInputStream) fetcher.openStream( address, monitor, AuthFacade.getAuthService(), null );
+        byte[] data = readbytes( is );
+        assertEquals( digest( "SHA-1", data ), is.getDigests().get( "SHA-1" ) );
+        assertEquals( digest( "MD5", data ), is.getDigests().get( "MD5" ) );
+    }
+
+    /*
+     * Tests that a remote file matching its published checksum is read completely.
+     */
+    public void testHttpChecksumVerified()
+        throws Exception
+    {
+        File resource = createResource( "checksums/verified.bin", 64 * 1024 );
+        File checksum = new File( resource.getPath() + ".sha1" );
+        try
+        {
+            byte[] data = readbytes( new FileInputStream( resource ) );
+            writeFile( checksum, digest( "SHA-1", data ) + "  verified.bin\n" );
+            fetcher.setDigestAlgorithms( "SHA-1" );
+            fetcher.setChecksumVerification( true );
+            URI address = URI.create( server.getHttpUrl() + "/checksums/verified.bin" );
+            assertEquals( data.length,
+                          readbytes( fetcher.openStream( address, monitor, AuthFacade.getAuthService(), null ) ).length );
+        }
+        finally
+        {
+            resource.delete();
+            checksum.delete();
+        }
+    }
+
+    /*
+     * Tests that a remote file not matching its published checksum fails to be read.
+     */
+    public void testHttpChecksumMismatch()
+        throws Exception
+    {
+        File resource = createResource( "checksums/corrupt.bin", 64 * 1024 );
+        File checksum = new File( resource.getPath() + ".sha1" );
+        try
+        {
+            writeFile( checksum, "0123456789012345678901234567890123456789" );
+            fetcher.setDigestAlgorithms( "SHA-1" );
+            fetcher.setChecksumVerification( true );
+            URI address = URI.create( server.getHttpUrl() + "/checksums/corrupt.bin" );
+            try
+            {
+                readbytes( fetcher.openStream( address, monitor, AuthFacade.getAuthService(), null ) );
+                fail( "ChecksumException should be thrown." );
+            }
+            catch ( ChecksumException e )
+            {
+                assertTrue( e.getMessage(), e.getMessage().contains( "0123456789012345678901234567890123456789" ) );
+            }
+        }
+        finally
+        {
+            resource.delete();
+            checksum.delete();
+        }
+    }
+
+    /*
+     * Tests that a remote file without a published checksum is read unverified.
+     */
+    public void testHttpChecksumMissing()
+        throws Exception
+    {
+        fetcher.setDigestAlgorithms( "SHA-1" );
+        fetcher.setChecksumVerification( true );
+        URI address = URI.create( server.getHttpUrl() + FILE_PATH );
+        assertEquals( readstream( new FileInputStream( "resources/file.txt" ) ),
+                      readstream( fetcher.openStream( address, monitor, AuthFacade.getAuthService(), null ) ) );
+    }
+
+    /*
+     * Tests that fetching a remote file is recorded in the transfer statistics.
+     */
+    public void testHttpTransferStatistics()
+        throws Exception
+    {
+        TransferStatistics statistics = S2IOFacade.getTransferStatistics();
+        statistics.clear();
+        URI address = URI.create( server.getHttpUrl() + FILE_PATH );
+        byte[] data = readbytes( fetcher.openStream( address, monitor, AuthFacade.getAuthService(), null ) );
+
+        TransferStatistics.HostStatistics host = statistics.getHostStatistics( address.getHost() );
+        assertNotNull( host );
+        assertEquals( 1, host.getRequestCount() );
+        assertEquals( 0, host.getFailureCount() );
+        assertEquals( data.length, host.getBytesIn() );
+        assertTrue( host.getTimeToFirstBytePercentile( 50 ) >= 0 );
+    }
+
+    private static void writeFile( File file, String content )
+        throws IOException
+    {
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content.getBytes( "US-ASCII" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
     @Override
     public void configureProvider( ServerProvider provider )
     {
         provider().addAuthentication( "/secured/*", "BASIC" );
         provider().addUser( VALID_USERNAME, PASSWORD );
         super.configureProvider( provider );
+        provider().addBehaviour( UNAVAILABLE_PATH, recorder,
+                                 new ErrorBehaviour( HttpURLConnection.HTTP_UNAVAILABLE, "***Error503***" ) );
     }
 
     public static TestSuite suite()
@@ -1,11 +1,18 @@
 package org.maven.ide.eclipse.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.maven.ide.eclipse.authentication.AuthFacade;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
 import org.sonatype.tests.http.server.jetty.behaviour.ErrorBehaviour;
 import org.sonatype.tests.http.server.jetty.configurations.DefaultSuiteConfigurator;
 import org.sonatype.tests.http.server.jetty.configurations.SslSuiteConfigurator;
@@ -24,6 +31,8 @@ public class UrlPublisherTest
     {
         super.setUp();
         publisher = new UrlPublisher();
+        // a server that rejected compression in a previous test must get another chance
+        S2IOPlugin.getDefault().getCompressionCache().clear();
     }
 
     public void testHttpPut()
@@ -34,10 +43,60 @@ public class UrlPublisherTest
                            AuthFacade.getAuthService(), null );
     }
 
+    /*
+     * Tests publishing a local file atomically.
+     */
+    public void testFilePutAtomic()
+        throws Exception
+    {
+        File destination = new File( RESOURCES, NEW_FILE.substring( 1 ) );
+        publisher.setAtomicLocalWrites( true );
+        publisher.setSyncLocalWrites( true );
+        publisher.putFile( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ), destination.toURI(),
+                           new NullProgressMonitor(), null, null );
+        assertEquals( readstream( new FileInputStream( new File( RESOURCES, FILE_LOCAL ) ) ),
+                      readstream( new FileInputStream( destination ) ) );
+        assertNoTemporaryFiles();
+    }
+
+    /*
+     * Tests that a cancelled atomic publish leaves the existing destination untouched.
+     */
+    public void testFilePutAtomicCanceled()
+        throws Exception
+    {
+        File destination = new File( RESOURCES, NEW_FILE.substring( 1 ) );
+        publisher.setAtomicLocalWrites( true );
+        publisher.putFile( new ByteArrayRequestEntity( "old".getBytes( "UTF-8" ), "text/plain" ),
+                           destination.toURI(), new NullProgressMonitor(), null, null );
+
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled( true );
+        try
+        {
+            publisher.putFile( new ByteArrayRequestEntity( "new".getBytes( "UTF-8" ), "text/plain" ),
+                               destination.toURI(), monitor, null, null );
+            fail( "IOException should be thrown." );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "old", readstream( new FileInputStream( destination ) ) );
+        }
+        assertNoTemporaryFiles();
+    }
+
+    private static void assertNoTemporaryFiles()
+    {
+        for ( String name : RESOURCES.list() )
+        {
+            assertFalse( name, name.endsWith( ".tmp" ) );
+        }
+    }
+
     private void addResourceErrorResponse( String path, int code )
     {
         String msg = "***Error" + String.valueOf( code ) + "***";
-        provider().addBehaviour( path, new ErrorBehaviour( code, msg ) );
+        provider().addBehaviour( path, recorder, new ErrorBehaviour( code, msg ) );
         try
         {
             Thread.sleep( 500 );
@@ -48,6 +107,35 @@ public class UrlPublisherTest
         }
     }
 
+    public void testBulkPublish()
+        throws Exception
+    {
+        addResourceErrorResponse( "/forbidden.txt", HttpURLConnection.HTTP_FORBIDDEN );
+        BulkPublisher bulk = new BulkPublisher();
+        bulk.setParallelism( 2 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            bulk.add( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ),
+                      URI.create( server.getHttpUrl() + "/bulk/file" + i + ".txt" ) );
+        }
+        BulkPublisher.Upload forbidden =
+            bulk.add( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ),
+                      URI.create( server.getHttpUrl() + "/forbidden.txt" ) );
+
+        List<BulkPublisher.Upload> uploads =
+            bulk.publish( new NullProgressMonitor(), AuthFacade.getAuthService(), null, null );
+
+        assertEquals( 6, uploads.size() );
+        for ( int i = 0; i < 5; i++ )
+        {
+            BulkPublisher.Upload upload = uploads.get( i );
+            assertTrue( String.valueOf( upload.getException() ), upload.isSuccessful() );
+            assertEquals( HttpURLConnection.HTTP_CREATED, upload.getResponse().getStatusCode() );
+        }
+        assertFalse( forbidden.isSuccessful() );
+        assertTrue( forbidden.getException() instanceof ForbiddenException );
+    }
+
     public void testHttpPutForbidden()
         throws Exception
     {
@@ -88,6 +176,122 @@ public class UrlPublisherTest
         }
     }
 
+    /*
+     * Tests uploading a compressed request body.
+     */
+    public void testHttpPutCompressed()
+        throws Exception
+    {
+        URI url = URI.create( server.getHttpUrl() + NEW_FILE );
+        publisher.setRequestCompression( true );
+        publisher.putFile( new ByteArrayRequestEntity( createXml(), "text/xml" ), url, new NullProgressMonitor(),
+                           AuthFacade.getAuthService(), null );
+
+        assertEquals( "gzip", server.getRecordedHeaders( NEW_FILE ).get( "Content-Encoding" ) );
+        // the server stores the body as received
+        byte[] body = readbytes( new FileInputStream( new File( RESOURCES, NEW_FILE.substring( 1 ) ) ) );
+        assertTrue( body.length < createXml().length );
+        byte[] decompressed = readbytes( new GZIPInputStream( new ByteArrayInputStream( body ) ) );
+        assertTrue( Arrays.equals( createXml(), decompressed ) );
+    }
+
+    /*
+     * Tests that the upload falls back to an uncompressed body if the server rejects the compressed one.
+     */
+    public void testHttpPut415Compressed()
+        throws Exception
+    {
+        addResourceErrorResponse( FILE_PATH, HttpURLConnection.HTTP_UNSUPPORTED_TYPE );
+        URI url = URI.create( server.getHttpUrl() + FILE_PATH );
+        publisher.setRequestCompression( true );
+        try
+        {
+            publisher.putFile( new ByteArrayRequestEntity( createXml(), "text/xml" ), url, new NullProgressMonitor(),
+                               AuthFacade.getAuthService(), null );
+            fail( "TransferException should be thrown." );
+        }
+        catch ( TransferException e )
+        {
+            assertEquals( HttpURLConnection.HTTP_UNSUPPORTED_TYPE, e.getServerResponse().getStatusCode() );
+        }
+        assertEquals( 2, countRequests( "PUT " + FILE_PATH ) );
+        assertNull( server.getRecordedHeaders( FILE_PATH ).get( "Content-Encoding" ) );
+
+        // the server is remembered, the next request is not compressed in the first place
+        try
+        {
+            publisher.putFile( new ByteArrayRequestEntity( createXml(), "text/xml" ), url, new NullProgressMonitor(),
+                               AuthFacade.getAuthService(), null );
+            fail( "TransferException should be thrown." );
+        }
+        catch ( TransferException e )
+        {
+            assertEquals( HttpURLConnection.HTTP_UNSUPPORTED_TYPE, e.getServerResponse().getStatusCode() );
+        }
+        assertEquals( 3, countRequests( "PUT " + FILE_PATH ) );
+        assertNull( server.getRecordedHeaders( FILE_PATH ).get( "Content-Encoding" ) );
+    }
+
+    private static byte[] createXml()
+        throws Exception
+    {
+        StringBuilder xml = new StringBuilder( "<items>" );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            xml.append( "<item id=\"" ).append( i ).append( "\"/>" );
+        }
+        return xml.append( "</items>" ).toString().getBytes( "UTF-8" );
+    }
+
+    /*
+     * Tests that a transient failure is reported once the retries are exhausted.
+     */
+    public void testHttpPut503Retried()
+        throws Exception
+    {
+        addResourceErrorResponse( FILE_PATH, HttpURLConnection.HTTP_UNAVAILABLE );
+        URI url = URI.create( server.getHttpUrl() + FILE_PATH );
+        publisher.setRetryPolicy( new RetryPolicy( 3, 10, 50 ) );
+        try
+        {
+            publisher.putFile( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ), url,
+                               new NullProgressMonitor(), AuthFacade.getAuthService(), null );
+            fail( "TransferException should be thrown." );
+        }
+        catch ( TransferException e )
+        {
+            assertEquals( HttpURLConnection.HTTP_UNAVAILABLE, e.getServerResponse().getStatusCode() );
+        }
+        assertEquals( 3, countRequests( "PUT " + FILE_PATH ) );
+    }
+
+    /*
+     * Tests that a response body stored in a temporary file is still accessible.
+     */
+    public void testHttpPut400SpilledResponse()
+        throws Exception
+    {
+        addResourceErrorResponse( FILE_PATH, HttpURLConnection.HTTP_BAD_REQUEST );
+        URI url = URI.create( server.getHttpUrl() + FILE_PATH );
+        publisher.setResponseSpillThreshold( 0 );
+        try
+        {
+            publisher.putFile( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ), url,
+                               new NullProgressMonitor(), AuthFacade.getAuthService(), null );
+            fail( "TransferException should be thrown." );
+        }
+        catch ( TransferException e )
+        {
+            ServerResponse response = e.getServerResponse();
+            assertNotNull( "Expected not null response", response );
+            String data = new String( response.getResponseData(), "UTF-8" );
+            assertTrue( data, data.contains( "***Error400***" ) );
+            assertEquals( data, readstream( response.getResponseStream() ) );
+            assertEquals( response.getResponseLength(), response.getResponseBuffer().remaining() );
+            response.dispose();
+        }
+    }
+
     /*
      * Tests that the authentication header contains both a username and password.
      */
@@ -140,6 +344,38 @@ public class UrlPublisherTest
         assertNull( "No Auth header should be set", server.getRecordedHeaders( FILE_PATH ).get( "Authorization" ) );
     }
 
+    /*
+     * Tests that the digests of an uploaded file are computed while it is sent.
+     */
+    public void testHttpPutDigests()
+        throws Exception
+    {
+        byte[] data = readbytes( new FileInputStream( new File( RESOURCES, FILE_LOCAL ) ) );
+        URI url = URI.create( server.getHttpUrl() + FILE_PATH );
+        publisher.setDigestAlgorithms( "SHA-1", "MD5" );
+        ServerResponse response =
+            publisher.putFile( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ), url,
+                               new NullProgressMonitor(), AuthFacade.getAuthService(), null );
+        assertEquals( digest( "SHA-1", data ), response.getDigests().get( "SHA-1" ) );
+        assertEquals( digest( "MD5", data ), response.getDigests().get( "MD5" ) );
+    }
+
+    /*
+     * Tests that the digests of a file published locally are computed while it is written.
+     */
+    public void testFilePutDigests()
+        throws Exception
+    {
+        byte[] data = readbytes( new FileInputStream( new File( RESOURCES, FILE_LOCAL ) ) );
+        File destination = new File( RESOURCES, NEW_FILE.substring( 1 ) );
+        publisher.setDigestAlgorithms( "SHA-256" );
+        ServerResponse response =
+            publisher.putFile( new FileRequestEntity( new File( RESOURCES, FILE_LOCAL ) ), destination.toURI(),
+                               new NullProgressMonitor(), null, null );
+        assertEquals( digest( "SHA-256", data ), response.getDigests().get( "SHA-256" ) );
+        assertEquals( data.length, destination.length() );
+    }
+
     public static TestSuite suite()
         throws Exception
     {
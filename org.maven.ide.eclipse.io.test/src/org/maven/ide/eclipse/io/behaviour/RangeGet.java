@@ -0,0 +1,176 @@
+package org.maven.ide.eclipse.io.behaviour;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.tests.http.server.jetty.behaviour.filesystem.FSBehaviour;
+
+/**
+ * Serves files with support for byte ranges and records the requests it receives. The connection of a response can be
+ * made to break off midway, to simulate an interrupted transfer.
+ */
+public class RangeGet
+    extends FSBehaviour
+{
+
+    /**
+     * A request received by the behaviour.
+     */
+    public static class Request
+    {
+        public final String method;
+
+        public final String range;
+
+        public final String ifRange;
+
+        public final int status;
+
+        Request( String method, String range, String ifRange, int status )
+        {
+            this.method = method;
+            this.range = range;
+            this.ifRange = ifRange;
+            this.status = status;
+        }
+    }
+
+    private final String prefix;
+
+    private final boolean acceptRanges;
+
+    private final List<Request> requests = new ArrayList<Request>();
+
+    private long failAfter = -1;
+
+    /**
+     * @param fsPath The directory holding the served files.
+     * @param prefix The path the behaviour is registered for, it is removed from the request path.
+     * @param acceptRanges {@code false} to ignore range requests like a server without range support.
+     */
+    public RangeGet( String fsPath, String prefix, boolean acceptRanges )
+    {
+        super( fsPath );
+        this.prefix = prefix;
+        this.acceptRanges = acceptRanges;
+    }
+
+    /**
+     * Makes the next response break off the connection after the specified number of body bytes.
+     */
+    public synchronized void setFailAfter( long bytes )
+    {
+        this.failAfter = bytes;
+    }
+
+    public synchronized List<Request> getRequests()
+    {
+        return new ArrayList<Request>( requests );
+    }
+
+    public boolean execute( HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx )
+        throws Exception
+    {
+        String path = request.getPathInfo();
+        if ( path.startsWith( prefix + "/" ) )
+        {
+            path = path.substring( prefix.length() );
+        }
+        File file = fs( path );
+        String range = request.getHeader( "Range" );
+        String ifRange = request.getHeader( "If-Range" );
+        if ( !file.isFile() )
+        {
+            record( request, range, ifRange, 404 );
+            response.sendError( 404 );
+            return false;
+        }
+
+        long length = file.length();
+        String etag = "\"" + length + "-" + file.lastModified() + "\"";
+        long first = 0;
+        long last = length - 1;
+        int status = 200;
+        if ( acceptRanges && range != null && range.startsWith( "bytes=" )
+            && ( ifRange == null || ifRange.equals( etag ) ) )
+        {
+            String spec = range.substring( "bytes=".length() );
+            int dash = spec.indexOf( '-' );
+            first = Long.parseLong( spec.substring( 0, dash ) );
+            if ( dash < spec.length() - 1 )
+            {
+                last = Math.min( last, Long.parseLong( spec.substring( dash + 1 ) ) );
+            }
+            if ( first >= length )
+            {
+                record( request, range, ifRange, 416 );
+                response.setHeader( "Content-Range", "bytes */" + length );
+                response.sendError( 416 );
+                return false;
+            }
+            status = 206;
+            response.setHeader( "Content-Range", "bytes " + first + "-" + last + "/" + length );
+        }
+        record( request, range, ifRange, status );
+
+        response.setStatus( status );
+        if ( acceptRanges )
+        {
+            response.setHeader( "Accept-Ranges", "bytes" );
+        }
+        response.setHeader( "ETag", etag );
+        response.setHeader( "Content-Length", Long.toString( last - first + 1 ) );
+        if ( !"GET".equals( request.getMethod() ) )
+        {
+            return false;
+        }
+
+        long limit = last - first + 1;
+        synchronized ( this )
+        {
+            if ( failAfter >= 0 )
+            {
+                limit = Math.min( limit, failAfter );
+                failAfter = -1;
+            }
+        }
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            raf.seek( first );
+            ServletOutputStream out = response.getOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            for ( long remaining = limit; remaining > 0; )
+            {
+                int n = raf.read( buffer, 0, (int) Math.min( buffer.length, remaining ) );
+                out.write( buffer, 0, n );
+                remaining -= n;
+            }
+            out.flush();
+        }
+        finally
+        {
+            raf.close();
+        }
+        if ( limit < last - first + 1 )
+        {
+            // the response is committed, so the server can only drop the connection
+            throw new IOException( "Connection broken off after " + limit + " bytes" );
+        }
+        return false;
+    }
+
+    private synchronized void record( HttpServletRequest request, String range, String ifRange, int status )
+    {
+        requests.add( new Request( request.getMethod(), range, ifRange, status ) );
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.maven.ide.eclipse.io.behaviour;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.tests.http.server.api.Behaviour;
+
+/**
+ * Sends a response body in chunks with a pause after each of them, to simulate a slow or stalling connection. The
+ * request path ends with {@code <count>/<size>/<pause>}, i.e. the number of chunks, their size in bytes and the pause
+ * in milliseconds.
+ */
+public class Trickle
+    implements Behaviour
+{
+
+    public boolean execute( HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx )
+        throws Exception
+    {
+        String[] segments = request.getPathInfo().split( "/" );
+        int count = Integer.parseInt( segments[segments.length - 3] );
+        int size = Integer.parseInt( segments[segments.length - 2] );
+        long pause = Long.parseLong( segments[segments.length - 1] );
+
+        response.setStatus( 200 );
+        response.setContentLength( count * size );
+        ServletOutputStream out = response.getOutputStream();
+        byte[] chunk = new byte[size];
+        Arrays.fill( chunk, (byte) 'x' );
+        for ( int i = 0; i < count; i++ )
+        {
+            out.write( chunk );
+            out.flush();
+            if ( i < count - 1 )
+            {
+                Thread.sleep( pause );
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,365 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.net.proxy.IProxyService;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.maven.ide.eclipse.authentication.IAuthService;
+
+/**
+ * Uploads many files, e.g. the artifacts of a multi-module build, with a bounded number of concurrent transfers. The
+ * transfers share the pooled connections of the client registry. A failed upload does not abort the batch, its error
+ * is recorded with the upload instead. The progress of the batch is reported from the calling thread as the bytes of
+ * the running uploads are sent.
+ */
+public class BulkPublisher
+{
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final List<Upload> uploads = new ArrayList<Upload>();
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private TransferPriority priority = TransferPriority.BACKGROUND;
+
+    private String name;
+
+    /**
+     * Sets the maximum number of concurrent uploads.
+     * 
+     * @param parallelism The maximum number of concurrent uploads, must be positive.
+     */
+    public void setParallelism( int parallelism )
+    {
+        this.parallelism = Math.max( 1, parallelism );
+    }
+
+    /**
+     * Sets the priority of the uploads among the requests waiting for a connection to the same host. Batches are
+     * uploaded as {@link TransferPriority#BACKGROUND} by default, so they don't hold up interactive requests.
+     * 
+     * @param priority The priority, {@code null} to use the priority of the calling thread.
+     */
+    public void setPriority( TransferPriority priority )
+    {
+        this.priority = priority;
+    }
+
+    /**
+     * Sets the text to be displayed by the progress monitor.
+     */
+    public void setName( String name )
+    {
+        this.name = name;
+    }
+
+    /**
+     * Adds a file to the batch.
+     * 
+     * @param file The file to upload, must not be {@code null}.
+     * @param url The destination for the uploaded file, must not be {@code null}.
+     * @return The upload, never {@code null}. Its outcome is available once the batch has been published.
+     */
+    public Upload add( RequestEntity file, URI url )
+    {
+        Upload upload = new Upload( file, url );
+        uploads.add( upload );
+        return upload;
+    }
+
+    /**
+     * Uploads all files of the batch.
+     * 
+     * @param monitor The monitor to notify of the progress of the whole batch, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be
+     *            {@code null}.
+     * @param timeoutInMilliseconds Timeout in milliseconds. If null, it will use the default timeout.
+     * @return The uploads in the order they were added, never {@code null}.
+     * @throws IOException If the batch was interrupted or cancelled.
+     */
+    public List<Upload> publish( IProgressMonitor monitor, IAuthService authService, IProxyService proxyService,
+                                 Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        long total = 0;
+        for ( Upload upload : uploads )
+        {
+            total += getWork( upload );
+        }
+        // the monitor takes int units, scale large batches down to fit
+        long scale = total / Integer.MAX_VALUE + 1;
+        SubMonitor progress =
+            SubMonitor.convert( monitor, ( name != null ) ? name : "Uploading " + uploads.size() + " files",
+                                (int) ( total / scale ) );
+
+        Semaphore permits = new Semaphore( parallelism );
+        BlockingQueue<Upload> completed = new LinkedBlockingQueue<Upload>();
+        List<Upload> started = new ArrayList<Upload>();
+        int pending = 0;
+
+        UrlPublisher publisher = new UrlPublisher();
+        publisher.setName( name );
+        publisher.setPriority( priority );
+
+        boolean finished = false;
+        try
+        {
+            for ( Upload upload : uploads )
+            {
+                while ( !permits.tryAcquire( 100, TimeUnit.MILLISECONDS ) )
+                {
+                    pending -= drain( completed, started, progress, scale, false );
+                }
+                started.add( upload );
+                pending++;
+                upload.start( publisher, authService, proxyService, timeoutInMilliseconds, permits, completed );
+                pending -= drain( completed, started, progress, scale, false );
+            }
+
+            while ( pending > 0 )
+            {
+                pending -= drain( completed, started, progress, scale, true );
+            }
+            finished = true;
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( "Transfer was interrupted" );
+        }
+        finally
+        {
+            if ( !finished )
+            {
+                for ( Upload upload : started )
+                {
+                    upload.cancel();
+                }
+            }
+            progress.done();
+        }
+
+        return Collections.unmodifiableList( uploads );
+    }
+
+    private static long getWork( Upload upload )
+    {
+        return Math.max( 1, upload.file.getContentLength() );
+    }
+
+    private int drain( BlockingQueue<Upload> completed, List<Upload> started, SubMonitor progress, long scale,
+                       boolean wait )
+        throws InterruptedException, IOException
+    {
+        if ( progress.isCanceled() )
+        {
+            throw new IOException( "Transfer has been canceled" );
+        }
+        int count = 0;
+        Upload upload = wait ? completed.poll( 100, TimeUnit.MILLISECONDS ) : completed.poll();
+        while ( upload != null )
+        {
+            report( upload, getWork( upload ), progress, scale );
+            count++;
+            upload = completed.poll();
+        }
+        for ( Upload running : started )
+        {
+            report( running, running.progress.getBytes( getWork( running ) ), progress, scale );
+        }
+        return count;
+    }
+
+    /**
+     * Reports the bytes of an upload that have been sent since its last report.
+     */
+    private static void report( Upload upload, long bytes, SubMonitor progress, long scale )
+    {
+        if ( bytes > upload.reported )
+        {
+            progress.worked( (int) ( bytes / scale - upload.reported / scale ) );
+            upload.reported = bytes;
+        }
+    }
+
+    /**
+     * A file to upload along with the outcome of its upload.
+     */
+    public static final class Upload
+    {
+        private final RequestEntity file;
+
+        private final URI url;
+
+        private final ByteCounter progress = new ByteCounter();
+
+        /**
+         * The number of bytes reported to the monitor of the batch, only used by the publishing thread.
+         */
+        private long reported;
+
+        private volatile ServerResponse response;
+
+        private volatile Throwable exception;
+
+        private TransferFuture<ServerResponse> future;
+
+        private Semaphore permits;
+
+        private BlockingQueue<Upload> completed;
+
+        Upload( RequestEntity file, URI url )
+        {
+            this.file = file;
+            this.url = url;
+        }
+
+        public RequestEntity getFile()
+        {
+            return file;
+        }
+
+        public URI getUrl()
+        {
+            return url;
+        }
+
+        /**
+         * @return {@code true} if the file was uploaded, {@code false} if it failed or has not been uploaded yet.
+         */
+        public boolean isSuccessful()
+        {
+            return response != null;
+        }
+
+        /**
+         * Gets the response of the server to a successful upload.
+         * 
+         * @return The server response or {@code null} if the upload failed.
+         */
+        public ServerResponse getResponse()
+        {
+            return response;
+        }
+
+        /**
+         * Gets the cause of a failed upload, usually a {@link TransferException} if the server rejected the file.
+         * 
+         * @return The error or {@code null} if the upload succeeded.
+         */
+        public Throwable getException()
+        {
+            return exception;
+        }
+
+        void start( UrlPublisher publisher, IAuthService authService, IProxyService proxyService,
+                    Integer timeoutInMilliseconds, Semaphore permits, BlockingQueue<Upload> completed )
+        {
+            this.permits = permits;
+            this.completed = completed;
+            try
+            {
+                TransferFuture<ServerResponse> future =
+                    publisher.putFileAsync( file, url, progress, authService, proxyService, timeoutInMilliseconds );
+                synchronized ( this )
+                {
+                    this.future = future;
+                }
+                future.addCallback( new TransferCallback<ServerResponse>()
+                {
+                    public void completed( ServerResponse result )
+                    {
+                        response = result;
+                        done();
+                    }
+
+                    public void failed( Throwable error )
+                    {
+                        Upload.this.failed( error );
+                    }
+                } );
+            }
+            catch ( IOException e )
+            {
+                failed( e );
+            }
+            catch ( RuntimeException e )
+            {
+                failed( e );
+            }
+        }
+
+        synchronized void cancel()
+        {
+            if ( future != null )
+            {
+                future.cancel( true );
+            }
+        }
+
+        private void failed( Throwable error )
+        {
+            exception = error;
+            done();
+        }
+
+        private void done()
+        {
+            permits.release();
+            completed.add( this );
+        }
+    }
+
+    /**
+     * Counts the bytes sent by an upload. The transfer reports to it from its own threads while the publishing thread
+     * polls it, a new task, e.g. of a retried request, starts the count over.
+     */
+    private static final class ByteCounter
+        extends NullProgressMonitor
+    {
+        private volatile int totalWork = IProgressMonitor.UNKNOWN;
+
+        private final AtomicLong worked = new AtomicLong();
+
+        @Override
+        public void beginTask( String name, int totalWork )
+        {
+            worked.set( 0 );
+            this.totalWork = totalWork;
+        }
+
+        @Override
+        public void worked( int work )
+        {
+            worked.addAndGet( work );
+        }
+
+        /**
+         * Gets the number of bytes sent so far.
+         *
+         * @param length The size of the uploaded file.
+         */
+        long getBytes( long length )
+        {
+            int total = totalWork;
+            if ( total <= 0 )
+            {
+                return 0;
+            }
+            // the work units of the transfer may be scaled down for large files
+            return (long) Math.min( length, (double) worked.get() * length / total );
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.maven.ide.eclipse.io;
+
+/**
+ * Controls whether HTTP responses may be served from the local cache.
+ */
+public enum CachePolicy
+{
+    /**
+     * Use the policy registered for the URL prefix of the resource, resources without a registered policy are not
+     * cached.
+     */
+    DEFAULT,
+
+    /**
+     * Always fetch the resource from the server and ask intermediate caches to do the same.
+     */
+    NO_CACHE,
+
+    /**
+     * Keep the resource in the local cache and revalidate it with the server on every access, i.e. the cached copy is
+     * used when the server reports the resource as not modified.
+     */
+    REVALIDATE
+}
@@ -0,0 +1,105 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.maven.ide.eclipse.io.HttpBaseSupport.HttpInputStream;
+import org.maven.ide.eclipse.io.internal.MemoryResponseCache;
+
+/**
+ * Copies a small response body into the memory cache while the caller reads it. The response is only stored once a
+ * read has signalled the end of the stream, bodies exceeding the maximum entry size are passed through without being
+ * copied further. Failed transfers never reach the end of the stream and are therefore never stored, and neither are
+ * bodies the caller closed before reading the end, closing does not wait for the rest of the response.
+ */
+class CachingHttpInputStream
+    extends HttpInputStream
+{
+    private final HttpInputStream his;
+
+    private final MemoryResponseCache cache;
+
+    private final String key;
+
+    private final long ttl;
+
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream( 4 * 1024 );
+
+    public CachingHttpInputStream( HttpInputStream his, MemoryResponseCache cache, String key, long ttl )
+    {
+        super( his, null, null );
+        this.his = his;
+        this.cache = cache;
+        this.key = key;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        byte[] b = new byte[1];
+        int n = read( b, 0, 1 );
+        return ( n < 0 ) ? -1 : ( b[0] & 0xFF );
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len )
+        throws IOException
+    {
+        int n = super.read( b, off, len );
+        if ( copy != null )
+        {
+            if ( n < 0 )
+            {
+                cache.put( key, copy.toByteArray(), his.getEncoding(), ttl );
+                copy = null;
+            }
+            else if ( copy.size() + n > cache.getMaxEntrySize() )
+            {
+                copy = null;
+            }
+            else
+            {
+                copy.write( b, off, n );
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public long skip( long n )
+        throws IOException
+    {
+        // skipped data can't be cached
+        copy = null;
+        return super.skip( n );
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        copy = null;
+        super.close();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public String getEncoding()
+    {
+        return his.getEncoding();
+    }
+
+    @Override
+    public Map<String, String> getDigests()
+    {
+        return his.getDigests();
+    }
+}
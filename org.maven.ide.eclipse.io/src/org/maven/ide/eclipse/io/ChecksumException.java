@@ -0,0 +1,18 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+
+/**
+ * Signals that the checksum of transferred data does not match the checksum published by the server.
+ */
+public class ChecksumException
+    extends IOException
+{
+    private static final long serialVersionUID = 4387906285307524715L;
+
+    public ChecksumException( String message )
+    {
+        super( message );
+    }
+
+}
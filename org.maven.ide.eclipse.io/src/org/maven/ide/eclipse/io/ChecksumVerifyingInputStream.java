@@ -0,0 +1,227 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.maven.ide.eclipse.io.HttpBaseSupport.HttpInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies the digest of a response body against the checksum the server publishes next to the resource, e.g. in
+ * {@code artifact.jar.sha1}. The checksum is fetched in parallel to the body and compared once the body has been read
+ * completely. Resources without a published checksum are passed through unverified.
+ */
+class ChecksumVerifyingInputStream
+    extends HttpInputStream
+{
+    private static final int MAX_CHECKSUM_LENGTH = 4 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger( ChecksumVerifyingInputStream.class );
+
+    private final HttpInputStream his;
+
+    private final URI url;
+
+    private final String algorithm;
+
+    private final TransferFuture<HttpInputStream> checksum;
+
+    private boolean verified;
+
+    /**
+     * @param his The stream to the resource, must compute the digest for the specified algorithm.
+     * @param url The URL of the resource, must not be {@code null}.
+     * @param algorithm The name of the digest algorithm the published checksum was computed with.
+     * @param checksum The pending stream to the published checksum, must not be {@code null}.
+     */
+    public ChecksumVerifyingInputStream( HttpInputStream his, URI url, String algorithm,
+                                         TransferFuture<HttpInputStream> checksum )
+    {
+        super( his, null, null );
+        this.his = his;
+        this.url = url;
+        this.algorithm = algorithm;
+        this.checksum = checksum;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        byte[] b = new byte[1];
+        int n = read( b, 0, 1 );
+        return ( n < 0 ) ? -1 : ( b[0] & 0xFF );
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len )
+        throws IOException
+    {
+        int n = super.read( b, off, len );
+        if ( n < 0 && !verified )
+        {
+            verified = true;
+            verify();
+        }
+        return n;
+    }
+
+    @Override
+    public long skip( long n )
+        throws IOException
+    {
+        // route skipped data through the digest
+        long skipped = 0;
+        byte[] buffer = new byte[(int) Math.min( n, 8 * 1024 )];
+        while ( skipped < n )
+        {
+            int read = read( buffer, 0, (int) Math.min( buffer.length, n - skipped ) );
+            if ( read < 0 )
+            {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        discard( checksum );
+        super.close();
+    }
+
+    /**
+     * Closes the stream to the checksum once it is available, without reading it.
+     */
+    static void discard( TransferFuture<HttpInputStream> checksum )
+    {
+        // the checksum is tiny, let it arrive rather than abort the connection
+        checksum.addCallback( new TransferCallback<HttpInputStream>()
+        {
+            public void completed( HttpInputStream stream )
+            {
+                close( stream );
+            }
+
+            public void failed( Throwable error )
+            {
+                // nothing to release
+            }
+        } );
+    }
+
+    @Override
+    public String getEncoding()
+    {
+        return his.getEncoding();
+    }
+
+    @Override
+    public Map<String, String> getDigests()
+    {
+        return his.getDigests();
+    }
+
+    private void verify()
+        throws IOException
+    {
+        Map<String, String> digests = his.getDigests();
+        String actual = ( digests != null ) ? digests.get( algorithm ) : null;
+        if ( actual == null )
+        {
+            return;
+        }
+        String expected = getExpectedChecksum( actual.length() );
+        if ( expected == null )
+        {
+            return;
+        }
+        if ( !expected.equalsIgnoreCase( actual ) )
+        {
+            throw new ChecksumException( algorithm + " checksum mismatch for " + url + ": expected " + expected
+                + " but was " + actual );
+        }
+        log.debug( "Verified {} checksum of {}", algorithm, url );
+    }
+
+    private String getExpectedChecksum( int length )
+        throws IOException
+    {
+        HttpInputStream stream;
+        try
+        {
+            stream = checksum.get();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new InterruptedIOException( "Transfer was interrupted" );
+        }
+        catch ( ExecutionException e )
+        {
+            log.debug( "No {} checksum available for {}: {}", new Object[] { algorithm, url, e.getCause() } );
+            return null;
+        }
+
+        String content;
+        try
+        {
+            byte[] buffer = new byte[MAX_CHECKSUM_LENGTH];
+            int total = 0;
+            while ( total < buffer.length )
+            {
+                int n = stream.read( buffer, total, buffer.length - total );
+                if ( n < 0 )
+                {
+                    break;
+                }
+                total += n;
+            }
+            content = new String( buffer, 0, total, "US-ASCII" );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not read {} checksum for {}: {}", new Object[] { algorithm, url, e } );
+            return null;
+        }
+        finally
+        {
+            close( stream );
+        }
+
+        // besides the plain checksum, the file may name the resource before or after it
+        for ( String token : content.split( "[\\s=()*]+" ) )
+        {
+            if ( token.length() == length && token.matches( "[0-9a-fA-F]+" ) )
+            {
+                return token;
+            }
+        }
+        log.debug( "Ignoring malformed {} checksum for {}", algorithm, url );
+        return null;
+    }
+
+    private static void close( HttpInputStream stream )
+    {
+        try
+        {
+            stream.close();
+        }
+        catch ( IOException e )
+        {
+            // ignored
+        }
+    }
+}
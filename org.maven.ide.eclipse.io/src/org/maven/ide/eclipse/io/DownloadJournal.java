@@ -0,0 +1,295 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Records the state of a partially downloaded file next to the {@code .part} file, so that an interrupted download can
+ * be resumed later on instead of starting over. A download made with a single request is recorded as the number of
+ * bytes received from the start, a download split into byte ranges as the number of bytes received per range.
+ */
+class DownloadJournal
+{
+    private static final String URL = "url";
+
+    private static final String ETAG = "etag";
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private static final String LENGTH = "length";
+
+    private static final String RECEIVED = "received";
+
+    private static final String SEGMENTS = "segments";
+
+    private static final String SEGMENTS_RECEIVED = "segmentsReceived";
+
+    private final File file;
+
+    private final String url;
+
+    private String etag;
+
+    private String lastModified;
+
+    private long length = -1;
+
+    private long received;
+
+    private long[] starts;
+
+    private long[] segmentsReceived;
+
+    private DownloadJournal( File file, String url )
+    {
+        this.file = file;
+        this.url = url;
+    }
+
+    /**
+     * Gets the file holding the data of a partial download of the specified target.
+     */
+    public static File getPartFile( File target )
+    {
+        return new File( target.getPath() + ".part" );
+    }
+
+    /**
+     * Loads the journal for the specified download. If there is no usable journal for the URL, an empty one is returned.
+     *
+     * @param target The file being downloaded, must not be {@code null}.
+     * @param url The URL being downloaded, must not be {@code null}.
+     * @return The journal, never {@code null}.
+     */
+    public static DownloadJournal load( File target, String url )
+    {
+        DownloadJournal journal = new DownloadJournal( new File( target.getPath() + ".part.journal" ), url );
+        if ( journal.file.isFile() )
+        {
+            Properties props = new Properties();
+            try
+            {
+                InputStream is = new FileInputStream( journal.file );
+                try
+                {
+                    props.load( is );
+                }
+                finally
+                {
+                    is.close();
+                }
+                if ( url.equals( props.getProperty( URL ) ) )
+                {
+                    journal.etag = props.getProperty( ETAG );
+                    journal.lastModified = props.getProperty( LAST_MODIFIED );
+                    journal.length = Long.parseLong( props.getProperty( LENGTH, "-1" ) );
+                    journal.received = Long.parseLong( props.getProperty( RECEIVED, "0" ) );
+                    if ( props.getProperty( SEGMENTS ) != null )
+                    {
+                        long[] starts = parse( props.getProperty( SEGMENTS ) );
+                        long[] received = parse( props.getProperty( SEGMENTS_RECEIVED, "" ) );
+                        if ( received.length == starts.length - 1 )
+                        {
+                            journal.starts = starts;
+                            journal.segmentsReceived = received;
+                        }
+                        else
+                        {
+                            journal.reset();
+                        }
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                // start over
+            }
+            catch ( NumberFormatException e )
+            {
+                // start over
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Checks whether the data received so far can be resumed.
+     *
+     * @param part The file holding the received data, must not be {@code null}.
+     * @return {@code true} if the partial data can be used, {@code false} if the download needs to start over.
+     */
+    public boolean isResumable( File part )
+    {
+        if ( getValidator() == null )
+        {
+            return false;
+        }
+        if ( starts != null )
+        {
+            // the segments are written to their position in a file of the final size
+            return length > 0 && part.length() == length;
+        }
+        return received > 0 && part.length() >= received;
+    }
+
+    public void save()
+        throws IOException
+    {
+        Properties props = new Properties();
+        props.setProperty( URL, url );
+        if ( etag != null )
+        {
+            props.setProperty( ETAG, etag );
+        }
+        if ( lastModified != null )
+        {
+            props.setProperty( LAST_MODIFIED, lastModified );
+        }
+        props.setProperty( LENGTH, Long.toString( length ) );
+        props.setProperty( RECEIVED, Long.toString( received ) );
+        if ( starts != null )
+        {
+            props.setProperty( SEGMENTS, format( starts ) );
+            props.setProperty( SEGMENTS_RECEIVED, format( segmentsReceived ) );
+        }
+
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            props.store( os, null );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    public void delete()
+    {
+        file.delete();
+    }
+
+    /**
+     * Forgets about previously received data, e.g. because the resource changed on the server.
+     */
+    public void reset()
+    {
+        etag = null;
+        lastModified = null;
+        length = -1;
+        received = 0;
+        starts = null;
+        segmentsReceived = null;
+    }
+
+    /**
+     * Gets the validator to send with {@code If-Range} when resuming.
+     *
+     * @return The entity tag or last modification date of the partially received resource, {@code null} if unknown.
+     */
+    public String getValidator()
+    {
+        return ( etag != null ) ? etag : lastModified;
+    }
+
+    public void setValidators( String etag, String lastModified )
+    {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public void setLength( long length )
+    {
+        this.length = length;
+    }
+
+    public long getReceived()
+    {
+        return received;
+    }
+
+    public void setReceived( long received )
+    {
+        this.received = received;
+    }
+
+    /**
+     * @return {@code true} if the download is split into byte ranges.
+     */
+    public boolean isSegmented()
+    {
+        return starts != null;
+    }
+
+    /**
+     * Gets the offsets at which the byte ranges of a split download start.
+     *
+     * @return The start offsets followed by the length of the resource, {@code null} if the download is not split.
+     */
+    public long[] getSegmentStarts()
+    {
+        return starts;
+    }
+
+    /**
+     * Gets the number of bytes received for each byte range of a split download.
+     *
+     * @return The received bytes per range, {@code null} if the download is not split.
+     */
+    public long[] getSegmentsReceived()
+    {
+        return segmentsReceived;
+    }
+
+    /**
+     * Records the progress of a download that is split into byte ranges.
+     *
+     * @param starts The offsets at which the ranges start followed by the length of the resource, must not be
+     *            {@code null}.
+     * @param received The number of bytes received for each range, must not be {@code null}.
+     */
+    public void setSegments( long[] starts, long[] received )
+    {
+        this.starts = starts.clone();
+        this.segmentsReceived = received.clone();
+    }
+
+    private static String format( long[] values )
+    {
+        StringBuilder buffer = new StringBuilder();
+        for ( long value : values )
+        {
+            if ( buffer.length() > 0 )
+            {
+                buffer.append( ',' );
+            }
+            buffer.append( value );
+        }
+        return buffer.toString();
+    }
+
+    private static long[] parse( String values )
+    {
+        if ( values.length() <= 0 )
+        {
+            return new long[0];
+        }
+        String[] tokens = values.split( "," );
+        long[] result = new long[tokens.length];
+        for ( int i = 0; i < tokens.length; i++ )
+        {
+            result[i] = Long.parseLong( tokens[i].trim() );
+        }
+        return result;
+    }
+}
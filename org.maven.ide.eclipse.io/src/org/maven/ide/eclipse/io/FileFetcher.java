@@ -1,9 +1,12 @@
 package org.maven.ide.eclipse.io;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -11,6 +14,11 @@ import org.eclipse.core.runtime.IProgressMonitor;
 class FileFetcher
 {
 
+    /**
+     * Files smaller than this are read into the heap, mapping them costs more than copying their content.
+     */
+    static final int MAP_THRESHOLD = 64 * 1024;
+
     /**
      * Opens a stream to the specified file.
      * 
@@ -26,9 +34,72 @@ class FileFetcher
 
         MonitoredInputStream mis = new MonitoredInputStream( is, monitor );
         mis.setName( "Reading file " + file.getAbsolutePath() );
-        mis.setLength( (int) file.length() );
+        mis.setLength( file.length() );
 
         return mis;
     }
 
+    /**
+     * Opens a channel to the specified file.
+     * 
+     * @param file The file to open, must not be {@code null}.
+     * @return The read-only channel to the file, never {@code null}.
+     * @throws IOException If the file could not be opened.
+     */
+    public FileChannel openChannel( final File file )
+        throws IOException
+    {
+        return new FileInputStream( file ).getChannel();
+    }
+
+    /**
+     * Maps the content of the specified file into memory. Small files are read into a heap buffer instead.
+     * 
+     * @param file The file to map, must not be {@code null}.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @return The read-only view of the file content, never {@code null}.
+     * @throws IOException If the file could not be read or is too large to be mapped.
+     */
+    public ByteBuffer map( final File file, final IProgressMonitor monitor )
+        throws IOException
+    {
+        ProgressAggregator progress = new ProgressAggregator( monitor );
+        FileChannel channel = openChannel( file );
+        try
+        {
+            long length = channel.size();
+            if ( length > Integer.MAX_VALUE )
+            {
+                throw new IOException( "File " + file + " is too large to be mapped" );
+            }
+            progress.beginTask( "Reading file " + file.getAbsolutePath(), length );
+            ByteBuffer buffer;
+            if ( length < MAP_THRESHOLD )
+            {
+                buffer = ByteBuffer.allocate( (int) length );
+                while ( buffer.hasRemaining() )
+                {
+                    if ( channel.read( buffer ) < 0 )
+                    {
+                        throw new EOFException( "File " + file + " was truncated while being read" );
+                    }
+                }
+                buffer.flip();
+                buffer = buffer.asReadOnlyBuffer();
+            }
+            else
+            {
+                // the mapping stays valid after the channel is closed
+                buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, length );
+            }
+            progress.worked( length );
+            return buffer;
+        }
+        finally
+        {
+            channel.close();
+            progress.done();
+        }
+    }
+
 }
@@ -1,10 +1,13 @@
 package org.maven.ide.eclipse.io;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -12,28 +15,112 @@ import org.eclipse.core.runtime.IProgressMonitor;
 class FilePublisher
 {
 
+    /**
+     * The number of bytes copied between channels at once, bounds the time between progress updates.
+     */
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+
+    private boolean atomic;
+
+    private boolean sync;
+
+    private String[] digestAlgorithms = new String[0];
+
+    /**
+     * Sets whether files are written to a temporary file next to the destination first and then renamed. This way,
+     * other processes never see a partially written file and a failed or cancelled transfer leaves the destination
+     * untouched.
+     */
+    public void setAtomic( boolean atomic )
+    {
+        this.atomic = atomic;
+    }
+
+    /**
+     * Sets whether the written data is forced to the storage device before the file is considered published.
+     */
+    public void setSync( boolean sync )
+    {
+        this.sync = sync;
+    }
+
+    /**
+     * Sets the message digests that are computed over the data while it is written.
+     */
+    public void setDigestAlgorithms( String... algorithms )
+    {
+        this.digestAlgorithms = StreamDigester.validate( algorithms );
+    }
+
     /**
      * Uploads a file to the specified local path.
      * 
      * @param file The file to upload, must not be {@code null}.
      * @param destination The destination for the uploaded file, must not be {@code null}.
      * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @return The digests of the written data or {@code null} if no digests were requested.
      * @throws IOException If the resource could not be uploaded.
      */
-    public void putFile( final RequestEntity file, final File destination, final IProgressMonitor monitor )
+    public Map<String, String> putFile( final RequestEntity file, final File destination, final IProgressMonitor monitor )
+        throws IOException
+    {
+        String name = "Writing file " + file.toString();
+
+        destination.getAbsoluteFile().getParentFile().mkdirs();
+
+        File target = destination;
+        if ( atomic )
+        {
+            target =
+                File.createTempFile( "." + destination.getName() + "-", ".tmp",
+                                     destination.getAbsoluteFile().getParentFile() );
+        }
+
+        StreamDigester digester = StreamDigester.create( digestAlgorithms );
+
+        boolean published = false;
+        try
+        {
+            // digests need the bytes to pass through the heap, which copying between channels avoids
+            File source = ( digester == null ) ? getSourceFile( file ) : null;
+            if ( source != null )
+            {
+                transfer( source, target, name, monitor );
+            }
+            else
+            {
+                copy( file, target, name, monitor, digester );
+            }
+            if ( atomic )
+            {
+                rename( target, destination );
+            }
+            published = true;
+            return ( digester != null ) ? digester.finish() : null;
+        }
+        finally
+        {
+            if ( atomic && !published )
+            {
+                target.delete();
+            }
+        }
+    }
+
+    private void copy( RequestEntity file, File target, String name, IProgressMonitor monitor,
+                       StreamDigester digester )
         throws IOException
     {
         InputStream is = file.getContent();
 
         MonitoredInputStream mis = new MonitoredInputStream( is, monitor );
-        mis.setName( "Writing file " + file.toString() );
-        mis.setLength( (int) file.getContentLength() );
+        mis.setName( name );
+        mis.setLength( file.getContentLength() );
+        mis.setDigester( digester );
 
         try
         {
-            destination.getParentFile().mkdirs();
-
-            OutputStream os = new FileOutputStream( destination );
+            FileOutputStream os = new FileOutputStream( target );
             try
             {
                 byte[] buffer = new byte[1024 * 8];
@@ -46,30 +133,148 @@ class FilePublisher
                     }
                     os.write( buffer, 0, read );
                 }
+                if ( sync )
+                {
+                    os.getChannel().force( true );
+                }
+                // a failure to close must not go unnoticed, the file would be published incomplete
+                os.close();
             }
             finally
             {
-                try
+                close( os );
+            }
+        }
+        finally
+        {
+            close( mis );
+        }
+    }
+
+    /**
+     * Copies the file between channels, which lets the operating system move the data without passing it through the
+     * heap.
+     */
+    private void transfer( File source, File target, String name, IProgressMonitor monitor )
+        throws IOException
+    {
+        ProgressAggregator progress = new ProgressAggregator( monitor );
+        FileInputStream is = new FileInputStream( source );
+        try
+        {
+            FileOutputStream os = new FileOutputStream( target );
+            try
+            {
+                FileChannel in = is.getChannel();
+                FileChannel out = os.getChannel();
+                long length = in.size();
+                progress.beginTask( name, length );
+                long position = 0;
+                while ( position < length )
                 {
-                    os.close();
+                    if ( progress.isCanceled() )
+                    {
+                        throw new IOException( "Transfer has been canceled" );
+                    }
+                    long n = in.transferTo( position, Math.min( TRANSFER_CHUNK, length - position ), out );
+                    if ( n <= 0 && in.size() <= position )
+                    {
+                        // publishing the partial copy would pass off a truncated file as complete
+                        throw new IOException( "File " + source + " has been truncated to " + in.size()
+                            + " bytes while copying " + length + " bytes" );
+                    }
+                    position += n;
+                    progress.worked( n );
                 }
-                catch ( IOException e )
+                if ( sync )
                 {
-                    // ignored
+                    out.force( true );
                 }
+                os.close();
+            }
+            finally
+            {
+                close( os );
             }
         }
         finally
         {
-            try
+            close( is );
+            progress.done();
+        }
+    }
+
+    /**
+     * Moves the source onto the destination. Some platforms refuse to rename onto an existing file, there the existing
+     * destination is moved aside first and restored if the source can't take its place, so a failure never loses the
+     * previous file. In that case, other processes may briefly miss the destination.
+     */
+    static void rename( File source, File destination )
+        throws IOException
+    {
+        if ( source.renameTo( destination ) )
+        {
+            return;
+        }
+        if ( destination.exists() )
+        {
+            File backup =
+                File.createTempFile( "." + destination.getName() + "-", ".old",
+                                     destination.getAbsoluteFile().getParentFile() );
+            // the backup merely reserves a unique name
+            backup.delete();
+            if ( destination.renameTo( backup ) )
             {
-                mis.close();
+                if ( source.renameTo( destination ) )
+                {
+                    backup.delete();
+                    return;
+                }
+                if ( !backup.renameTo( destination ) )
+                {
+                    throw new IOException( "Could not move " + source + " to " + destination
+                        + ", the previous file has been kept as " + backup );
+                }
             }
-            catch ( IOException e )
+        }
+        throw new IOException( "Could not move " + source + " to " + destination );
+    }
+
+    private static File getSourceFile( RequestEntity file )
+    {
+        if ( file instanceof FileRequestEntity )
+        {
+            File source = ( (FileRequestEntity) file ).getFile();
+            if ( source.isFile() && source.length() == file.getContentLength() )
             {
-                // ignored
+                return source;
             }
         }
+        return null;
+    }
+
+    private static void close( InputStream is )
+    {
+        try
+        {
+            is.close();
+        }
+        catch ( IOException e )
+        {
+            // ignored
+        }
+    }
+
+    private static void close( OutputStream os )
+    {
+        try
+        {
+            os.close();
+        }
+        catch ( IOException e )
+        {
+            // ignored
+        }
     }
 
 }
@@ -32,6 +32,16 @@ public class FileRequestEntity
         return file.length();
     }
 
+    /**
+     * Gets the file backing this entity, e.g. to let the HTTP client send it without copying it through the heap.
+     * 
+     * @return The file backing this entity, never {@code null}.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
     public String getName()
     {
         return file.toString();
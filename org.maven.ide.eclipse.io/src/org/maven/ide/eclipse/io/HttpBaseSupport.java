@@ -5,17 +5,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.Map;
 
 import org.eclipse.core.net.proxy.IProxyData;
 import org.eclipse.core.net.proxy.IProxyService;
+import org.maven.ide.eclipse.authentication.AuthFacade;
 import org.maven.ide.eclipse.authentication.IAuthData;
 import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.io.internal.AuthCache;
+import org.maven.ide.eclipse.io.internal.BandwidthLimiter;
+import org.maven.ide.eclipse.io.internal.HttpClientRegistry;
+import org.maven.ide.eclipse.io.internal.ProxyCache;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.FluentCaseInsensitiveStringsMap;
 import com.ning.http.client.HttpResponseBodyPart;
 import com.ning.http.client.HttpResponseHeaders;
@@ -29,88 +35,224 @@ public class HttpBaseSupport
 
     private final Logger log = LoggerFactory.getLogger( HttpBaseSupport.class );
 
-    private static final int DEFAULT_TIMEOUT = 30 * 1000;
-
     protected Realm realm = null;
 
     protected ProxyServer proxyServer = null;
 
-    protected AsyncHttpClientConfig.Builder init( final URI url, final IAuthService authService,
-                                                  final IProxyService proxyService, Integer timeoutInMilliseconds )
-        throws IOException
+    /**
+     * The timeouts of the request prepared by the last call to {@code init()}.
+     */
+    protected TimeoutPolicy timeouts = TimeoutPolicy.DEFAULT;
+
+    /**
+     * The priority of the request prepared by the last call to {@code init()}.
+     */
+    protected TransferPriority priority = TransferPriority.NORMAL;
+
+    private RetryPolicy retryPolicy;
+
+    private TimeoutPolicy timeoutPolicy;
+
+    private TransferPriority transferPriority;
+
+    private String[] digestAlgorithms = new String[0];
+
+    /**
+     * Sets the policy for repeating requests after transient failures.
+     * 
+     * @param retryPolicy The retry policy, {@code null} to use the policy registered for the URL.
+     */
+    public void setRetryPolicy( RetryPolicy retryPolicy )
+    {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Sets the timeouts of requests.
+     * 
+     * @param timeoutPolicy The timeout policy, {@code null} to use the policy registered for the URL.
+     */
+    public void setTimeoutPolicy( TimeoutPolicy timeoutPolicy )
+    {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    /**
+     * Sets the priority of requests among the requests waiting for a connection to the same host.
+     * 
+     * @param priority The priority, {@code null} to use the priority of the calling thread.
+     * @see TransferScheduler#setPriority(TransferPriority)
+     */
+    public void setPriority( TransferPriority priority )
+    {
+        this.transferPriority = priority;
+    }
+
+    /**
+     * Sets the message digests that are computed over the transferred resource data as it passes through, so the
+     * checksums of a resource are available without reading it a second time.
+     * 
+     * @param algorithms The names of the digest algorithms, e.g. {@code "SHA-1"}, none to compute no digests.
+     * @throws IllegalArgumentException If an algorithm is not supported.
+     */
+    public void setDigestAlgorithms( String... algorithms )
+    {
+        this.digestAlgorithms = StreamDigester.validate( algorithms );
+    }
+
+    protected String[] getDigestAlgorithms()
     {
-        IAuthData authData = null;
-        if ( authService != null )
+        return digestAlgorithms;
+    }
+
+    /**
+     * Applies the retry, timeout, priority and digest settings of this instance to another one that makes requests on
+     * its behalf.
+     */
+    protected void copySettingsTo( HttpBaseSupport other )
+    {
+        other.retryPolicy = retryPolicy;
+        other.timeoutPolicy = timeoutPolicy;
+        other.transferPriority = transferPriority;
+        other.digestAlgorithms = digestAlgorithms;
+    }
+
+    /**
+     * Gets the policy for repeating requests to the specified URL after transient failures.
+     * 
+     * @return The retry policy, never {@code null}.
+     */
+    protected RetryPolicy getRetryPolicy( URI url )
+    {
+        if ( retryPolicy != null )
         {
-            authData = authService.select( url );
+            return retryPolicy;
         }
-        return init( url, authData, proxyService, timeoutInMilliseconds );
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        return ( plugin != null ) ? plugin.getRetryPolicy( url.toString() ) : RetryPolicy.NONE;
     }
 
-    protected AsyncHttpClientConfig.Builder init( final URI url, final IAuthData authData,
-                                                  final IProxyService proxyService, Integer timeoutInMilliseconds )
-        throws IOException
+    /**
+     * Gets the timeouts of requests to the specified URL.
+     * 
+     * @return The timeout policy, never {@code null}.
+     */
+    protected TimeoutPolicy getTimeoutPolicy( URI url )
     {
-        if ( timeoutInMilliseconds == null )
+        if ( timeoutPolicy != null )
         {
-            timeoutInMilliseconds = DEFAULT_TIMEOUT;
+            return timeoutPolicy;
         }
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        return ( plugin != null ) ? plugin.getTimeoutPolicy( url.toString() ) : TimeoutPolicy.DEFAULT;
+    }
 
-        log.debug( "Using timeout={} ms", timeoutInMilliseconds );
-        AsyncHttpClientConfig.Builder confBuilder =
-            new AsyncHttpClientConfig.Builder().setRequestTimeoutInMs( timeoutInMilliseconds ).setCompressionEnabled( true );
+    /**
+     * Gets the throttle for transfers of the specified URL.
+     * 
+     * @return The throttle or {@code null} if not running inside OSGi.
+     */
+    protected BandwidthLimiter.Throttle getThrottle( URI url )
+    {
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        return ( plugin != null ) ? plugin.getBandwidthLimiter().getThrottle( url ) : null;
+    }
 
-        IProxyData proxy = selectProxy( url, proxyService );
-        if ( proxy != null && proxy.getHost() != null )
-        {
-            int port = resolvePort( proxy.getPort(), proxy.getType() );
-            Protocol protocol;
-            if ( proxy.getType().equals( IProxyData.HTTP_PROXY_TYPE ) )
-            {
-                protocol = Protocol.HTTP;
-            }
-            else if ( proxy.getType().equals( IProxyData.HTTPS_PROXY_TYPE ) )
-            {
-                protocol = Protocol.HTTPS;
-            }
-            else if ( proxy.getType().equals( IProxyData.SOCKS_PROXY_TYPE ) )
-            {
-                // Not supported yet
-                throw new RuntimeException( "SOCKS proxy not supported yet." );
-            }
-            else
-            {
-                throw new RuntimeException( "Unknown Proxy type: " + proxy.getType() );
-            }
+    /**
+     * Resolves the credentials and proxy for the specified URL and leases a shared client for the request. The client
+     * must be given back via {@link #releaseClient(AsyncHttpClient)} once the request has completed.
+     * 
+     * @param timeoutInMilliseconds The time the request may go without progress, {@code null} for the idle timeout of
+     *            the {@link TimeoutPolicy} of the URL.
+     */
+    protected AsyncHttpClient init( final URI url, final IAuthService authService, final IProxyService proxyService,
+                                    Integer timeoutInMilliseconds, int maxRedirects )
+        throws IOException
+    {
+        IAuthData authData = selectAuthData( url, authService );
+        return init( url, authData, proxyService, timeoutInMilliseconds, maxRedirects );
+    }
 
-            if ( proxy.isRequiresAuthentication() )
-            {
-                proxyServer = new ProxyServer( protocol, proxy.getHost(), port, proxy.getUserId(), proxy.getPassword() );
-                log.debug( "Connecting to {} via proxy {} and authentication", url, proxyServer.toString() );
-            }
-            else
-            {
-                proxyServer = new ProxyServer( protocol, proxy.getHost(), port );
-                log.debug( "Connecting to {} via proxy {} and no authentication", url, proxyServer.toString() );
-            }
+    protected AsyncHttpClient init( final URI url, final IAuthData authData, final IProxyService proxyService,
+                                    Integer timeoutInMilliseconds, int maxRedirects )
+        throws IOException
+    {
+        timeouts = getTimeoutPolicy( url ).withTimeout( timeoutInMilliseconds );
+        priority = ( transferPriority != null ) ? transferPriority : TransferScheduler.getPriority();
+
+        log.debug( "Using {}", timeouts );
+
+        realm = null;
+        proxyServer = getProxyServer( url, proxyService );
+
+        if ( proxyServer != null )
+        {
+            log.debug( "Connecting to {} via proxy {}", url, proxyServer );
         }
         else
         {
             log.debug( "Connecting to {} without proxy", url );
         }
 
+        this.realm = createRealm( authData );
+        // LogManager.setProvider( new Slf4jLoggerProvider() );
+
+        HttpClientRegistry.Key key =
+            new HttpClientRegistry.Key( timeouts.getConnectTimeout(), timeouts.getDeadline(), maxRedirects,
+                                        proxyServer );
+        HttpClientRegistry registry = getClientRegistry();
+        if ( registry != null )
+        {
+            return registry.acquire( key );
+        }
+        // not running inside OSGi, fall back to a client of our own
+        return new AsyncHttpClient( key.newConfig().build() );
+    }
+
+    /**
+     * Creates the realm that authenticates requests with the specified credentials.
+     * 
+     * @param authData The credentials, may be {@code null}.
+     * @return The realm or {@code null} if there are no credentials.
+     */
+    protected static Realm createRealm( IAuthData authData )
+    {
         if ( authData != null )
         {
             if ( ( authData.getUsername() != null && authData.getUsername().length() > 0 )
                 || ( authData.getPassword() != null && authData.getPassword().length() > 0 ) )
             {
-                this.realm =
-                    new Realm.RealmBuilder().setPassword( authData.getPassword() ).setUsePreemptiveAuth( true ).setPrincipal( authData.getUsername() ).build();
+                return new Realm.RealmBuilder().setPassword( authData.getPassword() ).setUsePreemptiveAuth( true ).setPrincipal( authData.getUsername() ).build();
             }
         }
-        // LogManager.setProvider( new Slf4jLoggerProvider() );
-        
-        return confBuilder;
+        return null;
+    }
+
+    /**
+     * Gives back a client obtained from {@code init()}.
+     * 
+     * @param client The client to release, may be {@code null}.
+     */
+    protected static void releaseClient( AsyncHttpClient client )
+    {
+        if ( client != null )
+        {
+            HttpClientRegistry registry = getClientRegistry();
+            if ( registry != null )
+            {
+                registry.release( client );
+            }
+            else
+            {
+                client.close();
+            }
+        }
+    }
+
+    private static HttpClientRegistry getClientRegistry()
+    {
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        return ( plugin != null ) ? plugin.getHttpClientRegistry() : HttpClientRegistry.getStandalone();
     }
 
     public static com.ning.http.client.AsyncHandler.STATE handleStatus( HttpResponseStatus responseStatus )
@@ -124,6 +266,7 @@ public class HttpBaseSupport
         {
             if ( HttpURLConnection.HTTP_UNAUTHORIZED == status )
             {
+                evictAuthData( URI.create( url ) );
                 return new UnauthorizedException( "HTTP status code " + status + ": "
                     + responseStatus.getStatusText() + ": " + url );
             }
@@ -146,6 +289,116 @@ public class HttpBaseSupport
         return null;
     }
     
+    /**
+     * Gets the authentication data for the specified URL. The selection of the authentication service is cached per
+     * directory.
+     * 
+     * @return The authentication data or {@code null} if none.
+     */
+    static IAuthData selectAuthData( URI url, IAuthService authService )
+    {
+        if ( authService == null )
+        {
+            return null;
+        }
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        AuthCache cache = ( plugin != null ) ? plugin.getAuthCache() : null;
+        if ( cache != null )
+        {
+            AuthCache.Entry entry = cache.get( authService, url );
+            if ( entry != null )
+            {
+                return entry.getAuthData();
+            }
+        }
+        // a modification during the selection must not be masked by caching what was selected before it
+        long modificationCount = AuthFacade.getModificationCount();
+        IAuthData authData = authService.select( url );
+        if ( cache != null )
+        {
+            cache.put( authService, url, authData, modificationCount );
+        }
+        return authData;
+    }
+
+    /**
+     * Discards the cached authentication data for the server of the specified URL, e.g. after the server rejected it.
+     */
+    static void evictAuthData( URI url )
+    {
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        if ( plugin != null )
+        {
+            plugin.getAuthCache().evict( url );
+        }
+    }
+
+    /**
+     * Gets the proxy to use for the specified URL. The decision of the proxy service is cached per server.
+     * 
+     * @return The proxy to use or {@code null} to connect directly.
+     */
+    private ProxyServer getProxyServer( URI url, IProxyService proxyService )
+    {
+        if ( proxyService == null )
+        {
+            return null;
+        }
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        ProxyCache cache = ( plugin != null ) ? plugin.getProxyCache() : null;
+        if ( cache != null )
+        {
+            ProxyCache.Entry entry = cache.get( proxyService, url );
+            if ( entry != null )
+            {
+                return entry.getProxyServer();
+            }
+        }
+        ProxyServer proxyServer = createProxyServer( url, proxyService );
+        if ( cache != null )
+        {
+            cache.put( proxyService, url, proxyServer );
+        }
+        return proxyServer;
+    }
+
+    private ProxyServer createProxyServer( URI url, IProxyService proxyService )
+    {
+        IProxyData proxy = selectProxy( url, proxyService );
+        if ( proxy != null && proxy.getHost() != null )
+        {
+            int port = resolvePort( proxy.getPort(), proxy.getType() );
+            Protocol protocol;
+            if ( proxy.getType().equals( IProxyData.HTTP_PROXY_TYPE ) )
+            {
+                protocol = Protocol.HTTP;
+            }
+            else if ( proxy.getType().equals( IProxyData.HTTPS_PROXY_TYPE ) )
+            {
+                protocol = Protocol.HTTPS;
+            }
+            else if ( proxy.getType().equals( IProxyData.SOCKS_PROXY_TYPE ) )
+            {
+                // Not supported yet
+                throw new RuntimeException( "SOCKS proxy not supported yet." );
+            }
+            else
+            {
+                throw new RuntimeException( "Unknown Proxy type: " + proxy.getType() );
+            }
+
+            if ( proxy.isRequiresAuthentication() )
+            {
+                return new ProxyServer( protocol, proxy.getHost(), port, proxy.getUserId(), proxy.getPassword() );
+            }
+            else
+            {
+                return new ProxyServer( protocol, proxy.getHost(), port );
+            }
+        }
+        return null;
+    }
+
     private IProxyData selectProxy( URI url, IProxyService proxyService )
     {
         if ( proxyService != null && proxyService.isProxiesEnabled() )
@@ -197,6 +450,7 @@ public class HttpBaseSupport
     {
         String encoding;
         private AsyncHttpClient client;
+        private StreamDigester digester;
 
         public HttpInputStream( InputStream is, String encoding, AsyncHttpClient httpClient )
         {
@@ -211,10 +465,9 @@ public class HttpBaseSupport
         {
             try
             {
-                if ( client != null )
-                {
-                    client.close();
-                }
+                AsyncHttpClient client = this.client;
+                this.client = null;
+                releaseClient( client );
             }
             finally
             {
@@ -227,6 +480,23 @@ public class HttpBaseSupport
             return encoding;
         }
 
+        void setDigester( StreamDigester digester )
+        {
+            this.digester = digester;
+        }
+
+        /**
+         * Gets the digests of the data read from this stream, as requested via
+         * {@link UrlFetcher#setDigestAlgorithms(String...)}.
+         * 
+         * @return The digests as lower case hex strings, keyed by algorithm name, or {@code null} if no digests were
+         *         requested or the stream has not been read to its end yet.
+         */
+        public Map<String, String> getDigests()
+        {
+            return ( digester != null ) ? digester.getDigests() : null;
+        }
+
     }
 
     protected abstract class BaseAsyncHandler
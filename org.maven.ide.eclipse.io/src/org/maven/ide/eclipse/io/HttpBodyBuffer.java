@@ -0,0 +1,414 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+
+/**
+ * Hands the body parts received by the HTTP client over to the thread consuming the response. The received buffers
+ * are queued as-is, i.e. without copying them into an intermediate pipe. The producer is an I/O thread of the HTTP
+ * client which serves other connections as well, so it is never held back: the HTTP client offers no way to suspend the
+ * reads of a connection, hence data the consumer has not caught up with is kept. Up to a byte budget it is kept in
+ * memory, anything beyond is appended to a temporary file which is deleted once it has been read or the stream is
+ * closed.
+ */
+class HttpBodyBuffer
+    extends InputStream
+{
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+
+    private final long capacity;
+
+    private long buffered;
+
+    private byte[] current;
+
+    private int position;
+
+    private boolean complete;
+
+    private boolean closed;
+
+    private InputStream remainder;
+
+    private File spillFile;
+
+    private RandomAccessFile spill;
+
+    private long spillRead;
+
+    private long spillWritten;
+
+    private boolean writing;
+
+    public HttpBodyBuffer( long capacity )
+    {
+        this.capacity = ( capacity > 0 ) ? capacity : DEFAULT_CAPACITY;
+    }
+
+    /**
+     * Queues the specified body part. This method does not block, data exceeding the byte budget is written to a
+     * temporary file. The file is written without holding the lock of this buffer, so the consumer can meanwhile go on
+     * reading what is already there.
+     *
+     * @param data The data received, must not be {@code null}. Its backing array must not be modified afterwards.
+     * @return {@code true} if the data was queued, {@code false} if the consumer is no longer interested in the data
+     *         and the transfer should be aborted.
+     * @throws IOException If the data could not be written to the temporary file.
+     */
+    public boolean offer( ByteBuffer data )
+        throws IOException
+    {
+        int length = data.remaining();
+        FileChannel channel;
+        long offset;
+        synchronized ( this )
+        {
+            if ( length <= 0 )
+            {
+                return !closed;
+            }
+            if ( closed || complete )
+            {
+                return false;
+            }
+            // always keep at least one chunk in memory, even if it exceeds the budget on its own, and never put data
+            // in memory while older data still waits in the file
+            if ( spillRead >= spillWritten && ( buffered <= 0 || buffered + length <= capacity ) )
+            {
+                chunks.addLast( toArray( data ) );
+                buffered += length;
+                notifyAll();
+                return true;
+            }
+            channel = ( spill != null ) ? spill.getChannel() : null;
+            offset = spillWritten;
+            writing = true;
+        }
+
+        File createdFile = null;
+        RandomAccessFile created = null;
+        boolean written = false;
+        try
+        {
+            if ( channel == null )
+            {
+                createdFile = File.createTempFile( "s2io", ".body" );
+                created = new RandomAccessFile( createdFile, "rw" );
+                channel = created.getChannel();
+            }
+            for ( long position = offset; data.hasRemaining(); )
+            {
+                position += channel.write( data, position );
+            }
+            written = true;
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                writing = false;
+                if ( created != null )
+                {
+                    spillFile = createdFile;
+                    spill = created;
+                }
+                else if ( createdFile != null )
+                {
+                    createdFile.delete();
+                }
+                if ( closed )
+                {
+                    deleteSpill();
+                }
+                else if ( written )
+                {
+                    spillWritten = offset + length;
+                    notifyAll();
+                }
+            }
+        }
+        return written && !isClosed();
+    }
+
+    private static byte[] toArray( ByteBuffer data )
+    {
+        if ( data.hasArray() && data.arrayOffset() == 0 && data.position() == 0
+            && data.remaining() == data.array().length )
+        {
+            return data.array();
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.get( bytes );
+        return bytes;
+    }
+
+    /**
+     * Signals the end of the data, either because the response has been fully received or because the transfer failed.
+     */
+    public synchronized void complete()
+    {
+        complete = true;
+        notifyAll();
+    }
+
+    /**
+     * Signals that no more body parts will be received and that the rest of the data is to be read from the specified
+     * stream, e.g. because the server confirmed that a cached copy is still valid.
+     *
+     * @param remainder The stream providing the rest of the data, must not be {@code null}. It is closed along with
+     *            this stream.
+     */
+    public synchronized void complete( InputStream remainder )
+    {
+        if ( closed )
+        {
+            try
+            {
+                remainder.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+            return;
+        }
+        this.remainder = remainder;
+        complete();
+    }
+
+    /**
+     * @return {@code true} if the consumer closed the stream.
+     */
+    public synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        byte[] b = new byte[1];
+        int n = read( b, 0, 1 );
+        return ( n < 0 ) ? -1 : ( b[0] & 0xFF );
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len )
+        throws IOException
+    {
+        int total = 0;
+        FileChannel channel;
+        long offset;
+        int count;
+        synchronized ( this )
+        {
+            if ( len <= 0 )
+            {
+                return 0;
+            }
+            if ( !awaitData() )
+            {
+                return ( remainder != null ) ? remainder.read( b, off, len ) : -1;
+            }
+
+            while ( total < len )
+            {
+                if ( current == null )
+                {
+                    if ( chunks.isEmpty() )
+                    {
+                        break;
+                    }
+                    // keep filling the caller's buffer from what has already been received
+                    current = chunks.getFirst();
+                }
+                int n = Math.min( len - total, current.length - position );
+                System.arraycopy( current, position, b, off + total, n );
+                position += n;
+                total += n;
+                if ( position >= current.length )
+                {
+                    next();
+                }
+            }
+            if ( total >= len || spillRead >= spillWritten )
+            {
+                return total;
+            }
+            // the data in the file follows the data in memory
+            channel = spill.getChannel();
+            offset = spillRead;
+            count = (int) Math.min( len - total, spillWritten - spillRead );
+        }
+
+        // the producer only appends beyond the published end of the file, so the range is safe to read unlocked
+        int n = channel.read( ByteBuffer.wrap( b, off + total, count ), offset );
+        if ( n > 0 )
+        {
+            synchronized ( this )
+            {
+                if ( closed )
+                {
+                    throw new IOException( "Stream closed" );
+                }
+                spillRead += n;
+                truncateSpill();
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long skip( long n )
+        throws IOException
+    {
+        long skipped = 0;
+        while ( skipped < n )
+        {
+            if ( !awaitData() )
+            {
+                return ( remainder != null ) ? skipped + remainder.skip( n - skipped ) : skipped;
+            }
+            if ( current == null )
+            {
+                long step = Math.min( n - skipped, spillWritten - spillRead );
+                spillRead += step;
+                skipped += step;
+                truncateSpill();
+                continue;
+            }
+            int step = (int) Math.min( n - skipped, current.length - position );
+            position += step;
+            skipped += step;
+            if ( position >= current.length )
+            {
+                next();
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available()
+        throws IOException
+    {
+        if ( current == null && spillRead >= spillWritten )
+        {
+            return ( remainder != null && chunks.isEmpty() ) ? remainder.available() : 0;
+        }
+        return (int) Math.min( Integer.MAX_VALUE, buffered - position + spillWritten - spillRead );
+    }
+
+    @Override
+    public synchronized void close()
+        throws IOException
+    {
+        closed = true;
+        chunks.clear();
+        current = null;
+        buffered = 0;
+        notifyAll();
+        deleteSpill();
+        if ( remainder != null )
+        {
+            remainder.close();
+        }
+    }
+
+    private boolean awaitData()
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Stream closed" );
+        }
+        while ( current == null )
+        {
+            if ( !chunks.isEmpty() )
+            {
+                current = chunks.getFirst();
+                position = 0;
+            }
+            else if ( spillRead < spillWritten )
+            {
+                return true;
+            }
+            else if ( complete )
+            {
+                deleteSpill();
+                return false;
+            }
+            else
+            {
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new InterruptedIOException( "Transfer was interrupted" );
+                }
+                if ( closed )
+                {
+                    throw new IOException( "Stream closed" );
+                }
+            }
+        }
+        return true;
+    }
+
+    private void next()
+    {
+        chunks.removeFirst();
+        buffered -= current.length;
+        current = null;
+        position = 0;
+    }
+
+    /**
+     * Starts over at the beginning of the temporary file once all data written to it has been read, so the file does
+     * not grow beyond the amount of data the consumer lags behind. This waits for the next opportunity while the
+     * producer is appending to the file.
+     */
+    private void truncateSpill()
+        throws IOException
+    {
+        if ( spillRead >= spillWritten && !writing && spill != null )
+        {
+            spillRead = 0;
+            spillWritten = 0;
+            spill.setLength( 0 );
+        }
+    }
+
+    private void deleteSpill()
+    {
+        // while the producer is appending to the file, it deletes the file itself once done
+        if ( spill != null && !writing )
+        {
+            try
+            {
+                spill.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+            spillFile.delete();
+            spill = null;
+            spillFile = null;
+            spillRead = 0;
+            spillWritten = 0;
+        }
+    }
+}
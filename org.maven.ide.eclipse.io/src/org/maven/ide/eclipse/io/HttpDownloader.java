@@ -0,0 +1,1270 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.net.proxy.IProxyService;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.io.internal.BandwidthLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.FluentCaseInsensitiveStringsMap;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+
+/**
+ * Downloads large resources over several connections at once. The resource is probed with a HEAD request first; if the
+ * server supports byte ranges, the resource is split into segments that are fetched concurrently and written to their
+ * position in a file. Resources that are too small or servers that don't support ranges are fetched with a single
+ * request.
+ * <p>
+ * While a bandwidth limit applies to the host, the data of a running request can't be slowed down. The resource is
+ * then fetched in byte ranges of about a second worth of data each, even over a single connection, and every range is
+ * only requested once the bandwidth used by the previous ones has been paid off.
+ */
+public class HttpDownloader
+    extends HttpBaseSupport
+{
+    public static final int DEFAULT_CONNECTIONS = 4;
+
+    /**
+     * Resources smaller than twice this size are not worth splitting.
+     */
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final int MAX_REDIRECTS = 3;
+
+    /**
+     * The smallest byte range requested while a bandwidth limit applies, to keep the overhead of the requests low.
+     */
+    private static final long MIN_PACED_RANGE_SIZE = 16 * 1024;
+
+    /**
+     * How often the journal of a resumable download is updated.
+     */
+    private static final long JOURNAL_INTERVAL = 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger( HttpDownloader.class );
+
+    private int connections = DEFAULT_CONNECTIONS;
+
+    private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+    private HttpFetcher fetcher;
+
+    /**
+     * Sets the maximum number of concurrent range requests per download.
+     *
+     * @param connections The number of connections, values less than {@code 2} disable range downloads.
+     */
+    public void setConnections( int connections )
+    {
+        this.connections = Math.max( 1, connections );
+    }
+
+    /**
+     * Sets the minimum size of a segment, i.e. of the byte range fetched by a single request.
+     *
+     * @param minSegmentSize The minimum segment size in bytes.
+     */
+    public void setMinSegmentSize( long minSegmentSize )
+    {
+        this.minSegmentSize = Math.max( 1, minSegmentSize );
+    }
+
+    /**
+     * Sets the fetcher that opens the streams of resources which are not split into byte ranges.
+     *
+     * @param fetcher The fetcher, {@code null} to use a fetcher with the retry, timeout, priority and digest settings
+     *            of this downloader.
+     */
+    public void setFetcher( HttpFetcher fetcher )
+    {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Downloads the specified resource into a file. The data is received into a {@code .part} file next to the target
+     * which is moved into place once the download is complete. The progress is recorded in a journal, so that calling
+     * this method again after a failed download resumes where the previous attempt stopped, provided the resource
+     * didn't change in the meantime. A download that was split into byte ranges is resumed with the same ranges.
+     *
+     * @param url The resource to download, must not be {@code null}.
+     * @param target The file to write the resource to, must not be {@code null}. An existing file is overwritten.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be
+     *            {@code null}.
+     * @throws IOException If the resource could not be downloaded.
+     */
+    public void download( final URI url, final File target, final IProgressMonitor monitor,
+                          final IAuthService authService, final IProxyService proxyService )
+        throws IOException
+    {
+        AsyncHttpClient httpClient = init( url, authService, proxyService, null, MAX_REDIRECTS );
+        try
+        {
+            target.getAbsoluteFile().getParentFile().mkdirs();
+            File part = DownloadJournal.getPartFile( target );
+            DownloadJournal journal = DownloadJournal.load( target, url.toString() );
+            if ( !journal.isResumable( part ) )
+            {
+                journal.reset();
+            }
+
+            boolean paced = isPaced( url );
+            Probe probe = null;
+            int segments = 1;
+            if ( journal.isSegmented() )
+            {
+                probe = probe( httpClient, url );
+                if ( !probe.acceptsRanges || probe.length != journal.getLength()
+                    || !journal.getValidator().equals( probe.getValidator() ) )
+                {
+                    log.debug( "Restarting download of {}, the partial data does not match the resource", url );
+                    journal.reset();
+                    segments = getSegmentCount( probe );
+                }
+            }
+            else if ( ( connections > 1 || paced ) && journal.getReceived() <= 0 )
+            {
+                probe = probe( httpClient, url );
+                segments = getSegmentCount( probe );
+            }
+            if ( !journal.isSegmented() && segments < 2 && !( paced && isRangeable( probe ) ) )
+            {
+                log.debug( "Downloading {} with a single request", url );
+                downloadResumable( httpClient, url, target, journal, monitor );
+                return;
+            }
+
+            RangeAssembly assembly;
+            if ( journal.isSegmented() )
+            {
+                log.debug( "Resuming download of {} in byte ranges", url );
+                assembly =
+                    new RangeAssembly( part, journal.getLength(), journal.getSegmentStarts(),
+                                       journal.getSegmentsReceived() );
+            }
+            else
+            {
+                log.debug( "Downloading {} with {} range requests", url, segments );
+                journal.setValidators( probe.etag, probe.lastModified );
+                journal.setLength( probe.length );
+                assembly = new RangeAssembly( part, probe.length, split( probe.length, segments ), new long[segments] );
+            }
+            // a resource without validator can't be resumed, so there is no point in keeping its data
+            assembly.journal = ( journal.getValidator() != null ) ? journal : null;
+            try
+            {
+                assembly.start( httpClient, url, probe );
+                assembly.await( monitor, "Downloading " + url );
+            }
+            catch ( IOException e )
+            {
+                // don't leave a file with holes behind unless the journal knows where they are
+                assembly.deleteOnClose = assembly.journal == null;
+                throw e;
+            }
+            finally
+            {
+                assembly.close();
+            }
+            FilePublisher.rename( part, target );
+            journal.delete();
+        }
+        finally
+        {
+            releaseClient( httpClient );
+        }
+    }
+
+    private void downloadResumable( AsyncHttpClient httpClient, URI url, File target, DownloadJournal journal,
+                                    IProgressMonitor monitor )
+        throws IOException
+    {
+        File part = DownloadJournal.getPartFile( target );
+
+        for ( int attempt = 0;; attempt++ )
+        {
+            ResumeHandler handler = new ResumeHandler( url, part, journal );
+            try
+            {
+                AsyncHttpClient.BoundRequestBuilder requestBuilder =
+                    httpClient.prepareGet( url.toString() ).setRealm( realm ).setProxyServer( proxyServer );
+                if ( journal.getReceived() > 0 )
+                {
+                    log.debug( "Resuming download of {} at byte {}", url, journal.getReceived() );
+                    requestBuilder.setHeader( "Range", "bytes=" + journal.getReceived() + "-" );
+                    requestBuilder.setHeader( "If-Range", journal.getValidator() );
+                }
+                handler.recorder.attemptStarted();
+                Future<String> future =
+                    TransferWatchdog.watch( handler, url, timeouts, priority ).execute( requestBuilder );
+                handler.await( future, monitor, "Downloading " + url );
+            }
+            finally
+            {
+                handler.close();
+            }
+
+            if ( handler.rangeNotSatisfiable )
+            {
+                if ( journal.getLength() >= 0 && journal.getReceived() == journal.getLength() )
+                {
+                    // everything had already been received
+                    break;
+                }
+                if ( attempt > 0 )
+                {
+                    throw new IOException( "HTTP status code 416: Requested Range Not Satisfiable: " + url );
+                }
+                log.debug( "Restarting download of {}, the partial data does not match the resource", url );
+                journal.reset();
+                continue;
+            }
+            handler.checkForError();
+            break;
+        }
+
+        FilePublisher.rename( part, target );
+        journal.delete();
+    }
+
+    /**
+     * Opens a stream to the specified resource. If the resource is fetched in segments, these are reassembled in order
+     * through a temporary file which is deleted once the stream is closed.
+     *
+     * @param url The resource to access, must not be {@code null}.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be
+     *            {@code null}.
+     * @return The input stream to the specified resource, never {@code null}.
+     * @throws IOException If the resource could not be opened.
+     */
+    public HttpInputStream openStream( final URI url, final IProgressMonitor monitor, final IAuthService authService,
+                                       final IProxyService proxyService )
+        throws IOException
+    {
+        AsyncHttpClient httpClient = init( url, authService, proxyService, null, MAX_REDIRECTS );
+        boolean handedOver = false;
+        try
+        {
+            Probe probe = probe( httpClient, url );
+            int segments = getSegmentCount( probe );
+            if ( segments < 2 && !( isPaced( url ) && isRangeable( probe ) ) )
+            {
+                log.debug( "Opening {} with a single request", url );
+                HttpFetcher fetcher = this.fetcher;
+                if ( fetcher == null )
+                {
+                    fetcher = new HttpFetcher();
+                    copySettingsTo( fetcher );
+                }
+                return fetcher.openStream( url, monitor, authService, proxyService );
+            }
+
+            log.debug( "Opening {} with {} range requests", url, segments );
+            File tmp = File.createTempFile( "s2io", ".part" );
+            RangeAssembly assembly =
+                new RangeAssembly( tmp, probe.length, split( probe.length, segments ), new long[segments] );
+            assembly.deleteOnClose = true;
+            try
+            {
+                assembly.start( httpClient, url, probe );
+            }
+            catch ( IOException e )
+            {
+                assembly.close();
+                throw e;
+            }
+
+            MonitoredInputStream mis = new MonitoredInputStream( new AssembledInputStream( assembly ), monitor );
+            mis.setName( "Downloading " + url );
+            mis.setLength( probe.length );
+            StreamDigester digester = StreamDigester.create( getDigestAlgorithms() );
+            mis.setDigester( digester );
+
+            handedOver = true;
+            HttpInputStream his =
+                new HttpInputStream( mis, probe.encoding != null ? probe.encoding : "UTF-8", httpClient );
+            his.setDigester( digester );
+            return his;
+        }
+        finally
+        {
+            if ( !handedOver )
+            {
+                releaseClient( httpClient );
+            }
+        }
+    }
+
+    /**
+     * Tells whether a bandwidth limit applies to the specified resource, so it should be fetched in byte ranges.
+     */
+    boolean isPaced( URI url )
+    {
+        BandwidthLimiter.Throttle throttle = getThrottle( url );
+        return throttle != null && throttle.isLimited();
+    }
+
+    private static boolean isRangeable( Probe probe )
+    {
+        return probe != null && probe.acceptsRanges && probe.length > 0;
+    }
+
+    private int getSegmentCount( Probe probe )
+    {
+        if ( connections < 2 || !probe.acceptsRanges || probe.length < 2 * minSegmentSize )
+        {
+            return 1;
+        }
+        return (int) Math.min( connections, probe.length / minSegmentSize );
+    }
+
+    /**
+     * Splits a resource into byte ranges of equal size.
+     *
+     * @return The offsets at which the ranges start, followed by the length of the resource.
+     */
+    private static long[] split( long length, int segments )
+    {
+        long[] starts = new long[segments + 1];
+        long size = length / segments;
+        for ( int i = 0; i < segments; i++ )
+        {
+            starts[i] = i * size;
+        }
+        starts[segments] = length;
+        return starts;
+    }
+
+    private Probe probe( AsyncHttpClient httpClient, URI url )
+        throws IOException
+    {
+        Probe probe = new Probe( url );
+        try
+        {
+            AsyncHttpClient.BoundRequestBuilder requestBuilder =
+                httpClient.prepareHead( url.toString() ).setRealm( realm ).setProxyServer( proxyServer );
+            probe.recorder.attemptStarted();
+            TransferWatchdog.watch( probe, url, timeouts, priority ).execute( requestBuilder ).get();
+        }
+        catch ( InterruptedException e )
+        {
+            probe.onThrowable( e );
+            throw new InterruptedIOException( "Transfer was interrupted" );
+        }
+        catch ( ExecutionException e )
+        {
+            probe.onThrowable( e.getCause() );
+            throw (IOException) new IOException( e.getMessage() ).initCause( e.getCause() );
+        }
+        finally
+        {
+            probe.recorder.finished( probe.status, probe.exception );
+        }
+        if ( probe.exception != null )
+        {
+            if ( probe.exception instanceof IOException )
+            {
+                throw (IOException) probe.exception;
+            }
+            throw (IOException) new IOException( probe.exception.getMessage() ).initCause( probe.exception );
+        }
+        return probe;
+    }
+
+    /**
+     * Receives a resource into the {@code .part} file, appending to the data received by a previous attempt if the
+     * server honours the range request. A {@code 200} response means the resource changed (or ranges are not
+     * supported), so the download starts over.
+     */
+    private final class ResumeHandler
+        extends BaseAsyncHandler
+    {
+        private final URI url;
+
+        private final DownloadJournal journal;
+
+        private final RandomAccessFile raf;
+
+        private final FileChannel channel;
+
+        private volatile long position;
+
+        private long saved;
+
+        private int status;
+
+        private volatile Throwable exception;
+
+        private volatile boolean cancelled;
+
+        final TransferRecorder recorder;
+
+        boolean rangeNotSatisfiable;
+
+        ResumeHandler( URI url, File part, DownloadJournal journal )
+            throws IOException
+        {
+            this.url = url;
+            this.recorder = new TransferRecorder( "GET", url );
+            this.journal = journal;
+            this.raf = new RandomAccessFile( part, "rw" );
+            this.channel = raf.getChannel();
+            position = journal.getReceived();
+            saved = position;
+            // drop whatever has not been recorded by the journal
+            raf.setLength( position );
+        }
+
+        @Override
+        public void onThrowable( Throwable t )
+        {
+            if ( exception == null )
+            {
+                exception = t;
+            }
+            recorder.finished( status, t );
+        }
+
+        @Override
+        public STATE onStatusReceived( HttpResponseStatus responseStatus )
+            throws Exception
+        {
+            status = responseStatus.getStatusCode();
+            recorder.responseStarted();
+            if ( status == HttpURLConnection.HTTP_PARTIAL )
+            {
+                return checkCancel();
+            }
+            if ( status == 416 )
+            {
+                // Requested Range Not Satisfiable
+                rangeNotSatisfiable = true;
+                return STATE.ABORT;
+            }
+            Throwable error = getStatusException( url.toString(), responseStatus );
+            if ( error != null )
+            {
+                onThrowable( error );
+                return STATE.ABORT;
+            }
+            if ( position > 0 )
+            {
+                log.debug( "Server sent all of {}, discarding {} bytes received before", url, position );
+            }
+            position = 0;
+            saved = 0;
+            raf.setLength( 0 );
+            journal.reset();
+            return checkCancel();
+        }
+
+        @Override
+        public STATE onHeadersReceived( HttpResponseHeaders headers )
+            throws Exception
+        {
+            STATE retval = super.onHeadersReceived( headers );
+            FluentCaseInsensitiveStringsMap h = headers.getHeaders();
+            if ( status == HttpURLConnection.HTTP_PARTIAL )
+            {
+                // bytes <first>-<last>/<length>
+                String range = h.getFirstValue( "Content-Range" );
+                int dash = ( range != null ) ? range.indexOf( '-' ) : -1;
+                int slash = ( range != null ) ? range.indexOf( '/' ) : -1;
+                if ( dash < 0 || slash < dash
+                    || Long.parseLong( range.substring( range.indexOf( ' ' ) + 1, dash ).trim() ) != position )
+                {
+                    onThrowable( new IOException( "Unexpected byte range " + range + ": " + url ) );
+                    return STATE.ABORT;
+                }
+                String length = range.substring( slash + 1 ).trim();
+                if ( !"*".equals( length ) )
+                {
+                    journal.setLength( Long.parseLong( length ) );
+                }
+            }
+            else
+            {
+                journal.setValidators( h.getFirstValue( "ETag" ), h.getFirstValue( "Last-Modified" ) );
+                String length = h.getFirstValue( "Content-Length" );
+                journal.setLength( ( length != null ) ? Long.parseLong( length.trim() ) : -1 );
+            }
+            return ( retval == STATE.CONTINUE ) ? checkCancel() : retval;
+        }
+
+        @Override
+        public STATE onBodyPartReceived( HttpResponseBodyPart bodyPart )
+            throws Exception
+        {
+            if ( checkCancel() == STATE.ABORT )
+            {
+                return STATE.ABORT;
+            }
+            try
+            {
+                ByteBuffer buffer = ByteBuffer.wrap( bodyPart.getBodyPartBytes() );
+                long pos = position;
+                while ( buffer.hasRemaining() )
+                {
+                    pos += channel.write( buffer, pos );
+                }
+                position = pos;
+                recorder.received( bodyPart.getBodyPartBytes().length );
+                journal.setReceived( pos );
+                if ( pos - saved >= JOURNAL_INTERVAL )
+                {
+                    journal.save();
+                    saved = pos;
+                }
+            }
+            catch ( IOException e )
+            {
+                onThrowable( e );
+                return STATE.ABORT;
+            }
+            return STATE.CONTINUE;
+        }
+
+        @Override
+        public String onCompleted()
+            throws Exception
+        {
+            recorder.finished( status, null );
+            return "";
+        }
+
+        private STATE checkCancel()
+        {
+            return cancelled ? STATE.ABORT : STATE.CONTINUE;
+        }
+
+        /**
+         * Waits for the response to be received, reporting the progress to the specified monitor.
+         */
+        void await( Future<String> future, IProgressMonitor monitor, String taskName )
+            throws IOException
+        {
+            ProgressAggregator progress = new ProgressAggregator( monitor );
+            long reported = 0;
+            try
+            {
+                while ( true )
+                {
+                    boolean done = false;
+                    try
+                    {
+                        future.get( 200, TimeUnit.MILLISECONDS );
+                        done = true;
+                    }
+                    catch ( TimeoutException e )
+                    {
+                        // report progress
+                    }
+                    if ( monitor != null )
+                    {
+                        long length = journal.getLength();
+                        if ( length >= 0 || done )
+                        {
+                            progress.beginTask( taskName, length );
+                        }
+                        long current = position;
+                        if ( progress.isStarted() && current > reported )
+                        {
+                            progress.worked( current - reported );
+                            reported = current;
+                        }
+                        if ( !done && monitor.isCanceled() )
+                        {
+                            cancelled = true;
+                            onThrowable( new IOException( "Transfer has been canceled" ) );
+                            future.cancel( true );
+                            done = true;
+                        }
+                    }
+                    if ( done )
+                    {
+                        break;
+                    }
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                cancelled = true;
+                throw new InterruptedIOException( "Transfer was interrupted" );
+            }
+            catch ( ExecutionException e )
+            {
+                onThrowable( e.getCause() != null ? e.getCause() : e );
+            }
+            finally
+            {
+                progress.done();
+            }
+        }
+
+        void checkForError()
+            throws IOException
+        {
+            if ( exception instanceof IOException )
+            {
+                throw (IOException) exception;
+            }
+            else if ( exception != null )
+            {
+                throw (IOException) new IOException( exception.getMessage() ).initCause( exception );
+            }
+            if ( journal.getLength() >= 0 && position != journal.getLength() )
+            {
+                throw new IOException( "Received " + position + " of " + journal.getLength() + " bytes: " + url );
+            }
+        }
+
+        /**
+         * Closes the file and records the progress so far.
+         */
+        void close()
+            throws IOException
+        {
+            recorder.finished( status, exception );
+            try
+            {
+                raf.close();
+            }
+            finally
+            {
+                if ( journal.getValidator() != null && position > 0 )
+                {
+                    journal.save();
+                }
+            }
+        }
+    }
+
+    /**
+     * The result of the HEAD request sent before the actual download.
+     */
+    private final class Probe
+        extends BaseAsyncHandler
+    {
+        final TransferRecorder recorder;
+
+        int status;
+
+        boolean ok;
+
+        long length = -1;
+
+        boolean acceptsRanges;
+
+        String etag;
+
+        String lastModified;
+
+        Throwable exception;
+
+        Probe( URI url )
+        {
+            recorder = new TransferRecorder( "HEAD", url );
+        }
+
+        @Override
+        public void onThrowable( Throwable t )
+        {
+            if ( exception == null )
+            {
+                exception = t;
+            }
+        }
+
+        @Override
+        public STATE onStatusReceived( HttpResponseStatus responseStatus )
+            throws Exception
+        {
+            status = responseStatus.getStatusCode();
+            recorder.responseStarted();
+            // anything but a plain 200 is left to the single request to sort out
+            ok = status == HttpURLConnection.HTTP_OK;
+            return handleStatus( responseStatus );
+        }
+
+        @Override
+        public STATE onHeadersReceived( HttpResponseHeaders headers )
+            throws Exception
+        {
+            STATE retval = super.onHeadersReceived( headers );
+            FluentCaseInsensitiveStringsMap h = headers.getHeaders();
+            String contentLength = h.getFirstValue( "Content-Length" );
+            if ( contentLength != null )
+            {
+                length = Long.parseLong( contentLength.trim() );
+            }
+            String ranges = h.getFirstValue( "Accept-Ranges" );
+            // a transparently encoded body can't be split by byte positions
+            acceptsRanges =
+                ok && ranges != null && ranges.toLowerCase().contains( "bytes" )
+                    && h.getFirstValue( "Content-Encoding" ) == null;
+            etag = h.getFirstValue( "ETag" );
+            lastModified = h.getFirstValue( "Last-Modified" );
+            return retval;
+        }
+
+        /**
+         * Gets the validator to send with {@code If-Range}, preferring the entity tag like {@link DownloadJournal}.
+         */
+        String getValidator()
+        {
+            return ( etag != null ) ? etag : lastModified;
+        }
+    }
+
+    /**
+     * Tracks the segments of one download and writes the received data to its position in the file.
+     */
+    private final class RangeAssembly
+    {
+        final File file;
+
+        final RandomAccessFile raf;
+
+        final FileChannel channel;
+
+        final long length;
+
+        final long[] starts;
+
+        final long[] written;
+
+        final boolean[] done;
+
+        boolean deleteOnClose;
+
+        /**
+         * The journal recording the progress of the segments, {@code null} if the download can't be resumed.
+         */
+        DownloadJournal journal;
+
+        private long saved;
+
+        private Throwable exception;
+
+        private boolean closed;
+
+        private AsyncHttpClient httpClient;
+
+        private URI url;
+
+        private String validator;
+
+        private BandwidthLimiter.Throttle throttle;
+
+        /**
+         * @param starts The offsets at which the segments start, followed by the length of the resource.
+         * @param written The number of bytes already received for each segment.
+         */
+        RangeAssembly( File file, long length, long[] starts, long[] written )
+            throws IOException
+        {
+            this.file = file;
+            this.length = length;
+            this.raf = new RandomAccessFile( file, "rw" );
+            this.channel = raf.getChannel();
+            raf.setLength( length );
+
+            this.starts = starts;
+            this.written = written;
+            done = new boolean[written.length];
+            for ( int i = 0; i < written.length; i++ )
+            {
+                done[i] = starts[i] + written[i] >= starts[i + 1];
+                saved += written[i];
+            }
+        }
+
+        void start( AsyncHttpClient httpClient, URI url, Probe probe )
+            throws IOException
+        {
+            this.httpClient = httpClient;
+            this.url = url;
+            // the resource must not change between the segments
+            this.validator = probe.getValidator();
+            this.throttle = getThrottle( url );
+            for ( int i = 0; i < written.length; i++ )
+            {
+                if ( !done[i] )
+                {
+                    request( i );
+                }
+            }
+        }
+
+        /**
+         * Requests the data of a segment that has not been received yet. While a bandwidth limit applies, the segments
+         * together request only about a second worth of data at once, the segment handler requests the rest once that
+         * has arrived.
+         */
+        void request( int segment )
+            throws IOException
+        {
+            long first;
+            synchronized ( this )
+            {
+                if ( closed || exception != null )
+                {
+                    return;
+                }
+                first = starts[segment] + written[segment];
+            }
+            long last = starts[segment + 1] - 1;
+            long rate = ( throttle != null ) ? throttle.getRate() : 0;
+            if ( rate > 0 )
+            {
+                last = Math.min( last, first + Math.max( MIN_PACED_RANGE_SIZE, rate / written.length ) - 1 );
+            }
+
+            AsyncHttpClient.BoundRequestBuilder requestBuilder =
+                httpClient.prepareGet( url.toString() ).setRealm( realm ).setProxyServer( proxyServer );
+            requestBuilder.setHeader( "Range", "bytes=" + first + "-" + last );
+            if ( validator != null )
+            {
+                requestBuilder.setHeader( "If-Range", validator );
+            }
+            SegmentHandler handler = new SegmentHandler( this, segment, url, last + 1 );
+            handler.recorder.attemptStarted();
+            TransferWatchdog.Watch<String> watch = TransferWatchdog.watch( handler, url, timeouts, priority );
+            watch.reserve( last - first + 1 );
+            try
+            {
+                watch.execute( requestBuilder );
+            }
+            catch ( IOException e )
+            {
+                handler.recorder.finished( 0, e );
+                throw e;
+            }
+        }
+
+        /**
+         * Writes data received for a segment. Each segment is received by a single handler, so the positional writes of
+         * different segments don't need to be serialized.
+         */
+        void write( int segment, byte[] data )
+            throws IOException
+        {
+            long position;
+            synchronized ( this )
+            {
+                if ( closed || exception != null )
+                {
+                    throw new IOException( "Download has been aborted" );
+                }
+                position = starts[segment] + written[segment];
+            }
+            if ( position + data.length > starts[segment + 1] )
+            {
+                throw new IOException( "Server sent more data than requested for byte range " + starts[segment] + "-"
+                    + ( starts[segment + 1] - 1 ) );
+            }
+            ByteBuffer buffer = ByteBuffer.wrap( data );
+            while ( buffer.hasRemaining() )
+            {
+                position += channel.write( buffer, position );
+            }
+            synchronized ( this )
+            {
+                written[segment] += data.length;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Checks whether all data of a segment has been received up to the specified position.
+         *
+         * @param end The position after the last byte requested for the segment.
+         * @return The error to fail the download with if the segment is incomplete, {@code null} otherwise.
+         */
+        synchronized IOException checkComplete( int segment, long end )
+        {
+            if ( starts[segment] + written[segment] != end )
+            {
+                return new IOException( "Incomplete byte range " + starts[segment] + "-" + ( end - 1 ) );
+            }
+            return null;
+        }
+
+        /**
+         * Tells whether the specified position is the end of a segment.
+         */
+        boolean isEnd( int segment, long end )
+        {
+            return end >= starts[segment + 1];
+        }
+
+        /**
+         * Marks a segment as received.
+         *
+         * @param error The error returned by {@link #checkComplete(int)}, may be {@code null}.
+         */
+        synchronized void complete( int segment, IOException error )
+        {
+            if ( error != null )
+            {
+                fail( error );
+            }
+            done[segment] = true;
+            notifyAll();
+        }
+
+        synchronized void fail( Throwable t )
+        {
+            if ( exception == null )
+            {
+                exception = t;
+            }
+            notifyAll();
+        }
+
+        synchronized boolean isAborted()
+        {
+            return closed || exception != null;
+        }
+
+        /**
+         * Waits until all segments have been received, reporting the progress to the specified monitor.
+         */
+        synchronized void await( IProgressMonitor monitor, String taskName )
+            throws IOException
+        {
+            ProgressAggregator progress = new ProgressAggregator( monitor );
+            progress.beginTask( taskName, length );
+            long reported = 0;
+            try
+            {
+                while ( true )
+                {
+                    checkForError();
+                    long total = 0;
+                    boolean finished = true;
+                    for ( int i = 0; i < written.length; i++ )
+                    {
+                        total += written[i];
+                        finished &= done[i];
+                    }
+                    if ( monitor != null )
+                    {
+                        progress.worked( total - reported );
+                        reported = total;
+                        if ( monitor.isCanceled() )
+                        {
+                            fail( new IOException( "Transfer has been canceled" ) );
+                            continue;
+                        }
+                    }
+                    if ( journal != null && total - saved >= JOURNAL_INTERVAL )
+                    {
+                        saveJournal();
+                        saved = total;
+                    }
+                    if ( finished )
+                    {
+                        return;
+                    }
+                    wait( 200 );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                fail( e );
+                throw new InterruptedIOException( "Transfer was interrupted" );
+            }
+            finally
+            {
+                progress.done();
+            }
+        }
+
+        /**
+         * Reads data at the specified position, waiting until the segment covering it has been received that far.
+         */
+        synchronized int read( long position, byte[] b, int off, int len )
+            throws IOException
+        {
+            if ( position >= length )
+            {
+                return -1;
+            }
+            int segment = 0;
+            while ( starts[segment + 1] <= position )
+            {
+                segment++;
+            }
+            try
+            {
+                while ( starts[segment] + written[segment] <= position )
+                {
+                    checkForError();
+                    if ( closed )
+                    {
+                        throw new IOException( "Stream closed" );
+                    }
+                    wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                throw new InterruptedIOException( "Transfer was interrupted" );
+            }
+            int n = (int) Math.min( len, starts[segment] + written[segment] - position );
+            return channel.read( ByteBuffer.wrap( b, off, n ), position );
+        }
+
+        private void checkForError()
+            throws IOException
+        {
+            if ( exception instanceof IOException )
+            {
+                throw (IOException) exception;
+            }
+            else if ( exception != null )
+            {
+                throw (IOException) new IOException( exception.getMessage() ).initCause( exception );
+            }
+        }
+
+        private void saveJournal()
+            throws IOException
+        {
+            journal.setSegments( starts, written );
+            journal.save();
+        }
+
+        /**
+         * Closes the file and records the progress so far. Data written after this point is not counted, the segments
+         * still being received fail on their next write.
+         */
+        synchronized void close()
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+            notifyAll();
+            try
+            {
+                raf.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+            if ( deleteOnClose )
+            {
+                file.delete();
+            }
+            else if ( journal != null )
+            {
+                try
+                {
+                    saveJournal();
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Could not record the progress of " + file, e );
+                }
+            }
+        }
+    }
+
+    private final class SegmentHandler
+        extends BaseAsyncHandler
+    {
+        private final RangeAssembly assembly;
+
+        private final int segment;
+
+        private final URI url;
+
+        /**
+         * The position after the last byte requested.
+         */
+        private final long end;
+
+        final TransferRecorder recorder;
+
+        private int status;
+
+        SegmentHandler( RangeAssembly assembly, int segment, URI url, long end )
+        {
+            this.assembly = assembly;
+            this.segment = segment;
+            this.url = url;
+            this.end = end;
+            this.recorder = new TransferRecorder( "GET", url );
+        }
+
+        @Override
+        public void onThrowable( Throwable t )
+        {
+            recorder.finished( status, t );
+            assembly.fail( t );
+        }
+
+        @Override
+        public STATE onStatusReceived( HttpResponseStatus responseStatus )
+            throws Exception
+        {
+            status = responseStatus.getStatusCode();
+            recorder.responseStarted();
+            if ( status != HttpURLConnection.HTTP_PARTIAL )
+            {
+                Throwable error = getStatusException( url.toString(), responseStatus );
+                onThrowable( error != null ? error : new IOException( "HTTP status code " + status
+                    + ": byte range not served: " + url ) );
+                return STATE.ABORT;
+            }
+            return abortIfAborted();
+        }
+
+        @Override
+        public STATE onBodyPartReceived( HttpResponseBodyPart bodyPart )
+            throws Exception
+        {
+            if ( abortIfAborted() == STATE.ABORT )
+            {
+                return STATE.ABORT;
+            }
+            byte[] data = bodyPart.getBodyPartBytes();
+            try
+            {
+                assembly.write( segment, data );
+            }
+            catch ( IOException e )
+            {
+                onThrowable( e );
+                return STATE.ABORT;
+            }
+            recorder.received( data.length );
+            return STATE.CONTINUE;
+        }
+
+        /**
+         * Stops receiving the segment once the download failed elsewhere or has been closed.
+         */
+        private STATE abortIfAborted()
+        {
+            if ( assembly.isAborted() )
+            {
+                recorder.finished( status, null );
+                return STATE.ABORT;
+            }
+            return STATE.CONTINUE;
+        }
+
+        @Override
+        public String onCompleted()
+            throws Exception
+        {
+            if ( abortIfAborted() == STATE.ABORT )
+            {
+                return "";
+            }
+            IOException error = assembly.checkComplete( segment, end );
+            // recorded before the segment counts as done, so the download does not return ahead of its records
+            recorder.finished( status, error );
+            if ( error == null && !assembly.isEnd( segment, end ) )
+            {
+                // the next range is requested off the threads of the HTTP client
+                RetryPolicy.schedule( new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            assembly.request( segment );
+                        }
+                        catch ( IOException e )
+                        {
+                            assembly.fail( e );
+                        }
+                        catch ( RuntimeException e )
+                        {
+                            assembly.fail( e );
+                        }
+                    }
+                }, 0 );
+                return "";
+            }
+            assembly.complete( segment, error );
+            return "";
+        }
+    }
+
+    /**
+     * Reads the segments in order while they are being received.
+     */
+    private static final class AssembledInputStream
+        extends InputStream
+    {
+        private final RangeAssembly assembly;
+
+        private long position;
+
+        AssembledInputStream( RangeAssembly assembly )
+        {
+            this.assembly = assembly;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            byte[] b = new byte[1];
+            int n = read( b, 0, 1 );
+            return ( n < 0 ) ? -1 : ( b[0] & 0xFF );
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            if ( len <= 0 )
+            {
+                return 0;
+            }
+            int n = assembly.read( position, b, off, len );
+            if ( n > 0 )
+            {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close()
+        {
+            assembly.close();
+        }
+    }
+}
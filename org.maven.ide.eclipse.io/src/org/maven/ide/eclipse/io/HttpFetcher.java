@@ -1,18 +1,21 @@
 package org.maven.ide.eclipse.io;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.io.internal.HttpCache;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.FluentCaseInsensitiveStringsMap;
 import com.ning.http.client.HttpResponseBodyPart;
 import com.ning.http.client.HttpResponseHeaders;
@@ -22,37 +25,161 @@ public class HttpFetcher
     extends HttpBaseSupport
 {
 
+    private final Logger log = LoggerFactory.getLogger( HttpFetcher.class );
+
     private HttpInputStream his = null;
 
-	public HttpInputStream openStream( final URI url, final IProgressMonitor monitor, final IAuthService authService,
+    private int bufferSize = HttpBodyBuffer.DEFAULT_CAPACITY;
+
+    private CachePolicy cachePolicy = CachePolicy.DEFAULT;
+
+    /**
+     * Sets the maximum number of bytes of a response body that are buffered in memory while the caller has not yet
+     * consumed them. Data beyond that is buffered in a temporary file.
+     * 
+     * @param bufferSize The size of the buffer in bytes, non-positive values select the default size.
+     */
+    public void setBufferSize( int bufferSize )
+    {
+        this.bufferSize = ( bufferSize > 0 ) ? bufferSize : HttpBodyBuffer.DEFAULT_CAPACITY;
+    }
+
+    /**
+     * Sets whether responses may be served from the local HTTP cache.
+     * 
+     * @param cachePolicy The cache policy, {@code null} or {@link CachePolicy#DEFAULT} to use the policy registered for
+     *            the URL.
+     */
+    public void setCachePolicy( CachePolicy cachePolicy )
+    {
+        this.cachePolicy = ( cachePolicy != null ) ? cachePolicy : CachePolicy.DEFAULT;
+    }
+
+    private HttpCache getCache( URI url )
+    {
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        if ( plugin == null || cachePolicy == CachePolicy.NO_CACHE )
+        {
+            return null;
+        }
+        HttpCache cache = plugin.getHttpCache();
+        if ( cachePolicy == CachePolicy.REVALIDATE || cache.getPolicy( url.toString() ) == CachePolicy.REVALIDATE )
+        {
+            return cache;
+        }
+        return null;
+    }
+
+    public HttpInputStream openStream( final URI url, final IProgressMonitor monitor, final IAuthService authService,
                                        final IProxyService proxyService )
         throws IOException
     {
+        return open( url, monitor, authService, proxyService, null );
+    }
 
-        boolean followRedirects = true;
-        int redirects = 3;
+    /**
+     * Opens a stream to the specified resource without waiting for the server to respond.
+     * 
+     * @return The pending stream, never {@code null}. The future completes once the server accepted the request and
+     *         fails if it rejected the request, e.g. with a {@link NotFoundException}.
+     * @see #openStream(URI, IProgressMonitor, IAuthService, IProxyService)
+     */
+    public TransferFuture<HttpInputStream> openStreamAsync( final URI url, final IProgressMonitor monitor,
+                                                            final IAuthService authService,
+                                                            final IProxyService proxyService )
+        throws IOException
+    {
+        TransferFuture<HttpInputStream> opened = new TransferFuture<HttpInputStream>();
+        open( url, monitor, authService, proxyService, opened );
+        return opened;
+    }
 
-        AsyncHttpClientConfig.Builder confBuilder = init( url, authService, proxyService, null );
+    private HttpInputStream open( final URI url, final IProgressMonitor monitor, final IAuthService authService,
+                                  final IProxyService proxyService, TransferFuture<HttpInputStream> opened )
+        throws IOException
+    {
 
-        AsyncHttpClientConfig conf =
-            confBuilder.setFollowRedirects( followRedirects ).setMaximumNumberOfRedirects( redirects ).build();
+        int redirects = 3;
 
-        AsyncHttpClient httpClient = new AsyncHttpClient( conf );
+        AsyncHttpClient httpClient = init( url, authService, proxyService, null, redirects );
 
-        PipedInputStream pis = new PipedInputStream();
-        PipedOutputStream pos = new PipedOutputStream(pis);
-        final MonitoredInputStream mis = new MonitoredInputStream( pis, monitor );
+        HttpBodyBuffer buffer = new HttpBodyBuffer( bufferSize );
+        final MonitoredInputStream mis = new MonitoredInputStream( buffer, monitor );
+        StreamDigester digester = StreamDigester.create( getDigestAlgorithms() );
+        mis.setDigester( digester );
+        final GetAsyncHandler handler = new GetAsyncHandler( buffer, mis, url );
 
         FluentCaseInsensitiveStringsMap headers = new FluentCaseInsensitiveStringsMap();
-        headers.add( "Pragma", "no-cache" );
-        headers.add( "Cache-Control", "no-cache, no-store" );
+        HttpCache cache = getCache( url );
+        if ( cache != null )
+        {
+            handler.principal = ( realm != null ) ? realm.getPrincipal() : null;
+            handler.cache = cache;
+            handler.cached = cache.get( url.toString(), handler.principal );
+            headers.add( "Cache-Control", "max-age=0" );
+            if ( handler.cached != null && handler.cached.getETag() != null )
+            {
+                headers.add( "If-None-Match", handler.cached.getETag() );
+            }
+            if ( handler.cached != null && handler.cached.getLastModified() != null )
+            {
+                headers.add( "If-Modified-Since", handler.cached.getLastModified() );
+            }
+        }
+        else
+        {
+            headers.add( "Pragma", "no-cache" );
+            headers.add( "Cache-Control", "no-cache, no-store" );
+        }
 
         BoundRequestBuilder requestBuilder =
             httpClient.prepareGet( url.toString() ).setRealm( realm ).setHeaders( headers ).setProxyServer( proxyServer );
 
         his = new HttpInputStream(mis, "UTF-8", httpClient);
-        
-        requestBuilder.execute(new GetAsyncHandler(pos, mis, url));
+        his.setDigester( digester );
+        handler.stream = his;
+        handler.opened = opened;
+        handler.requestBuilder = requestBuilder;
+        handler.retryPolicy = getRetryPolicy( url );
+        handler.recorder = new TransferRecorder( "GET", url );
+        handler.timeouts = timeouts;
+        handler.priority = priority;
+
+        try
+        {
+            handler.recorder.attemptStarted();
+            Future<String> future =
+                TransferWatchdog.watch( handler, url, timeouts, priority ).execute( requestBuilder );
+            if ( opened != null )
+            {
+                opened.setDelegate( future );
+                opened.addCallback( new TransferCallback<HttpInputStream>()
+                {
+                    public void completed( HttpInputStream stream )
+                    {
+                        // the caller owns the stream now
+                    }
+
+                    public void failed( Throwable error )
+                    {
+                        // also covers a cancellation the request handler never gets to see
+                        try
+                        {
+                            handler.stream.close();
+                        }
+                        catch ( IOException e )
+                        {
+                            // ignored
+                        }
+                    }
+                } );
+            }
+        }
+        catch ( IOException e )
+        {
+            his.close();
+            throw e;
+        }
         
         return his;
     }
@@ -62,17 +189,103 @@ public class HttpFetcher
     {
         private final MonitoredInputStream mis;
 
-        private final OutputStream os;
+        private final HttpBodyBuffer buffer;
 
         private final URI url;
 
-        private GetAsyncHandler( OutputStream os, MonitoredInputStream mis, URI url )
+        HttpCache cache;
+
+        HttpCache.Entry cached;
+
+        String principal;
+
+        private HttpCache.Writer cacheWriter;
+
+        private boolean notModified;
+
+        HttpInputStream stream;
+
+        TransferFuture<HttpInputStream> opened;
+
+        BoundRequestBuilder requestBuilder;
+
+        RetryPolicy retryPolicy = RetryPolicy.NONE;
+
+        TransferRecorder recorder;
+
+        TimeoutPolicy timeouts;
+
+        TransferPriority priority;
+
+        private int attempt = 1;
+
+        private int status;
+
+        private boolean retrying;
+
+        private boolean bodyStarted;
+
+        private GetAsyncHandler( HttpBodyBuffer buffer, MonitoredInputStream mis, URI url )
         {
-            this.os = os;
+            this.buffer = buffer;
             this.mis = mis;
             this.url = url;
         }
 
+        /**
+         * Creates the handler for the next attempt to fetch the resource into the same stream.
+         */
+        private GetAsyncHandler( GetAsyncHandler previous )
+        {
+            this( previous.buffer, previous.mis, previous.url );
+            this.cache = previous.cache;
+            this.cached = previous.cached;
+            this.principal = previous.principal;
+            this.stream = previous.stream;
+            this.opened = previous.opened;
+            this.requestBuilder = previous.requestBuilder;
+            this.retryPolicy = previous.retryPolicy;
+            this.recorder = previous.recorder;
+            this.timeouts = previous.timeouts;
+            this.priority = previous.priority;
+            this.attempt = previous.attempt + 1;
+        }
+
+        private void retry( String retryAfter, String reason )
+        {
+            long delay = retryPolicy.getDelay( attempt, retryAfter );
+            log.debug( "Retrying GET {} in {} ms after " + reason, url, delay );
+            mis.subTask( "Retrying " + url + " (attempt " + ( attempt + 1 ) + " of " + retryPolicy.getMaxAttempts()
+                + ")" );
+            final GetAsyncHandler next = new GetAsyncHandler( this );
+            RetryPolicy.schedule( new Runnable()
+            {
+                public void run()
+                {
+                    if ( buffer.isClosed() )
+                    {
+                        // the caller is no longer interested
+                        recorder.finished( status, null );
+                        return;
+                    }
+                    try
+                    {
+                        recorder.attemptStarted();
+                        Future<String> future =
+                            TransferWatchdog.watch( next, url, timeouts, priority ).execute( requestBuilder );
+                        if ( opened != null )
+                        {
+                            opened.setDelegate( future );
+                        }
+                    }
+                    catch ( IOException e )
+                    {
+                        next.onThrowable( e );
+                    }
+                }
+            }, delay );
+        }
+
         private STATE checkCancel()
         {
             if ( mis.isCancelled() )
@@ -83,30 +296,76 @@ public class HttpFetcher
             return STATE.CONTINUE;
         }
 
+        private void abortCacheWriter()
+        {
+            if ( cacheWriter != null )
+            {
+                cacheWriter.abort();
+                cacheWriter = null;
+            }
+        }
+
         public void onThrowable( Throwable t )
         {
+            if ( retrying )
+            {
+                return;
+            }
+            if ( !bodyStarted && !mis.isCancelled() && !buffer.isClosed()
+                && retryPolicy.isRetryable( "GET", attempt, 0, t ) )
+            {
+                retrying = true;
+                retry( null, t.toString() );
+                return;
+            }
+
             super.onThrowable( t );
 
+            recorder.finished( status, t );
+
+            abortCacheWriter();
+
             if ( mis != null )
             {
                 mis.setException( t );
             }
 
             close();
+
+            notifyOpened();
         }
 
         private void close()
         {
-            if ( os != null )
+            buffer.complete();
+        }
+
+        /**
+         * Completes the pending stream of an asynchronous request once the outcome of the request is known.
+         */
+        private void notifyOpened()
+        {
+            if ( opened == null || opened.isCompletedWith( stream ) )
             {
-                try
-                {
-                    os.close();
-                }
-                catch ( IOException e )
-                {
-                    // tried our best
-                }
+                return;
+            }
+            Throwable error = mis.getException();
+            if ( error == null && opened.complete( stream ) )
+            {
+                return;
+            }
+            // the request failed or the open has been cancelled, either way nobody is going to close the stream
+            try
+            {
+                stream.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+            if ( error != null )
+            {
+                opened.fail( error );
             }
         }
 
@@ -117,6 +376,19 @@ public class HttpFetcher
             {
                 return STATE.ABORT;
             }
+            status = responseStatus.getStatusCode();
+            recorder.responseStarted();
+            if ( retryPolicy.isRetryable( "GET", attempt, status, null ) )
+            {
+                // wait for the headers, they may tell when to retry
+                retrying = true;
+                return STATE.CONTINUE;
+            }
+            if ( cached != null && responseStatus.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED )
+            {
+                notModified = true;
+                return STATE.CONTINUE;
+            }
             Throwable error = getStatusException( url.toString(), responseStatus );
             if ( error != null )
             {
@@ -133,21 +405,45 @@ public class HttpFetcher
                 return STATE.ABORT;
             }
 
+            if ( retrying )
+            {
+                retry( headers.getHeaders().getFirstValue( "Retry-After" ), "HTTP status code 5xx" );
+                return STATE.ABORT;
+            }
+
+            if ( notModified )
+            {
+                mis.setLength( cached.getLength() );
+                if ( cached.getEncoding() != null )
+                {
+                    stream.encoding = cached.getEncoding();
+                }
+                notifyOpened();
+                return STATE.CONTINUE;
+            }
+
             STATE retval = super.onHeadersReceived( headers );
             FluentCaseInsensitiveStringsMap h = headers.getHeaders();
 
+            if ( cache != null && mis.getException() == null )
+            {
+                startCaching( h );
+            }
+
             if ( h.containsKey( "Content-Length" ) )
             {
                 if ( mis != null )
                 {
-                    mis.setLength( Integer.parseInt( h.getFirstValue( "Content-Length" ) ) );
+                    mis.setLength( Long.parseLong( h.getFirstValue( "Content-Length" ) ) );
                 }
             }
             
             if (this.encoding != null) {
-            	his.encoding = encoding;
+            	stream.encoding = encoding;
             }
 
+            notifyOpened();
+
             return retval;
         }
 
@@ -159,10 +455,34 @@ public class HttpFetcher
                 return STATE.ABORT;
             }
             
+            if ( retrying )
+            {
+                return STATE.ABORT;
+            }
+            bodyStarted = true;
+
             STATE retval = super.onBodyPartReceived( bodyPart );
-            if ( os != null )
+            ByteBuffer data = bodyPart.getBodyByteBuffer();
+            recorder.received( data.remaining() );
+            if ( cacheWriter != null )
             {
-                bodyPart.writeTo( os );
+                try
+                {
+                    cacheWriter.write( data.duplicate() );
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Could not cache " + url, e );
+                    abortCacheWriter();
+                }
+            }
+            if ( !buffer.offer( data ) )
+            {
+                // the stream has been closed by the caller, no need to receive the rest
+                recorder.finished( status, null );
+                abortCacheWriter();
+                close();
+                return STATE.ABORT;
             }
             return retval;
         }
@@ -170,8 +490,62 @@ public class HttpFetcher
         public String onCompleted()
             throws Exception
         {
+            if ( retrying )
+            {
+                return "";
+            }
+            if ( notModified )
+            {
+                log.debug( "Serving {} from the cache", url );
+                try
+                {
+                    buffer.complete( cached.openStream() );
+                }
+                catch ( IOException e )
+                {
+                    // evicted in the meantime
+                    cache.remove( url.toString(), principal );
+                    mis.setException( e );
+                }
+            }
+            else if ( cacheWriter != null )
+            {
+                try
+                {
+                    cacheWriter.commit();
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Could not cache " + url, e );
+                }
+                cacheWriter = null;
+            }
+            recorder.finished( status, mis.getException() );
             close();
+            notifyOpened();
             return "";
         }
+
+        private void startCaching( FluentCaseInsensitiveStringsMap h )
+        {
+            String etag = h.getFirstValue( "ETag" );
+            String lastModified = h.getFirstValue( "Last-Modified" );
+            String cacheControl = h.getFirstValue( "Cache-Control" );
+            if ( ( etag == null && lastModified == null )
+                || ( cacheControl != null && cacheControl.toLowerCase().contains( "no-store" ) ) )
+            {
+                // can't be revalidated or must not be stored
+                cache.remove( url.toString(), principal );
+                return;
+            }
+            try
+            {
+                cacheWriter = cache.put( url.toString(), principal, etag, lastModified, encoding );
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Could not cache " + url, e );
+            }
+        }
     }
 }
@@ -0,0 +1,257 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.net.proxy.IProxyService;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.maven.ide.eclipse.authentication.IAuthService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ProxyServer;
+import com.ning.http.client.Realm;
+
+/**
+ * Issues {@code HEAD} requests for many resources concurrently. The number of requests in flight is capped per host,
+ * each host has its own queue of waiting requests and a single client leased from the client registry.
+ */
+public class HttpHeadBatch
+    extends HttpBaseSupport
+{
+    /**
+     * The status reported for resources whose request failed without a response from the server.
+     */
+    public static final int STATUS_FAILED = -1;
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    private final Logger log = LoggerFactory.getLogger( HttpHeadBatch.class );
+
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    /**
+     * Sets the maximum number of concurrent requests to the same host.
+     * 
+     * @param maxConnectionsPerHost The maximum number of concurrent requests per host, must be positive.
+     */
+    public void setMaxConnectionsPerHost( int maxConnectionsPerHost )
+    {
+        this.maxConnectionsPerHost = Math.max( 1, maxConnectionsPerHost );
+    }
+
+    /**
+     * Performs a head request on each of the specified URLs.
+     * 
+     * @param urls The HTTP URLs to perform the head request on, must not be {@code null}.
+     * @param monitor The monitor to notify of the progress of the whole batch, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be
+     *            {@code null}.
+     * @param timeoutInMilliseconds Timeout in milliseconds. If null, it will use the default timeout.
+     * @return The status codes returned by the server, keyed by URL in iteration order of the input, never {@code null}.
+     *         Requests that failed without response are reported with {@link #STATUS_FAILED}.
+     * @throws IOException If the batch was interrupted or cancelled.
+     */
+    public Map<URI, Integer> headAll( Collection<URI> urls, IProgressMonitor monitor, IAuthService authService,
+                                      IProxyService proxyService, Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        SubMonitor progress = SubMonitor.convert( monitor, "Checking " + urls.size() + " resources", urls.size() );
+
+        Map<URI, Integer> result = new LinkedHashMap<URI, Integer>();
+        Map<String, Host> hosts = new LinkedHashMap<String, Host>();
+        for ( URI url : urls )
+        {
+            if ( result.containsKey( url ) )
+            {
+                continue;
+            }
+            result.put( url, Integer.valueOf( STATUS_FAILED ) );
+
+            String key = url.getScheme() + "://" + url.getHost() + ":" + url.getPort();
+            Host host = hosts.get( key );
+            if ( host == null )
+            {
+                host = new Host();
+                hosts.put( key, host );
+            }
+            host.waiting.add( url );
+        }
+
+        BlockingQueue<HeadHandler> completed = new LinkedBlockingQueue<HeadHandler>();
+        List<HeadHandler> handlers = new ArrayList<HeadHandler>();
+        int pending = 0;
+
+        try
+        {
+            // each host has a queue of its own, so a slow host does not hold up the requests to the others
+            for ( Host host : hosts.values() )
+            {
+                host.httpClient = init( host.waiting.getFirst(), authService, proxyService, timeoutInMilliseconds, 0 );
+                host.proxyServer = proxyServer;
+                host.timeouts = timeouts;
+                host.priority = priority;
+                pending += start( host, authService, completed, handlers );
+            }
+
+            while ( pending > 0 )
+            {
+                if ( progress.isCanceled() )
+                {
+                    throw new IOException( "Transfer has been canceled" );
+                }
+                HeadHandler handler = completed.poll( 100, TimeUnit.MILLISECONDS );
+                while ( handler != null )
+                {
+                    result.put( handler.url, Integer.valueOf( handler.status ) );
+                    progress.worked( 1 );
+                    pending--;
+                    handler.host.running--;
+                    pending += start( handler.host, authService, completed, handlers );
+                    handler = completed.poll();
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( "Transfer was interrupted" );
+        }
+        finally
+        {
+            if ( pending > 0 )
+            {
+                // let the outstanding requests stop as soon as they respond
+                for ( HeadHandler handler : handlers )
+                {
+                    handler.cancelled = true;
+                }
+            }
+            for ( Host host : hosts.values() )
+            {
+                releaseClient( host.httpClient );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sends the waiting requests of the specified host as far as its connection limit allows.
+     * 
+     * @return The number of requests sent.
+     */
+    private int start( Host host, IAuthService authService, BlockingQueue<HeadHandler> completed,
+                       List<HeadHandler> handlers )
+    {
+        int started = 0;
+        while ( host.running < maxConnectionsPerHost && !host.waiting.isEmpty() )
+        {
+            URI url = host.waiting.removeFirst();
+            HeadHandler handler = new HeadHandler( url, host, completed );
+            handlers.add( handler );
+            host.running++;
+            started++;
+            try
+            {
+                // the credentials may differ between the paths of a host
+                Realm realm = createRealm( selectAuthData( url, authService ) );
+                AsyncHttpClient.BoundRequestBuilder requestBuilder =
+                    host.httpClient.prepareHead( url.toString() ).setRealm( realm ).setProxyServer( host.proxyServer );
+                TransferWatchdog.watch( handler, url, host.timeouts, host.priority ).execute( requestBuilder );
+            }
+            catch ( IOException e )
+            {
+                handler.onThrowable( e );
+            }
+        }
+        return started;
+    }
+
+    /**
+     * The waiting requests to a single host and the client, proxy and timeouts resolved for it.
+     */
+    private static final class Host
+    {
+        final LinkedList<URI> waiting = new LinkedList<URI>();
+
+        AsyncHttpClient httpClient;
+
+        ProxyServer proxyServer;
+
+        TimeoutPolicy timeouts;
+
+        TransferPriority priority;
+
+        int running;
+    }
+
+    private final class HeadHandler
+        extends BaseAsyncHandler
+    {
+        private final URI url;
+
+        private final Host host;
+
+        private final BlockingQueue<HeadHandler> completed;
+
+        private int status = STATUS_FAILED;
+
+        private boolean done;
+
+        private volatile boolean cancelled;
+
+        private HeadHandler( URI url, Host host, BlockingQueue<HeadHandler> completed )
+        {
+            this.url = url;
+            this.host = host;
+            this.completed = completed;
+        }
+
+        @Override
+        public STATE onStatusReceived( HttpResponseStatus responseStatus )
+            throws Exception
+        {
+            status = responseStatus.getStatusCode();
+            return cancelled ? STATE.ABORT : STATE.CONTINUE;
+        }
+
+        @Override
+        public void onThrowable( Throwable t )
+        {
+            log.debug( "HEAD request failed for " + url, t );
+            status = STATUS_FAILED;
+            done();
+        }
+
+        @Override
+        public String onCompleted()
+            throws Exception
+        {
+            done();
+            return "";
+        }
+
+        private synchronized void done()
+        {
+            if ( !done )
+            {
+                done = true;
+                completed.add( this );
+            }
+        }
+    }
+}
@@ -1,29 +1,104 @@
 package org.maven.ide.eclipse.io;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.Locale;
 
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.io.internal.CompressionCache;
+import org.maven.ide.eclipse.io.internal.GzipCompressingInputStream;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.FluentCaseInsensitiveStringsMap;
 import com.ning.http.client.HttpResponseBodyPart;
 import com.ning.http.client.HttpResponseHeaders;
 import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ProgressAsyncHandler;
+import com.ning.http.client.ProxyServer;
+import com.ning.http.client.Realm;
 
 public class HttpPublisher
     extends HttpBaseSupport
 {
+    /**
+     * Request bodies smaller than this are sent uncompressed, the savings would not outweigh the overhead.
+     */
+    private static final long MIN_COMPRESSION_LENGTH = 1024;
+
+    private static final String[] COMPRESSED_TYPES =
+        { "application/zip", "application/java-archive", "application/gzip", "application/x-gzip",
+            "application/x-bzip2", "application/x-xz", "application/x-7z-compressed", "application/x-rar-compressed",
+            "image/", "audio/", "video/" };
+
+    private static final String[] COMPRESSED_EXTENSIONS =
+        { ".zip", ".jar", ".war", ".ear", ".gz", ".tgz", ".bz2", ".xz", ".7z", ".rar", ".png", ".jpg", ".jpeg",
+            ".gif" };
+
+    /**
+     * The servers that rejected compressed request bodies when not running inside OSGi.
+     */
+    private static final CompressionCache standaloneCompressionCache = new CompressionCache();
+
+    private final Logger log = LoggerFactory.getLogger( HttpPublisher.class );
+
+    private int responseSpillThreshold = -1;
+
+    private OutputStream responseConsumer;
+
+    private boolean requestCompression;
+
+    /**
+     * Sets the size beyond which response bodies are stored in a temporary file instead of memory. By default,
+     * responses are always kept in memory. Callers enabling this are responsible for the temporary files: such
+     * responses are best accessed via {@link ServerResponse#getResponseStream()} and must be disposed once no longer
+     * needed, unless their data has been loaded via {@link ServerResponse#getResponseData()}.
+     * 
+     * @param responseSpillThreshold The maximum number of bytes to keep in memory, negative (the default) to always
+     *            keep the response in memory.
+     */
+    public void setResponseSpillThreshold( int responseSpillThreshold )
+    {
+        this.responseSpillThreshold = responseSpillThreshold;
+    }
+
+    /**
+     * Sets the stream to write the body of successful responses to, instead of collecting it in the
+     * {@link ServerResponse}. Bodies of error responses are still collected to report the failure.
+     * 
+     * @param responseConsumer The stream receiving the response bodies, may be {@code null} to collect them. The
+     *            stream is not closed and is written to by an I/O thread of the HTTP client.
+     */
+    public void setResponseConsumer( OutputStream responseConsumer )
+    {
+        this.responseConsumer = responseConsumer;
+    }
+
+    /**
+     * Sets whether the bodies of PUT and POST requests are sent gzip compressed. Bodies whose content type or name
+     * indicates compressed data are always sent as-is. If a server rejects a compressed body with status code 415, the
+     * request is repeated uncompressed and further requests to that server are not compressed for a while. Note that
+     * the HTTP client reads a compressed body completely into memory before sending it.
+     * 
+     * @param requestCompression {@code true} to compress request bodies, {@code false} (the default) to send them
+     *            as-is.
+     */
+    public void setRequestCompression( boolean requestCompression )
+    {
+        this.requestCompression = requestCompression;
+    }
+
     /**
      * Uploads a file to the specified URL.
      * 
@@ -64,12 +139,133 @@ public class HttpPublisher
                                            boolean statusException, String httpMethod )
         throws IOException
     {
-        AsyncHttpClientConfig.Builder confBuilder = init( uri, authService, proxyService, timeoutInMilliseconds );
-        AsyncHttpClientConfig conf = confBuilder.build();
+        return doDataExchangeAsync( file, uri, monitor, monitorSubtaskName, authService, proxyService,
+                                    timeoutInMilliseconds, statusException, httpMethod ).await();
+    }
+
+    private TransferFuture<ServerResponse> doDataExchangeAsync( final RequestEntity file, final URI uri,
+                                                                final IProgressMonitor monitor,
+                                                                String monitorSubtaskName,
+                                                                final IAuthService authService,
+                                                                final IProxyService proxyService,
+                                                                Integer timeoutInMilliseconds,
+                                                                boolean statusException, String httpMethod )
+        throws IOException
+    {
+        AsyncHttpClient httpClient = init( uri, authService, proxyService, timeoutInMilliseconds, 0 );
 
-        AsyncHttpClient httpClient = new AsyncHttpClient( conf );
+        if ( monitorSubtaskName == null && file != null )
+        {
+            monitorSubtaskName = "Uploading file " + file.getName();
+        }
+
+        Exchange exchange =
+            new Exchange( file, uri, monitor, monitorSubtaskName, statusException, httpMethod, httpClient,
+                          getRetryPolicy( uri ) );
         try
         {
+            exchange.execute();
+        }
+        catch ( IOException e )
+        {
+            releaseClient( httpClient );
+            throw e;
+        }
+        catch ( RuntimeException e )
+        {
+            releaseClient( httpClient );
+            throw e;
+        }
+        return exchange.future;
+    }
+
+    /**
+     * The state of a request that spans all attempts made to complete it. The credentials, proxy and client are
+     * resolved once and reused by the retries.
+     */
+    private final class Exchange
+    {
+        final TransferFuture<ServerResponse> future = new TransferFuture<ServerResponse>();
+
+        private final RequestEntity file;
+
+        private final URI uri;
+
+        private final IProgressMonitor monitor;
+
+        private final String monitorSubtaskName;
+
+        private final boolean statusException;
+
+        private final String httpMethod;
+
+        private final AsyncHttpClient httpClient;
+
+        private final Realm realm;
+
+        private final ProxyServer proxyServer;
+
+        private final RetryPolicy retryPolicy;
+
+        private final int spillThreshold;
+
+        private final OutputStream consumer;
+
+        private boolean compress;
+
+        private int attempt;
+
+        private StreamDigester digester;
+
+        private final TransferRecorder recorder;
+
+        private final TimeoutPolicy timeouts;
+
+        private final TransferPriority priority;
+
+        private final ProgressAggregator uploadProgress;
+
+        private InputStream content;
+
+        private File compressed;
+
+        Exchange( RequestEntity file, URI uri, IProgressMonitor monitor, String monitorSubtaskName,
+                  boolean statusException, String httpMethod, AsyncHttpClient httpClient, RetryPolicy retryPolicy )
+        {
+            this.file = file;
+            this.uri = uri;
+            this.monitor = monitor;
+            this.monitorSubtaskName = monitorSubtaskName;
+            this.statusException = statusException;
+            this.httpMethod = httpMethod;
+            this.httpClient = httpClient;
+            this.realm = HttpPublisher.this.realm;
+            this.proxyServer = HttpPublisher.this.proxyServer;
+            this.timeouts = HttpPublisher.this.timeouts;
+            this.priority = HttpPublisher.this.priority;
+            this.retryPolicy = retryPolicy;
+            this.spillThreshold = responseSpillThreshold;
+            this.consumer = responseConsumer;
+            this.recorder = new TransferRecorder( httpMethod, uri );
+            // the attempts share a single task, so the monitor is not begun again by a retry
+            this.uploadProgress = new ProgressAggregator( SubMonitor.convert( monitor ) );
+            this.compress =
+                requestCompression && file != null && ( "PUT".equals( httpMethod ) || "POST".equals( httpMethod ) )
+                    && isCompressible( file ) && !getCompressionCache().isRejected( uri );
+        }
+
+        /**
+         * Sends the request. Failures after the request has been handed to the client complete the future, failures to
+         * prepare the request are thrown.
+         */
+        void execute()
+            throws IOException
+        {
+            attempt++;
+            recorder.attemptStarted();
+            closeContent();
+            uploadProgress.restart();
+
             FluentCaseInsensitiveStringsMap headers = new FluentCaseInsensitiveStringsMap();
 
             BoundRequestBuilder requestBuilder = null;
@@ -98,75 +294,153 @@ public class HttpPublisher
 
             requestBuilder.setRealm( realm ).setProxyServer( proxyServer );
 
-            PushAsyncHandler handler = null;
+            PushAsyncHandler handler =
+                new PushAsyncHandler( this, monitor, "Receiving response", spillThreshold, consumer );
+            TransferWatchdog.Watch<String> watch = TransferWatchdog.watch( handler, uri, timeouts, priority );
 
-            if ( file != null )
-            {
-                InputStream is = file.getContent();
+            // every attempt digests the content it sends
+            digester = ( file != null ) ? StreamDigester.create( getDigestAlgorithms() ) : null;
 
-                MonitoredInputStream mis = new MonitoredInputStream( is, SubMonitor.convert( monitor ) );
-                if ( monitorSubtaskName == null )
+            if ( file != null && compress )
+            {
+                headers.add( "Content-Encoding", "gzip" );
+                if ( file.getContentType() != null )
                 {
-                    monitorSubtaskName = "Uploading file " + file.getName();
+                    headers.add( "Content-Type", file.getContentType() );
                 }
-                mis.setName( monitorSubtaskName );
-                mis.setLength( (int) file.getContentLength() );
 
+                // the length of the compressed body is unknown, the progress refers to the original content
+                MonitoredInputStream mis = new MonitoredInputStream( file.getContent(), uploadProgress );
+                content = mis;
+                mis.setName( monitorSubtaskName );
+                mis.setLength( file.getContentLength() );
+                mis.setDigester( digester );
+
+                // the client would read a streamed body into memory as a whole, so the compressed body is sent from a
+                // temporary file which it hands to the channel directly
+                compressed = compress( mis );
+                headers.add( "Content-Length", Long.toString( compressed.length() ) );
+                watch.reserve( compressed.length() );
+                requestBuilder.setBody( compressed );
+            }
+            else if ( file != null )
+            {
                 headers.add( "Content-Length", Long.toString( file.getContentLength() ) );
                 if ( file.getContentType() != null )
                 {
                     headers.add( "Content-Type", file.getContentType() );
                 }
 
-                requestBuilder.setBody( mis );
+                // holds back the other requests to the host as soon as this one is sent
+                watch.reserve( file.getContentLength() );
+
+                // digests need the bytes to pass through the heap, which sending the file directly avoids
+                File source = ( digester == null ) ? getSourceFile( file ) : null;
+                if ( source != null )
+                {
+                    // let the kernel move the bytes, the handler tracks the progress of the channel
+                    requestBuilder.setBody( source );
+                    handler.setUploadMonitor( uploadProgress, monitorSubtaskName, file.getContentLength() );
+                }
+                else
+                {
+                    // every attempt sends a fresh stream of the content
+                    InputStream is = file.getContent();
+
+                    MonitoredInputStream mis = new MonitoredInputStream( is, uploadProgress );
+                    content = mis;
+                    mis.setName( monitorSubtaskName );
+                    mis.setLength( file.getContentLength() );
+                    mis.setDigester( digester );
+
+                    requestBuilder.setBody( watch.track( mis ) );
+                }
             }
-            handler = new PushAsyncHandler( monitor, "Receiving response" );
 
             // What's this for? (from previous Jetty code)
             // httpClient.registerListener( "org.eclipse.jetty.client.webdav.WebdavListener" );
 
             requestBuilder.setHeaders( headers );
 
-            IOException unknownException = null;
-            Future<String> future = requestBuilder.execute( handler );
             try
             {
-                future.get();
-            }
-            catch ( InterruptedException e )
-            {
-                throw new IOException( "Transfer was interrupted" );
+                future.setDelegate( watch.execute( requestBuilder ) );
             }
-            catch ( ExecutionException e )
+            catch ( IOException e )
             {
-                /*
-                 * Delay throwing this exception, as exceptions from the server get caught here and we don't need to
-                 * wrap them up. Handler already knows about them.
-                 */
-                unknownException = (IOException) new IOException().initCause( e );
+                handler.onThrowable( e );
             }
+        }
 
+        /**
+         * Completes the exchange with the outcome of an attempt, or schedules another attempt.
+         */
+        void finished( PushAsyncHandler handler )
+        {
             Throwable exception = handler.getException();
-            if ( exception != null )
+            int status = handler.getResponseStatus();
+
+            if ( compress && exception == null && status == HttpURLConnection.HTTP_UNSUPPORTED_TYPE
+                && !future.isDone() )
             {
-                if ( exception instanceof IOException )
+                // the server does not understand the content encoding, fall back to the plain body
+                log.debug( "Server rejected compressed request body for {}, sending it uncompressed", uri );
+                getCompressionCache().reject( uri );
+                compress = false;
+                handler.discard();
+                attempt--;
+                try
+                {
+                    execute();
+                }
+                catch ( IOException e )
+                {
+                    releaseClient( httpClient );
+                    future.fail( e );
+                }
+                catch ( RuntimeException e )
                 {
-                    throw (IOException) exception;
+                    releaseClient( httpClient );
+                    future.fail( e );
                 }
-                throw (IOException) new IOException( exception.getMessage() ).initCause( exception );
+                return;
             }
-            if ( unknownException != null )
+
+            if ( !future.isDone() && !handler.isConsumed() && ( monitor == null || !monitor.isCanceled() )
+                && retryPolicy.isRetryable( httpMethod, attempt, status, exception ) )
+            {
+                handler.discard();
+                retry( handler.getRetryAfter(), ( exception != null ) ? exception.toString() : "HTTP status code "
+                    + status );
+                return;
+            }
+
+            releaseClient( httpClient );
+            closeContent();
+
+            recorder.finished( status, exception );
+
+            if ( exception != null )
             {
-                throw unknownException;
+                handler.discard();
+                future.fail( exception );
+                return;
             }
 
-            ServerResponse response =
-                new ServerResponse( handler.getResponseStatus(), handler.getResponseContentBytes(),
-                                    handler.getEncoding() );
+            ServerResponse response;
+            try
+            {
+                response = handler.toResponse();
+            }
+            catch ( IOException e )
+            {
+                handler.discard();
+                future.fail( e );
+                return;
+            }
 
             if ( statusException )
             {
-                int status = handler.getResponseStatus();
                 switch ( status )
                 {
                     case HttpURLConnection.HTTP_OK:
@@ -175,44 +449,296 @@ public class HttpPublisher
                     case HttpURLConnection.HTTP_NO_CONTENT:
                         break;
                     case HttpURLConnection.HTTP_UNAUTHORIZED:
-                        throw new UnauthorizedException( "HTTP status code " + status + ": Unauthorized: " + uri );
+                        evictAuthData( uri );
+                        response.dispose();
+                        future.fail( new UnauthorizedException( "HTTP status code " + status + ": Unauthorized: "
+                            + uri ) );
+                        return;
                     case HttpURLConnection.HTTP_FORBIDDEN:
-                        throw new ForbiddenException( "HTTP status code " + status + ": Forbidden: " + uri );
+                        response.dispose();
+                        future.fail( new ForbiddenException( "HTTP status code " + status + ": Forbidden: " + uri ) );
+                        return;
                     case HttpURLConnection.HTTP_NOT_FOUND:
-                        throw new NotFoundException( "HTTP status code " + status + ": Not Found: " + uri );
+                        response.dispose();
+                        future.fail( new NotFoundException( "HTTP status code " + status + ": Not Found: " + uri ) );
+                        return;
                     default:
-                        throw new TransferException( "HTTP status code " + status + ": " + uri, response, null );
+                        future.fail( new TransferException( "HTTP status code " + status + ": " + uri, response, null ) );
+                        return;
                 }
             }
 
-            return response;
+            if ( digester != null )
+            {
+                response.setDigests( digester.finish() );
+            }
+
+            future.complete( response );
         }
-        finally
+
+        /**
+         * Closes the content stream of the previous attempt and deletes its compressed body.
+         */
+        private void closeContent()
         {
-            httpClient.close();
+            if ( content != null )
+            {
+                try
+                {
+                    content.close();
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Failed to close request body of " + uri, e );
+                }
+                content = null;
+            }
+            if ( compressed != null )
+            {
+                compressed.delete();
+                compressed = null;
+            }
         }
+
+        /**
+         * Writes the gzip compressed form of the specified content to a temporary file.
+         */
+        private File compress( InputStream is )
+            throws IOException
+        {
+            File tmp = File.createTempFile( "s2io", ".gz" );
+            boolean success = false;
+            try
+            {
+                InputStream gzip = new GzipCompressingInputStream( is );
+                try
+                {
+                    OutputStream os = new FileOutputStream( tmp );
+                    try
+                    {
+                        byte[] buffer = new byte[8 * 1024];
+                        for ( int n; ( n = gzip.read( buffer ) ) >= 0; )
+                        {
+                            os.write( buffer, 0, n );
+                        }
+                    }
+                    finally
+                    {
+                        os.close();
+                    }
+                }
+                finally
+                {
+                    gzip.close();
+                }
+                success = true;
+                return tmp;
+            }
+            finally
+            {
+                if ( !success )
+                {
+                    tmp.delete();
+                }
+            }
+        }
+
+        private void retry( String retryAfter, String reason )
+        {
+            long delay = retryPolicy.getDelay( attempt, retryAfter );
+            log.debug( "Retrying {} {} in {} ms after " + reason, new Object[] { httpMethod, uri, delay } );
+            if ( monitor != null )
+            {
+                monitor.subTask( "Retrying " + uri + " (attempt " + ( attempt + 1 ) + " of "
+                    + retryPolicy.getMaxAttempts() + ")" );
+            }
+            RetryPolicy.schedule( new Runnable()
+            {
+                public void run()
+                {
+                    if ( future.isDone() )
+                    {
+                        // cancelled meanwhile
+                        releaseClient( httpClient );
+                        closeContent();
+                        recorder.finished( 0, new IOException( "Transfer has been canceled" ) );
+                        return;
+                    }
+                    try
+                    {
+                        execute();
+                    }
+                    catch ( IOException e )
+                    {
+                        releaseClient( httpClient );
+                        future.fail( e );
+                    }
+                    catch ( RuntimeException e )
+                    {
+                        releaseClient( httpClient );
+                        future.fail( e );
+                    }
+                }
+            }, delay );
+        }
+    }
+
+    /**
+     * Decides whether compressing the specified request body is worthwhile.
+     */
+    private static boolean isCompressible( RequestEntity file )
+    {
+        if ( file.getContentLength() >= 0 && file.getContentLength() < MIN_COMPRESSION_LENGTH )
+        {
+            return false;
+        }
+        String type = file.getContentType();
+        if ( type != null )
+        {
+            type = type.toLowerCase( Locale.ENGLISH );
+            for ( String compressed : COMPRESSED_TYPES )
+            {
+                if ( type.startsWith( compressed ) && !type.startsWith( "image/svg" ) )
+                {
+                    return false;
+                }
+            }
+        }
+        String name = file.getName();
+        if ( name != null )
+        {
+            name = name.toLowerCase( Locale.ENGLISH );
+            for ( String extension : COMPRESSED_EXTENSIONS )
+            {
+                if ( name.endsWith( extension ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static CompressionCache getCompressionCache()
+    {
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        return ( plugin != null ) ? plugin.getCompressionCache() : standaloneCompressionCache;
+    }
+
+    /**
+     * Gets the file to send directly from disk, if any.
+     * 
+     * @return The file backing the entity or {@code null} if the content needs to be streamed.
+     */
+    private static File getSourceFile( RequestEntity file )
+    {
+        if ( file instanceof FileRequestEntity )
+        {
+            File source = ( (FileRequestEntity) file ).getFile();
+            if ( source.isFile() && source.length() == file.getContentLength() )
+            {
+                return source;
+            }
+        }
+        return null;
     }
 
     private final class PushAsyncHandler
         extends BaseAsyncHandler
+        implements ProgressAsyncHandler<String>
     {
-        private final MonitoredOutputStream mos;
+        private final IProgressMonitor monitor;
 
-        private Throwable exception;
+        private final String taskName;
+
+        private final ResponseBodyOutputStream body;
+
+        private final OutputStream consumer;
 
-        private ByteArrayOutputStream baos = new ByteArrayOutputStream( 1024 );
+        private MonitoredOutputStream mos;
+
+        private ProgressAggregator uploadProgress;
+
+        private String uploadName;
+
+        private long uploadLength;
+
+        private long uploaded;
+
+        private Throwable exception;
 
         private int responseStatus;
 
-        private PushAsyncHandler( IProgressMonitor monitor, String taskName )
+        private String retryAfter;
+
+        private boolean consumed;
+
+        private final Exchange exchange;
+
+        private boolean finished;
+
+        private PushAsyncHandler( Exchange exchange, IProgressMonitor monitor, String taskName, int spillThreshold,
+                                  OutputStream consumer )
         {
-            this.mos = new MonitoredOutputStream( baos, monitor );
-            mos.setName( taskName );
+            this.exchange = exchange;
+            this.monitor = monitor;
+            this.taskName = taskName;
+            this.body = new ResponseBodyOutputStream( spillThreshold );
+            this.consumer = consumer;
+        }
+
+        /**
+         * Reports the progress of a body that is written by the HTTP client itself to the specified task.
+         */
+        public void setUploadMonitor( ProgressAggregator progress, String name, long length )
+        {
+            this.uploadProgress = progress;
+            this.uploadName = name;
+            this.uploadLength = length;
+        }
+
+        public STATE onHeaderWriteCompleted()
+        {
+            return checkUploadCancel();
         }
 
-        public byte[] getResponseContentBytes()
+        public STATE onContentWriteProgress( long amount, long current, long total )
         {
-            return baos.toByteArray();
+            if ( uploadProgress != null )
+            {
+                uploadProgress.beginTask( uploadName, uploadLength );
+                // the amount is not reported consistently, so go by the position of the channel
+                if ( current > uploaded )
+                {
+                    uploadProgress.worked( current - uploaded );
+                    uploaded = current;
+                }
+            }
+            return checkUploadCancel();
+        }
+
+        public STATE onContentWriteCompleted()
+        {
+            if ( exchange.file != null )
+            {
+                exchange.recorder.sent( exchange.file.getContentLength() );
+            }
+            if ( uploadProgress != null && uploadProgress.isStarted() )
+            {
+                uploadProgress.done();
+            }
+            return STATE.CONTINUE;
+        }
+
+        private STATE checkUploadCancel()
+        {
+            if ( uploadProgress != null && uploadProgress.isCanceled() )
+            {
+                error( new IOException( "Transfer has been canceled" ) );
+                finish();
+                return STATE.ABORT;
+            }
+            return STATE.CONTINUE;
         }
 
         public int getResponseStatus()
@@ -220,7 +746,7 @@ public class HttpPublisher
             return responseStatus;
         }
 
-        public Throwable getException()
+        public synchronized Throwable getException()
         {
             return exception;
         }
@@ -230,6 +756,7 @@ public class HttpPublisher
         {
             super.onThrowable( t );
             error( t );
+            finish();
         }
 
         @Override
@@ -237,7 +764,12 @@ public class HttpPublisher
             throws Exception
         {
             STATE retval = super.onBodyPartReceived( bodyPart );
-            bodyPart.writeTo( mos );
+            if ( mos == null )
+            {
+                setResponseTarget( body );
+            }
+            consumed |= ( consumer != null && mos.getTarget() == consumer );
+            exchange.recorder.received( bodyPart.writeTo( mos ) );
             return retval;
         }
 
@@ -246,26 +778,82 @@ public class HttpPublisher
             throws Exception
         {
             this.responseStatus = responseStatus.getStatusCode();
+            exchange.recorder.responseStarted();
+            // error responses are always collected, they are needed to report the failure
+            boolean success = this.responseStatus >= 200 && this.responseStatus < 300;
+            setResponseTarget( ( consumer != null && success ) ? consumer : body );
             return handleStatus( responseStatus );
         }
 
+        private void setResponseTarget( OutputStream target )
+        {
+            mos = new MonitoredOutputStream( target, monitor );
+            mos.setName( taskName );
+        }
+
         @Override
         public STATE onHeadersReceived( HttpResponseHeaders headers )
             throws Exception
         {
+            retryAfter = headers.getHeaders().getFirstValue( "Retry-After" );
             return super.onHeadersReceived( headers );
         }
 
+        public String getRetryAfter()
+        {
+            return retryAfter;
+        }
+
+        /**
+         * @return {@code true} if some of the response body has been passed to the caller's stream.
+         */
+        public boolean isConsumed()
+        {
+            return consumed;
+        }
+
+        public ServerResponse toResponse()
+            throws IOException
+        {
+            return body.toResponse( getResponseStatus(), getEncoding() );
+        }
+
+        public void discard()
+        {
+            body.discard();
+        }
+
         @Override
         public String onCompleted()
             throws Exception
         {
+            if ( mos != null )
+            {
+                mos.flushProgress();
+            }
+            finish();
             return "";
         }
 
-        private void error( Throwable e )
+        private synchronized void error( Throwable e )
+        {
+            if ( exception == null )
+            {
+                exception = e;
+            }
+        }
+
+        private void finish()
         {
-            exception = e;
+            synchronized ( this )
+            {
+                if ( finished )
+                {
+                    return;
+                }
+                finished = true;
+            }
+            exchange.finished( this );
         }
     }
 
@@ -288,6 +876,54 @@ public class HttpPublisher
                                timeoutInMilliseconds, true, "POST" );
     }
 
+    /**
+     * Uploads a file to the specified URL without waiting for the transfer to finish.
+     * 
+     * @return The pending server response, never {@code null}. The future fails with a {@link TransferException} if
+     *         the server rejected the resource.
+     * @see #putFile(RequestEntity, URI, IProgressMonitor, String, IAuthService, IProxyService, Integer)
+     */
+    public TransferFuture<ServerResponse> putFileAsync( final RequestEntity file, final URI url,
+                                                        final IProgressMonitor monitor, String monitorSubtaskName,
+                                                        final IAuthService authService,
+                                                        final IProxyService proxyService,
+                                                        Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        return doDataExchangeAsync( file, url, monitor, monitorSubtaskName, authService, proxyService,
+                                    timeoutInMilliseconds, true, "PUT" );
+    }
+
+    public TransferFuture<ServerResponse> postFileAsync( final RequestEntity file, final URI url,
+                                                         final IProgressMonitor monitor, String monitorSubtaskName,
+                                                         final IAuthService authService,
+                                                         final IProxyService proxyService,
+                                                         Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        return doDataExchangeAsync( file, url, monitor, monitorSubtaskName, authService, proxyService,
+                                    timeoutInMilliseconds, true, "POST" );
+    }
+
+    public TransferFuture<ServerResponse> deleteAsync( final URI url, final IProgressMonitor monitor,
+                                                       String monitorSubtaskName, final IAuthService authService,
+                                                       final IProxyService proxyService, Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        return doDataExchangeAsync( null /* file */, url, monitor, monitorSubtaskName, authService, proxyService,
+                                    timeoutInMilliseconds, true, "DELETE" );
+    }
+
+    public TransferFuture<ServerResponse> headFileAsync( final URI url, final IProgressMonitor monitor,
+                                                         String monitorSubtaskName, final IAuthService authService,
+                                                         final IProxyService proxyService,
+                                                         Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        return doDataExchangeAsync( null, url, monitor, monitorSubtaskName, authService, proxyService,
+                                    timeoutInMilliseconds, false, "HEAD" );
+    }
+
     public ServerResponse headFile( final URI url, final IProgressMonitor monitor, String monitorSubtaskName,
                                     final IAuthService authService, final IProxyService proxyService,
                                     Integer timeoutInMilliseconds )
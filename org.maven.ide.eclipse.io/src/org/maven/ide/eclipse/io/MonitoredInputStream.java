@@ -10,21 +10,29 @@ class MonitoredInputStream
     extends FilterInputStream
 {
 
-    private final IProgressMonitor monitor;
-
     private volatile String name = "";
 
-    private volatile int length = IProgressMonitor.UNKNOWN;
+    private volatile long length = IProgressMonitor.UNKNOWN;
 
     private volatile Throwable exception;
 
-    private boolean started;
+    private final ProgressAggregator progress;
+
+    private volatile StreamDigester digester;
 
     public MonitoredInputStream( InputStream is, IProgressMonitor monitor )
+    {
+        this( is, new ProgressAggregator( monitor ) );
+    }
+
+    /**
+     * Creates a stream that reports to an existing task, e.g. one shared by the attempts of a retried transfer.
+     */
+    MonitoredInputStream( InputStream is, ProgressAggregator progress )
     {
         super( is );
 
-        this.monitor = monitor;
+        this.progress = progress;
     }
 
     public void setName( String name )
@@ -32,11 +40,28 @@ class MonitoredInputStream
         this.name = name;
     }
 
-    public void setLength( int length )
+    public void setLength( long length )
     {
         this.length = length;
     }
 
+    /**
+     * Sets the digester to feed with the data read from the stream. The digests are completed at the end of the
+     * stream.
+     */
+    public void setDigester( StreamDigester digester )
+    {
+        this.digester = digester;
+    }
+
+    /**
+     * Shows the specified detail of the transfer in the progress monitor.
+     */
+    public void subTask( String name )
+    {
+        progress.subTask( name );
+    }
+
     public void setException( Throwable exception )
     {
         if ( this.exception == null )
@@ -45,6 +70,11 @@ class MonitoredInputStream
         }
     }
 
+    public Throwable getException()
+    {
+        return exception;
+    }
+
     @Override
     public int read()
         throws IOException
@@ -55,24 +85,21 @@ class MonitoredInputStream
 
         checkForError();
 
-        if ( monitor != null )
+        progress.beginTask( name, length );
+        if ( c < 0 )
         {
-            if ( !started )
-            {
-                monitor.beginTask( name, length );
-            }
-            if ( c < 0 )
-            {
-                monitor.done();
-            }
-            else
+            progress.done();
+            finishDigests();
+        }
+        else
+        {
+            progress.worked( 1 );
+            if ( digester != null )
             {
-                monitor.worked( 1 );
+                digester.update( new byte[] { (byte) c }, 0, 1 );
             }
         }
 
-        started = true;
-
         return c;
     }
 
@@ -86,31 +113,67 @@ class MonitoredInputStream
 
         checkForError();
 
-        if ( monitor != null )
+        progress.beginTask( name, length );
+        if ( n < 0 )
         {
-            if ( !started )
-            {
-                monitor.beginTask( name, length );
-            }
-            if ( n < 0 )
+            progress.done();
+            finishDigests();
+        }
+        else
+        {
+            progress.worked( n );
+            if ( digester != null )
             {
-                monitor.done();
+                digester.update( b, off, n );
             }
-            else
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip( long n )
+        throws IOException
+    {
+        if ( digester == null )
+        {
+            return super.skip( n );
+        }
+        // the skipped data needs to be digested as well
+        long skipped = 0;
+        byte[] buffer = new byte[(int) Math.min( n, 8 * 1024 )];
+        while ( skipped < n )
+        {
+            int read = read( buffer, 0, (int) Math.min( buffer.length, n - skipped ) );
+            if ( read < 0 )
             {
-                monitor.worked( n );
+                break;
             }
+            skipped += read;
         }
+        return skipped;
+    }
 
-        started = true;
+    @Override
+    public void close()
+        throws IOException
+    {
+        progress.flush();
+        super.close();
+    }
 
-        return n;
+    private void finishDigests()
+    {
+        if ( digester != null )
+        {
+            digester.finish();
+        }
     }
 
     private void checkForCancel()
         throws IOException
     {
-        if ( monitor != null && monitor.isCanceled() )
+        if ( progress.isCanceled() )
         {
             throw new IOException( "Transfer has been canceled" );
         }
@@ -132,9 +195,13 @@ class MonitoredInputStream
         }
     }
 
+    /**
+     * Tells whether the monitor has been canceled. Like the reads, this queries the monitor at a bounded rate, so the
+     * HTTP client's I/O thread may call it for every received part.
+     */
     public boolean isCancelled()
     {
-        return monitor.isCanceled();
+        return progress.isCanceled();
     }
 
 }
@@ -9,11 +9,9 @@ import org.eclipse.core.runtime.IProgressMonitor;
 public class MonitoredOutputStream
     extends FilterOutputStream
 {
-    private IProgressMonitor monitor;
+    private long length = IProgressMonitor.UNKNOWN;
 
-    private int length = IProgressMonitor.UNKNOWN;
-
-    private boolean started = false;
+    private final ProgressAggregator progress;
 
     private String name = "";
 
@@ -21,7 +19,7 @@ public class MonitoredOutputStream
     {
         super( out );
 
-        this.monitor = monitor;
+        this.progress = new ProgressAggregator( monitor );
     }
 
     /**
@@ -30,7 +28,7 @@ public class MonitoredOutputStream
      * 
      * @param length
      */
-    public void setLength( int length )
+    public void setLength( long length )
     {
         this.length = length;
     }
@@ -45,13 +43,21 @@ public class MonitoredOutputStream
     }
 
     /**
-     * Returns the cancelled state of the progress monitor
+     * Gets the stream the data is written to.
+     */
+    OutputStream getTarget()
+    {
+        return out;
+    }
+
+    /**
+     * Returns the cancelled state of the progress monitor, which is queried at most once per report interval.
      * 
      * @return true if the progress monitor has been cancelled. False otherwise.
      */
     public boolean isCancelled()
     {
-        return monitor.isCanceled();
+        return progress.isCanceled();
     }
     
     @Override
@@ -62,21 +68,42 @@ public class MonitoredOutputStream
         
         super.write( b );
         
-        if ( monitor != null )
-        {
-            if ( !started )
-            {
-                started = true;
-                monitor.beginTask( name, length );
-            }
-            monitor.worked( 1 );
-        }
+        progress.beginTask( name, length );
+        progress.worked( 1 );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        checkForCancel();
+
+        out.write( b, off, len );
+
+        progress.beginTask( name, length );
+        progress.worked( len );
+    }
+
+    /**
+     * Reports the progress that has been buffered so far to the monitor.
+     */
+    void flushProgress()
+    {
+        progress.flush();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        progress.flush();
+        super.close();
     }
     
     private void checkForCancel()
         throws IOException
     {
-        if ( monitor != null && monitor.isCanceled() )
+        if ( progress.isCanceled() )
         {
             throw new IOException( "Transfer has been cancelled" );
         }
@@ -0,0 +1,167 @@
+package org.maven.ide.eclipse.io;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Buffers the work reported for a transfer and passes it on to a progress monitor at a bounded rate, i.e. when the
+ * report interval elapsed or another percent of the total work has been done. Progress monitors of the UI are updated
+ * across threads, so calling them for every read or written chunk noticeably slows down fast transfers. Checks for
+ * cancellation are throttled to the same interval. The buffered work is always reported by {@link #done()}, so the
+ * monitor ends up with the exact total.
+ * <p>
+ * The work is counted in bytes. Totals beyond the {@code int} range of {@link IProgressMonitor} are scaled down to fit,
+ * the monitor is then passed whole multiples of the scale.
+ * <p>
+ * Instances are meant to be used by the thread that performs the transfer, only the check for cancellation may also
+ * be called by other threads, e.g. the I/O thread of the HTTP client.
+ */
+class ProgressAggregator
+{
+    /**
+     * The minimum time between two updates of the monitor, in nanoseconds.
+     */
+    static final long REPORT_INTERVAL = 100L * 1000 * 1000;
+
+    private final IProgressMonitor monitor;
+
+    private boolean started;
+
+    private long scale = 1;
+
+    private long step = Long.MAX_VALUE;
+
+    private long worked;
+
+    private long reported;
+
+    private long repeated;
+
+    private long lastReport;
+
+    private volatile long lastCancelCheck;
+
+    private volatile boolean cancelChecked;
+
+    private volatile boolean canceled;
+
+    public ProgressAggregator( IProgressMonitor monitor )
+    {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Starts the task unless that has already been done.
+     *
+     * @param name The name of the task, must not be {@code null}.
+     * @param totalWork The total work in bytes, may be {@link IProgressMonitor#UNKNOWN}.
+     */
+    public void beginTask( String name, long totalWork )
+    {
+        if ( started )
+        {
+            return;
+        }
+        started = true;
+        if ( totalWork > 0 )
+        {
+            step = Math.max( 1, totalWork / 100 );
+            scale = totalWork / Integer.MAX_VALUE + 1;
+        }
+        lastReport = System.nanoTime();
+        if ( monitor != null )
+        {
+            monitor.beginTask( name, ( totalWork >= 0 ) ? (int) ( totalWork / scale ) : IProgressMonitor.UNKNOWN );
+        }
+    }
+
+    public boolean isStarted()
+    {
+        return started;
+    }
+
+    public void worked( long work )
+    {
+        if ( repeated > 0 )
+        {
+            long skipped = Math.min( repeated, work );
+            repeated -= skipped;
+            work -= skipped;
+        }
+        if ( work <= 0 )
+        {
+            return;
+        }
+        worked += work;
+        if ( worked - reported >= step || System.nanoTime() - lastReport >= REPORT_INTERVAL )
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Prepares the task for another attempt of the transfer, which starts over from the first byte. The work of the new
+     * attempt is only counted once it goes beyond the work done so far, so the monitor neither moves past its total
+     * nor sees the task begin twice.
+     */
+    public void restart()
+    {
+        repeated = worked;
+    }
+
+    /**
+     * Reports the buffered work to the monitor.
+     */
+    public void flush()
+    {
+        long units = ( worked - reported ) / scale;
+        if ( units > 0 )
+        {
+            if ( monitor != null )
+            {
+                monitor.worked( (int) Math.min( units, Integer.MAX_VALUE ) );
+            }
+            reported += units * scale;
+        }
+        lastReport = System.nanoTime();
+    }
+
+    /**
+     * Reports the buffered work and finishes the task.
+     */
+    public void done()
+    {
+        flush();
+        if ( monitor != null )
+        {
+            monitor.done();
+        }
+    }
+
+    /**
+     * Checks whether the monitor has been canceled. The monitor is queried on the first call and afterwards at most
+     * once per report interval, the cancellation is sticky.
+     */
+    public boolean isCanceled()
+    {
+        if ( monitor == null || canceled )
+        {
+            return canceled;
+        }
+        long now = System.nanoTime();
+        if ( !cancelChecked || now - lastCancelCheck >= REPORT_INTERVAL )
+        {
+            cancelChecked = true;
+            lastCancelCheck = now;
+            canceled = monitor.isCanceled();
+        }
+        return canceled;
+    }
+
+    public void subTask( String name )
+    {
+        if ( monitor != null )
+        {
+            monitor.subTask( name );
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Collects a response body in memory and moves it into a temporary file once it exceeds a threshold, so that large
+ * responses don't need to fit into the heap.
+ */
+class ResponseBodyOutputStream
+    extends OutputStream
+{
+    private final int threshold;
+
+    private Buffer buffer = new Buffer();
+
+    private File file;
+
+    private OutputStream fos;
+
+    /**
+     * @param threshold The maximum number of bytes to keep in memory, negative to never spill into a file.
+     */
+    public ResponseBodyOutputStream( int threshold )
+    {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write( int b )
+        throws IOException
+    {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        if ( fos == null && threshold >= 0 && buffer.size() + len > threshold )
+        {
+            file = File.createTempFile( "s2io-response", ".tmp" );
+            fos = new FileOutputStream( file );
+            buffer.writeTo( fos );
+            buffer = null;
+        }
+        if ( fos != null )
+        {
+            fos.write( b, off, len );
+        }
+        else
+        {
+            buffer.write( b, off, len );
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( fos != null )
+        {
+            fos.close();
+        }
+    }
+
+    /**
+     * Creates the server response for the collected body. The response takes over the data without copying it.
+     */
+    public ServerResponse toResponse( int statusCode, String encoding )
+        throws IOException
+    {
+        close();
+        if ( file != null )
+        {
+            return new ServerResponse( statusCode, encoding, file );
+        }
+        return new ServerResponse( statusCode, buffer.getBuffer(), buffer.size(), encoding );
+    }
+
+    /**
+     * Throws away the collected body.
+     */
+    public void discard()
+    {
+        try
+        {
+            close();
+        }
+        catch ( IOException e )
+        {
+            // ignored
+        }
+        if ( file != null )
+        {
+            file.delete();
+        }
+    }
+
+    static final class Buffer
+        extends ByteArrayOutputStream
+    {
+        Buffer()
+        {
+            super( 1024 );
+        }
+
+        byte[] getBuffer()
+        {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Controls how often a transfer is repeated after a transient failure, i.e. a connection failure, a timeout or one of
+ * the status codes 502, 503 and 504. Only idempotent requests ({@code GET}, {@code HEAD}, {@code PUT} and
+ * {@code DELETE}) are retried. The delay between attempts grows exponentially and is randomized to avoid many clients
+ * retrying in lockstep, a {@code Retry-After} header sent by the server is honoured up to the maximum delay.
+ */
+public final class RetryPolicy
+{
+    /**
+     * The policy that never retries a transfer.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy( 1, 0, 0 );
+
+    private static final Random random = new Random();
+
+    private static ScheduledExecutorService scheduler;
+
+    private static final Set<Retry> pending = new HashSet<Retry>();
+
+    private final int maxAttempts;
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    /**
+     * Creates a new retry policy.
+     * 
+     * @param maxAttempts The maximum number of attempts including the first one, {@code 1} to never retry.
+     * @param initialDelay The delay in milliseconds before the first retry, doubled for each further retry.
+     * @param maxDelay The maximum delay in milliseconds between two attempts.
+     */
+    public RetryPolicy( int maxAttempts, long initialDelay, long maxDelay )
+    {
+        this.maxAttempts = Math.max( 1, maxAttempts );
+        this.initialDelay = Math.max( 0, initialDelay );
+        this.maxDelay = Math.max( this.initialDelay, maxDelay );
+    }
+
+    public int getMaxAttempts()
+    {
+        return maxAttempts;
+    }
+
+    public long getInitialDelay()
+    {
+        return initialDelay;
+    }
+
+    public long getMaxDelay()
+    {
+        return maxDelay;
+    }
+
+    /**
+     * Checks whether a request that failed with the specified attempt may be repeated.
+     * 
+     * @param method The HTTP method of the request, must not be {@code null}.
+     * @param attempt The number of the failed attempt, starting at {@code 1}.
+     * @param status The status code received or {@code 0} if the request failed without response.
+     * @param error The error the request failed with, may be {@code null}.
+     * @return {@code true} if the request should be repeated, {@code false} otherwise.
+     */
+    public boolean isRetryable( String method, int attempt, int status, Throwable error )
+    {
+        if ( attempt >= maxAttempts || !isIdempotent( method ) )
+        {
+            return false;
+        }
+        if ( error != null )
+        {
+            return isTransient( error );
+        }
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Gets the delay before the next attempt.
+     * 
+     * @param attempt The number of the failed attempt, starting at {@code 1}.
+     * @param retryAfter The value of the {@code Retry-After} header of the response, may be {@code null}.
+     * @return The delay in milliseconds, never more than the maximum delay.
+     */
+    public long getDelay( int attempt, String retryAfter )
+    {
+        long delay = initialDelay << Math.min( 20, Math.max( 0, attempt - 1 ) );
+        delay = Math.min( maxDelay, delay );
+        // spread the retries of concurrent clients across the second half of the interval
+        long jitter = delay / 2;
+        if ( jitter > 0 )
+        {
+            synchronized ( random )
+            {
+                delay = delay - jitter + (long) ( random.nextDouble() * jitter );
+            }
+        }
+        // a server must not be able to park the transfer for longer than the caller is willing to wait
+        return Math.max( delay, Math.min( maxDelay, parseRetryAfter( retryAfter ) ) );
+    }
+
+    private static boolean isIdempotent( String method )
+    {
+        return "GET".equals( method ) || "HEAD".equals( method ) || "PUT".equals( method )
+            || "DELETE".equals( method );
+    }
+
+    private static boolean isTransient( Throwable error )
+    {
+        if ( error instanceof TransferException || error instanceof UnauthorizedException
+            || error instanceof ForbiddenException || error instanceof NotFoundException )
+        {
+            // the server responded, its answer won't change
+            return false;
+        }
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    static long parseRetryAfter( String retryAfter )
+    {
+        if ( retryAfter == null || retryAfter.length() <= 0 )
+        {
+            return 0;
+        }
+        try
+        {
+            return Math.max( 0, Long.parseLong( retryAfter.trim() ) * 1000 );
+        }
+        catch ( NumberFormatException e )
+        {
+            // not delta-seconds, try an HTTP-date
+        }
+        try
+        {
+            SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US );
+            return Math.max( 0, format.parse( retryAfter.trim() ).getTime() - System.currentTimeMillis() );
+        }
+        catch ( ParseException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Runs the specified task after a delay, on a shared daemon thread.
+     */
+    static void schedule( Runnable task, long delay )
+    {
+        synchronized ( RetryPolicy.class )
+        {
+            if ( scheduler == null )
+            {
+                scheduler = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+                {
+                    public Thread newThread( Runnable r )
+                    {
+                        Thread thread = new Thread( r, "S2 IO Retry" );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                } );
+            }
+            Retry retry = new Retry( task );
+            pending.add( retry );
+            scheduler.schedule( retry, delay, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * Stops the thread that runs the delayed retries. The retries that are still waiting are started right away on
+     * the calling thread, so their transfers complete instead of waiting forever. Retries scheduled afterwards start a
+     * new thread.
+     */
+    public static void shutdown()
+    {
+        Retry[] retries;
+        synchronized ( RetryPolicy.class )
+        {
+            if ( scheduler == null )
+            {
+                return;
+            }
+            scheduler.shutdownNow();
+            scheduler = null;
+            retries = pending.toArray( new Retry[pending.size()] );
+        }
+        for ( Retry retry : retries )
+        {
+            retry.run();
+        }
+    }
+
+    /**
+     * A scheduled retry, which runs at most once no matter whether it is due or the scheduler shuts down.
+     */
+    private static final class Retry
+        implements Runnable
+    {
+        private final Runnable task;
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        Retry( Runnable task )
+        {
+            this.task = task;
+        }
+
+        public void run()
+        {
+            synchronized ( RetryPolicy.class )
+            {
+                pending.remove( this );
+            }
+            if ( started.compareAndSet( false, true ) )
+            {
+                task.run();
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RetryPolicy[maxAttempts=" + maxAttempts + ", initialDelay=" + initialDelay + ", maxDelay=" + maxDelay
+            + "]";
+    }
+}
@@ -6,6 +6,9 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -20,6 +23,15 @@ public class S2IOFacade
         return S2IOPlugin.getDefault().getProxyService();
     }
 
+    /**
+     * Gets the per-host statistics of the HTTP requests made since the plugin was started. Clients interested in the
+     * individual requests can register a {@link TransferListener} as an OSGi service.
+     */
+    public static TransferStatistics getTransferStatistics()
+    {
+        return S2IOPlugin.getDefault().getTransferStatistics();
+    }
+
     public static InputStream openStream( String uri, IProgressMonitor monitor )
         throws IOException, URISyntaxException
     {
@@ -27,6 +39,100 @@ public class S2IOFacade
                                             S2IOFacade.getProxyService() );
     }
 
+    /**
+     * Opens a stream to the specified resource, optionally served from the local HTTP cache.
+     * 
+     * @param uri The resource to access, must not be {@code null}.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @param cachePolicy The cache policy for the request, may be {@code null} to use the policy registered for the
+     *            resource.
+     * @return The input stream to the specified resource, never {@code null}.
+     */
+    public static InputStream openStream( String uri, IProgressMonitor monitor, CachePolicy cachePolicy )
+        throws IOException, URISyntaxException
+    {
+        UrlFetcher fetcher = new UrlFetcher();
+        fetcher.setCachePolicy( cachePolicy );
+        return fetcher.openStream( new URI( uri ), monitor, AuthFacade.getAuthService(), S2IOFacade.getProxyService() );
+    }
+
+    /**
+     * Registers the cache policy for all resources whose URL starts with the specified prefix. Resources without a
+     * registered policy are always fetched from the server.
+     * 
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param cachePolicy The policy to apply, {@code null} or {@link CachePolicy#DEFAULT} to remove the registration.
+     */
+    public static void setCachePolicy( String urlPrefix, CachePolicy cachePolicy )
+    {
+        S2IOPlugin.getDefault().getHttpCache().setPolicy( urlPrefix, cachePolicy );
+    }
+
+    /**
+     * Registers the policy for repeating requests after transient failures for all resources whose URL starts with the
+     * specified prefix, e.g. a host. Requests to resources without a registered policy are not repeated.
+     * 
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param retryPolicy The policy to apply, {@code null} to remove the registration.
+     */
+    public static void setRetryPolicy( String urlPrefix, RetryPolicy retryPolicy )
+    {
+        S2IOPlugin.getDefault().setRetryPolicy( urlPrefix, retryPolicy );
+    }
+
+    /**
+     * Registers the connect, idle and total timeouts for all resources whose URL starts with the specified prefix, e.g.
+     * a host. Requests to resources without a registered policy use {@link TimeoutPolicy#DEFAULT}.
+     * 
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param timeoutPolicy The policy to apply, {@code null} to remove the registration.
+     */
+    public static void setTimeoutPolicy( String urlPrefix, TimeoutPolicy timeoutPolicy )
+    {
+        S2IOPlugin.getDefault().setTimeoutPolicy( urlPrefix, timeoutPolicy );
+    }
+
+    /**
+     * Limits the bandwidth used by all transfers together, e.g. to keep background transfers from saturating a shared
+     * link. The limit applies to uploads and downloads alike. It paces the requests of the transfers, a single request
+     * is not slowed down once it is under way, so {@link #downloadFile} fetches large resources in byte ranges while a
+     * limit applies. Changes take effect for the requests that are still to be sent.
+     * 
+     * @param bytesPerSecond The limit in bytes per second, {@code 0} to remove the limit.
+     */
+    public static void setBandwidthLimit( long bytesPerSecond )
+    {
+        S2IOPlugin.getDefault().getBandwidthLimiter().setLimit( bytesPerSecond );
+    }
+
+    /**
+     * Limits the bandwidth used by the transfers from and to the specified host. The global limit applies on top of
+     * this limit, see {@link #setBandwidthLimit(long)} for how the limits are enforced.
+     * 
+     * @param host The name of the host, must not be {@code null}.
+     * @param bytesPerSecond The limit in bytes per second, {@code 0} to remove the limit.
+     */
+    public static void setBandwidthLimit( String host, long bytesPerSecond )
+    {
+        S2IOPlugin.getDefault().getBandwidthLimiter().setLimit( host, bytesPerSecond );
+    }
+
+    /**
+     * Downloads the specified resource into a file. An interrupted HTTP download leaves a {@code .part} file and a
+     * journal next to the target, calling this method again resumes the download unless the resource changed.
+     * 
+     * @param uri The resource to download, must not be {@code null}.
+     * @param target The file to write the resource to, must not be {@code null}. An existing file is overwritten.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @throws IOException If the resource could not be downloaded.
+     */
+    public static void downloadFile( String uri, File target, IProgressMonitor monitor )
+        throws IOException, URISyntaxException
+    {
+        new UrlFetcher().download( new URI( uri ), target, monitor, AuthFacade.getAuthService(),
+                                   S2IOFacade.getProxyService() );
+    }
+
     public static ServerResponse put( RequestEntity file, String uri, IProgressMonitor monitor )
         throws IOException, URISyntaxException
     {
@@ -84,6 +190,95 @@ public class S2IOFacade
                                    S2IOFacade.getProxyService(), timeoutInMilliseconds );
     }
 
+    /**
+     * Opens a stream to the specified resource without blocking until the server responds.
+     * 
+     * @param uri The resource to access, must not be {@code null}.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @return The pending stream, never {@code null}. The future fails if the resource could not be opened.
+     */
+    public static TransferFuture<InputStream> openStreamAsync( String uri, IProgressMonitor monitor )
+        throws IOException, URISyntaxException
+    {
+        return new UrlFetcher().openStreamAsync( new URI( uri ), monitor, AuthFacade.getAuthService(),
+                                                 S2IOFacade.getProxyService() );
+    }
+
+    /**
+     * Uploads the specified entity without blocking until the transfer has finished.
+     * 
+     * @return The pending server response, never {@code null}. The future fails with a {@link TransferException} if
+     *         the server rejected the resource.
+     * @see #put(RequestEntity, String, Integer, IProgressMonitor, String)
+     */
+    public static TransferFuture<ServerResponse> putAsync( RequestEntity file, String uri,
+                                                           final Integer timeoutInMilliseconds,
+                                                           IProgressMonitor monitor, String monitorTaskName )
+        throws IOException, URISyntaxException
+    {
+        UrlPublisher publisher = new UrlPublisher();
+        publisher.setName( monitorTaskName );
+        return publisher.putFileAsync( file, new URI( uri ), monitor, AuthFacade.getAuthService(),
+                                       S2IOFacade.getProxyService(), timeoutInMilliseconds );
+    }
+
+    public static TransferFuture<ServerResponse> postAsync( RequestEntity file, String uri,
+                                                            final Integer timeoutInMilliseconds,
+                                                            IProgressMonitor monitor, String monitorTaskName )
+        throws IOException, URISyntaxException
+    {
+        UrlPublisher publisher = new UrlPublisher();
+        publisher.setName( monitorTaskName );
+        return publisher.postFileAsync( file, new URI( uri ), monitor, AuthFacade.getAuthService(),
+                                        S2IOFacade.getProxyService(), timeoutInMilliseconds );
+    }
+
+    public static TransferFuture<ServerResponse> deleteAsync( String uri, final Integer timeoutInMilliseconds,
+                                                              IProgressMonitor monitor, String monitorTaskName )
+        throws IOException, URISyntaxException
+    {
+        UrlPublisher publisher = new UrlPublisher();
+        publisher.setName( monitorTaskName );
+        return publisher.deleteAsync( new URI( uri ), monitor, AuthFacade.getAuthService(),
+                                      S2IOFacade.getProxyService(), timeoutInMilliseconds );
+    }
+
+    public static TransferFuture<ServerResponse> headAsync( String uri, final Integer timeoutInMilliseconds,
+                                                            IProgressMonitor monitor )
+        throws IOException, URISyntaxException
+    {
+        UrlPublisher publisher = new UrlPublisher();
+        return publisher.headFileAsync( new URI( uri ), monitor, AuthFacade.getAuthService(),
+                                        S2IOFacade.getProxyService(), timeoutInMilliseconds );
+    }
+
+    /**
+     * Checks the existence of many resources at once. HTTP resources are checked with concurrent head requests.
+     * 
+     * @param uris The resources to check, must not be {@code null}.
+     * @param monitor The monitor to notify of the progress of the whole batch, may be {@code null}.
+     * @return The status codes keyed by resource in iteration order of the input, never {@code null}. Requests that
+     *         failed without a response from the server are reported with {@link HttpHeadBatch#STATUS_FAILED}.
+     */
+    public static Map<String, Integer> existsAll( Collection<String> uris, IProgressMonitor monitor )
+        throws IOException, URISyntaxException
+    {
+        Map<URI, String> keys = new LinkedHashMap<URI, String>();
+        for ( String uri : uris )
+        {
+            keys.put( new URI( uri ), uri );
+        }
+        Map<URI, Integer> statuses =
+            new UrlPublisher().headFiles( keys.keySet(), monitor, AuthFacade.getAuthService(),
+                                          S2IOFacade.getProxyService(), null );
+        Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for ( Map.Entry<URI, String> key : keys.entrySet() )
+        {
+            result.put( key.getValue(), statuses.get( key.getKey() ) );
+        }
+        return result;
+    }
+
     public static boolean exists( String uri, IProgressMonitor monitor )
         throws IOException, URISyntaxException
     {
@@ -1,18 +1,63 @@
 package org.maven.ide.eclipse.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
 public class ServerResponse
 {
 
     private final int statusCode;
 
-    private final byte[] responseData;
+    private byte[] responseData;
+
+    private byte[] buffer;
+
+    private int length;
+
+    private File responseFile;
 
     private final String responseEncoding;
 
+    private Map<String, String> digests;
+
     public ServerResponse( int statusCode, byte[] responseData, String responseEncoding )
     {
         this.statusCode = statusCode;
         this.responseData = ( responseData != null ) ? responseData : new byte[0];
+        this.buffer = this.responseData;
+        this.length = this.responseData.length;
+        this.responseFile = null;
+        this.responseEncoding = responseEncoding;
+    }
+
+    /**
+     * Creates a response whose data is held in the first bytes of the specified buffer.
+     */
+    ServerResponse( int statusCode, byte[] buffer, int length, String responseEncoding )
+    {
+        this.statusCode = statusCode;
+        this.buffer = buffer;
+        this.length = length;
+        this.responseFile = null;
+        this.responseEncoding = responseEncoding;
+    }
+
+    /**
+     * Creates a response whose data has been stored in the specified temporary file.
+     */
+    ServerResponse( int statusCode, String responseEncoding, File responseFile )
+    {
+        this.statusCode = statusCode;
+        this.buffer = null;
+        this.length = -1;
+        this.responseFile = responseFile;
         this.responseEncoding = responseEncoding;
     }
 
@@ -27,15 +72,97 @@ public class ServerResponse
     }
 
     /**
-     * Gets the response data returned by the server.
+     * Gets the response data returned by the server. For large responses, {@link #getResponseStream()} avoids loading
+     * the entire data into memory. The temporary file of a large response is deleted once its data has been loaded.
      * 
      * @return The response data returned by the server, can be empty but never {@code null}.
+     * @throws IllegalStateException If the response data has been disposed.
      */
-    public byte[] getResponseData()
+    public synchronized byte[] getResponseData()
     {
+        if ( responseData == null )
+        {
+            if ( responseFile != null )
+            {
+                try
+                {
+                    responseData = readFile();
+                }
+                catch ( IOException e )
+                {
+                    throw new IllegalStateException( "Could not read response data from " + responseFile, e );
+                }
+                // from now on the data is served from memory
+                responseFile.delete();
+                responseFile = null;
+                buffer = responseData;
+                length = responseData.length;
+            }
+            else if ( buffer.length == length )
+            {
+                responseData = buffer;
+            }
+            else
+            {
+                responseData = new byte[length];
+                System.arraycopy( buffer, 0, responseData, 0, length );
+            }
+        }
         return responseData;
     }
 
+    /**
+     * Gets the length of the response data returned by the server.
+     * 
+     * @return The number of bytes of response data.
+     */
+    public synchronized long getResponseLength()
+    {
+        return ( responseFile != null ) ? responseFile.length() : length;
+    }
+
+    /**
+     * Opens a stream to the response data returned by the server without copying the data.
+     * 
+     * @return The stream to the response data, never {@code null}.
+     * @throws IOException If the response data could not be read.
+     */
+    public synchronized InputStream getResponseStream()
+        throws IOException
+    {
+        if ( responseFile != null )
+        {
+            return new FileInputStream( responseFile );
+        }
+        return new ByteArrayInputStream( buffer, 0, length );
+    }
+
+    /**
+     * Gets a read-only view of the response data returned by the server. Large responses are mapped into memory
+     * instead of being loaded into the heap.
+     * 
+     * @return The response data, never {@code null}.
+     * @throws IOException If the response data could not be read.
+     */
+    public synchronized ByteBuffer getResponseBuffer()
+        throws IOException
+    {
+        if ( responseFile != null )
+        {
+            RandomAccessFile raf = new RandomAccessFile( responseFile, "r" );
+            try
+            {
+                FileChannel channel = raf.getChannel();
+                return channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        return ByteBuffer.wrap( buffer, 0, length ).slice().asReadOnlyBuffer();
+    }
+
     /**
      * Gets the encoding of the response data returned by the server.
      * 
@@ -46,4 +173,61 @@ public class ServerResponse
         return responseEncoding;
     }
 
+    void setDigests( Map<String, String> digests )
+    {
+        this.digests = digests;
+    }
+
+    /**
+     * Gets the digests of the uploaded data, as requested via {@link UrlPublisher#setDigestAlgorithms(String...)}.
+     * 
+     * @return The digests as lower case hex strings, keyed by algorithm name, or {@code null} if no digests were
+     *         requested.
+     */
+    public Map<String, String> getDigests()
+    {
+        return digests;
+    }
+
+    /**
+     * Deletes the temporary file holding a large response. The response data must not be accessed afterwards. Data
+     * held in memory is not affected.
+     */
+    public synchronized void dispose()
+    {
+        if ( responseFile != null )
+        {
+            responseFile.delete();
+        }
+    }
+
+    private byte[] readFile()
+        throws IOException
+    {
+        if ( responseFile.length() > Integer.MAX_VALUE )
+        {
+            throw new IOException( "Response data of " + responseFile.length() + " bytes does not fit into an array" );
+        }
+        InputStream is = new FileInputStream( responseFile );
+        try
+        {
+            byte[] data = new byte[(int) responseFile.length()];
+            int off = 0;
+            while ( off < data.length )
+            {
+                int n = is.read( data, off, data.length - off );
+                if ( n < 0 )
+                {
+                    break;
+                }
+                off += n;
+            }
+            return data;
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
 }
@@ -0,0 +1,122 @@
+package org.maven.ide.eclipse.io;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Computes message digests of the data passing through a stream, so that the checksums of a transferred resource are
+ * known once the transfer is complete, without reading the data a second time.
+ */
+class StreamDigester
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<String, MessageDigest>();
+
+    private Map<String, String> results;
+
+    private StreamDigester( String[] algorithms )
+    {
+        for ( String algorithm : algorithms )
+        {
+            digests.put( algorithm, newDigest( algorithm ) );
+        }
+    }
+
+    /**
+     * Creates a digester for the specified algorithms.
+     * 
+     * @param algorithms The names of the digest algorithms, may be {@code null}.
+     * @return The digester or {@code null} if no algorithms were specified.
+     */
+    public static StreamDigester create( String[] algorithms )
+    {
+        return ( algorithms != null && algorithms.length > 0 ) ? new StreamDigester( algorithms ) : null;
+    }
+
+    /**
+     * Checks that the specified algorithms are supported by the platform and removes duplicates.
+     * 
+     * @param algorithms The names of the digest algorithms, may be {@code null}.
+     * @return The validated algorithm names, never {@code null}.
+     * @throws IllegalArgumentException If an algorithm is not supported.
+     */
+    public static String[] validate( String... algorithms )
+    {
+        Map<String, String> valid = new LinkedHashMap<String, String>();
+        if ( algorithms != null )
+        {
+            for ( String algorithm : algorithms )
+            {
+                newDigest( algorithm );
+                valid.put( algorithm.toUpperCase( Locale.ENGLISH ), algorithm );
+            }
+        }
+        return valid.values().toArray( new String[valid.size()] );
+    }
+
+    private static MessageDigest newDigest( String algorithm )
+    {
+        try
+        {
+            return MessageDigest.getInstance( algorithm );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalArgumentException( "Unsupported digest algorithm " + algorithm, e );
+        }
+    }
+
+    public synchronized void update( byte[] b, int off, int len )
+    {
+        if ( results == null )
+        {
+            for ( MessageDigest digest : digests.values() )
+            {
+                digest.update( b, off, len );
+            }
+        }
+    }
+
+    /**
+     * Completes the digests. Data passed in afterwards is ignored.
+     * 
+     * @return The digests as lower case hex strings, keyed by algorithm name, never {@code null}.
+     */
+    public synchronized Map<String, String> finish()
+    {
+        if ( results == null )
+        {
+            Map<String, String> hashes = new LinkedHashMap<String, String>();
+            for ( Map.Entry<String, MessageDigest> entry : digests.entrySet() )
+            {
+                hashes.put( entry.getKey(), toHex( entry.getValue().digest() ) );
+            }
+            results = Collections.unmodifiableMap( hashes );
+        }
+        return results;
+    }
+
+    /**
+     * @return The completed digests or {@code null} if the data has not been seen completely yet.
+     */
+    public synchronized Map<String, String> getDigests()
+    {
+        return results;
+    }
+
+    static String toHex( byte[] bytes )
+    {
+        char[] chars = new char[bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            chars[i * 2] = HEX[( bytes[i] >> 4 ) & 0x0F];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String( chars );
+    }
+}
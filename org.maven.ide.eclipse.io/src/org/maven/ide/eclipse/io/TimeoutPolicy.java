@@ -0,0 +1,118 @@
+package org.maven.ide.eclipse.io;
+
+/**
+ * Controls how long a transfer may take. The timeouts are separate for the different phases of a transfer, so a large
+ * upload that is progressing fine is not killed by a deadline meant for stuck connections:
+ * <ul>
+ * <li>the connect timeout limits the time to establish the connection to the server,</li>
+ * <li>the idle timeout limits the time without any data sent or received, including the wait for the response,</li>
+ * <li>the optional deadline limits the total time of an attempt,</li>
+ * <li>the optional minimum rate aborts transfers whose data still flows, but slower than the given number of bytes per
+ * second over the rate window.</li>
+ * </ul>
+ * Transfers aborted by a timeout fail with a {@link java.util.concurrent.TimeoutException} and are hence repeated if
+ * the {@link RetryPolicy} allows.
+ */
+public final class TimeoutPolicy
+{
+    /**
+     * The policy used for URLs without a registered policy.
+     */
+    public static final TimeoutPolicy DEFAULT = new TimeoutPolicy( 30 * 1000, 30 * 1000, 0 );
+
+    private final int connectTimeout;
+
+    private final int idleTimeout;
+
+    private final int deadline;
+
+    private final long minimumRate;
+
+    private final int rateWindow;
+
+    /**
+     * Creates a new timeout policy without a minimum transfer rate.
+     *
+     * @param connectTimeout The time in milliseconds to establish a connection.
+     * @param idleTimeout The time in milliseconds a transfer may go without sending or receiving data.
+     * @param deadline The total time in milliseconds an attempt may take, {@code 0} for no limit.
+     */
+    public TimeoutPolicy( int connectTimeout, int idleTimeout, int deadline )
+    {
+        this( connectTimeout, idleTimeout, deadline, 0, 0 );
+    }
+
+    /**
+     * Creates a new timeout policy.
+     *
+     * @param connectTimeout The time in milliseconds to establish a connection.
+     * @param idleTimeout The time in milliseconds a transfer may go without sending or receiving data.
+     * @param deadline The total time in milliseconds an attempt may take, {@code 0} for no limit.
+     * @param minimumRate The number of bytes per second a transfer must at least achieve once data flows, {@code 0}
+     *            for no limit.
+     * @param rateWindow The time in milliseconds the transfer rate is measured over.
+     */
+    public TimeoutPolicy( int connectTimeout, int idleTimeout, int deadline, long minimumRate, int rateWindow )
+    {
+        this.connectTimeout = Math.max( 1, connectTimeout );
+        this.idleTimeout = Math.max( 1, idleTimeout );
+        this.deadline = Math.max( 0, deadline );
+        this.minimumRate = Math.max( 0, minimumRate );
+        this.rateWindow = Math.max( 1000, rateWindow );
+    }
+
+    public int getConnectTimeout()
+    {
+        return connectTimeout;
+    }
+
+    public int getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * @return The total time in milliseconds an attempt may take, {@code 0} for no limit.
+     */
+    public int getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * @return The minimum number of bytes per second, {@code 0} for no limit.
+     */
+    public long getMinimumRate()
+    {
+        return minimumRate;
+    }
+
+    public int getRateWindow()
+    {
+        return rateWindow;
+    }
+
+    /**
+     * Derives the policy for a request with an explicit timeout. Historically, the timeout of a request limited its
+     * total time, it now limits the time the request may go without progress, so slow but steady transfers complete.
+     *
+     * @param timeoutInMilliseconds The timeout requested by the caller, may be {@code null} for this policy.
+     * @return The policy for the request, never {@code null}.
+     */
+    TimeoutPolicy withTimeout( Integer timeoutInMilliseconds )
+    {
+        if ( timeoutInMilliseconds == null || timeoutInMilliseconds.intValue() == idleTimeout )
+        {
+            return this;
+        }
+        int timeout = timeoutInMilliseconds.intValue();
+        return new TimeoutPolicy( Math.min( connectTimeout, timeout ), timeout, deadline, minimumRate, rateWindow );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TimeoutPolicy[connectTimeout=" + connectTimeout + ", idleTimeout=" + idleTimeout + ", deadline="
+            + deadline + ", minimumRate=" + minimumRate + ", rateWindow=" + rateWindow + "]";
+    }
+}
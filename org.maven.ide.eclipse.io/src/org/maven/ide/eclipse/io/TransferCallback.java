@@ -0,0 +1,24 @@
+package org.maven.ide.eclipse.io;
+
+/**
+ * Gets notified when an asynchronous transfer has finished. Callbacks are usually invoked from an I/O thread of the
+ * HTTP client and must therefore return quickly and never block on other transfers.
+ * 
+ * @param <T> The type of the transfer result.
+ */
+public interface TransferCallback<T>
+{
+    /**
+     * Notifies the callback of the successful completion of the transfer.
+     * 
+     * @param result The result of the transfer, may be {@code null}.
+     */
+    void completed( T result );
+
+    /**
+     * Notifies the callback that the transfer failed or was cancelled.
+     * 
+     * @param error The cause of the failure, never {@code null}.
+     */
+    void failed( Throwable error );
+}
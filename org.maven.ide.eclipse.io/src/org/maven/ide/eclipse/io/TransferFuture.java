@@ -0,0 +1,286 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pending result of an asynchronous transfer. Besides waiting for the result, callers can register callbacks that
+ * get notified once the transfer has finished.
+ * 
+ * @param <T> The type of the transfer result.
+ */
+public class TransferFuture<T>
+    implements Future<T>
+{
+    private static final Logger log = LoggerFactory.getLogger( TransferFuture.class );
+
+    private final List<TransferCallback<? super T>> callbacks = new ArrayList<TransferCallback<? super T>>( 2 );
+
+    private boolean done;
+
+    private boolean cancelled;
+
+    private T result;
+
+    private Throwable error;
+
+    private Future<?> delegate;
+
+    /**
+     * Creates a future that is already completed with the specified result.
+     */
+    public static <T> TransferFuture<T> completed( T result )
+    {
+        TransferFuture<T> future = new TransferFuture<T>();
+        future.complete( result );
+        return future;
+    }
+
+    /**
+     * Creates a future that has already failed with the specified error.
+     */
+    public static <T> TransferFuture<T> failed( Throwable error )
+    {
+        TransferFuture<T> future = new TransferFuture<T>();
+        future.fail( error );
+        return future;
+    }
+
+    /**
+     * Registers a callback to notify once the transfer has finished. If the transfer already finished, the callback is
+     * invoked immediately by the calling thread.
+     * 
+     * @param callback The callback to register, must not be {@code null}.
+     * @return This future, never {@code null}.
+     */
+    public TransferFuture<T> addCallback( TransferCallback<? super T> callback )
+    {
+        synchronized ( this )
+        {
+            if ( !done )
+            {
+                callbacks.add( callback );
+                return this;
+            }
+        }
+        notify( callback );
+        return this;
+    }
+
+    /**
+     * Sets the future of the underlying request, which gets cancelled along with this future.
+     */
+    synchronized void setDelegate( Future<?> delegate )
+    {
+        this.delegate = delegate;
+        if ( cancelled && delegate != null )
+        {
+            delegate.cancel( true );
+        }
+    }
+
+    /**
+     * Completes the transfer with the specified result.
+     * 
+     * @return {@code true} if the future was completed, {@code false} if it had already finished.
+     */
+    boolean complete( T result )
+    {
+        synchronized ( this )
+        {
+            if ( done )
+            {
+                return false;
+            }
+            this.result = result;
+            done = true;
+            notifyAll();
+        }
+        notifyCallbacks();
+        return true;
+    }
+
+    /**
+     * Fails the transfer with the specified error.
+     * 
+     * @return {@code true} if the future was failed, {@code false} if it had already finished.
+     */
+    boolean fail( Throwable error )
+    {
+        synchronized ( this )
+        {
+            if ( done )
+            {
+                return false;
+            }
+            this.error = error;
+            done = true;
+            notifyAll();
+        }
+        notifyCallbacks();
+        return true;
+    }
+
+    public boolean cancel( boolean mayInterruptIfRunning )
+    {
+        Future<?> delegate;
+        synchronized ( this )
+        {
+            if ( done )
+            {
+                return false;
+            }
+            cancelled = true;
+            delegate = this.delegate;
+        }
+        fail( new CancellationException( "Transfer has been canceled" ) );
+        if ( delegate != null )
+        {
+            delegate.cancel( mayInterruptIfRunning );
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    public synchronized boolean isDone()
+    {
+        return done;
+    }
+
+    /**
+     * Tells whether the transfer has been completed with the specified result, as opposed to having failed or been
+     * cancelled.
+     */
+    synchronized boolean isCompletedWith( Object value )
+    {
+        return done && error == null && result == value;
+    }
+
+    public synchronized T get()
+        throws InterruptedException, ExecutionException
+    {
+        while ( !done )
+        {
+            wait();
+        }
+        return getResult();
+    }
+
+    public synchronized T get( long timeout, TimeUnit unit )
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        long deadline = System.currentTimeMillis() + unit.toMillis( timeout );
+        while ( !done )
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if ( remaining <= 0 )
+            {
+                throw new TimeoutException();
+            }
+            wait( remaining );
+        }
+        return getResult();
+    }
+
+    /**
+     * Waits for the transfer to finish and unwraps any error, for use by the blocking variants of the transfer
+     * operations.
+     */
+    T await()
+        throws IOException
+    {
+        try
+        {
+            return get();
+        }
+        catch ( InterruptedException e )
+        {
+            cancel( true );
+            throw new IOException( "Transfer was interrupted" );
+        }
+        catch ( CancellationException e )
+        {
+            throw (IOException) new IOException( e.getMessage() ).initCause( e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw (IOException) new IOException( cause.getMessage() ).initCause( cause );
+        }
+    }
+
+    private T getResult()
+        throws ExecutionException
+    {
+        if ( error instanceof CancellationException )
+        {
+            throw (CancellationException) error;
+        }
+        if ( error != null )
+        {
+            throw new ExecutionException( error );
+        }
+        return result;
+    }
+
+    private void notifyCallbacks()
+    {
+        List<TransferCallback<? super T>> callbacks;
+        synchronized ( this )
+        {
+            callbacks = new ArrayList<TransferCallback<? super T>>( this.callbacks );
+            this.callbacks.clear();
+        }
+        for ( TransferCallback<? super T> callback : callbacks )
+        {
+            notify( callback );
+        }
+    }
+
+    private void notify( TransferCallback<? super T> callback )
+    {
+        T result;
+        Throwable error;
+        synchronized ( this )
+        {
+            result = this.result;
+            error = this.error;
+        }
+        try
+        {
+            if ( error != null )
+            {
+                callback.failed( error );
+            }
+            else
+            {
+                callback.completed( result );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            log.error( "Transfer callback failed", e );
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.maven.ide.eclipse.io;
+
+/**
+ * Gets notified of every HTTP request made by the io plugin, e.g. to find out why transfers are slow. Listeners are
+ * registered as OSGi services under this interface. They are usually invoked from an I/O thread of the HTTP client and
+ * must therefore be thread-safe and return quickly.
+ */
+public interface TransferListener
+{
+    /**
+     * Notifies the listener that a request has finished, successfully or not.
+     * 
+     * @param record The details of the request, never {@code null}.
+     */
+    void transferCompleted( TransferRecord record );
+}
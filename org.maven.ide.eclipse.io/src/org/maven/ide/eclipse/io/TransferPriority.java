@@ -0,0 +1,24 @@
+package org.maven.ide.eclipse.io;
+
+/**
+ * The urgency of a transfer. It decides the order in which the {@link TransferScheduler} starts the transfers that
+ * wait for a connection to the same host.
+ */
+public enum TransferPriority
+{
+    /**
+     * A user is waiting for the result, e.g. a lookup in a wizard page. These transfers are started first.
+     */
+    INTERACTIVE,
+
+    /**
+     * The priority of transfers that don't say otherwise.
+     */
+    NORMAL,
+
+    /**
+     * Bulk work nobody is actively waiting for, e.g. a large publish. These transfers leave a connection to their host
+     * free for the other priorities.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,161 @@
+package org.maven.ide.eclipse.io;
+
+import java.net.URI;
+
+/**
+ * The details of a finished HTTP request. A request that was retried after a transient failure yields a single record,
+ * the timings of which refer to the whole request while the time to the first byte refers to the last attempt.
+ */
+public class TransferRecord
+{
+    private final String method;
+
+    private final URI url;
+
+    private final int status;
+
+    private final long bytesIn;
+
+    private final long bytesOut;
+
+    private final int retries;
+
+    private final long timeToFirstByte;
+
+    private final long duration;
+
+    private final Throwable exception;
+
+    /**
+     * Creates a new record.
+     * 
+     * @param method The HTTP method of the request, must not be {@code null}.
+     * @param url The URL of the request, must not be {@code null}.
+     * @param status The status code of the response, {@code 0} if no response was received.
+     * @param bytesIn The number of bytes of the response body received.
+     * @param bytesOut The number of bytes of the request content sent.
+     * @param retries The number of attempts made in addition to the first one.
+     * @param timeToFirstByte The time in milliseconds until the response started, {@code -1} if no response was
+     *            received.
+     * @param duration The time in milliseconds until the request finished.
+     * @param exception The error that failed the request, may be {@code null}.
+     */
+    public TransferRecord( String method, URI url, int status, long bytesIn, long bytesOut, int retries,
+                           long timeToFirstByte, long duration, Throwable exception )
+    {
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.retries = retries;
+        this.timeToFirstByte = timeToFirstByte;
+        this.duration = duration;
+        this.exception = exception;
+    }
+
+    public String getMethod()
+    {
+        return method;
+    }
+
+    public URI getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * @return The host of the request URL, never {@code null}.
+     */
+    public String getHost()
+    {
+        return ( url.getHost() != null ) ? url.getHost() : "";
+    }
+
+    /**
+     * @return The status code of the response, {@code 0} if no response was received.
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return The number of bytes of the response body received by the last attempt.
+     */
+    public long getBytesIn()
+    {
+        return bytesIn;
+    }
+
+    /**
+     * @return The number of bytes of the request content sent by the last attempt. Compressed request bodies are
+     *         counted with their original size.
+     */
+    public long getBytesOut()
+    {
+        return bytesOut;
+    }
+
+    /**
+     * @return The number of attempts made in addition to the first one.
+     */
+    public int getRetries()
+    {
+        return retries;
+    }
+
+    /**
+     * @return The time in milliseconds from sending the last attempt until the response started, {@code -1} if no
+     *         response was received.
+     */
+    public long getTimeToFirstByte()
+    {
+        return timeToFirstByte;
+    }
+
+    /**
+     * @return The time in milliseconds from sending the first attempt until the request finished, including the
+     *         delays between retries.
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * @return The error that failed the request or {@code null} if a response was received completely. Note that
+     *         error responses like 404 are received completely.
+     */
+    public Throwable getException()
+    {
+        return exception;
+    }
+
+    /**
+     * @return {@code true} if the request failed or the server responded with an error status.
+     */
+    public boolean isFailed()
+    {
+        return exception != null || status >= 400 || status == 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder( 128 );
+        buffer.append( method ).append( ' ' ).append( url ).append( ' ' );
+        buffer.append( ( exception != null ) ? exception.toString() : String.valueOf( status ) );
+        buffer.append( " in " ).append( duration ).append( " ms" );
+        if ( timeToFirstByte >= 0 )
+        {
+            buffer.append( " (first byte after " ).append( timeToFirstByte ).append( " ms)" );
+        }
+        buffer.append( ", " ).append( bytesIn ).append( " bytes in, " ).append( bytesOut ).append( " bytes out" );
+        if ( retries > 0 )
+        {
+            buffer.append( ", " ).append( retries ).append( " retries" );
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package org.maven.ide.eclipse.io;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the timings and byte counts of a request across its attempts and hands the resulting {@link TransferRecord}
+ * to the registered {@link TransferListener}s once the request has finished.
+ */
+class TransferRecorder
+{
+    private static final Logger log = LoggerFactory.getLogger( TransferRecorder.class );
+
+    private final String method;
+
+    private final URI url;
+
+    private final long start = System.nanoTime();
+
+    private long attemptStart = start;
+
+    private long timeToFirstByte = -1;
+
+    private int attempts;
+
+    private long bytesIn;
+
+    private long bytesOut;
+
+    private boolean finished;
+
+    public TransferRecorder( String method, URI url )
+    {
+        this.method = method;
+        this.url = url;
+    }
+
+    /**
+     * Marks the (re)sending of the request, the counters of the previous attempt are discarded.
+     */
+    public synchronized void attemptStarted()
+    {
+        attempts++;
+        attemptStart = System.nanoTime();
+        timeToFirstByte = -1;
+        bytesIn = 0;
+        bytesOut = 0;
+    }
+
+    /**
+     * Marks the arrival of the response status.
+     */
+    public synchronized void responseStarted()
+    {
+        if ( timeToFirstByte < 0 )
+        {
+            timeToFirstByte = toMillis( System.nanoTime() - attemptStart );
+        }
+    }
+
+    public synchronized void received( long bytes )
+    {
+        bytesIn += bytes;
+    }
+
+    public synchronized void sent( long bytes )
+    {
+        bytesOut += bytes;
+    }
+
+    /**
+     * Completes the record and notifies the listeners, only the first call has an effect.
+     * 
+     * @param status The status code of the response, {@code 0} if no response was received.
+     * @param exception The error that failed the request, may be {@code null}.
+     */
+    public void finished( int status, Throwable exception )
+    {
+        TransferRecord record;
+        synchronized ( this )
+        {
+            if ( finished )
+            {
+                return;
+            }
+            finished = true;
+            record =
+                new TransferRecord( method, url, status, bytesIn, bytesOut, Math.max( 0, attempts - 1 ),
+                                    timeToFirstByte, toMillis( System.nanoTime() - start ), exception );
+        }
+
+        log.debug( "{}", record );
+
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        if ( plugin != null )
+        {
+            plugin.fireTransferCompleted( record );
+        }
+    }
+
+    private static long toMillis( long nanos )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( nanos );
+    }
+}
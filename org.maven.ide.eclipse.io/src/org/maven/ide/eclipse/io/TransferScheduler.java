@@ -0,0 +1,418 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.maven.ide.eclipse.io.TransferWatchdog.Watch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrent HTTP requests per host and decides which waiting request goes next. Every host has
+ * its own queue per {@link TransferPriority}, so a busy host does not hold up the requests to other hosts. Within a
+ * host, the waiting requests of a higher priority are started first, but a lower priority gets a turn after being
+ * passed over {@link #MAX_SKIPS} times, so a steady stream of interactive requests does not starve background work.
+ * <p>
+ * The priority of a request is the one set on the fetcher or publisher that makes it, or else the priority set for the
+ * calling thread via {@link #setPriority(TransferPriority)}, or else {@link TransferPriority#NORMAL}.
+ * <p>
+ * A request holds its slot until its response has been received completely. The response of a stream is buffered
+ * whether or not the caller reads it, so a stream that is not consumed does not hold up the other requests, but a
+ * request that waits for a slot fails with a timeout once none of the running requests to its host made progress for
+ * the idle timeout of the waiting request.
+ */
+public final class TransferScheduler
+{
+    /**
+     * The maximum number of concurrent requests to a host without a limit of its own.
+     */
+    public static final int DEFAULT_MAX_TRANSFERS_PER_HOST = 6;
+
+    /**
+     * The number of times a waiting request may be passed over by requests of higher priorities.
+     */
+    static final int MAX_SKIPS = 4;
+
+    private static final Logger log = LoggerFactory.getLogger( TransferScheduler.class );
+
+    private static final ThreadLocal<TransferPriority> threadPriority = new ThreadLocal<TransferPriority>();
+
+    private static final Object lock = new Object();
+
+    private static final Map<String, Host> hosts = new HashMap<String, Host>();
+
+    private static final Map<String, Integer> limits = new HashMap<String, Integer>();
+
+    private static int defaultLimit = DEFAULT_MAX_TRANSFERS_PER_HOST;
+
+    private static ExecutorService dispatcher;
+
+    private TransferScheduler()
+    {
+        // static only
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests to hosts without a limit of their own.
+     *
+     * @param maxTransfers The maximum number of concurrent requests per host, must be positive.
+     */
+    public static void setMaxTransfersPerHost( int maxTransfers )
+    {
+        List<Watch<?>> ready;
+        synchronized ( lock )
+        {
+            defaultLimit = Math.max( 1, maxTransfers );
+            ready = new ArrayList<Watch<?>>();
+            for ( Host host : hosts.values() )
+            {
+                host.poll( getLimit( host.name ), ready );
+            }
+        }
+        dispatch( ready );
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests to the specified host. Lowering the limit does not abort running
+     * requests, it takes effect as they complete.
+     *
+     * @param host The name of the host, must not be {@code null}.
+     * @param maxTransfers The maximum number of concurrent requests, {@code 0} to use the default limit.
+     */
+    public static void setMaxTransfersPerHost( String host, int maxTransfers )
+    {
+        String key = host.toLowerCase( Locale.ENGLISH );
+        List<Watch<?>> ready = new ArrayList<Watch<?>>();
+        synchronized ( lock )
+        {
+            if ( maxTransfers > 0 )
+            {
+                limits.put( key, Integer.valueOf( maxTransfers ) );
+            }
+            else
+            {
+                limits.remove( key );
+            }
+            Host queue = hosts.get( key );
+            if ( queue != null )
+            {
+                queue.poll( getLimit( key ), ready );
+            }
+        }
+        dispatch( ready );
+    }
+
+    /**
+     * Sets the priority of the requests that are made by the current thread, e.g. around the lookups of a wizard page.
+     * Fetchers and publishers with a priority of their own are not affected.
+     *
+     * @param priority The priority, {@code null} for {@link TransferPriority#NORMAL}.
+     * @return The previous priority of the thread, {@code null} if none, to be restored once done.
+     */
+    public static TransferPriority setPriority( TransferPriority priority )
+    {
+        TransferPriority previous = threadPriority.get();
+        if ( priority != null )
+        {
+            threadPriority.set( priority );
+        }
+        else
+        {
+            threadPriority.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the priority of the requests that are made by the current thread.
+     *
+     * @return The priority, never {@code null}.
+     */
+    public static TransferPriority getPriority()
+    {
+        TransferPriority priority = threadPriority.get();
+        return ( priority != null ) ? priority : TransferPriority.NORMAL;
+    }
+
+    private static int getLimit( String host )
+    {
+        Integer limit = limits.get( host );
+        return ( limit != null ) ? limit.intValue() : defaultLimit;
+    }
+
+    /**
+     * Requests a connection slot for the specified request.
+     *
+     * @return {@code true} if the request may be sent right away, {@code false} if it has been queued and will be sent
+     *         by the dispatcher thread once a slot becomes free.
+     */
+    static boolean acquire( Watch<?> watch )
+    {
+        List<Watch<?>> ready = new ArrayList<Watch<?>>();
+        synchronized ( lock )
+        {
+            Host host = hosts.get( watch.host );
+            if ( host == null )
+            {
+                host = new Host( watch.host );
+                hosts.put( watch.host, host );
+            }
+            int limit = getLimit( watch.host );
+            if ( host.isIdle( watch.priority ) && host.mayStart( watch.priority, limit ) )
+            {
+                host.running++;
+                watch.running = true;
+                return true;
+            }
+            host.queues.get( watch.priority.ordinal() ).add( watch );
+            host.poll( limit, ready );
+        }
+        log.debug( "Queued {} request to {}", watch.priority, watch.url );
+        dispatch( ready );
+        return false;
+    }
+
+    /**
+     * Removes a request that has not been sent yet from its queue.
+     *
+     * @return {@code true} if the request was removed, {@code false} if it is no longer waiting.
+     */
+    static boolean cancel( Watch<?> watch )
+    {
+        synchronized ( lock )
+        {
+            Host host = hosts.get( watch.host );
+            if ( host != null && host.queues.get( watch.priority.ordinal() ).remove( watch ) )
+            {
+                removeIfIdle( host );
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gives back the slot of a finished request and starts the next waiting requests. Requests that do not hold a slot
+     * are ignored.
+     */
+    static void release( Watch<?> watch )
+    {
+        List<Watch<?>> ready = new ArrayList<Watch<?>>();
+        synchronized ( lock )
+        {
+            if ( !watch.running )
+            {
+                return;
+            }
+            watch.running = false;
+            Host host = hosts.get( watch.host );
+            host.running--;
+            host.poll( getLimit( watch.host ), ready );
+            removeIfIdle( host );
+        }
+        dispatch( ready );
+    }
+
+    private static void removeIfIdle( Host host )
+    {
+        if ( host.running <= 0 && host.isIdle( TransferPriority.BACKGROUND ) )
+        {
+            hosts.remove( host.name );
+        }
+    }
+
+    private static void dispatch( List<Watch<?>> ready )
+    {
+        if ( ready.isEmpty() )
+        {
+            return;
+        }
+        ExecutorService executor;
+        synchronized ( lock )
+        {
+            if ( dispatcher == null )
+            {
+                // the requests are sent off the threads of the HTTP client, whose callbacks release the slots
+                dispatcher =
+                    new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                                            new ThreadFactory()
+                                            {
+                                                public Thread newThread( Runnable r )
+                                                {
+                                                    Thread thread = new Thread( r, "S2 IO Scheduler" );
+                                                    thread.setDaemon( true );
+                                                    return thread;
+                                                }
+                                            } );
+            }
+            executor = dispatcher;
+        }
+        for ( Watch<?> watch : ready )
+        {
+            executor.execute( new Dispatch( watch ) );
+        }
+    }
+
+    /**
+     * Stops the thread that sends the requests which waited for a connection slot, along with the thread of the
+     * watchdog that checks the running requests. The requests that are still waiting fail right away, so their
+     * callers don't wait forever. Requests made afterwards start new threads.
+     */
+    public static void shutdown()
+    {
+        List<Watch<?>> waiting = new ArrayList<Watch<?>>();
+        ExecutorService executor;
+        synchronized ( lock )
+        {
+            for ( Host host : new ArrayList<Host>( hosts.values() ) )
+            {
+                for ( LinkedList<Watch<?>> queue : host.queues )
+                {
+                    waiting.addAll( queue );
+                    queue.clear();
+                }
+                removeIfIdle( host );
+            }
+            executor = dispatcher;
+            dispatcher = null;
+        }
+        if ( executor != null )
+        {
+            for ( Runnable task : executor.shutdownNow() )
+            {
+                waiting.add( ( (Dispatch) task ).watch );
+            }
+        }
+        TransferWatchdog.shutdown();
+        for ( Watch<?> watch : waiting )
+        {
+            watch.fail( new IOException( "Transfer has been aborted by shutdown: " + watch.url ) );
+        }
+    }
+
+    /**
+     * Sends a request that waited for a connection slot.
+     */
+    private static final class Dispatch
+        implements Runnable
+    {
+        final Watch<?> watch;
+
+        Dispatch( Watch<?> watch )
+        {
+            this.watch = watch;
+        }
+
+        public void run()
+        {
+            watch.dispatch();
+        }
+    }
+
+    /**
+     * The requests to a single host, guarded by the lock of the scheduler.
+     */
+    private static final class Host
+    {
+        final String name;
+
+        final List<LinkedList<Watch<?>>> queues = new ArrayList<LinkedList<Watch<?>>>();
+
+        final int[] skips = new int[TransferPriority.values().length];
+
+        int running;
+
+        Host( String name )
+        {
+            this.name = name;
+            for ( int i = 0; i < skips.length; i++ )
+            {
+                queues.add( new LinkedList<Watch<?>>() );
+            }
+        }
+
+        /**
+         * Tells whether no request of the specified or a higher priority is waiting.
+         */
+        boolean isIdle( TransferPriority priority )
+        {
+            for ( int i = 0; i <= priority.ordinal(); i++ )
+            {
+                if ( !queues.get( i ).isEmpty() )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean mayStart( TransferPriority priority, int limit )
+        {
+            if ( priority == TransferPriority.BACKGROUND && limit > 1 && !isStarved( priority ) )
+            {
+                // keep a connection free for the requests somebody is waiting for
+                return running < limit - 1;
+            }
+            return running < limit;
+        }
+
+        /**
+         * Tells whether the waiting requests of the specified priority have been passed over often enough to get the
+         * next free connection, even the one otherwise kept free for more urgent requests.
+         */
+        boolean isStarved( TransferPriority priority )
+        {
+            int i = priority.ordinal();
+            return skips[i] >= MAX_SKIPS && !queues.get( i ).isEmpty();
+        }
+
+        /**
+         * Takes the waiting requests that may start now off the queues, in the order they should be sent.
+         */
+        void poll( int limit, List<Watch<?>> ready )
+        {
+            while ( running < limit )
+            {
+                int selected = -1;
+                for ( int i = 0; i < queues.size(); i++ )
+                {
+                    if ( queues.get( i ).isEmpty() || !mayStart( TransferPriority.values()[i], limit ) )
+                    {
+                        continue;
+                    }
+                    if ( selected < 0 || isStarved( TransferPriority.values()[i] ) )
+                    {
+                        selected = i;
+                    }
+                }
+                if ( selected < 0 )
+                {
+                    return;
+                }
+                for ( int i = selected + 1; i < queues.size(); i++ )
+                {
+                    if ( !queues.get( i ).isEmpty() )
+                    {
+                        skips[i]++;
+                    }
+                }
+                skips[selected] = 0;
+
+                Watch<?> watch = queues.get( selected ).removeFirst();
+                watch.running = true;
+                running++;
+                ready.add( watch );
+            }
+        }
+    }
+}
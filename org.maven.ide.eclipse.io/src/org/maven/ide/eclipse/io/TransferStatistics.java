@@ -0,0 +1,244 @@
+package org.maven.ide.eclipse.io;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates the records of finished requests per host. The latency percentiles are computed over the most recent
+ * requests to a host, the counters cover all requests since the statistics were created or cleared.
+ */
+public class TransferStatistics
+    implements TransferListener
+{
+    /**
+     * The number of recent requests per host the percentiles are computed over.
+     */
+    public static final int SAMPLE_SIZE = 1000;
+
+    private final Map<String, Host> hosts = new LinkedHashMap<String, Host>();
+
+    public void transferCompleted( TransferRecord record )
+    {
+        String key = record.getHost().toLowerCase( Locale.ENGLISH );
+        synchronized ( this )
+        {
+            Host host = hosts.get( key );
+            if ( host == null )
+            {
+                host = new Host();
+                hosts.put( key, host );
+            }
+            host.add( record );
+        }
+    }
+
+    /**
+     * @return The (lower case) names of the hosts requests were made to, never {@code null}.
+     */
+    public synchronized Set<String> getHosts()
+    {
+        return new LinkedHashSet<String>( hosts.keySet() );
+    }
+
+    /**
+     * Gets a snapshot of the statistics for the specified host.
+     *
+     * @param host The name of the host, must not be {@code null}.
+     * @return The statistics or {@code null} if no requests were made to the host.
+     */
+    public synchronized HostStatistics getHostStatistics( String host )
+    {
+        Host stats = hosts.get( host.toLowerCase( Locale.ENGLISH ) );
+        return ( stats != null ) ? stats.snapshot() : null;
+    }
+
+    public synchronized void clear()
+    {
+        hosts.clear();
+    }
+
+    /**
+     * The statistics of a host at some point in time.
+     */
+    public static final class HostStatistics
+    {
+        private final long requests;
+
+        private final long failures;
+
+        private final long retries;
+
+        private final long bytesIn;
+
+        private final long bytesOut;
+
+        private final long busyTime;
+
+        private final long[] durations;
+
+        private final long[] timesToFirstByte;
+
+        HostStatistics( long requests, long failures, long retries, long bytesIn, long bytesOut, long busyTime,
+                        long[] durations, long[] timesToFirstByte )
+        {
+            this.requests = requests;
+            this.failures = failures;
+            this.retries = retries;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.busyTime = busyTime;
+            this.durations = durations;
+            this.timesToFirstByte = timesToFirstByte;
+            Arrays.sort( this.durations );
+            Arrays.sort( this.timesToFirstByte );
+        }
+
+        public long getRequestCount()
+        {
+            return requests;
+        }
+
+        /**
+         * @return The number of requests that failed or received an error status.
+         */
+        public long getFailureCount()
+        {
+            return failures;
+        }
+
+        public long getRetryCount()
+        {
+            return retries;
+        }
+
+        public long getBytesIn()
+        {
+            return bytesIn;
+        }
+
+        public long getBytesOut()
+        {
+            return bytesOut;
+        }
+
+        /**
+         * Gets the percentile of the total durations of the recent requests, e.g. {@code 95} for the time that 95% of
+         * the requests did not exceed.
+         *
+         * @param percentile The percentile, between {@code 0} and {@code 100}.
+         * @return The duration in milliseconds or {@code -1} if there were no requests.
+         */
+        public long getDurationPercentile( double percentile )
+        {
+            return getPercentile( durations, percentile );
+        }
+
+        /**
+         * Gets the percentile of the times until the responses of the recent requests started.
+         *
+         * @param percentile The percentile, between {@code 0} and {@code 100}.
+         * @return The time in milliseconds or {@code -1} if no responses were received.
+         */
+        public long getTimeToFirstBytePercentile( double percentile )
+        {
+            return getPercentile( timesToFirstByte, percentile );
+        }
+
+        /**
+         * Gets the average throughput of the requests, i.e. the bytes transferred in both directions divided by the
+         * summed up durations of the requests. Concurrent requests to the host hence yield a higher total throughput.
+         *
+         * @return The throughput in bytes per second.
+         */
+        public long getThroughput()
+        {
+            return ( busyTime > 0 ) ? ( bytesIn + bytesOut ) * 1000 / busyTime : 0;
+        }
+
+        private static long getPercentile( long[] sorted, double percentile )
+        {
+            if ( sorted.length <= 0 )
+            {
+                return -1;
+            }
+            // nearest rank
+            int rank = (int) Math.ceil( percentile / 100 * sorted.length );
+            return sorted[Math.min( sorted.length, Math.max( 1, rank ) ) - 1];
+        }
+    }
+
+    private static final class Host
+    {
+        private long requests;
+
+        private long failures;
+
+        private long retries;
+
+        private long bytesIn;
+
+        private long bytesOut;
+
+        private long busyTime;
+
+        private final Samples durations = new Samples();
+
+        private final Samples timesToFirstByte = new Samples();
+
+        void add( TransferRecord record )
+        {
+            requests++;
+            if ( record.isFailed() )
+            {
+                failures++;
+            }
+            retries += record.getRetries();
+            bytesIn += record.getBytesIn();
+            bytesOut += record.getBytesOut();
+            busyTime += record.getDuration();
+            durations.add( record.getDuration() );
+            if ( record.getTimeToFirstByte() >= 0 )
+            {
+                timesToFirstByte.add( record.getTimeToFirstByte() );
+            }
+        }
+
+        HostStatistics snapshot()
+        {
+            return new HostStatistics( requests, failures, retries, bytesIn, bytesOut, busyTime, durations.toArray(),
+                                       timesToFirstByte.toArray() );
+        }
+    }
+
+    /**
+     * A ring buffer of the most recent values.
+     */
+    private static final class Samples
+    {
+        private final long[] values = new long[SAMPLE_SIZE];
+
+        private int count;
+
+        void add( long value )
+        {
+            values[count % values.length] = value;
+            count++;
+            if ( count >= 2 * values.length )
+            {
+                // keep the index from overflowing
+                count -= values.length;
+            }
+        }
+
+        long[] toArray()
+        {
+            long[] copy = new long[Math.min( count, values.length )];
+            System.arraycopy( values, 0, copy, 0, copy.length );
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,853 @@
+package org.maven.ide.eclipse.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.maven.ide.eclipse.io.internal.BandwidthLimiter;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.ProgressAsyncHandler;
+
+/**
+ * Aborts requests that stopped making progress, i.e. that have neither sent nor received data for the idle timeout of
+ * their {@link TimeoutPolicy} or whose data flows slower than its minimum rate. The HTTP client itself only knows a
+ * deadline for the whole request, which either kills large transfers that progress fine or lets stalled connections
+ * sit for a long time. The aborted requests fail with a {@link TimeoutException}, so they are retried like other
+ * timeouts.
+ * <p>
+ * The requests are checked by a single shared thread. Time spent in the callbacks of a request's handler, e.g. while
+ * the handler waits for a slow reader of the response, does not count as idle time. A request that waits for a
+ * connection slot of the {@link TransferScheduler} fails with a {@link TimeoutException} once no request to its host
+ * made progress for its idle timeout, e.g. because the running requests are stuck, instead of waiting forever.
+ * <p>
+ * The watchdog also paces the requests to hosts with a bandwidth limit. The data a request moves is charged to the
+ * {@link BandwidthLimiter} as it passes the callbacks, and a request is held back until the debt of its host has been
+ * paid off. A request that is under way can't be slowed down, so large downloads are split into byte ranges to be
+ * paced, see {@link HttpDownloader}.
+ */
+class TransferWatchdog
+{
+    /**
+     * The time between two checks of the watched requests, in milliseconds.
+     */
+    static final long CHECK_INTERVAL = 250;
+
+    private static final Logger log = LoggerFactory.getLogger( TransferWatchdog.class );
+
+    private static final Set<Watch<?>> watches = new LinkedHashSet<Watch<?>>();
+
+    /**
+     * The requests that hold a connection slot but wait for the bandwidth limit of their host, in the order to send
+     * them. Guarded by the lock of {@link #watches}.
+     */
+    private static final Set<Watch<?>> paced = new LinkedHashSet<Watch<?>>();
+
+    /**
+     * The requests that wait for a connection slot. Guarded by the lock of {@link #watches}.
+     */
+    private static final Set<Watch<?>> queued = new LinkedHashSet<Watch<?>>();
+
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Creates the watch for a request. The request must be sent via {@link Watch#execute(BoundRequestBuilder)}.
+     *
+     * @param handler The handler of the request, must not be {@code null}.
+     * @param url The URL of the request, must not be {@code null}.
+     * @param policy The timeouts of the request, must not be {@code null}.
+     * @param priority The priority of the request, must not be {@code null}.
+     * @return The watch, never {@code null}.
+     */
+    static <T> Watch<T> watch( AsyncHandler<T> handler, URI url, TimeoutPolicy policy, TransferPriority priority )
+    {
+        return new Watch<T>( handler, url, policy, priority );
+    }
+
+    static void start( Watch<?> watch )
+    {
+        synchronized ( watches )
+        {
+            watches.add( watch );
+            startScheduler();
+        }
+    }
+
+    private static void startScheduler()
+    {
+        synchronized ( watches )
+        {
+            if ( scheduler == null )
+            {
+                scheduler = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+                {
+                    public Thread newThread( Runnable r )
+                    {
+                        Thread thread = new Thread( r, "S2 IO Watchdog" );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                } );
+                scheduler.scheduleWithFixedDelay( new Runnable()
+                {
+                    public void run()
+                    {
+                        checkAll();
+                    }
+                }, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS );
+            }
+        }
+    }
+
+    static void stop( Watch<?> watch )
+    {
+        synchronized ( watches )
+        {
+            watches.remove( watch );
+        }
+    }
+
+    private static void pace( Watch<?> watch )
+    {
+        synchronized ( watches )
+        {
+            paced.add( watch );
+            startScheduler();
+        }
+    }
+
+    private static boolean unpace( Watch<?> watch )
+    {
+        synchronized ( watches )
+        {
+            return paced.remove( watch );
+        }
+    }
+
+    private static void queue( Watch<?> watch )
+    {
+        synchronized ( watches )
+        {
+            queued.add( watch );
+            startScheduler();
+        }
+    }
+
+    private static boolean unqueue( Watch<?> watch )
+    {
+        synchronized ( watches )
+        {
+            return queued.remove( watch );
+        }
+    }
+
+    /**
+     * Stops the thread that checks the requests. The requests that wait for the bandwidth limit fail right away, the
+     * others are left to the HTTP client. Requests sent afterwards start a new thread.
+     */
+    static void shutdown()
+    {
+        Watch<?>[] waiting;
+        synchronized ( watches )
+        {
+            if ( scheduler != null )
+            {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+            waiting = paced.toArray( new Watch<?>[paced.size()] );
+            paced.clear();
+            queued.clear();
+        }
+        for ( Watch<?> watch : waiting )
+        {
+            watch.fail( new IOException( "Transfer has been aborted by shutdown: " + watch.url ) );
+        }
+    }
+
+    private static void checkAll()
+    {
+        Watch<?>[] waiting;
+        synchronized ( watches )
+        {
+            waiting = paced.toArray( new Watch<?>[paced.size()] );
+        }
+        for ( Watch<?> watch : waiting )
+        {
+            // the limits may have changed in the meantime, so the delay is not computed in advance
+            if ( watch.throttle.getDelay() <= 0 && unpace( watch ) )
+            {
+                watch.deliver( false );
+            }
+        }
+
+        Watch<?>[] pending;
+        Watch<?>[] blocked;
+        synchronized ( watches )
+        {
+            pending = watches.toArray( new Watch<?>[watches.size()] );
+            blocked = queued.toArray( new Watch<?>[queued.size()] );
+            waiting = paced.toArray( new Watch<?>[paced.size()] );
+        }
+        long now = System.nanoTime();
+        // the last time a request to the host made progress, waiting for the bandwidth limit counts as progress
+        Map<String, Long> progress = new HashMap<String, Long>();
+        for ( Watch<?> watch : pending )
+        {
+            try
+            {
+                watch.check( now );
+            }
+            catch ( RuntimeException e )
+            {
+                log.debug( "Failed to check transfer of " + watch.url, e );
+            }
+            Long last = progress.get( watch.host );
+            long activity = watch.getLastActivity();
+            if ( last == null || activity > last.longValue() )
+            {
+                progress.put( watch.host, Long.valueOf( activity ) );
+            }
+        }
+        for ( Watch<?> watch : waiting )
+        {
+            progress.put( watch.host, Long.valueOf( now ) );
+        }
+        for ( Watch<?> watch : blocked )
+        {
+            Long last = progress.get( watch.host );
+            watch.checkQueued( now, ( last != null ) ? last.longValue() : watch.getLastActivity() );
+        }
+    }
+
+    /**
+     * Observes a single request, by passing the callbacks of the HTTP client on to the actual handler.
+     */
+    static final class Watch<T>
+        implements ProgressAsyncHandler<T>
+    {
+        private final AsyncHandler<T> handler;
+
+        final URI url;
+
+        final String host;
+
+        final TransferPriority priority;
+
+        /**
+         * Whether the request holds a connection slot, guarded by the lock of the {@link TransferScheduler}.
+         */
+        boolean running;
+
+        private final TimeoutPolicy policy;
+
+        private final BandwidthLimiter.Throttle throttle;
+
+        private final Pending pending = new Pending();
+
+        private BoundRequestBuilder requestBuilder;
+
+        private ListenableFuture<T> future;
+
+        /**
+         * The failure of a request that could not be sent by the scheduler.
+         */
+        private Throwable failure;
+
+        private boolean cancelled;
+
+        private long lastActivity = System.nanoTime();
+
+        private int busy;
+
+        private long busySince;
+
+        private long rateStart = -1;
+
+        private long rateBytes;
+
+        private long uploaded;
+
+        /**
+         * The number of bytes charged to the bandwidth limits when the request is sent.
+         */
+        private long reserved;
+
+        /**
+         * The number of bytes the request has moved, those beyond {@link #reserved} are charged as they pass.
+         */
+        private long moved;
+
+        /**
+         * Whether the request body is read through {@link #track(InputStream)}, which counts its bytes.
+         */
+        private boolean tracked;
+
+        private boolean stopped;
+
+        Watch( AsyncHandler<T> handler, URI url, TimeoutPolicy policy, TransferPriority priority )
+        {
+            this.handler = handler;
+            this.url = url;
+            this.host = ( url.getHost() != null ) ? url.getHost().toLowerCase( Locale.ENGLISH ) : "";
+            this.policy = policy;
+            this.priority = priority;
+            S2IOPlugin plugin = S2IOPlugin.getDefault();
+            this.throttle = ( plugin != null ) ? plugin.getBandwidthLimiter().getThrottle( url ) : null;
+        }
+
+        /**
+         * Declares the number of bytes the request is going to move, e.g. the length of its body. They are charged to
+         * the bandwidth limits as soon as the request is sent, so the requests behind it wait for their turn at once.
+         *
+         * @param bytes The number of bytes, negative if unknown.
+         */
+        synchronized void reserve( long bytes )
+        {
+            reserved = Math.max( 0, bytes );
+        }
+
+        /**
+         * Sends the request and starts watching it. If the {@link TransferScheduler} has no connection slot for the
+         * request, it is queued and sent later on, failures to send it are then reported to the handler.
+         *
+         * @return The future of the request, never {@code null}.
+         */
+        Future<T> execute( BoundRequestBuilder requestBuilder )
+            throws IOException
+        {
+            synchronized ( this )
+            {
+                this.requestBuilder = requestBuilder;
+                lastActivity = System.nanoTime();
+            }
+            if ( !TransferScheduler.acquire( this ) )
+            {
+                queue( this );
+            }
+            else
+            {
+                try
+                {
+                    if ( isThrottled() )
+                    {
+                        pace( this );
+                    }
+                    else
+                    {
+                        send();
+                    }
+                }
+                catch ( IOException e )
+                {
+                    finish();
+                    throw e;
+                }
+                catch ( RuntimeException e )
+                {
+                    finish();
+                    throw e;
+                }
+            }
+            return pending;
+        }
+
+        /**
+         * Sends a request that waited for a connection slot.
+         */
+        void dispatch()
+        {
+            deliver( true );
+        }
+
+        /**
+         * Sends a request that waited for a connection slot or the bandwidth limit.
+         *
+         * @param pace {@code true} to hold the request back while its host is over the bandwidth limit.
+         */
+        private void deliver( boolean pace )
+        {
+            unqueue( this );
+            try
+            {
+                synchronized ( this )
+                {
+                    if ( cancelled )
+                    {
+                        throw new CancellationException( "Transfer has been canceled" );
+                    }
+                }
+                if ( pace && isThrottled() )
+                {
+                    pace( this );
+                    return;
+                }
+                send();
+            }
+            catch ( IOException e )
+            {
+                fail( e );
+            }
+            catch ( RuntimeException e )
+            {
+                fail( e );
+            }
+        }
+
+        private boolean isThrottled()
+        {
+            return throttle != null && throttle.getDelay() > 0;
+        }
+
+        private void send()
+            throws IOException
+        {
+            BoundRequestBuilder requestBuilder;
+            long reserved;
+            synchronized ( this )
+            {
+                lastActivity = System.nanoTime();
+                requestBuilder = this.requestBuilder;
+                reserved = this.reserved;
+            }
+            if ( throttle != null )
+            {
+                throttle.charge( reserved );
+            }
+            start( this );
+            ListenableFuture<T> future = requestBuilder.execute( this );
+            synchronized ( this )
+            {
+                this.future = future;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Fails the request if it has been waiting for a connection slot longer than its idle timeout allows.
+         *
+         * @param progress The last time a request to the host made progress.
+         */
+        void checkQueued( long now, long progress )
+        {
+            long idle;
+            synchronized ( this )
+            {
+                idle = TimeUnit.NANOSECONDS.toMillis( now - Math.max( lastActivity, progress ) );
+            }
+            if ( idle >= policy.getIdleTimeout() && unqueue( this ) && TransferScheduler.cancel( this ) )
+            {
+                log.debug( "Aborting transfer of {}: no connection became available for {} ms", url, idle );
+                fail( new TimeoutException( "No connection became available for " + idle + " ms: " + url ) );
+            }
+        }
+
+        void fail( Throwable t )
+        {
+            synchronized ( this )
+            {
+                if ( failure != null )
+                {
+                    return;
+                }
+                failure = t;
+                notifyAll();
+            }
+            onThrowable( t );
+        }
+
+        /**
+         * Counts the data the HTTP client reads from the specified request body as progress of the request.
+         */
+        InputStream track( InputStream is )
+        {
+            synchronized ( this )
+            {
+                tracked = true;
+            }
+            return new FilterInputStream( is )
+            {
+                @Override
+                public int read()
+                    throws IOException
+                {
+                    int c = super.read();
+                    if ( c >= 0 )
+                    {
+                        activity( 1 );
+                        transferred( 1 );
+                    }
+                    return c;
+                }
+
+                @Override
+                public int read( byte[] b, int off, int len )
+                    throws IOException
+                {
+                    int n = super.read( b, off, len );
+                    if ( n > 0 )
+                    {
+                        activity( n );
+                        transferred( n );
+                    }
+                    return n;
+                }
+            };
+        }
+
+        synchronized long getLastActivity()
+        {
+            return lastActivity;
+        }
+
+        synchronized void activity( long bytes )
+        {
+            long now = System.nanoTime();
+            lastActivity = now;
+            if ( bytes > 0 )
+            {
+                if ( rateStart < 0 )
+                {
+                    rateStart = now;
+                }
+                rateBytes += bytes;
+            }
+        }
+
+        /**
+         * Charges the data moved by the request to the bandwidth limits, unless it has been reserved in advance.
+         */
+        private void transferred( long bytes )
+        {
+            if ( throttle == null || bytes <= 0 )
+            {
+                return;
+            }
+            long charge;
+            synchronized ( this )
+            {
+                charge = Math.min( bytes, moved + bytes - reserved );
+                moved += bytes;
+            }
+            throttle.charge( charge );
+        }
+
+        private synchronized void enter()
+        {
+            if ( busy++ <= 0 )
+            {
+                busySince = System.nanoTime();
+            }
+        }
+
+        private void exit( STATE state )
+        {
+            synchronized ( this )
+            {
+                long now = System.nanoTime();
+                lastActivity = now;
+                if ( --busy <= 0 && rateStart >= 0 )
+                {
+                    // the time the handler took, e.g. to write the data to disk, is not the sender's fault
+                    rateStart = Math.min( now, rateStart + ( now - busySince ) );
+                }
+            }
+            if ( state == STATE.ABORT )
+            {
+                finish();
+            }
+        }
+
+        void check( long now )
+        {
+            ListenableFuture<T> future;
+            String reason;
+            synchronized ( this )
+            {
+                if ( stopped || busy > 0 || this.future == null )
+                {
+                    return;
+                }
+                reason = null;
+                long idle = TimeUnit.NANOSECONDS.toMillis( now - lastActivity );
+                if ( idle >= policy.getIdleTimeout() )
+                {
+                    reason = "No data transferred for " + idle + " ms";
+                }
+                else if ( policy.getMinimumRate() > 0 && rateStart >= 0 )
+                {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis( now - rateStart );
+                    if ( elapsed >= policy.getRateWindow() )
+                    {
+                        long rate = rateBytes * 1000 / elapsed;
+                        if ( rate < policy.getMinimumRate() )
+                        {
+                            reason =
+                                "Transfer rate of " + rate + " bytes/s is below the minimum of "
+                                    + policy.getMinimumRate() + " bytes/s";
+                        }
+                        rateStart = now;
+                        rateBytes = 0;
+                    }
+                }
+                if ( reason == null )
+                {
+                    return;
+                }
+                future = this.future;
+            }
+            log.debug( "Aborting transfer of {}: {}", url, reason );
+            finish();
+            future.abort( new TimeoutException( reason + ": " + url ) );
+        }
+
+        private void finish()
+        {
+            synchronized ( this )
+            {
+                stopped = true;
+            }
+            stop( this );
+            TransferScheduler.release( this );
+        }
+
+        public void onThrowable( Throwable t )
+        {
+            finish();
+            handler.onThrowable( t );
+        }
+
+        public STATE onStatusReceived( HttpResponseStatus responseStatus )
+            throws Exception
+        {
+            enter();
+            STATE state = STATE.ABORT;
+            try
+            {
+                state = handler.onStatusReceived( responseStatus );
+            }
+            finally
+            {
+                exit( state );
+            }
+            return state;
+        }
+
+        public STATE onHeadersReceived( HttpResponseHeaders headers )
+            throws Exception
+        {
+            enter();
+            STATE state = STATE.ABORT;
+            try
+            {
+                state = handler.onHeadersReceived( headers );
+            }
+            finally
+            {
+                exit( state );
+            }
+            return state;
+        }
+
+        public STATE onBodyPartReceived( HttpResponseBodyPart bodyPart )
+            throws Exception
+        {
+            // counting the bytes is only needed for the rate and the bandwidth limit
+            int bytes =
+                ( policy.getMinimumRate() > 0 || throttle != null ) ? bodyPart.getBodyByteBuffer().remaining() : 0;
+            activity( bytes );
+            transferred( bytes );
+            enter();
+            STATE state = STATE.ABORT;
+            try
+            {
+                state = handler.onBodyPartReceived( bodyPart );
+            }
+            finally
+            {
+                exit( state );
+            }
+            return state;
+        }
+
+        public T onCompleted()
+            throws Exception
+        {
+            finish();
+            return handler.onCompleted();
+        }
+
+        public STATE onHeaderWriteCompleted()
+        {
+            activity( 0 );
+            ProgressAsyncHandler<T> progress = getProgressHandler();
+            return ( progress != null ) ? progress.onHeaderWriteCompleted() : STATE.CONTINUE;
+        }
+
+        public STATE onContentWriteProgress( long amount, long current, long total )
+        {
+            long sent;
+            boolean counted;
+            synchronized ( this )
+            {
+                // the amount is not reported consistently, so go by the position
+                sent = Math.max( 0, current - uploaded );
+                uploaded = Math.max( uploaded, current );
+                counted = tracked;
+            }
+            activity( sent );
+            if ( !counted )
+            {
+                transferred( sent );
+            }
+            ProgressAsyncHandler<T> progress = getProgressHandler();
+            return ( progress != null ) ? progress.onContentWriteProgress( amount, current, total ) : STATE.CONTINUE;
+        }
+
+        public STATE onContentWriteCompleted()
+        {
+            activity( 0 );
+            ProgressAsyncHandler<T> progress = getProgressHandler();
+            return ( progress != null ) ? progress.onContentWriteCompleted() : STATE.CONTINUE;
+        }
+
+        private ProgressAsyncHandler<T> getProgressHandler()
+        {
+            return ( handler instanceof ProgressAsyncHandler<?> ) ? (ProgressAsyncHandler<T>) handler : null;
+        }
+
+        /**
+         * The future of the request, which delegates to the future of the HTTP client once the request has been sent.
+         */
+        private final class Pending
+            implements Future<T>
+        {
+            public boolean cancel( boolean mayInterruptIfRunning )
+            {
+                ListenableFuture<T> future;
+                synchronized ( Watch.this )
+                {
+                    future = Watch.this.future;
+                    if ( future == null )
+                    {
+                        if ( failure != null || cancelled )
+                        {
+                            return false;
+                        }
+                        cancelled = true;
+                    }
+                }
+                if ( future != null )
+                {
+                    return future.cancel( mayInterruptIfRunning );
+                }
+                unqueue( Watch.this );
+                if ( TransferScheduler.cancel( Watch.this ) || unpace( Watch.this ) )
+                {
+                    fail( new CancellationException( "Transfer has been canceled" ) );
+                }
+                // else the dispatcher is about to send the request and notices the cancellation
+                return true;
+            }
+
+            public boolean isCancelled()
+            {
+                ListenableFuture<T> future;
+                synchronized ( Watch.this )
+                {
+                    if ( cancelled )
+                    {
+                        return true;
+                    }
+                    future = Watch.this.future;
+                }
+                return future != null && future.isCancelled();
+            }
+
+            public boolean isDone()
+            {
+                ListenableFuture<T> future;
+                synchronized ( Watch.this )
+                {
+                    if ( failure != null )
+                    {
+                        return true;
+                    }
+                    future = Watch.this.future;
+                }
+                return future != null && future.isDone();
+            }
+
+            public T get()
+                throws InterruptedException, ExecutionException
+            {
+                ListenableFuture<T> future;
+                synchronized ( Watch.this )
+                {
+                    while ( Watch.this.future == null && failure == null )
+                    {
+                        Watch.this.wait();
+                    }
+                    future = getSent();
+                }
+                return future.get();
+            }
+
+            public T get( long timeout, TimeUnit unit )
+                throws InterruptedException, ExecutionException, TimeoutException
+            {
+                long deadline = System.nanoTime() + unit.toNanos( timeout );
+                ListenableFuture<T> future;
+                synchronized ( Watch.this )
+                {
+                    while ( Watch.this.future == null && failure == null )
+                    {
+                        long remaining = deadline - System.nanoTime();
+                        if ( remaining <= 0 )
+                        {
+                            throw new TimeoutException();
+                        }
+                        TimeUnit.NANOSECONDS.timedWait( Watch.this, remaining );
+                    }
+                    future = getSent();
+                }
+                return future.get( Math.max( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS );
+            }
+
+            private ListenableFuture<T> getSent()
+                throws ExecutionException
+            {
+                if ( failure instanceof CancellationException )
+                {
+                    throw (CancellationException) failure;
+                }
+                if ( failure != null )
+                {
+                    throw new ExecutionException( failure );
+                }
+                return future;
+            }
+        }
+    }
+}
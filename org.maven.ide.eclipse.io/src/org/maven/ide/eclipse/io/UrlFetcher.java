@@ -1,22 +1,181 @@
 package org.maven.ide.eclipse.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.maven.ide.eclipse.authentication.IAuthData;
 import org.maven.ide.eclipse.authentication.IAuthService;
+import org.maven.ide.eclipse.io.HttpBaseSupport.HttpInputStream;
+import org.maven.ide.eclipse.io.internal.MemoryResponseCache;
+import org.maven.ide.eclipse.io.internal.S2IOPlugin;
 
 
 public class UrlFetcher
 {
 
+    /**
+     * The file extensions of published checksums, keyed by the upper case name of the digest algorithm.
+     */
+    private static final Map<String, String> CHECKSUM_EXTENSIONS = new HashMap<String, String>();
+
+    static
+    {
+        CHECKSUM_EXTENSIONS.put( "SHA-1", "sha1" );
+        CHECKSUM_EXTENSIONS.put( "MD5", "md5" );
+        CHECKSUM_EXTENSIONS.put( "SHA-256", "sha256" );
+        CHECKSUM_EXTENSIONS.put( "SHA-512", "sha512" );
+    }
+
     private FileFetcher fileFetcher = new FileFetcher();
 
     private HttpFetcher httpFetcher = new HttpFetcher();
 
+    private HttpDownloader httpDownloader = new HttpDownloader();
+
+    private int connections = 1;
+
+    private long memoryCacheTtl;
+
+    private String[] digestAlgorithms = new String[0];
+
+    private boolean checksumVerification;
+
+    public UrlFetcher()
+    {
+        httpDownloader.setConnections( connections );
+        // resources that are not split are opened with the buffer, cache and retry settings of this fetcher
+        httpDownloader.setFetcher( httpFetcher );
+    }
+
+    /**
+     * Sets the number of connections used to download large HTTP resources in parallel byte ranges. Resources are only
+     * split if the server supports byte ranges, otherwise they are downloaded with a single request.
+     * 
+     * @param connections The maximum number of concurrent requests per resource, {@code 1} (the default) to always use
+     *            a single request.
+     */
+    public void setConnections( int connections )
+    {
+        this.connections = Math.max( 1, connections );
+        httpDownloader.setConnections( this.connections );
+    }
+
+    /**
+     * Sets the maximum number of bytes of a HTTP response body that are buffered in memory while the caller has not yet
+     * consumed them. Data beyond that is buffered in a temporary file.
+     * 
+     * @param bufferSize The size of the buffer in bytes, non-positive values select the default size.
+     */
+    public void setBufferSize( int bufferSize )
+    {
+        httpFetcher.setBufferSize( bufferSize );
+    }
+
+    /**
+     * Sets whether HTTP responses may be served from the local cache. Cached responses are revalidated with the server
+     * on every access, so this only saves the transfer of unchanged resources.
+     * 
+     * @param cachePolicy The cache policy, {@code null} or {@link CachePolicy#DEFAULT} to use the policy registered for
+     *            the URL.
+     */
+    public void setCachePolicy( CachePolicy cachePolicy )
+    {
+        httpFetcher.setCachePolicy( cachePolicy );
+    }
+
+    /**
+     * Enables serving small HTTP responses from memory if the same resource was fetched recently. Only responses of up
+     * to 64 KB are kept, separately for each user.
+     * 
+     * @param ttl The time in milliseconds a fetched response may be reused, {@code 0} (the default) to always contact
+     *            the server.
+     */
+    public void setMemoryCacheTtl( long ttl )
+    {
+        this.memoryCacheTtl = Math.max( 0, ttl );
+    }
+
+    /**
+     * Sets the policy for repeating HTTP requests after transient failures, e.g. a 503 response or a connection reset.
+     * 
+     * @param retryPolicy The retry policy, {@code null} to use the policy registered for the URL via
+     *            {@link S2IOFacade#setRetryPolicy(String, RetryPolicy)}.
+     */
+    public void setRetryPolicy( RetryPolicy retryPolicy )
+    {
+        httpFetcher.setRetryPolicy( retryPolicy );
+        httpDownloader.setRetryPolicy( retryPolicy );
+    }
+
+    /**
+     * Sets the connect, idle and total timeouts of HTTP requests.
+     * 
+     * @param timeoutPolicy The timeout policy, {@code null} to use the policy registered for the URL via
+     *            {@link S2IOFacade#setTimeoutPolicy(String, TimeoutPolicy)}.
+     */
+    public void setTimeoutPolicy( TimeoutPolicy timeoutPolicy )
+    {
+        httpFetcher.setTimeoutPolicy( timeoutPolicy );
+        httpDownloader.setTimeoutPolicy( timeoutPolicy );
+    }
+
+    /**
+     * Sets the priority of HTTP requests among the requests waiting for a connection to the same host.
+     * 
+     * @param priority The priority, {@code null} to use the priority of the calling thread, see
+     *            {@link TransferScheduler#setPriority(TransferPriority)}.
+     */
+    public void setPriority( TransferPriority priority )
+    {
+        httpFetcher.setPriority( priority );
+        httpDownloader.setPriority( priority );
+    }
+
+    /**
+     * Sets the message digests that are computed over HTTP resources while they are read. Once a stream has been read
+     * to its end, the digests are available via {@link HttpInputStream#getDigests()}, which saves reading a downloaded
+     * resource a second time just to compute its checksums.
+     * 
+     * @param algorithms The names of the digest algorithms, e.g. {@code "SHA-1"} or {@code "MD5"}, none (the default)
+     *            to compute no digests.
+     * @throws IllegalArgumentException If an algorithm is not supported.
+     */
+    public void setDigestAlgorithms( String... algorithms )
+    {
+        this.digestAlgorithms = StreamDigester.validate( algorithms );
+        httpFetcher.setDigestAlgorithms( digestAlgorithms );
+        httpDownloader.setDigestAlgorithms( digestAlgorithms );
+    }
+
+    /**
+     * Sets whether HTTP resources are verified against the checksum published next to them, e.g. in
+     * {@code artifact.jar.sha1}. The checksum of the first digest algorithm with a conventional file extension
+     * ({@code SHA-1}, {@code MD5}, {@code SHA-256} or {@code SHA-512}) is fetched in parallel to the resource. A
+     * mismatch fails the final read of the stream with a {@link ChecksumException}, resources without a published
+     * checksum are not verified.
+     * 
+     * @param checksumVerification {@code true} to verify the checksums, {@code false} (the default) otherwise.
+     * @see #setDigestAlgorithms(String...)
+     */
+    public void setChecksumVerification( boolean checksumVerification )
+    {
+        this.checksumVerification = checksumVerification;
+    }
+
     /**
      * Opens a stream to the specified resource.
      * 
@@ -39,7 +198,22 @@ public class UrlFetcher
         }
         else if ( isHttp( url.getScheme() ) )
         {
-            return httpFetcher.openStream( url, monitor, authService, proxyService );
+            MemoryResponseCache cache = getMemoryCache();
+            if ( cache == null )
+            {
+                return openHttpStream( url, monitor, authService, proxyService );
+            }
+            String key = MemoryResponseCache.getKey( url, getPrincipal( url, authService ) );
+            MemoryResponseCache.Entry entry = cache.get( key );
+            if ( entry != null )
+            {
+                HttpInputStream his =
+                    new HttpInputStream( new ByteArrayInputStream( entry.getData() ), entry.getEncoding(), null );
+                his.setDigester( digest( entry.getData() ) );
+                return his;
+            }
+            return new CachingHttpInputStream( openHttpStream( url, monitor, authService, proxyService ), cache, key,
+                                               memoryCacheTtl );
         }
         else
         {
@@ -47,6 +221,273 @@ public class UrlFetcher
         }
     }
 
+    /**
+     * Opens a channel to the specified local resource, e.g. to let a parser read a file of a local mirror without
+     * copying it through a stream.
+     * 
+     * @param url The resource to access, must not be {@code null} and must use the {@code file} protocol.
+     * @return The read-only channel to the specified resource, never {@code null}.
+     * @throws IOException If the resource could not be opened or is not a local file.
+     */
+    public FileChannel openChannel( final URI url )
+        throws IOException
+    {
+        if ( isFile( url.getScheme() ) )
+        {
+            return fileFetcher.openChannel( new File( url ) );
+        }
+        throw new IOException( "Unsupported protocol " + url.getScheme() );
+    }
+
+    /**
+     * Gets the content of the specified resource as a buffer. Local files are mapped into memory, so their content is
+     * not copied. The content of other resources is read into a heap buffer, which allows callers to use a single code
+     * path for both.
+     * <p>
+     * Note that a mapped file remains open until the buffer has been garbage collected, which prevents deleting the file
+     * on some platforms.
+     * 
+     * @param url The resource to access, must not be {@code null}.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be {@code
+     *            null}.
+     * @return The read-only content of the specified resource, never {@code null}.
+     * @throws IOException If the resource could not be read or exceeds 2 GB.
+     */
+    public ByteBuffer map( final URI url, final IProgressMonitor monitor, final IAuthService authService,
+                           final IProxyService proxyService )
+        throws IOException
+    {
+        if ( isFile( url.getScheme() ) )
+        {
+            return fileFetcher.map( new File( url ), monitor );
+        }
+        InputStream is = openStream( url, monitor, authService, proxyService );
+        try
+        {
+            ByteArrayOutputStream os = new ByteArrayOutputStream( 1024 * 8 );
+            byte[] buffer = new byte[1024 * 8];
+            for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+            {
+                os.write( buffer, 0, n );
+            }
+            return ByteBuffer.wrap( os.toByteArray() ).asReadOnlyBuffer();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Opens a stream to the specified resource without waiting for the server to respond. Local files are opened by
+     * the calling thread and yield an already completed future.
+     * 
+     * @return The pending stream, never {@code null}. The future fails if the resource could not be opened.
+     * @throws IOException If the request could not be started.
+     * @see #openStream(URI, IProgressMonitor, IAuthService, IProxyService)
+     */
+    public TransferFuture<InputStream> openStreamAsync( final URI url, final IProgressMonitor monitor,
+                                                        final IAuthService authService,
+                                                        final IProxyService proxyService )
+        throws IOException
+    {
+        if ( isHttp( url.getScheme() ) && connections <= 1 && getMemoryCache() == null
+            && getChecksumAlgorithm() == null && !httpDownloader.isPaced( url ) )
+        {
+            final TransferFuture<InputStream> result = new TransferFuture<InputStream>();
+            TransferFuture<HttpInputStream> opened =
+                httpFetcher.openStreamAsync( url, monitor, authService, proxyService );
+            result.setDelegate( opened );
+            opened.addCallback( new TransferCallback<HttpInputStream>()
+            {
+                public void completed( HttpInputStream stream )
+                {
+                    if ( !result.complete( stream ) )
+                    {
+                        // cancelled meanwhile, the caller will never see the stream
+                        try
+                        {
+                            stream.close();
+                        }
+                        catch ( IOException e )
+                        {
+                            // ignored
+                        }
+                    }
+                }
+
+                public void failed( Throwable error )
+                {
+                    result.fail( error );
+                }
+            } );
+            return result;
+        }
+        try
+        {
+            return TransferFuture.completed( openStream( url, monitor, authService, proxyService ) );
+        }
+        catch ( IOException e )
+        {
+            return TransferFuture.failed( e );
+        }
+    }
+
+    /**
+     * Downloads the specified resource into a file. HTTP resources are fetched in parallel byte ranges if more than one
+     * connection has been configured.
+     * 
+     * @param url The resource to download, must not be {@code null}.
+     * @param target The file to write the resource to, must not be {@code null}. An existing file is overwritten.
+     * @param monitor The monitor to notify of transfer progress, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be {@code
+     *            null}.
+     * @throws IOException If the resource could not be downloaded.
+     */
+    public void download( final URI url, final File target, final IProgressMonitor monitor,
+                          final IAuthService authService, final IProxyService proxyService )
+        throws IOException
+    {
+        if ( isHttp( url.getScheme() ) )
+        {
+            httpDownloader.download( url, target, monitor, authService, proxyService );
+        }
+        else
+        {
+            InputStream is = openStream( url, monitor, authService, proxyService );
+            try
+            {
+                target.getAbsoluteFile().getParentFile().mkdirs();
+                OutputStream os = new FileOutputStream( target );
+                try
+                {
+                    byte[] buffer = new byte[1024 * 8];
+                    for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+                    {
+                        os.write( buffer, 0, n );
+                    }
+                }
+                finally
+                {
+                    os.close();
+                }
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+    }
+
+    private HttpInputStream openHttpStream( final URI url, final IProgressMonitor monitor,
+                                            final IAuthService authService, final IProxyService proxyService )
+        throws IOException
+    {
+        String algorithm = getChecksumAlgorithm();
+        TransferFuture<HttpInputStream> checksum = null;
+        if ( algorithm != null )
+        {
+            // request the checksum first, it arrives while the resource is being read
+            checksum = openChecksumStream( url, algorithm, authService, proxyService );
+        }
+
+        HttpInputStream his;
+        try
+        {
+            // a bandwidth limit is only kept by fetching the resource in byte ranges
+            if ( connections > 1 || httpDownloader.isPaced( url ) )
+            {
+                his = httpDownloader.openStream( url, monitor, authService, proxyService );
+            }
+            else
+            {
+                his = httpFetcher.openStream( url, monitor, authService, proxyService );
+            }
+        }
+        catch ( IOException e )
+        {
+            if ( checksum != null )
+            {
+                ChecksumVerifyingInputStream.discard( checksum );
+            }
+            throw e;
+        }
+
+        if ( checksum != null )
+        {
+            return new ChecksumVerifyingInputStream( his, url, algorithm, checksum );
+        }
+        return his;
+    }
+
+    private TransferFuture<HttpInputStream> openChecksumStream( URI url, String algorithm,
+                                                               IAuthService authService, IProxyService proxyService )
+    {
+        URI checksumUrl =
+            URI.create( url.getScheme() + "://" + url.getRawAuthority() + url.getRawPath() + "."
+                + CHECKSUM_EXTENSIONS.get( algorithm.toUpperCase( Locale.ENGLISH ) ) );
+        // the checksum is fetched under the same retry, timeout and priority settings, but is not digested itself
+        HttpFetcher checksumFetcher = new HttpFetcher();
+        httpFetcher.copySettingsTo( checksumFetcher );
+        checksumFetcher.setDigestAlgorithms();
+        try
+        {
+            return checksumFetcher.openStreamAsync( checksumUrl, new NullProgressMonitor(), authService, proxyService );
+        }
+        catch ( IOException e )
+        {
+            return TransferFuture.failed( e );
+        }
+    }
+
+    /**
+     * Gets the digest algorithm whose published checksum is used to verify HTTP resources.
+     * 
+     * @return The name of the digest algorithm or {@code null} if resources are not verified.
+     */
+    private String getChecksumAlgorithm()
+    {
+        if ( checksumVerification )
+        {
+            for ( String algorithm : digestAlgorithms )
+            {
+                if ( CHECKSUM_EXTENSIONS.containsKey( algorithm.toUpperCase( Locale.ENGLISH ) ) )
+                {
+                    return algorithm;
+                }
+            }
+        }
+        return null;
+    }
+
+    private StreamDigester digest( byte[] data )
+    {
+        StreamDigester digester = StreamDigester.create( digestAlgorithms );
+        if ( digester != null )
+        {
+            digester.update( data, 0, data.length );
+            digester.finish();
+        }
+        return digester;
+    }
+
+    private MemoryResponseCache getMemoryCache()
+    {
+        S2IOPlugin plugin = S2IOPlugin.getDefault();
+        return ( memoryCacheTtl > 0 && plugin != null ) ? plugin.getMemoryCache() : null;
+    }
+
+    private static String getPrincipal( URI url, IAuthService authService )
+    {
+        IAuthData authData = HttpBaseSupport.selectAuthData( url, authService );
+        return ( authData != null ) ? authData.getUsername() : null;
+    }
+
     private static boolean isFile( String protocol )
     {
         return "file".equalsIgnoreCase( protocol );
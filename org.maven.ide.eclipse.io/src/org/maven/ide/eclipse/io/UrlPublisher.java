@@ -2,8 +2,14 @@ package org.maven.ide.eclipse.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -16,6 +22,10 @@ public class UrlPublisher
 
     private HttpPublisher httpPublisher = new HttpPublisher();
 
+    private TimeoutPolicy timeoutPolicy;
+
+    private TransferPriority priority;
+
     private String name;
 
     public String getName()
@@ -28,6 +38,111 @@ public class UrlPublisher
         this.name = name;
     }
 
+    /**
+     * Sets the size beyond which HTTP response bodies are stored in a temporary file instead of memory, disabled by
+     * default.
+     * 
+     * @see HttpPublisher#setResponseSpillThreshold(int)
+     */
+    public void setResponseSpillThreshold( int responseSpillThreshold )
+    {
+        httpPublisher.setResponseSpillThreshold( responseSpillThreshold );
+    }
+
+    /**
+     * Sets the stream to write the body of successful HTTP responses to, instead of collecting it in the
+     * {@link ServerResponse}.
+     * 
+     * @see HttpPublisher#setResponseConsumer(OutputStream)
+     */
+    public void setResponseConsumer( OutputStream responseConsumer )
+    {
+        httpPublisher.setResponseConsumer( responseConsumer );
+    }
+
+    /**
+     * Sets whether the bodies of HTTP PUT and POST requests are sent gzip compressed.
+     * 
+     * @see HttpPublisher#setRequestCompression(boolean)
+     */
+    public void setRequestCompression( boolean requestCompression )
+    {
+        httpPublisher.setRequestCompression( requestCompression );
+    }
+
+    /**
+     * Sets whether local files are published atomically, i.e. written to a temporary file next to the destination and
+     * then renamed. Other processes never see a partially written file and a failed or cancelled transfer leaves an
+     * existing destination untouched.
+     * 
+     * @param atomic {@code true} to publish local files atomically, {@code false} (the default) to write the
+     *            destination directly.
+     */
+    public void setAtomicLocalWrites( boolean atomic )
+    {
+        filePublisher.setAtomic( atomic );
+    }
+
+    /**
+     * Sets whether local files are forced to the storage device before the publishing is considered complete. This
+     * trades speed for durability in case of a system crash.
+     */
+    public void setSyncLocalWrites( boolean sync )
+    {
+        filePublisher.setSync( sync );
+    }
+
+    /**
+     * Sets the message digests that are computed over the uploaded data while it is sent. The digests are available
+     * via {@link ServerResponse#getDigests()}, which saves reading the uploaded file a second time just to compute its
+     * checksums. Note that local files and HTTP request bodies are then copied through the heap instead of being
+     * transferred directly from the source file.
+     * 
+     * @param algorithms The names of the digest algorithms, e.g. {@code "SHA-1"} or {@code "MD5"}, none (the default)
+     *            to compute no digests.
+     * @throws IllegalArgumentException If an algorithm is not supported.
+     */
+    public void setDigestAlgorithms( String... algorithms )
+    {
+        filePublisher.setDigestAlgorithms( algorithms );
+        httpPublisher.setDigestAlgorithms( algorithms );
+    }
+
+    /**
+     * Sets the policy for repeating HTTP requests after transient failures, e.g. a 503 response or a connection reset.
+     * 
+     * @param retryPolicy The retry policy, {@code null} to use the policy registered for the URL via
+     *            {@link S2IOFacade#setRetryPolicy(String, RetryPolicy)}.
+     */
+    public void setRetryPolicy( RetryPolicy retryPolicy )
+    {
+        httpPublisher.setRetryPolicy( retryPolicy );
+    }
+
+    /**
+     * Sets the connect, idle and total timeouts of HTTP requests.
+     * 
+     * @param timeoutPolicy The timeout policy, {@code null} to use the policy registered for the URL via
+     *            {@link S2IOFacade#setTimeoutPolicy(String, TimeoutPolicy)}.
+     */
+    public void setTimeoutPolicy( TimeoutPolicy timeoutPolicy )
+    {
+        this.timeoutPolicy = timeoutPolicy;
+        httpPublisher.setTimeoutPolicy( timeoutPolicy );
+    }
+
+    /**
+     * Sets the priority of HTTP requests among the requests waiting for a connection to the same host.
+     * 
+     * @param priority The priority, {@code null} to use the priority of the calling thread, see
+     *            {@link TransferScheduler#setPriority(TransferPriority)}.
+     */
+    public void setPriority( TransferPriority priority )
+    {
+        this.priority = priority;
+        httpPublisher.setPriority( priority );
+    }
+
     /**
      * Uploads a file to the specified URL.
      * 
@@ -50,8 +165,9 @@ public class UrlPublisher
     {
         if ( isFile( url.getScheme() ) )
         {
-            filePublisher.putFile( file, new File( url ), monitor );
-            return new ServerResponse( 200, null, "UTF-8" );
+            ServerResponse response = new ServerResponse( 200, null, "UTF-8" );
+            response.setDigests( filePublisher.putFile( file, new File( url ), monitor ) );
+            return response;
         }
         else if ( isHttp( url.getScheme() ) )
         {
@@ -128,6 +244,55 @@ public class UrlPublisher
         }
     }
 
+    /**
+     * Performs a head request on each of the specified URLs. HTTP requests are issued concurrently, with a limited
+     * number of requests per host.
+     * 
+     * @param urls The URLs to perform the head request on, must not be {@code null}.
+     * @param monitor The monitor to notify of the progress of the whole batch, may be {@code null}.
+     * @param authService The authenticator service used to query credentials to access protected resources, may be
+     *            {@code null}.
+     * @param proxyService The proxy service used to select a proxy that is applicable for the resource, may be
+     *            {@code null}.
+     * @param timeoutInMilliseconds Timeout in milliseconds. If null, it will use the default timeout.
+     * @return The status codes keyed by URL, never {@code null}. Requests that failed without a response from the
+     *         server are reported with {@link HttpHeadBatch#STATUS_FAILED}.
+     * @throws IOException If a URL uses an unsupported protocol or the batch was cancelled.
+     */
+    public Map<URI, Integer> headFiles( final Collection<URI> urls, final IProgressMonitor monitor,
+                                        final IAuthService authService, final IProxyService proxyService,
+                                        final Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        Map<URI, Integer> result = new LinkedHashMap<URI, Integer>();
+        List<URI> httpUrls = new ArrayList<URI>();
+        for ( URI url : urls )
+        {
+            if ( isFile( url.getScheme() ) )
+            {
+                result.put( url, Integer.valueOf( new File( url ).exists() ? HttpURLConnection.HTTP_OK
+                                : HttpURLConnection.HTTP_NOT_FOUND ) );
+            }
+            else if ( isHttp( url.getScheme() ) )
+            {
+                result.put( url, null );
+                httpUrls.add( url );
+            }
+            else
+            {
+                throw new IOException( "Unsupported protocol " + url.getScheme() );
+            }
+        }
+        if ( !httpUrls.isEmpty() )
+        {
+            HttpHeadBatch batch = new HttpHeadBatch();
+            batch.setTimeoutPolicy( timeoutPolicy );
+            batch.setPriority( priority );
+            result.putAll( batch.headAll( httpUrls, monitor, authService, proxyService, timeoutInMilliseconds ) );
+        }
+        return result;
+    }
+
     private static boolean isFile( String protocol )
     {
         return "file".equalsIgnoreCase( protocol );
@@ -145,8 +310,9 @@ public class UrlPublisher
     {
         if ( isFile( url.getScheme() ) )
         {
-            filePublisher.putFile( file, new File( url ), monitor );
-            return new ServerResponse( 200, null, "UTF-8" );
+            ServerResponse response = new ServerResponse( 200, null, "UTF-8" );
+            response.setDigests( filePublisher.putFile( file, new File( url ), monitor ) );
+            return response;
         }
         else if ( isHttp( url.getScheme() ) )
         {
@@ -157,4 +323,86 @@ public class UrlPublisher
             throw new IOException( "Unsupported protocol " + url.getScheme() );
         }
     }
+
+    /**
+     * Uploads a file to the specified URL without waiting for the transfer to finish. Local files are written by the
+     * calling thread and yield an already completed future.
+     * 
+     * @return The pending server response, never {@code null}. The future fails with a {@link TransferException} if
+     *         the server rejected the resource.
+     * @throws IOException If the transfer could not be started.
+     * @see #putFile(RequestEntity, URI, IProgressMonitor, IAuthService, IProxyService, Integer)
+     */
+    public TransferFuture<ServerResponse> putFileAsync( final RequestEntity file, final URI url,
+                                                        final IProgressMonitor monitor,
+                                                        final IAuthService authService,
+                                                        final IProxyService proxyService,
+                                                        final Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        if ( isHttp( url.getScheme() ) )
+        {
+            return httpPublisher.putFileAsync( file, url, monitor, name, authService, proxyService,
+                                               timeoutInMilliseconds );
+        }
+        try
+        {
+            return TransferFuture.completed( putFile( file, url, monitor, authService, proxyService,
+                                                      timeoutInMilliseconds ) );
+        }
+        catch ( IOException e )
+        {
+            return TransferFuture.failed( e );
+        }
+    }
+
+    public TransferFuture<ServerResponse> postFileAsync( final RequestEntity file, final URI url,
+                                                         final IProgressMonitor monitor,
+                                                         final IAuthService authService,
+                                                         final IProxyService proxyService,
+                                                         final Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        if ( isHttp( url.getScheme() ) )
+        {
+            return httpPublisher.postFileAsync( file, url, monitor, name, authService, proxyService,
+                                                timeoutInMilliseconds );
+        }
+        try
+        {
+            return TransferFuture.completed( postFile( file, url, monitor, authService, proxyService,
+                                                       timeoutInMilliseconds ) );
+        }
+        catch ( IOException e )
+        {
+            return TransferFuture.failed( e );
+        }
+    }
+
+    public TransferFuture<ServerResponse> deleteAsync( final URI url, final IProgressMonitor monitor,
+                                                       final IAuthService authService,
+                                                       final IProxyService proxyService,
+                                                       final Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        if ( isHttp( url.getScheme() ) )
+        {
+            return httpPublisher.deleteAsync( url, monitor, name, authService, proxyService, timeoutInMilliseconds );
+        }
+        throw new IOException( "Unsupported protocol " + url.getScheme() );
+    }
+
+    public TransferFuture<ServerResponse> headFileAsync( final URI url, final IProgressMonitor monitor,
+                                                         final IAuthService authService,
+                                                         final IProxyService proxyService,
+                                                         final Integer timeoutInMilliseconds )
+        throws IOException
+    {
+        if ( isHttp( url.getScheme() ) )
+        {
+            return httpPublisher.headFileAsync( url, monitor, name, authService, proxyService,
+                                                timeoutInMilliseconds );
+        }
+        return TransferFuture.completed( headFile( url, monitor, authService, proxyService, timeoutInMilliseconds ) );
+    }
 }
@@ -0,0 +1,203 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.maven.ide.eclipse.authentication.AuthFacade;
+import org.maven.ide.eclipse.authentication.IAuthData;
+import org.maven.ide.eclipse.authentication.IAuthService;
+
+/**
+ * Remembers the authentication data selected for the resources of a directory, so that transfers of many files from
+ * one location do not need to consult the authentication service again. Selecting the data normalizes the URL, walks
+ * the realm associations under a global lock and possibly decrypts the secure storage.
+ * <p>
+ * All entries are discarded as soon as the authentication registry reports a modification of realms, URL associations
+ * or credentials. As a safety net for credentials changed behind the back of the registry, the entries also expire
+ * after a while and are discarded for a server once it rejected the credentials.
+ */
+public class AuthCache
+{
+    public static final long DEFAULT_TTL = 30 * 1000;
+
+    private static final int MAX_ENTRIES = 256;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<Key, Entry> eldest )
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private volatile long ttl = DEFAULT_TTL;
+
+    private long modificationCount = AuthFacade.getModificationCount();
+
+    /**
+     * Sets the time the selected authentication data is reused.
+     *
+     * @param ttl The time in milliseconds, {@code 0} to disable the cache.
+     */
+    public void setTtl( long ttl )
+    {
+        this.ttl = Math.max( 0, ttl );
+        clear();
+    }
+
+    /**
+     * Looks up the authentication data for the specified resource.
+     *
+     * @param authService The authentication service that would select the data, must not be {@code null}.
+     * @param url The URL of the resource, must not be {@code null}.
+     * @return The cached selection or {@code null} if the authentication service needs to be consulted.
+     */
+    public synchronized Entry get( IAuthService authService, URI url )
+    {
+        checkModifications();
+        Key key = new Key( authService, url );
+        Entry entry = entries.get( key );
+        if ( entry != null && entry.expires <= System.currentTimeMillis() )
+        {
+            entries.remove( key );
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the authentication data selected for the specified resource.
+     *
+     * @param authService The authentication service that selected the data, must not be {@code null}.
+     * @param url The URL of the resource, must not be {@code null}.
+     * @param authData The selected authentication data, may be {@code null}.
+     * @param modificationCount The {@link AuthFacade#getModificationCount() modification count} of the authentication
+     *            registry taken before the data was selected. If the registry has been modified since, the data may be
+     *            stale and is not stored.
+     */
+    public synchronized void put( IAuthService authService, URI url, IAuthData authData, long modificationCount )
+    {
+        long ttl = this.ttl;
+        if ( ttl > 0 )
+        {
+            checkModifications();
+            if ( modificationCount != this.modificationCount )
+            {
+                return;
+            }
+            entries.put( new Key( authService, url ), new Entry( authData, System.currentTimeMillis() + ttl ) );
+        }
+    }
+
+    /**
+     * Discards the authentication data of all resources on the server of the specified URL.
+     *
+     * @param url The URL of a resource on the server, must not be {@code null}.
+     */
+    public synchronized void evict( URI url )
+    {
+        String server = getServer( url );
+        for ( Iterator<Key> it = entries.keySet().iterator(); it.hasNext(); )
+        {
+            if ( it.next().server.equals( server ) )
+            {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    private void checkModifications()
+    {
+        long count = AuthFacade.getModificationCount();
+        if ( count != modificationCount )
+        {
+            entries.clear();
+            modificationCount = count;
+        }
+    }
+
+    private static String getServer( URI url )
+    {
+        String scheme = ( url.getScheme() != null ) ? url.getScheme().toLowerCase( Locale.ENGLISH ) : "";
+        String host = ( url.getHost() != null ) ? url.getHost().toLowerCase( Locale.ENGLISH ) : "";
+        return scheme + "://" + host + ":" + url.getPort();
+    }
+
+    /**
+     * The authentication data selected for a directory.
+     */
+    public static final class Entry
+    {
+        private final IAuthData authData;
+
+        final long expires;
+
+        Entry( IAuthData authData, long expires )
+        {
+            this.authData = authData;
+            this.expires = expires;
+        }
+
+        /**
+         * @return The authentication data or {@code null} if the resource is not known to the authentication service.
+         */
+        public IAuthData getAuthData()
+        {
+            return authData;
+        }
+    }
+
+    private static final class Key
+    {
+        private final IAuthService authService;
+
+        final String server;
+
+        private final String directory;
+
+        Key( IAuthService authService, URI url )
+        {
+            this.authService = authService;
+            this.server = getServer( url );
+            String path = ( url.getRawPath() != null ) ? url.getRawPath() : "";
+            this.directory = path.substring( 0, path.lastIndexOf( '/' ) + 1 );
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key that = (Key) obj;
+            return authService == that.authService && server.equals( that.server )
+                && directory.equals( that.directory );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 17;
+            hash = hash * 31 + System.identityHashCode( authService );
+            hash = hash * 31 + server.hashCode();
+            hash = hash * 31 + directory.hashCode();
+            return hash;
+        }
+    }
+}
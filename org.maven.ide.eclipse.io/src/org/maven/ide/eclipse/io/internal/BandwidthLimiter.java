@@ -0,0 +1,233 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the bandwidth used by transfers, both in total and per host. The limits are enforced by token buckets which
+ * are charged with the data the transfers send and receive. The HTTP client offers no way to suspend a connection, so
+ * the buckets do not hold back the data of a request that is under way, they run into debt instead. The requests to a
+ * host are only sent once the debt has been paid off, i.e. the data is paced per request. Changes to the limits apply
+ * to the requests that wait for their turn as well.
+ */
+public class BandwidthLimiter
+{
+    private final TokenBucket global = new TokenBucket();
+
+    private final ConcurrentMap<String, TokenBucket> hosts = new ConcurrentHashMap<String, TokenBucket>();
+
+    /**
+     * Sets the bandwidth available to all transfers together.
+     *
+     * @param bytesPerSecond The limit in bytes per second, {@code 0} for no limit.
+     */
+    public void setLimit( long bytesPerSecond )
+    {
+        global.setRate( bytesPerSecond );
+    }
+
+    /**
+     * Gets the bandwidth available to all transfers together.
+     *
+     * @return The limit in bytes per second, {@code 0} for no limit.
+     */
+    public long getLimit()
+    {
+        return global.getRate();
+    }
+
+    /**
+     * Sets the bandwidth available to the transfers from and to the specified host. The global limit applies on top
+     * of this limit.
+     *
+     * @param host The name of the host, must not be {@code null}.
+     * @param bytesPerSecond The limit in bytes per second, {@code 0} to remove the limit.
+     */
+    public void setLimit( String host, long bytesPerSecond )
+    {
+        String key = host.toLowerCase( Locale.ENGLISH );
+        if ( bytesPerSecond > 0 )
+        {
+            TokenBucket bucket = hosts.get( key );
+            if ( bucket == null )
+            {
+                TokenBucket created = new TokenBucket();
+                bucket = hosts.putIfAbsent( key, created );
+                if ( bucket == null )
+                {
+                    bucket = created;
+                }
+            }
+            bucket.setRate( bytesPerSecond );
+        }
+        else
+        {
+            // the transfers look the bucket up for every request, so the waiting ones are released as well
+            hosts.remove( key );
+        }
+    }
+
+    /**
+     * Gets the bandwidth available to the transfers from and to the specified host, not considering the global limit.
+     *
+     * @param host The name of the host, must not be {@code null}.
+     * @return The limit in bytes per second, {@code 0} for no limit.
+     */
+    public long getLimit( String host )
+    {
+        TokenBucket bucket = hosts.get( host.toLowerCase( Locale.ENGLISH ) );
+        return ( bucket != null ) ? bucket.getRate() : 0;
+    }
+
+    /**
+     * Gets the throttle for a transfer of the specified resource.
+     *
+     * @param url The URL of the transferred resource, must not be {@code null}.
+     * @return The throttle, never {@code null}.
+     */
+    public Throttle getThrottle( URI url )
+    {
+        String host = url.getHost();
+        return new Throttle( this, ( host != null ) ? host.toLowerCase( Locale.ENGLISH ) : "" );
+    }
+
+    /**
+     * Paces the requests of a single transfer according to the limits that currently apply to its host.
+     */
+    public static final class Throttle
+    {
+        private final BandwidthLimiter limiter;
+
+        private final String host;
+
+        Throttle( BandwidthLimiter limiter, String host )
+        {
+            this.limiter = limiter;
+            this.host = host;
+        }
+
+        /**
+         * Tells whether any limit currently applies to the transfer.
+         */
+        public boolean isLimited()
+        {
+            return getRate() > 0;
+        }
+
+        /**
+         * Gets the bandwidth currently available to the transfer, i.e. the lower of its host's and the global limit.
+         *
+         * @return The limit in bytes per second, {@code 0} for no limit.
+         */
+        public long getRate()
+        {
+            long rate = limiter.global.getRate();
+            TokenBucket bucket = limiter.hosts.get( host );
+            long hostRate = ( bucket != null ) ? bucket.getRate() : 0;
+            if ( rate <= 0 || ( hostRate > 0 && hostRate < rate ) )
+            {
+                rate = hostRate;
+            }
+            return rate;
+        }
+
+        /**
+         * Gets the time until the data moved so far has been paid off and the next request may be sent.
+         *
+         * @return The delay in milliseconds, {@code 0} if the request may be sent right away.
+         */
+        public long getDelay()
+        {
+            TokenBucket bucket = limiter.hosts.get( host );
+            long delay = ( bucket != null ) ? bucket.getDelay() : 0;
+            return Math.max( delay, limiter.global.getDelay() );
+        }
+
+        /**
+         * Charges the specified number of bytes to the buckets of the transfer. This method does not block.
+         *
+         * @param bytes The number of bytes that were or are about to be moved.
+         */
+        public void charge( long bytes )
+        {
+            if ( bytes <= 0 )
+            {
+                return;
+            }
+            TokenBucket bucket = limiter.hosts.get( host );
+            if ( bucket != null )
+            {
+                bucket.charge( bytes );
+            }
+            limiter.global.charge( bytes );
+        }
+    }
+
+    /**
+     * A token bucket which is refilled at the configured rate and holds at most a quarter second worth of tokens. The
+     * tokens go negative when more data is charged than the bucket holds.
+     */
+    private static final class TokenBucket
+    {
+        private long rate;
+
+        private long burst;
+
+        private long tokens;
+
+        private long refilled = System.nanoTime();
+
+        synchronized long getRate()
+        {
+            return rate;
+        }
+
+        synchronized void setRate( long bytesPerSecond )
+        {
+            refill( System.nanoTime() );
+            rate = Math.max( 0, bytesPerSecond );
+            burst = Math.max( 1, rate / 4 );
+            // a lifted limit forgives the debt, a changed limit pays it off at the new rate
+            tokens = ( rate > 0 ) ? Math.min( tokens, burst ) : 0;
+        }
+
+        synchronized void charge( long bytes )
+        {
+            if ( rate > 0 )
+            {
+                refill( System.nanoTime() );
+                tokens -= bytes;
+            }
+        }
+
+        synchronized long getDelay()
+        {
+            if ( rate <= 0 )
+            {
+                return 0;
+            }
+            refill( System.nanoTime() );
+            return ( tokens >= 0 ) ? 0 : ( -tokens * 1000 + rate - 1 ) / rate;
+        }
+
+        private void refill( long now )
+        {
+            long elapsed = now - refilled;
+            if ( rate <= 0 || elapsed >= TimeUnit.SECONDS.toNanos( burst - tokens ) / rate )
+            {
+                tokens = burst;
+                refilled = now;
+            }
+            else
+            {
+                long added = elapsed * rate / TimeUnit.SECONDS.toNanos( 1 );
+                tokens += added;
+                // keep the fraction of a token for the next refill, frequent small charges would lose it otherwise
+                refilled += TimeUnit.SECONDS.toNanos( added ) / rate;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the servers that rejected gzip compressed request bodies, so that further requests to them are sent
+ * uncompressed right away instead of being rejected first. The verdicts expire after a while, as a server may be
+ * reconfigured or replaced behind the same address.
+ */
+public class CompressionCache
+{
+    public static final long DEFAULT_TTL = 60 * 60 * 1000;
+
+    private static final int MAX_ENTRIES = 256;
+
+    private final Map<String, Long> rejections = new LinkedHashMap<String, Long>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, Long> eldest )
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private volatile long ttl = DEFAULT_TTL;
+
+    /**
+     * Sets the time a server is remembered for rejecting compressed request bodies.
+     *
+     * @param ttl The time in milliseconds, {@code 0} to disable the cache.
+     */
+    public void setTtl( long ttl )
+    {
+        this.ttl = Math.max( 0, ttl );
+        clear();
+    }
+
+    /**
+     * Checks whether the server of the specified URL recently rejected a compressed request body.
+     *
+     * @param url The URL to access, must not be {@code null}.
+     * @return {@code true} if request bodies should be sent uncompressed, {@code false} otherwise.
+     */
+    public synchronized boolean isRejected( URI url )
+    {
+        String key = getKey( url );
+        Long expires = rejections.get( key );
+        if ( expires != null && expires.longValue() <= System.currentTimeMillis() )
+        {
+            rejections.remove( key );
+            expires = null;
+        }
+        return expires != null;
+    }
+
+    /**
+     * Records that the server of the specified URL rejected a compressed request body.
+     *
+     * @param url The URL that was accessed, must not be {@code null}.
+     */
+    public synchronized void reject( URI url )
+    {
+        long ttl = this.ttl;
+        if ( ttl <= 0 )
+        {
+            return;
+        }
+        rejections.put( getKey( url ), Long.valueOf( System.currentTimeMillis() + ttl ) );
+    }
+
+    public synchronized void clear()
+    {
+        rejections.clear();
+    }
+
+    private static String getKey( URI url )
+    {
+        String scheme = ( url.getScheme() != null ) ? url.getScheme().toLowerCase( Locale.ENGLISH ) : "";
+        String host = ( url.getHost() != null ) ? url.getHost().toLowerCase( Locale.ENGLISH ) : "";
+        return scheme + "://" + host + ":" + url.getPort();
+    }
+}
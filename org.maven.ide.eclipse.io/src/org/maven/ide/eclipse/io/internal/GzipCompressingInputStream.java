@@ -0,0 +1,124 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Provides the gzip compressed form of another stream. The data is compressed as it is read, so the stream itself
+ * holds neither the original nor the compressed data as a whole. Note that the HTTP client (async-http-client 1.4)
+ * reads a request body given as a stream completely into memory before sending it, so uploads rather send the
+ * compressed data from a file.
+ */
+public class GzipCompressingInputStream
+    extends InputStream
+{
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final InputStream in;
+
+    private final Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+
+    private final CRC32 crc = new CRC32();
+
+    private final byte[] input = new byte[1024 * 8];
+
+    private byte[] frame = HEADER;
+
+    private int framePosition;
+
+    private boolean trailerWritten;
+
+    public GzipCompressingInputStream( InputStream in )
+    {
+        this.in = in;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        byte[] b = new byte[1];
+        int n = read( b, 0, 1 );
+        return ( n < 0 ) ? -1 : ( b[0] & 0xFF );
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len )
+        throws IOException
+    {
+        if ( len <= 0 )
+        {
+            return 0;
+        }
+        while ( true )
+        {
+            if ( frame != null )
+            {
+                int n = Math.min( len, frame.length - framePosition );
+                System.arraycopy( frame, framePosition, b, off, n );
+                framePosition += n;
+                if ( framePosition >= frame.length )
+                {
+                    frame = null;
+                }
+                return n;
+            }
+            if ( trailerWritten )
+            {
+                return -1;
+            }
+            if ( deflater.finished() )
+            {
+                frame = getTrailer();
+                framePosition = 0;
+                trailerWritten = true;
+                continue;
+            }
+            int n = deflater.deflate( b, off, len );
+            if ( n > 0 )
+            {
+                return n;
+            }
+            if ( deflater.needsInput() )
+            {
+                int read = in.read( input );
+                if ( read < 0 )
+                {
+                    deflater.finish();
+                }
+                else if ( read > 0 )
+                {
+                    crc.update( input, 0, read );
+                    deflater.setInput( input, 0, read );
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        deflater.end();
+        in.close();
+    }
+
+    private byte[] getTrailer()
+    {
+        byte[] trailer = new byte[8];
+        writeInt( trailer, 0, crc.getValue() );
+        writeInt( trailer, 4, deflater.getBytesRead() );
+        return trailer;
+    }
+
+    private static void writeInt( byte[] buffer, int offset, long value )
+    {
+        // little endian, truncated to 32 bits as demanded by RFC 1952
+        for ( int i = 0; i < 4; i++ )
+        {
+            buffer[offset + i] = (byte) ( value >>> ( 8 * i ) );
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.maven.ide.eclipse.io.CachePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk store for HTTP response bodies along with the validators ({@code ETag}/{@code Last-Modified}) needed to
+ * revalidate them. The store is bounded in size, the least recently used entries are evicted by a background job.
+ */
+public class HttpCache
+{
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final String BODY = ".body";
+
+    private static final String META = ".properties";
+
+    private static final String TMP = ".tmp";
+
+    private final Logger log = LoggerFactory.getLogger( HttpCache.class );
+
+    private final File directory;
+
+    private volatile long maxSize = DEFAULT_MAX_SIZE;
+
+    private final UrlPrefixMap<CachePolicy> policies = new UrlPrefixMap<CachePolicy>();
+
+    private final Job evictionJob = new Job( "Evicting HTTP cache entries" )
+    {
+        @Override
+        protected IStatus run( IProgressMonitor monitor )
+        {
+            evict();
+            return Status.OK_STATUS;
+        }
+    };
+
+    public HttpCache( File directory )
+    {
+        this.directory = directory;
+        evictionJob.setSystem( true );
+        evictionJob.setPriority( Job.DECORATE );
+    }
+
+    public void setMaxSize( long maxSize )
+    {
+        this.maxSize = maxSize;
+        evictionJob.schedule();
+    }
+
+    /**
+     * Sets the cache policy for all URLs starting with the specified prefix.
+     *
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param policy The policy for the URLs, {@code null} or {@link CachePolicy#DEFAULT} to remove the policy.
+     */
+    public void setPolicy( String urlPrefix, CachePolicy policy )
+    {
+        policies.put( urlPrefix, ( policy != CachePolicy.DEFAULT ) ? policy : null );
+    }
+
+    /**
+     * Gets the policy that applies to the specified URL, the longest matching prefix wins.
+     *
+     * @param url The URL, must not be {@code null}.
+     * @return The policy for the URL, never {@code null} or {@link CachePolicy#DEFAULT}.
+     */
+    public CachePolicy getPolicy( String url )
+    {
+        CachePolicy policy = policies.get( url );
+        return ( policy != null ) ? policy : CachePolicy.NO_CACHE;
+    }
+
+    /**
+     * Looks up the cached response for the specified resource.
+     *
+     * @param url The URL of the resource, must not be {@code null}.
+     * @param principal The user name the resource is accessed with, may be {@code null}.
+     * @return The cached response or {@code null} if the resource is not cached.
+     */
+    public Entry get( String url, String principal )
+    {
+        String key = getKey( url, principal );
+        File body = new File( directory, key + BODY );
+        File meta = new File( directory, key + META );
+        if ( !body.isFile() || !meta.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            Properties props = load( meta );
+            if ( !url.equals( props.getProperty( "url" ) ) || body.length() != Long.parseLong( props.getProperty( "length" ) ) )
+            {
+                return null;
+            }
+            // the modification time of the body tracks the last access
+            body.setLastModified( System.currentTimeMillis() );
+            return new Entry( body, props.getProperty( "etag" ), props.getProperty( "lastModified" ),
+                              props.getProperty( "encoding" ) );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not read cache entry for " + url, e );
+            return null;
+        }
+        catch ( RuntimeException e )
+        {
+            log.debug( "Corrupt cache entry for " + url, e );
+            return null;
+        }
+    }
+
+    /**
+     * Starts to store a new response for the specified resource. The response replaces a cached one once committed.
+     *
+     * @param url The URL of the resource, must not be {@code null}.
+     * @param principal The user name the resource is accessed with, may be {@code null}.
+     * @return The writer for the response body, never {@code null}.
+     */
+    public Writer put( String url, String principal, String etag, String lastModified, String encoding )
+        throws IOException
+    {
+        directory.mkdirs();
+        String key = getKey( url, principal );
+        File tmp = File.createTempFile( key, TMP, directory );
+        Properties props = new Properties();
+        props.setProperty( "url", url );
+        if ( etag != null )
+        {
+            props.setProperty( "etag", etag );
+        }
+        if ( lastModified != null )
+        {
+            props.setProperty( "lastModified", lastModified );
+        }
+        if ( encoding != null )
+        {
+            props.setProperty( "encoding", encoding );
+        }
+        return new Writer( key, tmp, props );
+    }
+
+    /**
+     * Removes the cached response for the specified resource.
+     */
+    public void remove( String url, String principal )
+    {
+        String key = getKey( url, principal );
+        new File( directory, key + META ).delete();
+        new File( directory, key + BODY ).delete();
+    }
+
+    /**
+     * Deletes entries until the cache fits into its size limit, least recently used entries first.
+     */
+    public void evict()
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        long size = 0;
+        List<File> bodies = new ArrayList<File>();
+        long staleTmp = System.currentTimeMillis() - 24 * 60 * 60 * 1000;
+        for ( File file : files )
+        {
+            if ( file.getName().endsWith( BODY ) )
+            {
+                bodies.add( file );
+                size += file.length();
+            }
+            else if ( file.getName().endsWith( TMP ) && file.lastModified() < staleTmp )
+            {
+                // left behind by an aborted transfer
+                file.delete();
+            }
+        }
+        if ( size <= maxSize )
+        {
+            return;
+        }
+        File[] lru = bodies.toArray( new File[bodies.size()] );
+        Arrays.sort( lru, new Comparator<File>()
+        {
+            public int compare( File f1, File f2 )
+            {
+                long t1 = f1.lastModified();
+                long t2 = f2.lastModified();
+                return ( t1 < t2 ) ? -1 : ( ( t1 == t2 ) ? 0 : 1 );
+            }
+        } );
+        for ( int i = 0; i < lru.length && size > maxSize; i++ )
+        {
+            String name = lru[i].getName();
+            new File( directory, name.substring( 0, name.length() - BODY.length() ) + META ).delete();
+            long length = lru[i].length();
+            if ( lru[i].delete() )
+            {
+                size -= length;
+            }
+        }
+        log.debug( "Evicted HTTP cache entries, {} bytes remain in use", size );
+    }
+
+    /**
+     * Stops the background eviction.
+     */
+    public void dispose()
+    {
+        evictionJob.cancel();
+    }
+
+    private static Properties load( File file )
+        throws IOException
+    {
+        Properties props = new Properties();
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            props.load( is );
+        }
+        finally
+        {
+            is.close();
+        }
+        return props;
+    }
+
+    private static String getKey( String url, String principal )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            digest.update( url.getBytes( "UTF-8" ) );
+            if ( principal != null )
+            {
+                digest.update( (byte) 0 );
+                digest.update( principal.getBytes( "UTF-8" ) );
+            }
+            StringBuilder key = new StringBuilder( 40 );
+            for ( byte b : digest.digest() )
+            {
+                key.append( Character.forDigit( ( b >> 4 ) & 0x0F, 16 ) ).append( Character.forDigit( b & 0x0F, 16 ) );
+            }
+            return key.toString();
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry
+    {
+        private final File body;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private final String encoding;
+
+        Entry( File body, String etag, String lastModified, String encoding )
+        {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.encoding = encoding;
+        }
+
+        public InputStream openStream()
+            throws IOException
+        {
+            return new FileInputStream( body );
+        }
+
+        public long getLength()
+        {
+            return body.length();
+        }
+
+        public String getETag()
+        {
+            return etag;
+        }
+
+        public String getLastModified()
+        {
+            return lastModified;
+        }
+
+        public String getEncoding()
+        {
+            return encoding;
+        }
+    }
+
+    /**
+     * Receives a response body into a temporary file, which becomes the cached entry once committed.
+     */
+    public final class Writer
+    {
+        private final String key;
+
+        private final File tmp;
+
+        private final Properties props;
+
+        private final FileOutputStream os;
+
+        private long length;
+
+        Writer( String key, File tmp, Properties props )
+            throws IOException
+        {
+            this.key = key;
+            this.tmp = tmp;
+            this.props = props;
+            this.os = new FileOutputStream( tmp );
+        }
+
+        public void write( byte[] data )
+            throws IOException
+        {
+            write( ByteBuffer.wrap( data ) );
+        }
+
+        public void write( ByteBuffer data )
+            throws IOException
+        {
+            length += data.remaining();
+            while ( data.hasRemaining() )
+            {
+                os.getChannel().write( data );
+            }
+        }
+
+        public void commit()
+            throws IOException
+        {
+            os.close();
+            props.setProperty( "length", Long.toString( length ) );
+            File meta = new File( directory, key + META );
+            File body = new File( directory, key + BODY );
+            meta.delete();
+            body.delete();
+            if ( !tmp.renameTo( body ) )
+            {
+                tmp.delete();
+                throw new IOException( "Could not store cache entry " + body );
+            }
+            OutputStream mos = new FileOutputStream( meta );
+            try
+            {
+                props.store( mos, null );
+            }
+            finally
+            {
+                mos.close();
+            }
+            evictionJob.schedule( 1000 );
+        }
+
+        public void abort()
+        {
+            try
+            {
+                os.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+            tmp.delete();
+        }
+    }
+}
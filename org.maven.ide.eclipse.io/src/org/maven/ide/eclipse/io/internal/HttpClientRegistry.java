@@ -0,0 +1,319 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.ProxyServer;
+
+/**
+ * Keeps long-lived {@link AsyncHttpClient} instances, one per distinct client configuration. Sharing the clients lets
+ * consecutive requests reuse pooled keep-alive connections and I/O threads instead of setting up a new client (and
+ * TCP/TLS handshake) for every single request.
+ * <p>
+ * Clients are handed out with {@link #acquire(Key)} and must be given back with {@link #release(AsyncHttpClient)}.
+ * Clients that have not been leased for a while are closed to free their threads and pooled connections.
+ * </p>
+ */
+public class HttpClientRegistry
+{
+    /**
+     * How long a pooled connection may stay idle before the client drops it.
+     */
+    private static final int IDLE_CONNECTION_TIMEOUT = 60 * 1000;
+
+    /**
+     * How long an unused client is kept around before it gets closed.
+     */
+    private static final long IDLE_CLIENT_TIMEOUT = 5 * 60 * 1000;
+
+    private static volatile HttpClientRegistry standalone;
+
+    private final Logger log = LoggerFactory.getLogger( HttpClientRegistry.class );
+
+    private final Map<Key, Entry> clients = new HashMap<Key, Entry>();
+
+    private final Map<AsyncHttpClient, Entry> leases = new IdentityHashMap<AsyncHttpClient, Entry>();
+
+    private boolean shutdown;
+
+    /**
+     * Sets the registry to share clients with when the bundle is used outside of OSGi, e.g. by benchmarks. Without
+     * one, every request outside of OSGi sets up and closes a client of its own.
+     *
+     * @param registry The registry to use, may be {@code null} to not share clients outside of OSGi.
+     */
+    public static void setStandalone( HttpClientRegistry registry )
+    {
+        standalone = registry;
+    }
+
+    /**
+     * @return The registry used outside of OSGi or {@code null} if none.
+     */
+    public static HttpClientRegistry getStandalone()
+    {
+        return standalone;
+    }
+
+    /**
+     * Leases a client matching the specified configuration, creating it if necessary.
+     *
+     * @param key The client configuration, must not be {@code null}.
+     * @return The shared client, never {@code null}.
+     */
+    public synchronized AsyncHttpClient acquire( Key key )
+    {
+        if ( shutdown )
+        {
+            throw new IllegalStateException( "The HTTP client registry has been shut down" );
+        }
+
+        long now = System.currentTimeMillis();
+        evictIdle( now );
+
+        Entry entry = clients.get( key );
+        if ( entry == null )
+        {
+            log.debug( "Creating HTTP client for {}", key );
+            entry = new Entry( key, new AsyncHttpClient( key.newConfig().build() ) );
+            clients.put( key, entry );
+            leases.put( entry.client, entry );
+        }
+        entry.references++;
+        entry.lastUsed = now;
+        return entry.client;
+    }
+
+    /**
+     * Gives back a client obtained from {@link #acquire(Key)}.
+     *
+     * @param client The client to release, may be {@code null}.
+     */
+    public synchronized void release( AsyncHttpClient client )
+    {
+        Entry entry = leases.get( client );
+        if ( entry != null )
+        {
+            entry.references = Math.max( 0, entry.references - 1 );
+            entry.lastUsed = System.currentTimeMillis();
+        }
+        else if ( client != null )
+        {
+            // not (or no longer) managed by this registry
+            client.close();
+        }
+    }
+
+    /**
+     * @return The number of outstanding leases, i.e. acquired clients that have not been released yet.
+     */
+    public synchronized int getLeaseCount()
+    {
+        int count = 0;
+        for ( Entry entry : clients.values() )
+        {
+            count += entry.references;
+        }
+        return count;
+    }
+
+    /**
+     * Closes the clients which have not been leased for a while.
+     */
+    public synchronized void evictIdle()
+    {
+        evictIdle( System.currentTimeMillis() );
+    }
+
+    private void evictIdle( long now )
+    {
+        for ( Iterator<Entry> it = clients.values().iterator(); it.hasNext(); )
+        {
+            Entry entry = it.next();
+            if ( entry.references <= 0 && now - entry.lastUsed > IDLE_CLIENT_TIMEOUT )
+            {
+                log.debug( "Closing idle HTTP client for {}", entry.key );
+                it.remove();
+                leases.remove( entry.client );
+                entry.client.close();
+            }
+        }
+    }
+
+    /**
+     * Closes all clients, including the ones still leased.
+     */
+    public synchronized void shutdown()
+    {
+        shutdown = true;
+        for ( Entry entry : clients.values() )
+        {
+            try
+            {
+                entry.client.close();
+            }
+            catch ( RuntimeException e )
+            {
+                log.debug( "Failed to close HTTP client for " + entry.key, e );
+            }
+        }
+        clients.clear();
+        leases.clear();
+    }
+
+    private static final class Entry
+    {
+        final Key key;
+
+        final AsyncHttpClient client;
+
+        int references;
+
+        long lastUsed;
+
+        Entry( Key key, AsyncHttpClient client )
+        {
+            this.key = key;
+            this.client = client;
+        }
+    }
+
+    /**
+     * The settings that make up a distinct client configuration. The SSL settings are the client defaults, so they
+     * don't take part in the key.
+     */
+    public static final class Key
+    {
+        private final int connectTimeout;
+
+        private final int timeout;
+
+        private final int maxRedirects;
+
+        private final ProxyServer.Protocol proxyProtocol;
+
+        private final String proxyHost;
+
+        private final int proxyPort;
+
+        private final String proxyUser;
+
+        private final String proxyPassword;
+
+        /**
+         * @param timeout The connect and request timeout in milliseconds.
+         * @param maxRedirects The maximum number of redirects to follow, {@code 0} to not follow redirects at all.
+         * @param proxyServer The proxy the requests are routed through, may be {@code null}.
+         */
+        public Key( int timeout, int maxRedirects, ProxyServer proxyServer )
+        {
+            this( timeout, timeout, maxRedirects, proxyServer );
+        }
+
+        /**
+         * @param connectTimeout The connect timeout in milliseconds.
+         * @param timeout The total time in milliseconds a request may take, {@code 0} for no limit.
+         * @param maxRedirects The maximum number of redirects to follow, {@code 0} to not follow redirects at all.
+         * @param proxyServer The proxy the requests are routed through, may be {@code null}.
+         */
+        public Key( int connectTimeout, int timeout, int maxRedirects, ProxyServer proxyServer )
+        {
+            this.connectTimeout = connectTimeout;
+            this.timeout = timeout;
+            this.maxRedirects = maxRedirects;
+            if ( proxyServer != null )
+            {
+                proxyProtocol = proxyServer.getProtocol();
+                proxyHost = proxyServer.getHost();
+                proxyPort = proxyServer.getPort();
+                proxyUser = proxyServer.getPrincipal();
+                proxyPassword = proxyServer.getPassword();
+            }
+            else
+            {
+                proxyProtocol = null;
+                proxyHost = null;
+                proxyPort = -1;
+                proxyUser = null;
+                proxyPassword = null;
+            }
+        }
+
+        /**
+         * Creates a client configuration matching this key.
+         */
+        public AsyncHttpClientConfig.Builder newConfig()
+        {
+            AsyncHttpClientConfig.Builder builder = new AsyncHttpClientConfig.Builder();
+            // without a deadline, stalled requests are left to the watchdog of the transfers
+            builder.setConnectionTimeoutInMs( connectTimeout );
+            builder.setRequestTimeoutInMs( ( timeout > 0 ) ? timeout : Integer.MAX_VALUE );
+            builder.setCompressionEnabled( true );
+            builder.setAllowPoolingConnection( true ).setIdleConnectionTimeoutInMs( IDLE_CONNECTION_TIMEOUT );
+            builder.setFollowRedirects( maxRedirects > 0 );
+            if ( maxRedirects > 0 )
+            {
+                builder.setMaximumNumberOfRedirects( maxRedirects );
+            }
+            return builder;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key that = (Key) obj;
+            return connectTimeout == that.connectTimeout && timeout == that.timeout
+                && maxRedirects == that.maxRedirects && proxyPort == that.proxyPort
+                && proxyProtocol == that.proxyProtocol && eq( proxyHost, that.proxyHost )
+                && eq( proxyUser, that.proxyUser ) && eq( proxyPassword, that.proxyPassword );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 17;
+            hash = hash * 31 + connectTimeout;
+            hash = hash * 31 + timeout;
+            hash = hash * 31 + maxRedirects;
+            hash = hash * 31 + proxyPort;
+            hash = hash * 31 + ( proxyProtocol != null ? proxyProtocol.hashCode() : 0 );
+            hash = hash * 31 + ( proxyHost != null ? proxyHost.hashCode() : 0 );
+            hash = hash * 31 + ( proxyUser != null ? proxyUser.hashCode() : 0 );
+            return hash;
+        }
+
+        private static boolean eq( Object o1, Object o2 )
+        {
+            return o1 == null ? o2 == null : o1.equals( o2 );
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder buffer = new StringBuilder( 64 );
+            buffer.append( "connectTimeout=" ).append( connectTimeout ).append( "ms, timeout=" ).append( timeout );
+            buffer.append( "ms, redirects=" ).append( maxRedirects );
+            if ( proxyHost != null )
+            {
+                buffer.append( ", proxy=" ).append( proxyProtocol ).append( "://" ).append( proxyHost );
+                buffer.append( ':' ).append( proxyPort );
+            }
+            return buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small in-memory cache for response bodies that are requested repeatedly within a short time, e.g. catalogs or
+ * descriptors. The cache is bounded by the total number of bytes held, the least recently used entries are dropped
+ * first. Each entry expires after the time-to-live it was stored with.
+ */
+public class MemoryResponseCache
+{
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 64 * 1024;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 64, 0.75f, true );
+
+    private final long maxSize;
+
+    private final int maxEntrySize;
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    public MemoryResponseCache()
+    {
+        this( DEFAULT_MAX_SIZE, DEFAULT_MAX_ENTRY_SIZE );
+    }
+
+    public MemoryResponseCache( long maxSize, int maxEntrySize )
+    {
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Gets the size of the largest response body that is kept in memory.
+     */
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    /**
+     * Creates the cache key for the specified resource. The URI is normalized so that trivially different spellings of
+     * the same resource share an entry.
+     * 
+     * @param url The URI of the resource, must not be {@code null}.
+     * @param principal The user name the resource is accessed with, may be {@code null}.
+     * @return The cache key, never {@code null}.
+     */
+    public static String getKey( URI url, String principal )
+    {
+        URI uri = url.normalize();
+        String scheme = ( uri.getScheme() != null ) ? uri.getScheme().toLowerCase() : "";
+        String host = ( uri.getHost() != null ) ? uri.getHost().toLowerCase() : "";
+        int port = uri.getPort();
+        if ( ( port == 80 && "http".equals( scheme ) ) || ( port == 443 && "https".equals( scheme ) ) )
+        {
+            port = -1;
+        }
+        StringBuilder key = new StringBuilder( 128 );
+        if ( principal != null )
+        {
+            key.append( principal ).append( '@' );
+        }
+        key.append( scheme ).append( "://" ).append( host );
+        if ( port >= 0 )
+        {
+            key.append( ':' ).append( port );
+        }
+        key.append( ( uri.getRawPath() != null && uri.getRawPath().length() > 0 ) ? uri.getRawPath() : "/" );
+        if ( uri.getRawQuery() != null )
+        {
+            key.append( '?' ).append( uri.getRawQuery() );
+        }
+        return key.toString();
+    }
+
+    /**
+     * Looks up the response for the specified key.
+     * 
+     * @param key The cache key as created by {@link #getKey(URI, String)}, must not be {@code null}.
+     * @return The cached response or {@code null} if the response is not cached or expired.
+     */
+    public synchronized Entry get( String key )
+    {
+        Entry entry = entries.get( key );
+        if ( entry != null && entry.expires <= System.currentTimeMillis() )
+        {
+            remove( key );
+            entry = null;
+        }
+        if ( entry != null )
+        {
+            hits++;
+        }
+        else
+        {
+            misses++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a response. Responses larger than the maximum entry size are ignored.
+     * 
+     * @param key The cache key as created by {@link #getKey(URI, String)}, must not be {@code null}.
+     * @param data The response body, must not be {@code null}. The array must not be modified afterwards.
+     * @param encoding The character encoding of the response, may be {@code null}.
+     * @param ttl The time in milliseconds the response may be served from the cache.
+     */
+    public synchronized void put( String key, byte[] data, String encoding, long ttl )
+    {
+        if ( data.length > maxEntrySize || ttl <= 0 )
+        {
+            return;
+        }
+        remove( key );
+        entries.put( key, new Entry( data, encoding, System.currentTimeMillis() + ttl ) );
+        size += data.length;
+        for ( Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); size > maxSize && it.hasNext(); )
+        {
+            size -= it.next().getValue().data.length;
+            it.remove();
+        }
+    }
+
+    public synchronized void remove( String key )
+    {
+        Entry entry = entries.remove( key );
+        if ( entry != null )
+        {
+            size -= entry.data.length;
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return The number of lookups that were answered from the cache.
+     */
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that had to go to the server.
+     */
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * @return The number of bytes currently held by the cache.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry
+    {
+        private final byte[] data;
+
+        private final String encoding;
+
+        private final long expires;
+
+        Entry( byte[] data, String encoding, long expires )
+        {
+            this.data = data;
+            this.encoding = encoding;
+            this.expires = expires;
+        }
+
+        /**
+         * @return The response body, must not be modified.
+         */
+        public byte[] getData()
+        {
+            return data;
+        }
+
+        public String getEncoding()
+        {
+            return encoding;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.core.net.proxy.IProxyChangeEvent;
+import org.eclipse.core.net.proxy.IProxyChangeListener;
+import org.eclipse.core.net.proxy.IProxyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ning.http.client.ProxyServer;
+
+/**
+ * Remembers the proxy selected for a server, so that consecutive requests to the same server do not need to consult
+ * the proxy service again. Proxy services backed by PAC scripts or the native proxy settings can be slow to answer.
+ * The decisions expire after a while and are discarded whenever a proxy service reports a change of its settings.
+ */
+public class ProxyCache
+    implements IProxyChangeListener
+{
+    public static final long DEFAULT_TTL = 60 * 1000;
+
+    private static final int MAX_ENTRIES = 256;
+
+    private final Logger log = LoggerFactory.getLogger( ProxyCache.class );
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<Key, Entry> eldest )
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final Map<IProxyService, Boolean> services = new IdentityHashMap<IProxyService, Boolean>();
+
+    private volatile long ttl = DEFAULT_TTL;
+
+    /**
+     * Sets the time a proxy decision is reused.
+     *
+     * @param ttl The time in milliseconds, {@code 0} to disable the cache.
+     */
+    public void setTtl( long ttl )
+    {
+        this.ttl = Math.max( 0, ttl );
+        clear();
+    }
+
+    /**
+     * Looks up the proxy decision for the server of the specified URL.
+     *
+     * @param proxyService The proxy service that would make the decision, must not be {@code null}.
+     * @param url The URL to access, must not be {@code null}.
+     * @return The cached decision or {@code null} if the proxy service needs to be consulted.
+     */
+    public synchronized Entry get( IProxyService proxyService, URI url )
+    {
+        Key key = new Key( proxyService, url );
+        Entry entry = entries.get( key );
+        if ( entry != null && entry.expires <= System.currentTimeMillis() )
+        {
+            entries.remove( key );
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the proxy decision for the server of the specified URL.
+     *
+     * @param proxyService The proxy service that made the decision, must not be {@code null}.
+     * @param url The URL to access, must not be {@code null}.
+     * @param proxyServer The proxy to use, may be {@code null} to connect directly.
+     */
+    public synchronized void put( IProxyService proxyService, URI url, ProxyServer proxyServer )
+    {
+        long ttl = this.ttl;
+        if ( ttl <= 0 )
+        {
+            return;
+        }
+        if ( !services.containsKey( proxyService ) )
+        {
+            proxyService.addProxyChangeListener( this );
+            services.put( proxyService, Boolean.TRUE );
+        }
+        entries.put( new Key( proxyService, url ), new Entry( proxyServer, System.currentTimeMillis() + ttl ) );
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    public void proxyInfoChanged( IProxyChangeEvent event )
+    {
+        log.debug( "Proxy settings changed, discarding cached proxy decisions" );
+        clear();
+    }
+
+    /**
+     * Stops listening to the proxy services and discards all decisions.
+     */
+    public void dispose()
+    {
+        List<IProxyService> registered;
+        synchronized ( this )
+        {
+            entries.clear();
+            registered = new ArrayList<IProxyService>( services.keySet() );
+            services.clear();
+        }
+        for ( IProxyService proxyService : registered )
+        {
+            proxyService.removeProxyChangeListener( this );
+        }
+    }
+
+    /**
+     * A proxy decision.
+     */
+    public static final class Entry
+    {
+        private final ProxyServer proxyServer;
+
+        final long expires;
+
+        Entry( ProxyServer proxyServer, long expires )
+        {
+            this.proxyServer = proxyServer;
+            this.expires = expires;
+        }
+
+        /**
+         * @return The proxy to use or {@code null} to connect directly.
+         */
+        public ProxyServer getProxyServer()
+        {
+            return proxyServer;
+        }
+    }
+
+    private static final class Key
+    {
+        private final IProxyService proxyService;
+
+        private final String scheme;
+
+        private final String host;
+
+        private final int port;
+
+        Key( IProxyService proxyService, URI url )
+        {
+            this.proxyService = proxyService;
+            this.scheme = ( url.getScheme() != null ) ? url.getScheme().toLowerCase( Locale.ENGLISH ) : "";
+            this.host = ( url.getHost() != null ) ? url.getHost().toLowerCase( Locale.ENGLISH ) : "";
+            this.port = url.getPort();
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key that = (Key) obj;
+            return proxyService == that.proxyService && port == that.port && scheme.equals( that.scheme )
+                && host.equals( that.host );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 17;
+            hash = hash * 31 + System.identityHashCode( proxyService );
+            hash = hash * 31 + scheme.hashCode();
+            hash = hash * 31 + host.hashCode();
+            hash = hash * 31 + port;
+            return hash;
+        }
+    }
+}
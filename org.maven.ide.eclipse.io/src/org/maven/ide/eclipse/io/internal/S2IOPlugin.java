@@ -3,6 +3,12 @@ package org.maven.ide.eclipse.io.internal;
 
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.Plugin;
+import org.maven.ide.eclipse.io.RetryPolicy;
+import org.maven.ide.eclipse.io.TimeoutPolicy;
+import org.maven.ide.eclipse.io.TransferListener;
+import org.maven.ide.eclipse.io.TransferRecord;
+import org.maven.ide.eclipse.io.TransferScheduler;
+import org.maven.ide.eclipse.io.TransferStatistics;
 import org.osgi.framework.BundleContext;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
@@ -23,6 +29,28 @@ public class S2IOPlugin
 
     private ServiceTracker proxyServiceTracker;
 
+    private ServiceTracker transferListenerTracker;
+
+    private HttpClientRegistry httpClientRegistry;
+
+    private HttpCache httpCache;
+
+    private final MemoryResponseCache memoryCache = new MemoryResponseCache();
+
+    private final ProxyCache proxyCache = new ProxyCache();
+
+    private final AuthCache authCache = new AuthCache();
+
+    private final CompressionCache compressionCache = new CompressionCache();
+
+    private final UrlPrefixMap<RetryPolicy> retryPolicies = new UrlPrefixMap<RetryPolicy>();
+
+    private final UrlPrefixMap<TimeoutPolicy> timeoutPolicies = new UrlPrefixMap<TimeoutPolicy>();
+
+    private final TransferStatistics transferStatistics = new TransferStatistics();
+
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter();
+
     @Override
     public void start( BundleContext context )
         throws Exception
@@ -33,6 +61,11 @@ public class S2IOPlugin
 
         proxyServiceTracker = new ServiceTracker( context, IProxyService.class.getName(), null );
         proxyServiceTracker.open();
+
+        transferListenerTracker = new ServiceTracker( context, TransferListener.class.getName(), null );
+        transferListenerTracker.open();
+
+        httpClientRegistry = new HttpClientRegistry();
     }
 
     @Override
@@ -42,8 +75,35 @@ public class S2IOPlugin
         log.debug( "Stoping the S2IOPlugin..." );
         try
         {
+            synchronized ( this )
+            {
+                if ( httpCache != null )
+                {
+                    httpCache.dispose();
+                    httpCache = null;
+                }
+            }
+
+            memoryCache.clear();
+
+            proxyCache.dispose();
+
+            authCache.clear();
+
+            compressionCache.clear();
+
+            // the pending retries are sent before the clients go away, which then fails them
+            RetryPolicy.shutdown();
+            TransferScheduler.shutdown();
+
+            httpClientRegistry.shutdown();
+            httpClientRegistry = null;
+
             proxyServiceTracker.close();
             proxyServiceTracker = null;
+
+            transferListenerTracker.close();
+            transferListenerTracker = null;
         }
         finally
         {
@@ -62,6 +122,163 @@ public class S2IOPlugin
         return (IProxyService) proxyServiceTracker.getService();
     }
 
+    /**
+     * Gets the statistics of the requests made since the plugin was started.
+     * 
+     * @return The transfer statistics, never {@code null}.
+     */
+    public TransferStatistics getTransferStatistics()
+    {
+        return transferStatistics;
+    }
+
+    /**
+     * Notifies the built-in statistics and the registered transfer listeners of a finished request.
+     * 
+     * @param record The details of the request, must not be {@code null}.
+     */
+    public void fireTransferCompleted( TransferRecord record )
+    {
+        transferStatistics.transferCompleted( record );
+
+        ServiceTracker tracker = transferListenerTracker;
+        Object[] listeners = ( tracker != null ) ? tracker.getServices() : null;
+        if ( listeners != null )
+        {
+            for ( Object listener : listeners )
+            {
+                try
+                {
+                    ( (TransferListener) listener ).transferCompleted( record );
+                }
+                catch ( RuntimeException e )
+                {
+                    log.error( "Transfer listener failed", e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the registry of the HTTP clients shared by all transfers.
+     * 
+     * @return The client registry, never {@code null} while the plugin is active.
+     */
+    public HttpClientRegistry getHttpClientRegistry()
+    {
+        return httpClientRegistry;
+    }
+
+    /**
+     * Gets the on-disk cache for HTTP responses, located in the state area of the plugin.
+     * 
+     * @return The HTTP cache, never {@code null}.
+     */
+    public synchronized HttpCache getHttpCache()
+    {
+        if ( httpCache == null )
+        {
+            httpCache = new HttpCache( getStateLocation().append( "http-cache" ).toFile() );
+        }
+        return httpCache;
+    }
+
+    /**
+     * Gets the in-memory cache for small HTTP responses.
+     * 
+     * @return The memory cache, never {@code null}.
+     */
+    public MemoryResponseCache getMemoryCache()
+    {
+        return memoryCache;
+    }
+
+    /**
+     * Gets the cache for the proxy decisions of the proxy services.
+     * 
+     * @return The proxy cache, never {@code null}.
+     */
+    public ProxyCache getProxyCache()
+    {
+        return proxyCache;
+    }
+
+    /**
+     * Gets the cache for the authentication data selected by the authentication services.
+     * 
+     * @return The authentication cache, never {@code null}.
+     */
+    public AuthCache getAuthCache()
+    {
+        return authCache;
+    }
+
+    /**
+     * Gets the cache for the servers that rejected compressed request bodies.
+     * 
+     * @return The compression cache, never {@code null}.
+     */
+    public CompressionCache getCompressionCache()
+    {
+        return compressionCache;
+    }
+
+    /**
+     * Sets the retry policy for all URLs starting with the specified prefix, e.g. for a host.
+     * 
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param retryPolicy The retry policy, {@code null} to remove the policy.
+     */
+    public void setRetryPolicy( String urlPrefix, RetryPolicy retryPolicy )
+    {
+        retryPolicies.put( urlPrefix, retryPolicy );
+    }
+
+    /**
+     * Gets the retry policy for the specified URL.
+     * 
+     * @param url The URL, must not be {@code null}.
+     * @return The retry policy registered for the longest matching prefix, {@link RetryPolicy#NONE} if none.
+     */
+    public RetryPolicy getRetryPolicy( String url )
+    {
+        RetryPolicy retryPolicy = retryPolicies.get( url );
+        return ( retryPolicy != null ) ? retryPolicy : RetryPolicy.NONE;
+    }
+
+    /**
+     * Sets the timeout policy for all URLs starting with the specified prefix, e.g. for a host.
+     * 
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param timeoutPolicy The timeout policy, {@code null} to remove the policy.
+     */
+    public void setTimeoutPolicy( String urlPrefix, TimeoutPolicy timeoutPolicy )
+    {
+        timeoutPolicies.put( urlPrefix, timeoutPolicy );
+    }
+
+    /**
+     * Gets the timeout policy for the specified URL.
+     * 
+     * @param url The URL, must not be {@code null}.
+     * @return The timeout policy registered for the longest matching prefix, {@link TimeoutPolicy#DEFAULT} if none.
+     */
+    public TimeoutPolicy getTimeoutPolicy( String url )
+    {
+        TimeoutPolicy timeoutPolicy = timeoutPolicies.get( url );
+        return ( timeoutPolicy != null ) ? timeoutPolicy : TimeoutPolicy.DEFAULT;
+    }
+
+    /**
+     * Gets the limiter for the bandwidth used by the transfers.
+     * 
+     * @return The bandwidth limiter, never {@code null}.
+     */
+    public BandwidthLimiter getBandwidthLimiter()
+    {
+        return bandwidthLimiter;
+    }
+
     public static S2IOPlugin getDefault()
     {
         return plugin;
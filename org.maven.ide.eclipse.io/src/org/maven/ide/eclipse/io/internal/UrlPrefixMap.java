@@ -0,0 +1,55 @@
+package org.maven.ide.eclipse.io.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Associates settings with URL prefixes, e.g. to configure the behavior for a host or a repository. Lookups return the
+ * value of the longest prefix matching the URL.
+ * 
+ * @param <V> The type of the settings.
+ */
+public class UrlPrefixMap<V>
+{
+    private final Map<String, V> values = new HashMap<String, V>();
+
+    /**
+     * Sets the value for all URLs starting with the specified prefix.
+     * 
+     * @param urlPrefix The URL prefix, must not be {@code null}.
+     * @param value The value for the URLs, {@code null} to remove the value.
+     */
+    public synchronized void put( String urlPrefix, V value )
+    {
+        if ( value == null )
+        {
+            values.remove( urlPrefix );
+        }
+        else
+        {
+            values.put( urlPrefix, value );
+        }
+    }
+
+    /**
+     * Gets the value for the specified URL.
+     * 
+     * @param url The URL, must not be {@code null}.
+     * @return The value of the longest matching prefix or {@code null} if no prefix matches.
+     */
+    public synchronized V get( String url )
+    {
+        V result = null;
+        int matched = -1;
+        for ( Map.Entry<String, V> entry : values.entrySet() )
+        {
+            String prefix = entry.getKey();
+            if ( prefix.length() > matched && url.startsWith( prefix ) )
+            {
+                result = entry.getValue();
+                matched = prefix.length();
+            }
+        }
+        return result;
+    }
+}
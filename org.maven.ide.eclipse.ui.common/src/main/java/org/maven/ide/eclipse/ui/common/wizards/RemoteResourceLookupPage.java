@@ -22,6 +22,8 @@ import org.eclipse.swt.widgets.Label;
 import org.eclipse.ui.forms.events.ExpansionAdapter;
 import org.eclipse.ui.forms.events.ExpansionEvent;
 import org.eclipse.ui.forms.widgets.ExpandableComposite;
+import org.maven.ide.eclipse.io.TransferPriority;
+import org.maven.ide.eclipse.io.TransferScheduler;
 import org.maven.ide.eclipse.swtvalidation.SwtValidationGroup;
 import org.maven.ide.eclipse.swtvalidation.SwtValidationUI;
 import org.maven.ide.eclipse.ui.common.ErrorHandlingUtils;
@@ -272,6 +274,8 @@ abstract public class RemoteResourceLookupPage
                 {
                     monitor.beginTask( Messages.remoteResourceLookupPage_loading, 2 );
 
+                    // the user waits for the lookup, let it pass transfers queued by background work
+                    TransferPriority priority = TransferScheduler.setPriority( TransferPriority.INTERACTIVE );
                     try
                     {
                         input = loadResources( url, monitor );
@@ -282,6 +286,7 @@ abstract public class RemoteResourceLookupPage
                     }
                     finally
                     {
+                        TransferScheduler.setPriority( priority );
                         monitor.done();
                     }
                 }